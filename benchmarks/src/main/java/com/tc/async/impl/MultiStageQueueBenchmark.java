@@ -0,0 +1,149 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Source;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.util.concurrent.QueueFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link MultiStageQueueImpl#addToSink} with a consumer thread draining each of its queues, the way a
+ *  multi-threaded stage runs.  Keyed events spread over a fixed set of scheduling keys, unkeyed ones go to whichever
+ *  queue the stage picks as the shortest.  The queue is bounded so producers that outrun the consumers are measured at
+ *  the rate the consumers let them go.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MultiStageQueueBenchmark {
+
+  private static final int KEYS = 1024;
+
+  @Param({"4", "8"})
+  public int queueCount;
+
+  @Param({"true", "false"})
+  public boolean keyed;
+
+  @Param({"16384"})
+  public int queueSize;
+
+  private MultiStageQueueImpl<Context> queue;
+  private final List<Thread> consumers = new ArrayList<>();
+  private final LongAdder handled = new LongAdder();
+  private volatile boolean running;
+  private Context[] keyedContexts;
+  private final Context unkeyed = new Context(null);
+
+  @Setup
+  public void setup() {
+    EventCreator<Context> creator = context -> new Event() {
+      @Override
+      public void call() throws EventHandlerException {
+        handled.increment();
+      }
+    };
+    queue = new MultiStageQueueImpl<>(queueCount, new QueueFactory(), Context.class, creator, new DefaultLoggerProvider(), "benchmark", queueSize);
+    // the per event monitoring is measured separately, leave it out of the queueing cost
+    queue.enableAdditionalStatistics(false);
+    keyedContexts = new Context[KEYS];
+    for (int x = 0; x < KEYS; x++) {
+      keyedContexts[x] = new Context(x);
+    }
+    running = true;
+    for (int x = 0; x < queueCount; x++) {
+      Source source = queue.getSource(x);
+      Thread consumer = new Thread(() -> drain(source), "consumer-" + x);
+      consumer.setDaemon(true);
+      consumer.start();
+      consumers.add(consumer);
+    }
+  }
+
+  private void drain(Source source) {
+    try {
+      while (running) {
+        Event event = source.poll(10);
+        if (event != null) {
+          event.call();
+        }
+      }
+    } catch (InterruptedException | EventHandlerException e) {
+      // done
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    running = false;
+    for (Thread consumer : consumers) {
+      consumer.join();
+    }
+    consumers.clear();
+  }
+
+  @Benchmark
+  public void addToSink() {
+    queue.addToSink(keyed ? keyedContexts[ThreadLocalRandom.current().nextInt(KEYS)] : unkeyed);
+  }
+
+  private static class Context implements MultiThreadedEventContext {
+    private final Object key;
+
+    Context(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public Object getSchedulingKey() {
+      return key;
+    }
+
+    @Override
+    public boolean flush() {
+      return false;
+    }
+  }
+}
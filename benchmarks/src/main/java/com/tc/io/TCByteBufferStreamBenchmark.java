@@ -0,0 +1,103 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.io;
+
+import com.tc.bytes.TCByteBuffer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encode and decode of a message shaped record (a few primitives, a string and an opaque payload) through the
+ *  TCByteBuffer streams every message on the wire goes through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TCByteBufferStreamBenchmark {
+
+  @Param({"64", "4096", "65536"})
+  public int payloadSize;
+
+  @Param({"false", "true"})
+  public boolean direct;
+
+  private byte[] payload;
+  private TCByteBuffer[] encoded;
+
+  @Setup
+  public void setup() {
+    payload = new byte[payloadSize];
+    for (int x = 0; x < payload.length; x++) {
+      payload[x] = (byte) x;
+    }
+    encoded = encode().toArray();
+  }
+
+  private TCByteBufferOutputStream encode() {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream(4096, 64 * 1024, direct);
+    out.writeLong(42L);
+    out.writeInt(7);
+    out.writeBoolean(true);
+    out.writeString("org.terracotta.Entity");
+    out.writeInt(payload.length);
+    out.write(payload);
+    out.close();
+    return out;
+  }
+
+  @Benchmark
+  public TCByteBuffer[] encodeRecord() {
+    TCByteBufferOutputStream out = encode();
+    TCByteBuffer[] data = out.toArray();
+    out.recycle();
+    return data;
+  }
+
+  @Benchmark
+  public void decodeRecord(Blackhole bh) throws IOException {
+    TCByteBuffer[] data = new TCByteBuffer[encoded.length];
+    for (int x = 0; x < data.length; x++) {
+      data[x] = encoded[x].duplicate();
+    }
+    TCByteBufferInputStream in = new TCByteBufferInputStream(data);
+    bh.consume(in.readLong());
+    bh.consume(in.readInt());
+    bh.consume(in.readBoolean());
+    bh.consume(in.readString());
+    bh.consume(in.read(in.readInt()));
+    in.close();
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.core;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.entity.VoltronEntityAppliedResponseImpl;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.TCSocketAddress;
+import com.tc.net.core.event.TCConnectionErrorEvent;
+import com.tc.net.core.event.TCConnectionEvent;
+import com.tc.net.core.event.TCConnectionEventListener;
+import com.tc.net.protocol.TCProtocolAdaptor;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.NullMessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building write contexts for, and writing, a burst of queued messages on a connection over loopback.  The selector
+ *  threads are kept out of it, the benchmark thread does the write that the writer comm thread would normally do once
+ *  selected, and a plain socket on the other end drains and discards everything.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TCConnectionWriteBenchmark {
+
+  @Param({"1", "16", "128"})
+  public int messagesPerWrite;
+
+  @Param({"64", "4096"})
+  public int messageSize;
+
+  private final MessageMonitor monitor = new NullMessageMonitor();
+  private ServerSocket server;
+  private Thread drain;
+  private CoreNIOServices nio;
+  private TCConnectionImpl connection;
+  private byte[] payload;
+  private long transaction;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    payload = new byte[messageSize];
+    server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    drain = new Thread(this::drain, "benchmark-drain");
+    drain.setDaemon(true);
+    drain.start();
+
+    SocketParams socketParams = new SocketParams();
+    nio = new CoreNIOServices("benchmark", null, socketParams) {
+      @Override
+      void requestReadInterest(TCChannelReader reader, ScatteringByteChannel channel) {
+        // nothing comes back
+      }
+
+      @Override
+      void requestWriteInterest(TCChannelWriter writer, GatheringByteChannel channel) {
+        // the benchmark thread writes
+      }
+
+      @Override
+      void removeWriteInterest(TCConnectionImpl conn, SelectableChannel channel) {
+        //
+      }
+    };
+    nio.start();
+    connection = new TCConnectionImpl(new NullListener(), new NullAdaptor(), new TCConnectionManagerImpl(), nio,
+        socketParams, new ClearTextBufferManagerFactory());
+    connection.connect(new TCSocketAddress(server.getInetAddress(), server.getLocalPort()), 10000);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    connection.close(10000);
+    nio.requestStop();
+    server.close();
+  }
+
+  private void drain() {
+    byte[] sink = new byte[64 * 1024];
+    try (Socket socket = server.accept(); InputStream in = socket.getInputStream()) {
+      while (in.read(sink) >= 0) {
+        // discard
+      }
+    } catch (IOException e) {
+      // closed
+    }
+  }
+
+  @Benchmark
+  public int write() throws IOException {
+    for (int x = 0; x < messagesPerWrite; x++) {
+      VoltronEntityAppliedResponseImpl message = new VoltronEntityAppliedResponseImpl(new SessionID(1), monitor,
+          new TCByteBufferOutputStream(4, 4096, false), null, TCMessageType.VOLTRON_ENTITY_COMPLETED_RESPONSE);
+      message.setSuccess(new TransactionID(++transaction), payload);
+      message.dehydrate();
+      connection.putMessage(message);
+    }
+    int total = 0;
+    int written;
+    while ((written = connection.doWrite()) > 0) {
+      total += written;
+    }
+    return total;
+  }
+
+  private static class NullListener implements TCConnectionEventListener {
+    @Override
+    public void connectEvent(TCConnectionEvent event) {
+      //
+    }
+
+    @Override
+    public void closeEvent(TCConnectionEvent event) {
+      //
+    }
+
+    @Override
+    public void errorEvent(TCConnectionErrorEvent errorEvent) {
+      //
+    }
+
+    @Override
+    public void endOfFileEvent(TCConnectionEvent event) {
+      //
+    }
+  }
+
+  private static class NullAdaptor implements TCProtocolAdaptor {
+    @Override
+    public void addReadData(TCConnection source, TCByteBuffer[] data, int length) {
+      //
+    }
+
+    @Override
+    public TCByteBuffer[] getReadBuffers() {
+      return new TCByteBuffer[0];
+    }
+  }
+}
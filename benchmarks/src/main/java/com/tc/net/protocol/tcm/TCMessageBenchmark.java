@@ -0,0 +1,87 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.tcm;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.entity.VoltronEntityAppliedResponseImpl;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dehydrate, and dehydrate followed by hydrate on the receiving side, of the completed response every invoke gets back.
+ *  A received message recycles its buffers once hydrated so the hydrate side is always measured together with the
+ *  dehydrate that produced its input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TCMessageBenchmark {
+
+  @Param({"16", "1024", "32768"})
+  public int responseSize;
+
+  private final MessageMonitor monitor = new NullMessageMonitor();
+  private byte[] response;
+  private long transaction;
+
+  @Setup
+  public void setup() {
+    response = new byte[responseSize];
+  }
+
+  private VoltronEntityAppliedResponseImpl createDehydrated() {
+    VoltronEntityAppliedResponseImpl message = new VoltronEntityAppliedResponseImpl(new SessionID(1), monitor,
+        new TCByteBufferOutputStream(4, 4096, false), null, TCMessageType.VOLTRON_ENTITY_COMPLETED_RESPONSE);
+    message.setSuccess(new TransactionID(++transaction), response);
+    message.dehydrate();
+    return message;
+  }
+
+  @Benchmark
+  public TCByteBuffer[] dehydrate() {
+    return createDehydrated().getEntireMessageData();
+  }
+
+  @Benchmark
+  public VoltronEntityAppliedResponseImpl dehydrateAndHydrate() throws Exception {
+    VoltronEntityAppliedResponseImpl sent = createDehydrated();
+    TCMessageHeader header = (TCMessageHeader) sent.getHeader();
+    VoltronEntityAppliedResponseImpl received = new VoltronEntityAppliedResponseImpl(SessionID.NULL_ID, monitor, null, header, sent.getPayload());
+    received.hydrate();
+    return received;
+  }
+}
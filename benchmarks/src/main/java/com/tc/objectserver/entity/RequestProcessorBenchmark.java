@@ -0,0 +1,154 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.net.ClientID;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityID;
+import com.tc.object.FetchID;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.api.ServerEntityAction;
+import com.tc.objectserver.api.ServerEntityRequest;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.entity.ConcurrencyStrategy;
+
+/**
+ * Contention in {@link RequestProcessor#scheduleRequest} between threads scheduling invokes, the process transaction
+ *  handler and request processor threads do this concurrently on a busy server.  The sink swallows the requests so what
+ *  is measured is the scheduling itself: the stripe locking and the request construction.
+ * <ul>
+ *   <li>distinct - every thread schedules on its own concurrency key</li>
+ *   <li>shared - all threads schedule on the same concurrency key</li>
+ *   <li>management - all threads schedule on the management key, which takes every stripe</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RequestProcessorBenchmark {
+
+  @Param({"distinct", "shared", "management"})
+  public String keys;
+
+  private RequestProcessor processor;
+  private final EntityID entity = new EntityID("com.example.Entity", "benchmark");
+  private final FetchID fetch = new FetchID(1);
+  private final MessagePayload payload = MessagePayload.rawDataOnly(TCByteBufferFactory.wrap(new byte[64]));
+  private final Consumer<ActivePassiveAckWaiter> call = waiter -> {};
+  private final AtomicInteger threadKeys = new AtomicInteger(1);
+
+  @Setup
+  public void setup() {
+    processor = new RequestProcessor(request -> {});
+    processor.enterActiveState();
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int key;
+    ServerEntityRequest request;
+
+    @Setup
+    public void setup(RequestProcessorBenchmark benchmark) {
+      switch (benchmark.keys) {
+        case "distinct":
+          key = benchmark.threadKeys.getAndIncrement();
+          break;
+        case "shared":
+          key = 1;
+          break;
+        default:
+          key = ConcurrencyStrategy.MANAGEMENT_KEY;
+          break;
+      }
+      request = new InvokeRequest(new ClientID(key));
+    }
+  }
+
+  @Benchmark
+  public void scheduleRequest(ThreadState state) {
+    processor.scheduleRequest(false, entity, 1, fetch, state.request, payload, call, true, state.key);
+  }
+
+  private static class InvokeRequest implements ServerEntityRequest {
+    private final ClientID client;
+
+    InvokeRequest(ClientID client) {
+      this.client = client;
+    }
+
+    @Override
+    public ServerEntityAction getAction() {
+      return ServerEntityAction.INVOKE_ACTION;
+    }
+
+    @Override
+    public ClientID getNodeID() {
+      return client;
+    }
+
+    @Override
+    public TransactionID getTransaction() {
+      return TransactionID.NULL_ID;
+    }
+
+    @Override
+    public TransactionID getOldestTransactionOnClient() {
+      return TransactionID.NULL_ID;
+    }
+
+    @Override
+    public ClientInstanceID getClientInstance() {
+      return ClientInstanceID.NULL_ID;
+    }
+
+    @Override
+    public boolean requiresReceived() {
+      return false;
+    }
+
+    @Override
+    public Set<SessionID> replicateTo(Set<SessionID> passives) {
+      return passives;
+    }
+  }
+}
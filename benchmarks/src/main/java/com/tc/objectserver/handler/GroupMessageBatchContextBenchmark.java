@@ -0,0 +1,141 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.l2.msg.ReplicationMessage;
+import com.tc.l2.msg.SyncReplicationActivity;
+import com.tc.net.ClientID;
+import com.tc.net.ServerID;
+import com.tc.net.groups.AbstractGroupMessage;
+import com.tc.net.groups.GroupException;
+import com.tc.net.groups.GroupManager;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.FetchID;
+import com.tc.object.tx.TransactionID;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replication activities pushed through a {@link GroupMessageBatchContext} the way the replication sender drives it.
+ *  The group manager only queues the sent callback, one of them is completed every ackEvery activities to stand in for
+ *  a network that lags behind the sender, which is what lets batches form.  With serialize set each batch is also
+ *  serialized, as the real group manager would, so the compression threshold can be measured too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupMessageBatchContextBenchmark {
+
+  private static final int MAXIMUM_QUEUED = 64;
+
+  @Param({"1", "8", "64"})
+  public int ackEvery;
+
+  @Param({"1", "4"})
+  public int idealMessagesInFlight;
+
+  @Param({"0", "32"})
+  public int maximumMessagesInFlight;
+
+  @Param({"256", "8192"})
+  public int payloadSize;
+
+  @Param({"false", "true"})
+  public boolean serialize;
+
+  @Param({"0"})
+  public int compressionThreshold;
+
+  private final ArrayDeque<Runnable> inFlight = new ArrayDeque<>();
+  private GroupMessageBatchContext<ReplicationMessage, SyncReplicationActivity> context;
+  private byte[] payload;
+  private long transaction;
+  private int sinceAck;
+
+  @SuppressWarnings("unchecked")
+  @Setup
+  public void setup() {
+    payload = new byte[payloadSize];
+    for (int x = 0; x < payload.length; x++) {
+      payload[x] = (byte) (x % 31);
+    }
+    GroupManager<AbstractGroupMessage> group = (GroupManager<AbstractGroupMessage>) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {GroupManager.class}, (proxy, method, args) -> {
+          if (method.getName().equals("sendToWithSentCallback")) {
+            if (serialize) {
+              TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+              ((AbstractGroupMessage) args[1]).serializeTo(out);
+              out.close();
+            }
+            inFlight.add((Runnable) args[2]);
+          }
+          return null;
+        });
+    context = new GroupMessageBatchContext<>(activity -> ReplicationMessage.createActivityContainer(activity, compressionThreshold),
+        group, new ServerID("passive", new byte[] {1, 2, 3, 4}), 64, idealMessagesInFlight, maximumMessagesInFlight, node -> flush());
+  }
+
+  private void flush() {
+    try {
+      context.flushBatch();
+    } catch (GroupException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Benchmark
+  public void replicate() {
+    SyncReplicationActivity activity = SyncReplicationActivity.createInvokeMessage(new FetchID(1), new ClientID(1), new ClientInstanceID(1),
+        new TransactionID(++transaction), TransactionID.NULL_ID, SyncReplicationActivity.ActivityType.INVOKE_ACTION,
+        TCByteBufferFactory.wrap(payload), 1, "");
+    if (context.batchMessage(activity)) {
+      flush();
+    }
+    if (++sinceAck >= ackEvery) {
+      sinceAck = 0;
+      Runnable done = inFlight.poll();
+      if (done != null) {
+        done.run();
+      }
+    }
+    // full batches go out regardless of the window, a real link would have pushed back long before this
+    while (inFlight.size() > MAXIMUM_QUEUED) {
+      inFlight.poll().run();
+    }
+  }
+}
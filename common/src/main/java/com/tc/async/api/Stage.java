@@ -48,4 +48,8 @@ public interface Stage<EC> {
   public boolean isStarted();
   
   public Map<String, ?> getState();
+  /**
+   * @return queue wait and service time percentiles of the events run by this stage, in nanoseconds
+   */
+  public Map<String, ?> getLatencyState();
 }
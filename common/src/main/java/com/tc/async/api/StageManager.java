@@ -23,11 +23,18 @@ import com.tc.stats.Stats;
 import com.tc.text.PrettyPrintable;
 
 import java.util.List;
+import java.util.Map;
 
 
 public interface StageManager extends PrettyPrintable {
   public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int threads, int maxSize);
   public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int threads, int maxSize, boolean canBeDirect);
+/**
+ * Create a stage, choosing the queue implementation.
+ * @param workStealing if true a multi-threaded stage is backed by bounded lock-free ring buffers, events with a
+ * scheduling key are still run in order by a single worker and events without one may be stolen by idle workers
+ */
+  public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int threads, int maxSize, boolean canBeDirect, boolean workStealing);
 /**
  * Start all the stages created on this stage manager.
  * @param context 
@@ -44,5 +51,10 @@ public interface StageManager extends PrettyPrintable {
 
   public Stats[] getStats();
 
+  /**
+   * @return the latency state of every started stage, keyed by stage name
+   */
+  public Map<String, ?> getLatencyState();
+
   public void cleanup();
 }
@@ -25,6 +25,7 @@ import com.tc.async.api.Sink;
 import com.tc.async.api.Source;
 import com.tc.logging.TCLoggerProvider;
 import com.tc.util.Assert;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -99,6 +100,11 @@ public abstract class AbstractStageQueueImpl<EC> implements StageQueue<EC> {
     return queueState;
   }
   
+  @Override
+  public Map<String, ?> getLatencyState() {
+    return (extraStats) ? this.monitoring.getLatencyState() : Collections.emptyMap();
+  }
+  
   interface SourceQueue extends Source {
     int clear();
 
@@ -95,6 +95,11 @@ public class MockStage implements Stage {
     return Collections.emptyMap();
   }
 
+  @Override
+  public Map getLatencyState() {
+    return Collections.emptyMap();
+  }
+
   @Override
   public void setSpinningCount(int spin) {
   }
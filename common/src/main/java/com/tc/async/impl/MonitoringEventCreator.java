@@ -18,8 +18,11 @@
  */
 package com.tc.async.impl;
 
+import com.tc.async.api.MonitoredEventContext;
+import com.tc.stats.LatencyHistogram;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 import org.terracotta.tripwire.TripwireFactory;
@@ -33,6 +36,8 @@ public class MonitoringEventCreator<EC> implements EventCreator<EC> {
   private final LongAdder queueTime = new LongAdder();
   private final LongAdder runTime = new LongAdder();
   private final LongAdder queued = new LongAdder();
+  private final Latencies latencies = new Latencies();
+  private final Map<Object, Latencies> latenciesByKey = new ConcurrentHashMap<>();
   private static PipelineMonitoringConsumer pipelineConsumer;
 
   public MonitoringEventCreator(String name, EventCreator<EC> next) {
@@ -77,7 +82,7 @@ public class MonitoringEventCreator<EC> implements EventCreator<EC> {
         stats.run();
         nextEvent.call();
         stats.end();
-        addStats(stats);
+        addStats(stats, event);
         if (running != null) {
           CURRENT.remove();
           running.action(name, PipelineMonitor.Type.END, event);
@@ -92,10 +97,33 @@ public class MonitoringEventCreator<EC> implements EventCreator<EC> {
     }
   }
 
-  private void addStats(MonitorStats stats) {
-    runTime.add(stats.runTime());
-    queueTime.add(stats.queueTime());
+  private void addStats(MonitorStats stats, EC event) {
+    long run = stats.runTime();
+    long queue = stats.queueTime();
+    runTime.add(run);
+    queueTime.add(queue);
     queued.increment();
+    latencies.record(queue, run);
+    if (event instanceof MonitoredEventContext) {
+      Object key = ((MonitoredEventContext)event).getMonitoringKey();
+      if (key != null) {
+        latenciesByKey.computeIfAbsent(key, k->new Latencies()).record(queue, run);
+      }
+    }
+  }
+
+  /**
+   * Queue wait and service time distributions for this stage, in nanoseconds, with a breakdown for each monitoring
+   * key seen.
+   */
+  public Map<String, ?> getLatencyState() {
+    Map<String, Object> state = latencies.getState();
+    if (!latenciesByKey.isEmpty()) {
+      Map<String, Object> byKey = new LinkedHashMap<>();
+      latenciesByKey.forEach((k, v)->byKey.put(k.toString(), v.getState()));
+      state.put("byKey", byKey);
+    }
+    return state;
   }
 
   public Map<String, ?> getState() {
@@ -107,10 +135,28 @@ public class MonitoringEventCreator<EC> implements EventCreator<EC> {
     if (count > 0) {
       stats.put("average queue time", TimeUnit.NANOSECONDS.toNanos(queueTime.sum()/count));
       stats.put("average run time", TimeUnit.NANOSECONDS.toNanos(runTime.sum()/count));
+      stats.put("latency", getLatencyState());
     }
     return stats;
   }
 
+  private static class Latencies {
+    private final LatencyHistogram queue = new LatencyHistogram();
+    private final LatencyHistogram service = new LatencyHistogram();
+
+    void record(long queueTime, long serviceTime) {
+      queue.record(queueTime);
+      service.record(serviceTime);
+    }
+
+    Map<String, Object> getState() {
+      Map<String, Object> state = new LinkedHashMap<>();
+      state.put("queueWait", queue.getState());
+      state.put("service", service.getState());
+      return state;
+    }
+  }
+
   private static class MonitorStats<EC> {
     private long queue = 0;
     private long run = 0;
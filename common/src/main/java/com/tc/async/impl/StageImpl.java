@@ -84,9 +84,19 @@ public class StageImpl<EC> implements Stage<EC> {
    * @param listener
    * @param queueSize : Max queue Size allowed
    */
-  @SuppressWarnings("unchecked")
   public StageImpl(TCLoggerProvider loggerProvider, String name, Class<EC> type, EventHandler<EC> handler, int queueCount,
                    ThreadGroup group, QueueFactory queueFactory, StageListener listener, int queueSize, boolean canBeDirect) {
+    this(loggerProvider, name, type, handler, queueCount, group, queueFactory, listener, queueSize, canBeDirect, false);
+  }
+
+  /**
+   * @param workStealing : back a multi-threaded stage with lock-free ring buffers and let idle workers steal events
+   *                       that have no scheduling key
+   */
+  @SuppressWarnings("unchecked")
+  public StageImpl(TCLoggerProvider loggerProvider, String name, Class<EC> type, EventHandler<EC> handler, int queueCount,
+                   ThreadGroup group, QueueFactory queueFactory, StageListener listener, int queueSize, boolean canBeDirect,
+                   boolean workStealing) {
     this.logger = loggerProvider.getLogger(Stage.class.getName() + ": " + name);
     this.name = name;
     if (queueCount > 1 && !MultiThreadedEventContext.class.isAssignableFrom(type)) {
@@ -94,7 +104,7 @@ public class StageImpl<EC> implements Stage<EC> {
     }
     this.threads = new WorkerThread[queueCount];
     this.handler = handler;
-    this.stageQueue = StageQueue.FACTORY.factory(queueCount, queueFactory, type, eventCreator(canBeDirect), loggerProvider, name, queueSize);
+    this.stageQueue = StageQueue.FACTORY.factory(queueCount, queueFactory, type, eventCreator(canBeDirect), loggerProvider, name, queueSize, workStealing);
     this.group = group;
     this.listener = listener;
     this.sleepMs = TCPropertiesImpl.getProperties().getInt("seda." + name + ".sleepMs", 0);
@@ -276,6 +286,11 @@ public class StageImpl<EC> implements Stage<EC> {
     return data;
   }
 
+  @Override
+  public Map<String, ?> getLatencyState() {
+    return this.stageQueue.getLatencyState();
+  }
+
   private class WorkerThread<EC> extends Thread {
     private final Source       source;
     private volatile boolean idle = false;
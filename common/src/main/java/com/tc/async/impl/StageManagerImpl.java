@@ -41,6 +41,7 @@ import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -123,14 +124,20 @@ public class StageManagerImpl implements StageManager {
   }
 
   @Override
-  public synchronized <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize, boolean canBeDirect) {
+  public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize, boolean canBeDirect) {
+    boolean workStealing = TCPropertiesImpl.getProperties().getBoolean("seda." + name + ".workstealing", false);
+    return this.createStage(name, verification, handler, queueCount, maxSize, canBeDirect, workStealing);
+  }
+
+  @Override
+  public synchronized <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize, boolean canBeDirect, boolean workStealing) {
     if (started) {
       throw new IllegalStateException("A new stage cannot be created, because StageManager is already started.");
     }
 
     int capacity = maxSize >= 0 ? maxSize : Integer.MAX_VALUE;
     // Note that the queue factory is used by all the stages under this manager so it can't be type-safe.
-    Stage<EC> s = new StageImpl<>(loggerProvider, name, verification, handler, queueCount, group, queueFactory, listener, capacity, canBeDirect);
+    Stage<EC> s = new StageImpl<>(loggerProvider, name, verification, handler, queueCount, group, queueFactory, listener, capacity, canBeDirect, workStealing);
     addStage(name, s);
     this.classVerifications.put(name,  verification);
     return s;
@@ -220,4 +227,15 @@ public class StageManagerImpl implements StageManager {
     map.put("stages", list);
     return map;
   }
+
+  @Override
+  public Map<String, ?> getLatencyState() {
+    Map<String,Object> map = new TreeMap<>();
+    for (Stage<?> stage : stages.values()) {
+      if (stage.isStarted()) {
+        map.put(stage.getName(), stage.getLatencyState());
+      }
+    }
+    return map;
+  }
 }
@@ -42,6 +42,8 @@ public interface StageQueue<EC> extends Sink<EC> {
   int clear();
   
   Map<String, ?> getState();
+
+  Map<String, ?> getLatencyState();
   
   void enableAdditionalStatistics(boolean track);
 
@@ -62,8 +64,25 @@ public interface StageQueue<EC> extends Sink<EC> {
                                             TCLoggerProvider loggerProvider,
                                             String stageName,
                                             int queueSize) {
+      return factory(queueCount, queueFactory, type, creator, loggerProvider, stageName, queueSize, false);
+    }
+
+    /**
+     * @param workStealing : use lock-free ring buffers with work stealing for events without a scheduling key.  Only
+     *                       applies to multi-threaded stages with more than one queue.
+     */
+    public static <C> StageQueue<C> factory(int queueCount,
+                                            QueueFactory queueFactory,
+                                            Class<C> type, 
+                                            EventCreator<C> creator,
+                                            TCLoggerProvider loggerProvider,
+                                            String stageName,
+                                            int queueSize,
+                                            boolean workStealing) {
       if (!MultiThreadedEventContext.class.isAssignableFrom(type)) {
         return new SingletonStageQueueImpl(queueFactory, type, creator, loggerProvider, stageName, queueSize);
+      } else if (workStealing && queueCount > 1) {
+        return new WorkStealingStageQueueImpl(queueCount, type, creator, loggerProvider, stageName, queueSize);
       } else {
         return new MultiStageQueueImpl(queueCount, queueFactory, type, creator, loggerProvider, stageName, queueSize);
       }
@@ -0,0 +1,421 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Source;
+import com.tc.logging.TCLoggerProvider;
+import com.tc.util.Assert;
+import com.tc.util.concurrent.RingBuffer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-threaded stage queue backed by one bounded lock-free {@link RingBuffer} per worker instead of a
+ * {@link java.util.concurrent.BlockingQueue}.
+ * <p>
+ * Events with a scheduling key always go to the ring picked by the key and are only ever run by that ring's worker, so
+ * per key ordering is the same as {@link MultiStageQueueImpl}. Events without a scheduling key are spread round robin
+ * and a worker that runs out of its own work steals them from the head of other rings. A flushing event still visits
+ * every ring in turn and, on its last hop, also waits for the events stolen before it got there to finish.  Steals are
+ * counted per epoch and each flush starts a new one, so a steady stream of later steals can never hold a flush up.
+ */
+public class WorkStealingStageQueueImpl<EC extends MultiThreadedEventContext> extends AbstractStageQueueImpl<EC> {
+
+  static final int                   MAX_RING_SIZE = 64 * 1024;
+  private static final long          FULL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final RingSource[]         sources;
+  private final boolean              moduloAnd;
+  private final int                  mask;
+  private final AtomicInteger        roundRobin      = new AtomicInteger();
+  private volatile StealEpoch        stealEpoch      = new StealEpoch(null);
+  private final Object               stolenLock      = new Object();
+  private final LongAdder            steals          = new LongAdder();
+
+  /**
+   * @param queueCount : Number of queues working on this stage
+   * @param loggerProvider : logger
+   * @param stageName : The stage name
+   * @param queueSize : Max queue Size allowed, split across the queues and bounded by {@link #MAX_RING_SIZE} per queue
+   */
+  WorkStealingStageQueueImpl(int queueCount,
+                             Class<EC> type,
+                             EventCreator<EC> creator,
+                             TCLoggerProvider loggerProvider,
+                             String stageName,
+                             int queueSize) {
+    super(loggerProvider, stageName, creator);
+    Assert.eval(queueCount > 0);
+    Assert.eval(queueSize >= 0);
+    int ringSize = (queueSize == 0) ? 1 : (int) Math.min(MAX_RING_SIZE, (long) Math.ceil(((double) queueSize) / queueCount));
+    this.sources = new RingSource[queueCount];
+    for (int i = 0; i < queueCount; i++) {
+      this.sources[i] = new RingSource(this, i, ringSize);
+    }
+    this.moduloAnd = Integer.bitCount(queueCount) == 1;
+    this.mask = queueCount - 1;
+  }
+
+  private int moduloQueueCount(int i) {
+    return moduloAnd ? (i & mask) : Math.floorMod(i, this.sources.length);
+  }
+
+  @Override
+  SourceQueue[] getSources() {
+    return this.sources;
+  }
+
+  @Override
+  public Source getSource(int index) {
+    return (index < 0 || index >= this.sources.length) ? null : this.sources[index];
+  }
+
+  int getQueueCount() {
+    return this.sources.length;
+  }
+
+  @Override
+  public void addToSink(EC context) {
+    Assert.assertNotNull(context);
+    if (isClosed()) {
+      throw new IllegalStateException("closed");
+    }
+    if (this.logger.isDebugEnabled()) {
+      this.logger.debug("Added:" + context + " to:" + this.stageName);
+    }
+    Event event = createEvent(context);
+    if (event != null) {
+      Object schedulingKey = context.getSchedulingKey();
+      final int index;
+      final Event wrapper;
+      if (context.flush()) {
+        index = indexForKey(schedulingKey);
+        wrapper = new FlushingEvent(event, index);
+      } else if (schedulingKey == null) {
+        index = moduloQueueCount(roundRobin.getAndIncrement());
+        wrapper = new StealableEvent(event);
+      } else {
+        index = indexForKey(schedulingKey);
+        wrapper = event;
+      }
+      boolean interrupted = Thread.interrupted();
+      try {
+        while (true) {
+          try {
+            updateDepth(this.sources[index].put(wrapper));
+            break;
+          } catch (InterruptedException e) {
+            this.logger.debug("StageQueue Add: " + e);
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (wrapper instanceof StealableEvent) {
+        wakeThief(index);
+      }
+    }
+  }
+
+  private int indexForKey(Object schedulingKey) {
+    if (schedulingKey == null) {
+      return 0;
+    }
+    int h = schedulingKey.hashCode();
+    return moduloQueueCount(h ^ (h >>> 16));
+  }
+
+  /**
+   * If the owner of the queue that just received a stealable event is busy, nudge one idle worker so it can take it.
+   */
+  private void wakeThief(int index) {
+    if (this.sources[index].waiter != null) {
+      return;
+    }
+    for (int x = 1; x < this.sources.length; x++) {
+      Thread idle = this.sources[moduloQueueCount(index + x)].waiter;
+      if (idle != null) {
+        LockSupport.unpark(idle);
+        return;
+      }
+    }
+  }
+
+  private Event steal(int thief) {
+    for (int x = 1; x < this.sources.length; x++) {
+      RingSource victim = this.sources[moduloQueueCount(thief + x)];
+      if (!victim.ring.isEmpty()) {
+        StealEpoch epoch = this.stealEpoch;
+        epoch.inFlight.incrementAndGet();
+        Event stolen = victim.ring.pollIf(e->e instanceof StealableEvent);
+        if (stolen != null) {
+          steals.increment();
+          return new StolenEvent(stolen, epoch);
+        }
+        stolenDone(epoch);
+      }
+    }
+    return null;
+  }
+
+  private void stolenDone(StealEpoch epoch) {
+    if (epoch.inFlight.decrementAndGet() == 0) {
+      synchronized (stolenLock) {
+        stolenLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Blocks until every event stolen so far has finished executing on the thief.  Steals made from here on are counted
+   * against a new epoch and are not waited for.
+   */
+  private void awaitStolen() {
+    boolean interrupted = false;
+    try {
+      synchronized (stolenLock) {
+        StealEpoch before = this.stealEpoch;
+        this.stealEpoch = new StealEpoch(before);
+        for (StealEpoch epoch = before; epoch != null; epoch = epoch.previous) {
+          while (epoch.inFlight.get() > 0) {
+            try {
+              stolenLock.wait();
+            } catch (InterruptedException e) {
+              logger.debug("FlushingEvent wait for stolen events: " + e);
+              interrupted = true;
+            }
+          }
+        }
+//  everything up to here is done, later flushes don't need to look further back
+        before.previous = null;
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "WorkStealingStageQueue(" + this.stageName + ")";
+  }
+
+  @Override
+  public int clear() {
+    int clearCount = 0;
+    for (RingSource source : this.sources) {
+      clearCount += source.clear();
+    }
+    this.logger.info("Cleared " + clearCount);
+    return clearCount;
+  }
+
+  @Override
+  public Map<String, ?> getState() {
+    Map<String, Object> state = new LinkedHashMap<>(super.getState());
+    state.put("type", "work-stealing");
+    state.put("steals", steals.sum());
+    return state;
+  }
+
+  private static final class RingSource implements SourceQueue {
+
+    private final WorkStealingStageQueueImpl<?> stage;
+    private final RingBuffer<Event> ring;
+    private final int               sourceIndex;
+    private volatile Thread         waiter;
+
+    RingSource(WorkStealingStageQueueImpl<?> stage, int sourceIndex, int capacity) {
+      this.stage = stage;
+      this.ring = new RingBuffer<>(capacity);
+      this.sourceIndex = sourceIndex;
+    }
+
+    @Override
+    public String toString() {
+      return "RingSource{" + sourceIndex + "size=" + ring.size() + '}';
+    }
+
+    @Override
+    public int clear() {
+      int cleared = 0;
+      while (ring.poll() != null) {
+        cleared++;
+      }
+      return cleared;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return ring.isEmpty();
+    }
+
+    private Event next() {
+      Event event = ring.poll();
+      return (event != null) ? event : stage.steal(sourceIndex);
+    }
+
+    @Override
+    public Event poll(long timeout) throws InterruptedException {
+      Event event = next();
+      if (event != null || timeout == 0) {
+        return event;
+      }
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      // publish the waiter before re-checking so a producer either sees it or the re-check sees the event
+      waiter = Thread.currentThread();
+      try {
+        while (true) {
+          event = next();
+          if (event != null) {
+            return event;
+          }
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return null;
+          }
+          LockSupport.parkNanos(this, remaining);
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+      } finally {
+        waiter = null;
+      }
+    }
+
+    @Override
+    public int put(Event context) throws InterruptedException {
+      while (!ring.offer(context)) {
+        // bounded, so back off until the owner makes room
+        LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+      Thread owner = waiter;
+      if (owner != null) {
+        LockSupport.unpark(owner);
+      }
+      return ring.size();
+    }
+
+    @Override
+    public int size() {
+      return ring.size();
+    }
+
+    @Override
+    public String getSourceName() {
+      return Integer.toString(this.sourceIndex);
+    }
+  }
+
+  private static class StealableEvent implements Event {
+    private final Event event;
+
+    StealableEvent(Event event) {
+      this.event = event;
+    }
+
+    @Override
+    public void call() throws EventHandlerException {
+      event.call();
+    }
+  }
+
+  private class StolenEvent implements Event {
+    private final Event event;
+    private final StealEpoch epoch;
+
+    StolenEvent(Event event, StealEpoch epoch) {
+      this.event = event;
+      this.epoch = epoch;
+    }
+
+    @Override
+    public void call() throws EventHandlerException {
+      try {
+        event.call();
+      } finally {
+        stolenDone(epoch);
+      }
+    }
+  }
+
+  /**
+   * Steals made between two flushes.  Linked to the epoch before it until a flush has seen both drain.
+   */
+  private static final class StealEpoch {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private StealEpoch          previous;
+
+    StealEpoch(StealEpoch previous) {
+      this.previous = previous;
+    }
+  }
+
+  private class FlushingEvent extends HandledEvent<EC> {
+    private final int offset;
+    private int executionCount = 0;
+
+    FlushingEvent(Event context, int offset) {
+      super(context);
+      this.offset = offset;
+    }
+
+    @Override
+    public void call() throws EventHandlerException {
+      if (++executionCount == sources.length) {
+//  been through all the queues.  anything stolen before this point must also be done before executing
+        awaitStolen();
+        super.call();
+      } else {
+//  move to next queue
+        boolean interrupted = false;
+        try {
+          while (true) {
+            try {
+              sources[moduloQueueCount(executionCount + offset)].put(this);
+              break;
+            } catch (InterruptedException e) {
+              logger.debug("FlushingEvent move to next queue: " + e + " : " + moduloQueueCount(executionCount + offset));
+              interrupted = true;
+            }
+          }
+        } finally {
+          if (interrupted) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    }
+  }
+}
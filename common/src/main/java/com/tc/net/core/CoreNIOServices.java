@@ -50,6 +50,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -330,6 +331,15 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     writerComm.removeWriteInterest(conn, channel);
   }
 
+  /**
+   * Runs task on the writer comm thread once delayNanos have passed.  The selector only times out in whole
+   * milliseconds so the task can run up to a millisecond late, or early if the thread is woken for other work after
+   * the deadline has passed.
+   */
+  void scheduleWriteTask(Runnable task, long delayNanos) {
+    writerComm.addTimedSelectorTask(task, delayNanos);
+  }
+
   private void requestReadWriteInterest(TCConnectionImpl conn, SocketChannel sc) {
     readerComm.requestReadInterest(conn, sc);
     writerComm.requestWriteInterest(conn, sc);
@@ -338,6 +348,8 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
   protected class CommThread extends Thread {
     private final Selector                      selector;
     private final Queue<Runnable> selectorTasks;
+    // only touched by this thread, ordered by deadline
+    private final PriorityQueue<TimedSelectorTask> timedSelectorTasks = new PriorityQueue<TimedSelectorTask>();
     private final String                        name;
     private long                    bytesMoved    = 0;
     private final COMM_THREAD_MODE              mode;
@@ -434,6 +446,44 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       }
     }
 
+    void addTimedSelectorTask(Runnable task, long delayNanos) {
+      final TimedSelectorTask timed = new TimedSelectorTask(System.nanoTime() + delayNanos, task);
+      if (Thread.currentThread() == this) {
+        this.timedSelectorTasks.add(timed);
+      } else {
+        addSelectorTask(new Runnable() {
+          @Override
+          public void run() {
+            timedSelectorTasks.add(timed);
+          }
+        });
+      }
+    }
+
+    /**
+     * Milliseconds to the first timed task rounded up, 0 to wait for ever if there is none, or -1 if it is due in less
+     * than a millisecond.  select() can't wait for less than a millisecond so those are polled for instead, otherwise a
+     * cork held for a few microseconds would be held for a whole millisecond.
+     */
+    private long selectTimeout() {
+      TimedSelectorTask next = this.timedSelectorTasks.peek();
+      if (next == null) { return 0; }
+      long remaining = next.deadline - System.nanoTime();
+      if (remaining < TimeUnit.MILLISECONDS.toNanos(1)) { return -1; }
+      return TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+
+    private void runTimedSelectorTasks() {
+      long now = System.nanoTime();
+      while (!this.timedSelectorTasks.isEmpty() && this.timedSelectorTasks.peek().deadline - now <= 0) {
+        try {
+          this.timedSelectorTasks.poll().task.run();
+        } catch (Exception e) {
+          logger.error("error running timed selector task", e);
+        }
+      }
+    }
+
     void unregister(final SelectableChannel channel) {
       if (Thread.currentThread() != this) {
         throw new AssertionError("must unregister from reader thread");
@@ -602,7 +652,8 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
       while (true) {
         final int numKeys;
         try {
-          numKeys = localSelector.select();
+          long timeout = selectTimeout();
+          numKeys = (timeout < 0) ? localSelector.selectNow() : localSelector.select(timeout);
         } catch (IOException ioe) {
           throw ioe;
         } catch (CancelledKeyException cke) {
@@ -637,6 +688,7 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
           }
         }
         Util.selfInterruptIfNeeded(isInterrupted);
+        runTimedSelectorTasks();
 
         final Set<SelectionKey> selectedKeys = localSelector.selectedKeys();
         if ((0 == numKeys) && (0 == selectedKeys.size())) {
@@ -863,6 +915,21 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     }
   }
 
+  private static class TimedSelectorTask implements Comparable<TimedSelectorTask> {
+    final long     deadline;
+    final Runnable task;
+
+    TimedSelectorTask(long deadline, Runnable task) {
+      this.deadline = deadline;
+      this.task = task;
+    }
+
+    @Override
+    public int compareTo(TimedSelectorTask o) {
+      return Long.signum(this.deadline - o.deadline);
+    }
+  }
+
   private static class InterestRequest {
     final SelectableChannel channel;
     final Object            attachment;
@@ -105,6 +105,14 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   private final Object                          pipeSocketWriteInterestLock = new Object();
   private boolean                               hasPipeSocketWriteInterest  = false;
   private int                                   writeBufferSize             = 0;
+  // guarded by writeMessages, only maintained when corking
+  private long                                  firstQueuedNanos            = 0;
+  private long                                  queuedBytes                 = 0;
+  private boolean                               corked                      = false;
+  private final LongAdder                       messageGroups               = new LongAdder();
+  private final LongAdder                       groupedMessages             = new LongAdder();
+  private final LongAdder                       corkedGroups                = new LongAdder();
+  private final LongAdder                       corkHoldNanos               = new LongAdder();
 
   private static final boolean                  MSG_GROUPING_ENABLED        = TCPropertiesImpl
                                                                                 .getProperties()
@@ -113,15 +121,36 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
                                                                                 .getProperties()
                                                                                 .getInt(TCPropertiesConsts.TC_MESSAGE_GROUPING_MAXSIZE_KB,
                                                                                         128) * 1024;
+  // small messages are held for up to this long, or until this many bytes are queued, so they can go out as one group
+  private static final long                     CORK_NANOS                  = MSG_GROUPING_ENABLED ? TCPropertiesImpl
+                                                                                .getProperties()
+                                                                                .getLong(TCPropertiesConsts.TC_MESSAGE_GROUPING_CORK_NANOS,
+                                                                                         0L) : 0L;
+  private static final long                     CORK_BYTES                  = TCPropertiesImpl
+                                                                                .getProperties()
+                                                                                .getLong(TCPropertiesConsts.TC_MESSAGE_GROUPING_CORK_BYTES,
+                                                                                         16 * 1024);
   private static final boolean                  MESSAGE_PACKUP             = TCPropertiesImpl
                                                                                 .getProperties()
                                                                                 .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_ENABLED,
                                                                                             true);
+  private static final boolean                  ZERO_COPY_ENABLED           = TCPropertiesImpl
+                                                                                .getProperties()
+                                                                                .getBoolean(TCPropertiesConsts.TC_MESSAGE_ZERO_COPY_ENABLED,
+                                                                                            false);
+  // upper bound on the number of buffers handed to a single gathering write and the bytes read in one read pass
+  private static final int                      MAX_GATHER_BUFFERS          = 1024;
+  private static final int                      MAX_SCATTER_READ_BYTES      = 256 * 1024;
   private final Object                          readerLock                  = new Object();
   private final Object                          writerLock                  = new Object();
+  private volatile boolean                      zeroCopy                    = false;
+  private long                                  corkNanos                   = CORK_NANOS;
+  private long                                  corkBytes                   = CORK_BYTES;
 
   static {
     logger.debug("Comms Message Batching " + (MSG_GROUPING_ENABLED ? "enabled" : "disabled"));
+    logger.debug("Comms Message Corking " + (CORK_NANOS > 0 ? CORK_NANOS + "ns or " + CORK_BYTES + " bytes" : "disabled"));
+    logger.debug("Comms zero copy socket I/O " + (ZERO_COPY_ENABLED ? "enabled" : "disabled"));
   }
 
   TCConnectionImpl(TCConnectionEventListener listener, TCProtocolAdaptor adaptor,
@@ -175,6 +204,22 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     state.put("connected", isConnected());
     state.put("closePending", isClosePending());
     state.put("transportConnected", isTransportEstablished());
+    state.put("zeroCopy", this.zeroCopy);
+    if (MSG_GROUPING_ENABLED) {
+      long groups = this.messageGroups.sum();
+      state.put("messageGroups", groups);
+      state.put("groupedMessages", this.groupedMessages.sum());
+      if (groups > 0) {
+        state.put("averageGroupSize", this.groupedMessages.sum() / groups);
+      }
+    }
+    if (this.corkNanos > 0) {
+      long holds = this.corkedGroups.sum();
+      state.put("corkedGroups", holds);
+      if (holds > 0) {
+        state.put("averageCorkHoldNanos", this.corkHoldNanos.sum() / holds);
+      }
+    }
     if (bufferManager instanceof PrettyPrintable) {
       state.put("buffer", ((PrettyPrintable)this.bufferManager).getStateMap());
     } else {
@@ -255,6 +300,19 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     if (this.bufferManager == null) {
       throw new IOException("buffer manager not provided");
     }
+    // clear text buffers only stage the bytes, so they can be skipped entirely and the socket used directly
+    this.zeroCopy = ZERO_COPY_ENABLED && this.bufferManager instanceof ClearTextBufferManager;
+  }
+
+  /* For testing only */
+  void setZeroCopy(boolean zeroCopy) {
+    this.zeroCopy = zeroCopy && this.bufferManager instanceof ClearTextBufferManager;
+  }
+
+  /* For testing only */
+  void setCork(long corkNanos, long corkBytes) {
+    this.corkNanos = corkNanos;
+    this.corkBytes = corkBytes;
   }
 
   private SocketChannel createChannel() throws IOException, SocketException {
@@ -311,6 +369,9 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private int doReadInternal() throws IOException {
+    if (zeroCopy && pipeSocket == null) {
+      return doScatteringReadInternal();
+    }
     try {
       bufferManager.recvToBuffer();
     } catch (IOException ioe) {
@@ -351,6 +412,9 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private int doWriteInternal() throws IOException {
+    if (zeroCopy && pipeSocket == null) {
+      return doGatheringWriteInternal();
+    }
     int written;
     try {
       written = doWriteToBuffer();
@@ -399,6 +463,9 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     TCNetworkMessage messagesToWrite[];
     synchronized (this.writeMessages) {
       if (this.closed.isSet()) { return; }
+      if (this.corkNanos > 0 && !this.writeMessages.isEmpty() && holdCorked()) {
+        return;
+      }
       messagesToWrite = this.writeMessages.toArray(new TCNetworkMessage[this.writeMessages.size()]);
       this.writeMessages.clear();
     }
@@ -422,6 +489,7 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
         if (!canBatch(realMessageSize, batchSize, batchMsgCount)) {
           // We can't add this to the current batch so seal the current batch as a write context and create a new one.
           this.writeContexts.add(new WriteContext(buildWireProtocolMessageGroup(currentBatch)));
+          countGroup(batchMsgCount);
           batchSize = 0;
           batchMsgCount = 0;
           currentBatch = new ArrayList<TCNetworkMessage>();
@@ -437,7 +505,51 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     if (MSG_GROUPING_ENABLED && batchMsgCount > 0) {
       final WireProtocolMessage ms = buildWireProtocolMessageGroup(currentBatch);
       this.writeContexts.add(new WriteContext(ms));
+      countGroup(batchMsgCount);
+    }
+  }
+
+  /**
+   * Decides, under the writeMessages lock, whether the queued messages should be held back a little longer so that
+   * more can join the group.  Large messages, a full group or a cork that has been held long enough are released at
+   * once.
+   * <p>
+   * While the messages are held there is nothing to write, so write interest is dropped rather than have the selector
+   * come straight back to this connection.  It is re-armed by putMessage once the cork fills up, or by a timed task on
+   * the comm thread once the cork time is up.
+   */
+  private boolean holdCorked() {
+    long held = System.nanoTime() - this.firstQueuedNanos;
+    if (this.queuedBytes < this.corkBytes && held < this.corkNanos && this.writeMessages.size() < WireProtocolHeader.MAX_MESSAGE_COUNT) {
+      // only ever called for a write the selector picked, so write interest is registered
+      this.commWorker.removeWriteInterest(this, this.channel);
+      if (!this.corked) {
+        this.corked = true;
+        final long corkedAt = this.firstQueuedNanos;
+        this.commWorker.scheduleWriteTask(() -> releaseCork(corkedAt), this.corkNanos - held);
+      }
+      return true;
     }
+    if (this.corked) {
+      this.corkedGroups.increment();
+      this.corkHoldNanos.add(held);
+      this.corked = false;
+    }
+    this.queuedBytes = 0;
+    return false;
+  }
+
+  private void releaseCork(long corkedAt) {
+    synchronized (this.writeMessages) {
+      // the cork may already have been released early, and another one started since
+      if (this.closed.isSet() || !this.corked || this.firstQueuedNanos != corkedAt) { return; }
+      this.commWorker.requestWriteInterest(this, this.channel);
+    }
+  }
+
+  private void countGroup(int messageCount) {
+    this.messageGroups.increment();
+    this.groupedMessages.add(messageCount);
   }
 
   private boolean canBatch(int realMessageSize, int currentBatchSize, int currentBatchMsgCount) {
@@ -550,6 +662,122 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     return totalBytesWritten;
   }
 
+  /**
+   * Reads straight from the channel into the buffers supplied by the protocol adaptor, bypassing the buffer manager.
+   * Only used for clear text connections.
+   */
+  private int doScatteringReadInternal() throws IOException {
+    int totalBytesRead = 0;
+    try {
+      while (totalBytesRead < MAX_SCATTER_READ_BYTES) {
+        final TCByteBuffer[] readBuffers = getReadBuffers();
+        final ByteBuffer[] nioBuffers = new ByteBuffer[readBuffers.length];
+        long space = 0;
+        for (int i = 0; i < readBuffers.length; i++) {
+          nioBuffers[i] = extractNioBuffer(readBuffers[i]);
+          space += nioBuffers[i].remaining();
+        }
+        final long read = this.channel.read(nioBuffers);
+        if (read == -1) { throw new EOFException(); }
+        if (read == 0) {
+          break;
+        }
+        totalBytesRead += read;
+        addNetworkData(readBuffers, (int) read);
+        if (read < space) {
+          // the socket is drained for now
+          break;
+        }
+      }
+    } catch (IOException ioe) {
+      closeReadOnException(ioe);
+    }
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("Read " + totalBytesRead + " bytes on connection " + this.channel.toString());
+    }
+    this.totalRead.addAndGet(totalBytesRead);
+    this.messagesRead.increment();
+    return totalBytesRead;
+  }
+
+  /**
+   * Writes the pending write contexts straight to the channel with a single gathering write, bypassing the buffer
+   * manager. Only used for clear text connections.
+   */
+  private int doGatheringWriteInternal() throws IOException {
+    final boolean debug = logger.isDebugEnabled();
+    long totalBytesWritten = 0;
+
+    if (this.writeContexts.size() <= 0) {
+      buildWriteContextsFromMessages();
+    }
+    try {
+      while (this.writeContexts.size() > 0) {
+        final List<ByteBuffer> pending = new ArrayList<ByteBuffer>();
+        long bytesPending = 0;
+        for (WriteContext context : this.writeContexts) {
+          final TCByteBuffer[] buffers = context.entireMessageData;
+          for (int i = context.index; i < buffers.length && pending.size() < MAX_GATHER_BUFFERS; i++) {
+            final ByteBuffer buf = extractNioBuffer(buffers[i]);
+            bytesPending += buf.remaining();
+            pending.add(buf);
+          }
+          if (pending.size() >= MAX_GATHER_BUFFERS) {
+            break;
+          }
+        }
+
+        final long written = this.channel.write(pending.toArray(new ByteBuffer[pending.size()]));
+        if (written == -1) { throw new EOFException(); }
+        totalBytesWritten += written;
+        if (debug) {
+          logger.debug("Wrote " + written + " bytes on connection " + this.channel.toString());
+        }
+
+        retireWrittenContexts();
+
+        if (this.isClosePending() || this.isClosed()) {
+          logger.debug("stop write due to closed connection");
+          break;
+        }
+        if (written < bytesPending) {
+          // socket send buffer is full, wait for the next write interest
+          break;
+        }
+      }
+    } catch (IOException ioe) {
+      closeWriteOnException(ioe);
+    }
+
+    this.totalWrite.addAndGet(totalBytesWritten);
+
+    synchronized (this.writeMessages) {
+      if (this.closed.isSet()) { return (int) totalBytesWritten; }
+
+      if (this.writeMessages.isEmpty() && this.writeContexts.isEmpty()) {
+        this.commWorker.removeWriteInterest(this, this.channel);
+      }
+    }
+    return (int) totalBytesWritten;
+  }
+
+  private void retireWrittenContexts() {
+    while (this.writeContexts.size() > 0) {
+      final WriteContext context = this.writeContexts.get(0);
+      final TCByteBuffer[] buffers = context.entireMessageData;
+      while (context.index < buffers.length && !buffers[context.index].hasRemaining()) {
+        context.incrementIndexAndCleanOld();
+      }
+      if (context.done()) {
+        context.writeComplete();
+        this.writeContexts.remove(0);
+      } else {
+        return;
+      }
+    }
+  }
+
   static private ByteBuffer extractNioBuffer(TCByteBuffer buffer) {
     return buffer.getNioBuffer();
   }
@@ -568,12 +796,22 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     // TODO: outgoing queue should not be unbounded size!
     final boolean newData;
     final int msgCount;
+    boolean uncork = false;
 
     synchronized (this.writeMessages) {
       if (this.closed.isSet()) { return; }
       this.writeMessages.addLast(message);
       msgCount = this.writeMessages.size();
       newData = (msgCount == 1);
+      if (this.corkNanos > 0) {
+        if (newData) {
+          this.firstQueuedNanos = System.nanoTime();
+        }
+        this.queuedBytes += bytesToWrite;
+        // a held cork has no write interest, re-arm it as soon as the cork is full
+        uncork = this.corked && ((this.queuedBytes >= this.corkBytes && this.queuedBytes - bytesToWrite < this.corkBytes)
+                                 || msgCount == WireProtocolHeader.MAX_MESSAGE_COUNT);
+      }
     }
 
     if (debug) {
@@ -597,6 +835,8 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       // after finishConnect(). Only after this selection occurs it is always safe to try
       // to write.
       this.commWorker.requestWriteInterest(this, this.channel);
+    } else if (uncork) {
+      this.commWorker.requestWriteInterest(this, this.channel);
     }
   }
 
@@ -22,6 +22,8 @@ import com.tc.bytes.TCByteBuffer;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.object.session.SessionID;
 import com.tc.object.session.SessionProvider;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
@@ -30,6 +32,13 @@ import java.util.EnumMap;
 import java.util.Map;
 
 public class TCMessageFactoryImpl implements TCMessageFactory {
+  // bounds on the first buffer of an outgoing message when sized from recent messages, the upper one is the
+  // TCByteBufferOutputStream default so larger messages start out exactly as they always have
+  private static final int MIN_INITIAL_BLOCK_SIZE = 64;
+  private static final int MAX_INITIAL_BLOCK_SIZE = 1024;
+  private static final int MAX_BLOCK_SIZE = 512 * 1024;
+
+  private final boolean sizeHints = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.TC_MESSAGE_SIZE_HINTS_ENABLED, false);
   private final Map<TCMessageType, GeneratedMessageFactory> generators = new EnumMap<>(TCMessageType.class);
   private final MessageMonitor  monitor;
   private final SessionProvider sessionProvider;
@@ -44,10 +53,18 @@ public class TCMessageFactoryImpl implements TCMessageFactory {
       throws UnsupportedMessageTypeException {
     final GeneratedMessageFactory factory = lookupFactory(type);
     return factory.createMessage(this.sessionProvider.getSessionID(), this.monitor,
-                                 createBuffer(), source, type);
+                                 createBuffer(type), source, type);
   }
 
-  private static TCByteBufferOutputStream createBuffer() {
+  private TCByteBufferOutputStream createBuffer(TCMessageType type) {
+    if (sizeHints) {
+      int hint = TCMessageImpl.getPayloadSizeHint(type);
+      if (hint > 0 && hint < MAX_INITIAL_BLOCK_SIZE) {
+        // a 20 byte ack does not need the default 1KiB block, the stream grows if this one turns out bigger
+        int initial = Math.max(MIN_INITIAL_BLOCK_SIZE, Integer.highestOneBit(hint - 1) << 1);
+        return new TCByteBufferOutputStream(Math.min(initial, MAX_INITIAL_BLOCK_SIZE), MAX_BLOCK_SIZE, false);
+      }
+    }
     return new TCByteBufferOutputStream();
   }
 
@@ -25,12 +25,16 @@ import com.tc.net.TCSocketAddress;
 import com.tc.net.core.TCConnection;
 import com.tc.net.core.TCConnectionManager;
 import com.tc.util.Assert;
+import com.tc.util.TimingWheel;
 import com.tc.util.concurrent.SetOnceFlag;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -135,9 +139,19 @@ public class ConnectionHealthCheckerImpl implements ConnectionHealthChecker {
     // NOP
   }
 
+  /**
+   * Checks each monitored connection once it may have been idle for the ping idle time.  Anything received on a
+   * connection counts as a sign of life, so a busy connection is only looked at about once per idle time, and only
+   * connections which have gone quiet are probed, once per ping interval, until they answer or are declared dead.  The
+   * next check of each connection is kept in a timing wheel ticking once per ping interval, so each run only visits the
+   * connections due, not every one being monitored.
+   */
   static class HealthCheckerMonitorThreadEngine extends TimerTask {
-    private final ConcurrentMap<ConnectionID, MessageTransportBase> connectionMap =
+    private final ConcurrentMap<ConnectionID, Monitored> connectionMap =
         new ConcurrentHashMap<>();
+    // connections added since the last run, the wheel itself belongs to the timer thread
+    private final Queue<Monitored>    added         = new ConcurrentLinkedQueue<>();
+    private final TimingWheel<Monitored> wheel;
     private final long                pingIdleTime;
     private final long                pingInterval;
     private final int                 pingProbes;
@@ -166,16 +180,20 @@ public class ConnectionHealthCheckerImpl implements ConnectionHealthChecker {
         logger.info("Disabling HealthChecker for this CommsMgr");
         throw new AssertionError("HealthChecker Config Error");
       }
-
+      // room for the longest wait between checks, one idle time, without going round the wheel
+      this.wheel = new TimingWheel<>((int) Math.min(1 << 16, pingIdleTime / pingInterval + 2));
     }
 
-    private void addConnection(MessageTransport transport) {
+    void addConnection(MessageTransport transport) {
       MessageTransportBase mtb = (MessageTransportBase) transport;
       mtb.setHealthCheckerContext(getHealthCheckerContext(mtb, config, connectionManager));
-      connectionMap.put(transport.getConnectionID(), mtb);
+      Monitored monitored = new Monitored(mtb);
+      connectionMap.put(transport.getConnectionID(), monitored);
+      added.add(monitored);
     }
 
-    private boolean removeConnection(MessageTransport transport) {
+    boolean removeConnection(MessageTransport transport) {
+      // anything still in the wheel for it is dropped when it comes due
       return (connectionMap.remove(transport.getConnectionID())) != null;
     }
 
@@ -195,51 +213,70 @@ public class ConnectionHealthCheckerImpl implements ConnectionHealthChecker {
       // same interval for all connections
       final boolean canCheckTime = canCheckTime();
 
-      Iterator<MessageTransportBase> connectionIterator = connectionMap.values().iterator();
-      while (connectionIterator.hasNext()) {
-        MessageTransportBase mtb = connectionIterator.next();
-
-        TCConnection conn = mtb.getConnection();
-        if (conn == null || !mtb.isConnected()) {
-          logger.info("[" + (conn == null ? null : conn.getRemoteAddress().getCanonicalStringForm())
-                      + "] is not connected. Health Monitoring for this node is now disabled.");
-          connectionIterator.remove();
-          continue;
-        }
-
-        if (mtb.getReceiveLayer() == null) {
-          logger.info("[" + (conn == null ? null : conn.getRemoteAddress().getCanonicalStringForm())
-                      + "] is no longer referenced.  Closing the connection");
-          mtb.disconnect();
-          connectionIterator.remove();
+      List<Monitored> due = wheel.advance();
+      for (Monitored monitored = added.poll(); monitored != null; monitored = added.poll()) {
+        due.add(monitored);
+      }
+      for (Monitored monitored : due) {
+        if (connectionMap.get(monitored.transport.getConnectionID()) != monitored) {
+          // removed or replaced since it was scheduled
           continue;
         }
-
-        ConnectionHealthCheckerContext connContext = mtb.getHealthCheckerContext();
-        if ((conn.getIdleReceiveTime() >= this.pingIdleTime)) {
-
-          if (!connContext.probeIfAlive()) {
-            // Connection is dead. Disconnect the transport.
-            logger.error("Declared connection dead " + mtb.getConnectionID() + " idle time "
-                         + conn.getIdleReceiveTime() + "ms");
-            mtb.disconnect();
-            connectionIterator.remove();
-          }
+        long delay = check(monitored.transport);
+        if (delay > 0) {
+          wheel.schedule(monitored, delay);
         } else {
-          connContext.refresh();
-        }
-        // is there any significant time difference between hosts ?
-        if (canCheckTime) {
-          connContext.checkTime();
+          connectionMap.remove(monitored.transport.getConnectionID(), monitored);
         }
       }
 
-      // update last check time once for all connections
+      // is there any significant time difference between hosts ?
       if (canCheckTime) {
+        for (Monitored monitored : connectionMap.values()) {
+          monitored.transport.getHealthCheckerContext().checkTime();
+        }
+        // update last check time once for all connections
         this.lastCheckTime.set(System.currentTimeMillis());
       }
     }
 
+    /**
+     * @return ticks until the connection should be checked again, 0 to stop monitoring it
+     */
+    private long check(MessageTransportBase mtb) {
+      TCConnection conn = mtb.getConnection();
+      if (conn == null || !mtb.isConnected()) {
+        logger.info("[" + (conn == null ? null : conn.getRemoteAddress().getCanonicalStringForm())
+                    + "] is not connected. Health Monitoring for this node is now disabled.");
+        return 0;
+      }
+
+      if (mtb.getReceiveLayer() == null) {
+        logger.info("[" + (conn == null ? null : conn.getRemoteAddress().getCanonicalStringForm())
+                    + "] is no longer referenced.  Closing the connection");
+        mtb.disconnect();
+        return 0;
+      }
+
+      ConnectionHealthCheckerContext connContext = mtb.getHealthCheckerContext();
+      long idle = conn.getIdleReceiveTime();
+      if (idle >= this.pingIdleTime) {
+        if (!connContext.probeIfAlive()) {
+          // Connection is dead. Disconnect the transport.
+          logger.error("Declared connection dead " + mtb.getConnectionID() + " idle time "
+                       + idle + "ms");
+          mtb.disconnect();
+          return 0;
+        }
+        // keep probing every interval until it answers
+        return 1;
+      } else {
+        connContext.refresh();
+        // nothing to do until it could have been idle for long enough
+        return (this.pingIdleTime - idle + this.pingInterval - 1) / this.pingInterval;
+      }
+    }
+
     boolean canCheckTime() {
       return config.isCheckTimeEnabled() &&
              (System.currentTimeMillis() - this.lastCheckTime.get() >= this.checkTimeInterval);
@@ -251,16 +288,27 @@ public class ConnectionHealthCheckerImpl implements ConnectionHealthChecker {
     }
 
     long getTotalProbesSentOnAllConnections() {
-      Iterator<MessageTransportBase> connIterator = connectionMap.values().iterator();
+      Iterator<Monitored> connIterator = connectionMap.values().iterator();
       long totalProbeSent = 0;
       while (connIterator.hasNext()) {
-        MessageTransportBase mtb = connIterator.next();
+        MessageTransportBase mtb = connIterator.next().transport;
         ConnectionHealthCheckerContextImpl connContext = (ConnectionHealthCheckerContextImpl) mtb
             .getHealthCheckerContext();
         totalProbeSent += connContext.getTotalProbesSent();
       }
       return totalProbeSent;
     }
+
+    /**
+     * One registration of a transport, so a transport which is removed and added again is only in the wheel once.
+     */
+    private static class Monitored {
+      private final MessageTransportBase transport;
+
+      Monitored(MessageTransportBase transport) {
+        this.transport = transport;
+      }
+    }
   }
 
   /* For testing only */
@@ -78,6 +78,10 @@ public interface TCPropertiesConsts {
    * tcgroupcomm.discovery.interval       - tc-group-comm member discovery interval milliseconds
    * send.timeout.millis                  - Number of milliseconds to retry sending a message
    * dirtydb.backup.enabled               - Creates BackUp of DirtyDB only If it is set to true.
+   * passive.sync.parallelism            - Number of entities synced to a passive at once
+   * passive.sync.memoryBudget            - Bytes of sync payloads a parallel sync may have outstanding
+   * passive.replication.applyThreads     - Threads a passive hands replicated activities to entities on, by entity,
+   *                                        0 applies them all on the replication stage thread
    * </code>
    ********************************************************************************************************************/
   public static final String L2_NHA_TCGROUPCOMM_HANDSHAKE_TIMEOUT                           = "l2.nha.tcgroupcomm.handshake.timeout";
@@ -86,6 +90,9 @@ public interface TCPropertiesConsts {
   public static final String L2_NHA_TCGROUPCOMM_RECONNECT_L2PROXY_TO_PORT                   = "l2.nha.tcgroupcomm.l2proxytoport";
   public static final String L2_NHA_DIRTYDB_AUTODELETE                                      = "l2.nha.dirtydb.autoDelete";
   public static final String L2_NHA_AUTORESTART                                             = "l2.nha.autoRestart";
+  public static final String L2_PASSIVE_SYNC_PARALLELISM                                   = "l2.passive.sync.parallelism";
+  public static final String L2_PASSIVE_SYNC_MEMORY_BUDGET                                 = "l2.passive.sync.memoryBudget";
+  public static final String L2_PASSIVE_REPLICATION_APPLY_THREADS                          = "l2.passive.replication.applyThreads";
 
   /*********************************************************************************************************************
    * <code>
@@ -95,10 +102,32 @@ public interface TCPropertiesConsts {
    *                                 instance in a cluster with no passives present
    * startuplock.retries.enabled   : If true then L2s will try to lock indefinitely on the data
    *                                 directory while starting up
+   * transactionorder.groupcommit.enabled : If true then the transaction order of permanent clients
+   *                                 is written to storage in batches by a background thread
+   * transactionorder.groupcommit.tickMicros : How long a group commit batch may wait to fill
+   * services.timer.wheel.enabled  : If true then service timers are kept in a timing wheel
+   * services.timer.wheel.tickMillis : Resolution of the timing wheel
+   * services.timer.threads        : Number of threads running timing wheel callbacks, 0 runs them on the
+   *                                 wheel thread
+   * persistence.changelog.compactAfter : Number of changes to the entity, journal and client maps stored as
+   *                                 individual records before the map is stored whole again, 0 stores the
+   *                                 whole map on every change
+   * server.entity.deferment.refuseInvokes : If true then client invokes arriving while an entity's deferment
+   *                                 queue is full are refused as busy instead of queued past the limit.  Off by
+   *                                 default, the deferment queue is then unbounded and
+   *                                 server.entity.deferment.queue.size only sets the point past which queued
+   *                                 requests are counted as over the limit in the entity's state
    * </code>
    ********************************************************************************************************************/
   public static final String L2_STARTUPLOCK_RETRIES_ENABLED                                 = "l2.startuplock.retries.enabled";
   public static final String ENTITY_DEFERMENT_QUEUE_SIZE                                    = "server.entity.deferment.queue.size";
+  public static final String ENTITY_DEFERMENT_REFUSE_INVOKES                                = "server.entity.deferment.refuseInvokes";
+  public static final String L2_TRANSACTION_ORDER_GROUP_COMMIT                             = "l2.transactionorder.groupcommit.enabled";
+  public static final String L2_TRANSACTION_ORDER_GROUP_COMMIT_TICK                        = "l2.transactionorder.groupcommit.tickMicros";
+  public static final String L2_SERVICES_TIMER_WHEEL                                       = "l2.services.timer.wheel.enabled";
+  public static final String L2_SERVICES_TIMER_WHEEL_TICK                                  = "l2.services.timer.wheel.tickMillis";
+  public static final String L2_SERVICES_TIMER_THREADS                                     = "l2.services.timer.threads";
+  public static final String L2_PERSISTENCE_CHANGELOG_COMPACT_AFTER                        = "l2.persistence.changelog.compactAfter";
   
   /*********************************************************************************************************************
    * <code>
@@ -117,6 +146,14 @@ public interface TCPropertiesConsts {
    ********************************************************************************************************************/  
 
   public static final String CLIENT_MAX_PENDING_REQUESTS                                    = "client.requests.pending.max";
+  public static final String CLIENT_REQUEST_WINDOW_ADAPTIVE                                 = "client.requests.window.adaptive";
+  public static final String CLIENT_REQUEST_WINDOW_MIN                                      = "client.requests.window.min";
+  public static final String CLIENT_REQUEST_WINDOW_LATENCY_FLOOR                            = "client.requests.window.latencyFloorMicros";
+  public static final String CLIENT_REQUEST_WINDOW_MAX_WAIT                                 = "client.requests.window.maxWaitMillis";
+  public static final String CLIENT_REQUEST_COALESCE_ENABLED                                = "client.requests.coalesce.enabled";
+  public static final String CLIENT_REQUEST_COALESCE_MAX_COUNT                              = "client.requests.coalesce.maxCount";
+  public static final String CLIENT_REQUEST_COALESCE_MAX_BYTES                              = "client.requests.coalesce.maxBytes";
+  public static final String CLIENT_REQUEST_COALESCE_LINGER                                 = "client.requests.coalesce.lingerMicros";
 
   public static final String TC_TRANSPORT_HANDSHAKE_TIMEOUT                                 = "tc.transport.handshake.timeout";
   public static final String TC_CONFIG_SOURCEGET_TIMEOUT                                    = "tc.config.getFromSource.timeout";
@@ -156,12 +193,17 @@ public interface TCPropertiesConsts {
    * stage.monitor.enabled                : <true/false>    - Enable or Disable stage Monitoring
    * stage.monitor.delay                  : long            - frequency in milliseconds
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
-   * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
-   * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * bytebuffer.pooling.maxBytes          : Max idle bytes held by each of the direct and heap buffer pools
+   * bytebuffer.pooling.leakDetection     : Log pooled buffers that are garbage collected without being returned
+   * messages.sizeHints.enabled           : Size the first buffer of each outgoing message from recent messages of its type
+   * messages.grouping.cork.nanos         : With grouping enabled, how long a connection may hold small messages to build
+   *                                        a bigger group (0 disables corking)
+   * messages.grouping.cork.bytes         : Held messages are written as soon as this many bytes are queued
    * </code>
    ********************************************************************************************************************/
   public static final String BYTEBUFFER_POOLING                                             = "bytebuffer.pooling.enabled";
-  public static final String BYTEBUFFER_POOLING_THREAD_MAX                             = "bytebuffer.threadlocal.pool.maxcount";
+  public static final String BYTEBUFFER_POOLING_MAX_BYTES                                   = "bytebuffer.pooling.maxBytes";
+  public static final String BYTEBUFFER_POOLING_LEAK_DETECTION                              = "bytebuffer.pooling.leakDetection";
   
   public static final String TC_GC_MONITOR_ENABLED                                          = "tc.gc.monitor.enabled";
   public static final String TC_GC_MONITOR_DELAY                                            = "tc.gc.monitor.delay";
@@ -170,6 +212,10 @@ public interface TCPropertiesConsts {
   public static final String TC_MESSAGE_GROUPING_ENABLED                                    = "tc.messages.grouping.enabled";
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
+  public static final String TC_MESSAGE_ZERO_COPY_ENABLED                                   = "tc.messages.zerocopy.enabled";
+  public static final String TC_MESSAGE_SIZE_HINTS_ENABLED                                  = "tc.messages.sizeHints.enabled";
+  public static final String TC_MESSAGE_GROUPING_CORK_NANOS                                 = "tc.messages.grouping.cork.nanos";
+  public static final String TC_MESSAGE_GROUPING_CORK_BYTES                                 = "tc.messages.grouping.cork.bytes";
 
   /*********************************************************************************************************************
    * <code>
@@ -268,11 +314,14 @@ public interface TCPropertiesConsts {
    * <code>
    * l2.dump.on.exception.timeout - After get an uncaught exception, the server takes a dump. If the dump doesn't
    * happen within this timeout the server will exit (in seconds).
+   * l2.election.earlyMajority - End the vote collection of an election as soon as every connected server has voted and
+   * the votes are a majority of the stripe, instead of waiting out l2.election.timeout for servers which are down.
    * </code>
    ********************************************************************************************************************/
   public static final String L2_DUMP_ON_EXCEPTION_TIMEOUT                                   = "l2.dump.on.exception.timeout";
   public static final String L2_LOGS_STORE                                                  = "l2.logs.store";
   public static final String L2_ELECTION_TIMEOUT                                            = "l2.election.timeout";
+  public static final String L2_ELECTION_EARLY_MAJORITY                                     = "l2.election.earlyMajority";
   public static final String L2_CLASSLOADER_COMPATIBILITY                                   = "l2.classloader.compatibility";
 
   /*********************************************************************************************************************
@@ -309,7 +358,29 @@ public interface TCPropertiesConsts {
       L2_SEDA_STAGE_STALL_WARNING,
       L2_SEDA_STAGE_ALWAYS_HYDRATE,
       L2_NHA_TCGROUPCOMM_RECONNECT_L2PROXY_TO_PORT,
+      L2_TRANSACTION_ORDER_GROUP_COMMIT,
+      L2_TRANSACTION_ORDER_GROUP_COMMIT_TICK,
+      L2_SERVICES_TIMER_WHEEL,
+      L2_SERVICES_TIMER_WHEEL_TICK,
+      L2_SERVICES_TIMER_THREADS,
+      L2_PASSIVE_SYNC_PARALLELISM,
+      L2_PASSIVE_SYNC_MEMORY_BUDGET,
+      ENTITY_DEFERMENT_REFUSE_INVOKES,
       CLIENT_MAX_PENDING_REQUESTS,
+      CLIENT_REQUEST_WINDOW_ADAPTIVE,
+      CLIENT_REQUEST_WINDOW_MIN,
+      CLIENT_REQUEST_WINDOW_LATENCY_FLOOR,
+      CLIENT_REQUEST_WINDOW_MAX_WAIT,
+      CLIENT_REQUEST_COALESCE_ENABLED,
+      CLIENT_REQUEST_COALESCE_MAX_COUNT,
+      CLIENT_REQUEST_COALESCE_MAX_BYTES,
+      CLIENT_REQUEST_COALESCE_LINGER,
+      TC_MESSAGE_SIZE_HINTS_ENABLED,
+      TC_MESSAGE_GROUPING_CORK_NANOS,
+      TC_MESSAGE_GROUPING_CORK_BYTES,
+      L2_PERSISTENCE_CHANGELOG_COMPACT_AFTER,
+      L2_PASSIVE_REPLICATION_APPLY_THREADS,
+      L2_ELECTION_EARLY_MAJORITY,
   };
 
 }
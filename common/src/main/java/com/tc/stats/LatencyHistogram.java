@@ -0,0 +1,142 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of nanosecond latencies cheap enough to be left on in production.
+ * <p>
+ * Buckets are log-linear: every power of two range is split into 16 equal sub-buckets, so any recorded value is
+ * reported within about 6% of what was recorded, from single nanoseconds up to Long.MAX_VALUE, in a fixed 960 bucket
+ * array.  Recording is a couple of shifts and an uncontended atomic add.  Readers take a snapshot without stopping
+ * writers, so figures read while values are being recorded may be off by the values in flight.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BITS = 4;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      // nanoTime is monotonic but not necessarily consistent across cores on every platform
+      nanos = 0;
+    }
+    counts.incrementAndGet(bucket(nanos));
+    total.add(nanos);
+    long current = max.get();
+    while (nanos > current && !max.compareAndSet(current, nanos)) {
+      current = max.get();
+    }
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int x = 0; x < BUCKETS; x++) {
+      count += counts.get(x);
+    }
+    return count;
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the largest value that falls in the same bucket as the requested percentile, or 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot = snapshot();
+    return percentile(snapshot, sum(snapshot), percentile);
+  }
+
+  public Map<String, ?> getState() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    long[] snapshot = snapshot();
+    long count = sum(snapshot);
+    state.put("count", count);
+    if (count > 0) {
+      state.put("mean", total.sum() / count);
+      state.put("p50", percentile(snapshot, count, 50));
+      state.put("p90", percentile(snapshot, count, 90));
+      state.put("p99", percentile(snapshot, count, 99));
+      state.put("p99.9", percentile(snapshot, count, 99.9));
+      state.put("max", max.get());
+    }
+    return state;
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+    return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  static long highestValueIn(int bucket) {
+    if (bucket < SUB_COUNT) {
+      return bucket;
+    }
+    int shift = bucket / SUB_COUNT - 1;
+    long lowest = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+    return lowest + ((1L << shift) - 1);
+  }
+
+  private long[] snapshot() {
+    long[] snapshot = new long[BUCKETS];
+    for (int x = 0; x < BUCKETS; x++) {
+      snapshot[x] = counts.get(x);
+    }
+    return snapshot;
+  }
+
+  private static long sum(long[] snapshot) {
+    long count = 0;
+    for (long c : snapshot) {
+      count += c;
+    }
+    return count;
+  }
+
+  private long percentile(long[] snapshot, long count, double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int x = 0; x < BUCKETS; x++) {
+      seen += snapshot[x];
+      if (seen >= rank) {
+        return Math.min(highestValueIn(x), max.get());
+      }
+    }
+    return max.get();
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timing wheel of items due after a number of ticks.
+ * <p>
+ * Each item sits in the slot of the tick it is due on, so advancing a tick only visits the items due then, plus any
+ * scheduled a whole turn of the wheel or more ahead, rather than everything being tracked.  Size the wheel for the
+ * usual delays to keep the latter rare.
+ * <p>
+ * Not thread safe, the owner schedules and advances from a single thread.
+ */
+public class TimingWheel<T> {
+  private final List<Entry<T>>[] slots;
+  private final int mask;
+  private long tick;
+  private int size;
+
+  @SuppressWarnings("unchecked")
+  public TimingWheel(int minimumSlots) {
+    int length = Integer.highestOneBit(Math.max(2, minimumSlots) - 1) << 1;
+    this.slots = new List[length];
+    for (int i = 0; i < length; ++i) {
+      this.slots[i] = new ArrayList<>();
+    }
+    this.mask = length - 1;
+  }
+
+  /**
+   * @param delay ticks from now, at least 1
+   */
+  public void schedule(T item, long delay) {
+    long due = this.tick + Math.max(1, delay);
+    this.slots[(int) due & this.mask].add(new Entry<>(item, due));
+    this.size += 1;
+  }
+
+  /**
+   * Moves to the next tick.
+   *
+   * @return the items due on it, they are no longer scheduled
+   */
+  public List<T> advance() {
+    this.tick += 1;
+    List<Entry<T>> slot = this.slots[(int) this.tick & this.mask];
+    if (slot.isEmpty()) {
+      return new ArrayList<>(0);
+    }
+    List<T> due = new ArrayList<>(slot.size());
+    drain(slot, due);
+    return due;
+  }
+
+  /**
+   * Moves on to the given tick, as advancing one tick at a time would, but looking at each slot once at most.
+   *
+   * @return the items due by then, they are no longer scheduled
+   */
+  public List<T> advanceTo(long target) {
+    List<T> due = new ArrayList<>();
+    if (target - this.tick > this.slots.length) {
+      // a whole turn of the wheel or more, every slot comes round
+      this.tick = target;
+      for (List<Entry<T>> slot : this.slots) {
+        drain(slot, due);
+      }
+    } else {
+      while (this.tick < target) {
+        this.tick += 1;
+        drain(this.slots[(int) this.tick & this.mask], due);
+      }
+    }
+    return due;
+  }
+
+  private void drain(List<Entry<T>> slot, List<T> due) {
+    int kept = 0;
+    int count = due.size();
+    for (Entry<T> entry : slot) {
+      if (entry.due <= this.tick) {
+        due.add(entry.item);
+      } else {
+        // a later turn of the wheel
+        slot.set(kept++, entry);
+      }
+    }
+    slot.subList(kept, slot.size()).clear();
+    this.size -= due.size() - count;
+  }
+
+  public long getTick() {
+    return this.tick;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public int getSlotCount() {
+    return this.slots.length;
+  }
+
+  private static class Entry<T> {
+    private final T item;
+    private final long due;
+
+    Entry(T item, long due) {
+      this.item = item;
+      this.due = due;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Bounded, lock-free, array backed queue. Any number of threads may offer and poll. Each slot carries a sequence number
+ * so producers and consumers only contend on their own position counter and the slot they claim.
+ * <p>
+ * {@link #pollIf(Predicate)} removes the head only if it matches, which lets a thread that does not own the queue take
+ * work from it without disturbing the order of the elements it leaves behind.
+ */
+public final class RingBuffer<T> {
+
+  private final AtomicReferenceArray<T> slots;
+  private final AtomicLongArray         sequences;
+  private final int                     mask;
+  private final AtomicLong              tail = new AtomicLong();
+  private final AtomicLong              head = new AtomicLong();
+
+  /**
+   * @param capacity rounded up to the next power of two
+   */
+  public RingBuffer(int capacity) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("capacity out of range: " + capacity);
+    }
+    int size = (capacity == 1) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int x = 0; x < size; x++) {
+      sequences.set(x, x);
+    }
+    this.mask = size - 1;
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * @return false if the buffer is full
+   */
+  public boolean offer(T item) {
+    if (item == null) {
+      throw new NullPointerException();
+    }
+    long pos = tail.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          slots.lazySet(index, item);
+          // publishes the item
+          sequences.set(index, pos + 1);
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        return false;
+      } else {
+        pos = tail.get();
+      }
+    }
+  }
+
+  public T poll() {
+    return pollIf(null);
+  }
+
+  /**
+   * Removes and returns the head element only if it satisfies the test.
+   *
+   * @return the head or null if the buffer is empty or the head does not satisfy the test
+   */
+  public T pollIf(Predicate<? super T> test) {
+    long pos = head.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long diff = sequences.get(index) - (pos + 1);
+      if (diff == 0) {
+        T item = slots.get(index);
+        if (item != null) {
+          if (test != null && !test.test(item)) {
+            return null;
+          }
+          if (head.compareAndSet(pos, pos + 1)) {
+            slots.lazySet(index, null);
+            // frees the slot for the producer one lap ahead
+            sequences.set(index, pos + mask + 1);
+            return item;
+          }
+        }
+        pos = head.get();
+      } else if (diff < 0) {
+        return null;
+      } else {
+        pos = head.get();
+      }
+    }
+  }
+
+  public int size() {
+    long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, capacity()));
+  }
+
+  public boolean isEmpty() {
+    return tail.get() == head.get();
+  }
+
+  @Override
+  public String toString() {
+    return "RingBuffer{" + "size=" + size() + ", capacity=" + capacity() + '}';
+  }
+}
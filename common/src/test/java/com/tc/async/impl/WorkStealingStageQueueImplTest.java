@@ -0,0 +1,272 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Source;
+import com.tc.logging.DefaultLoggerProvider;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WorkStealingStageQueueImplTest {
+
+  private final List<Object> executed = new ArrayList<>();
+
+  private WorkStealingStageQueueImpl<MultiThreadedEventContext> createQueue(int count) {
+    return new WorkStealingStageQueueImpl<>(count, MultiThreadedEventContext.class,
+        (event)->()->executed.add(event), new DefaultLoggerProvider(), "mock", 64);
+  }
+
+  @Test
+  public void testKeyedEventsStayOnOneQueueInOrder() throws Exception {
+    WorkStealingStageQueueImpl<MultiThreadedEventContext> queue = createQueue(4);
+    List<MultiThreadedEventContext> sent = new ArrayList<>();
+    for (int x = 0; x < 10; x++) {
+      MultiThreadedEventContext cxt = mock(MultiThreadedEventContext.class);
+      when(cxt.getSchedulingKey()).thenReturn(7);
+      sent.add(cxt);
+      queue.addToSink(cxt);
+    }
+    int nonEmpty = 0;
+    for (int x = 0; x < 4; x++) {
+      if (!queue.getSource(x).isEmpty()) {
+        nonEmpty++;
+      }
+    }
+    assertEquals(1, nonEmpty);
+    // other workers must not steal keyed events
+    for (int x = 0; x < 4; x++) {
+      Source source = queue.getSource(x);
+      if (source.isEmpty()) {
+        assertNull(source.poll(0));
+      } else {
+        Event e;
+        while ((e = source.poll(0)) != null) {
+          e.call();
+        }
+      }
+    }
+    assertEquals(sent, executed);
+  }
+
+  @Test
+  public void testUnkeyedEventsAreStolen() throws Exception {
+    WorkStealingStageQueueImpl<MultiThreadedEventContext> queue = createQueue(2);
+    MultiThreadedEventContext cxt = mock(MultiThreadedEventContext.class);
+    when(cxt.getSchedulingKey()).thenReturn(null);
+    for (int x = 0; x < 4; x++) {
+      queue.addToSink(cxt);
+    }
+    // one worker drains everything, stealing from the other
+    Source source = queue.getSource(0);
+    int count = 0;
+    Event e;
+    while ((e = source.poll(0)) != null) {
+      e.call();
+      count++;
+    }
+    assertEquals(4, count);
+    assertTrue(queue.getSource(1).isEmpty());
+    assertEquals(2L, queue.getState().get("steals"));
+  }
+
+  @Test
+  public void testFlushVisitsEveryQueue() throws Exception {
+    WorkStealingStageQueueImpl<MultiThreadedEventContext> queue = createQueue(3);
+    MultiThreadedEventContext cxt = mock(MultiThreadedEventContext.class);
+    when(cxt.getSchedulingKey()).thenReturn(1);
+    when(cxt.flush()).thenReturn(true);
+    queue.addToSink(cxt);
+    int hops = 0;
+    while (executed.isEmpty()) {
+      for (int x = 0; x < 3; x++) {
+        Event e = queue.getSource(x).poll(0);
+        if (e != null) {
+          hops++;
+          e.call();
+        }
+      }
+    }
+    assertEquals(3, hops);
+    assertNotNull(executed.get(0));
+  }
+
+  @Test
+  public void testFlushWaitsForStolenEvents() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Object> done = Collections.synchronizedList(new ArrayList<>());
+    MultiThreadedEventContext slow = mock(MultiThreadedEventContext.class);
+    when(slow.getSchedulingKey()).thenReturn(null);
+    WorkStealingStageQueueImpl<MultiThreadedEventContext> queue = new WorkStealingStageQueueImpl<>(2, MultiThreadedEventContext.class,
+        (event)->()->{
+          if (event == slow) {
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+          }
+          done.add(event);
+        }, new DefaultLoggerProvider(), "mock", 64);
+    queue.addToSink(slow);
+    Event stolen = queue.getSource(1).poll(0);
+    assertNotNull(stolen);
+    Thread thief = new Thread(()->{
+      try {
+        stolen.call();
+      } catch (EventHandlerException e) {
+        throw new AssertionError(e);
+      }
+    });
+    thief.start();
+    started.await();
+
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(1);
+    when(flush.flush()).thenReturn(true);
+    queue.addToSink(flush);
+    Thread flusher = new Thread(()->{
+      try {
+        while (!done.contains(flush)) {
+          for (int x = 0; x < 2; x++) {
+            Event e = queue.getSource(x).poll(0);
+            if (e != null) {
+              e.call();
+            }
+          }
+        }
+      } catch (InterruptedException | EventHandlerException e) {
+        throw new AssertionError(e);
+      }
+    });
+    flusher.start();
+    // the flush has visited every queue but must hold until the stolen event is finished
+    flusher.join(500);
+    assertTrue(flusher.isAlive());
+    assertTrue(done.isEmpty());
+
+    release.countDown();
+    flusher.join(10000);
+    thief.join(10000);
+    assertEquals(Arrays.asList(slow, flush), done);
+  }
+
+  @Test
+  public void testFlushDoesNotWaitForLaterSteals() throws Exception {
+    Map<Object, CountDownLatch> started = new ConcurrentHashMap<>();
+    Map<Object, CountDownLatch> release = new ConcurrentHashMap<>();
+    List<Object> done = Collections.synchronizedList(new ArrayList<>());
+    MultiThreadedEventContext early = mock(MultiThreadedEventContext.class);
+    MultiThreadedEventContext late = mock(MultiThreadedEventContext.class);
+    for (MultiThreadedEventContext slow : Arrays.asList(early, late)) {
+      when(slow.getSchedulingKey()).thenReturn(null);
+      started.put(slow, new CountDownLatch(1));
+      release.put(slow, new CountDownLatch(1));
+    }
+    WorkStealingStageQueueImpl<MultiThreadedEventContext> queue = new WorkStealingStageQueueImpl<>(2, MultiThreadedEventContext.class,
+        (event)->()->{
+          if (release.containsKey(event)) {
+            started.get(event).countDown();
+            try {
+              release.get(event).await();
+            } catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+          }
+          done.add(event);
+        }, new DefaultLoggerProvider(), "mock", 64);
+    queue.addToSink(early);
+    Thread earlyThief = steal(queue, 1);
+    started.get(early).await();
+
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(1);
+    when(flush.flush()).thenReturn(true);
+    queue.addToSink(flush);
+    Thread flusher = new Thread(()->{
+      try {
+        while (!done.contains(flush)) {
+          for (int x = 0; x < 2; x++) {
+            Event e = queue.getSource(x).poll(0);
+            if (e != null) {
+              e.call();
+            }
+          }
+        }
+      } catch (InterruptedException | EventHandlerException e) {
+        throw new AssertionError(e);
+      }
+    });
+    flusher.setDaemon(true);
+    flusher.start();
+    // wait for the flush to hold on the early steal
+    while (flusher.getState() != Thread.State.WAITING) {
+      assertTrue(flusher.isAlive());
+      Thread.sleep(1);
+    }
+
+    // stolen after the flush got to the end, it must not hold the flush up
+    queue.addToSink(late);
+    Thread lateThief = steal(queue, 0);
+    started.get(late).await();
+
+    release.get(early).countDown();
+    flusher.join(10000);
+    assertFalse(flusher.isAlive());
+    assertEquals(Arrays.asList(early, flush), done);
+
+    release.get(late).countDown();
+    earlyThief.join(10000);
+    lateThief.join(10000);
+    assertEquals(Arrays.asList(early, flush, late), done);
+  }
+
+  private static Thread steal(WorkStealingStageQueueImpl<MultiThreadedEventContext> queue, int thief) throws InterruptedException {
+    Event stolen = queue.getSource(thief).poll(0);
+    assertNotNull(stolen);
+    Thread thread = new Thread(()->{
+      try {
+        stolen.call();
+      } catch (EventHandlerException e) {
+        throw new AssertionError(e);
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+}
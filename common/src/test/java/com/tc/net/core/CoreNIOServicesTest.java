@@ -0,0 +1,82 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CoreNIOServicesTest {
+
+  @Test
+  public void testScheduledWriteTasksRunInDeadlineOrder() throws Exception {
+    CoreNIOServices services = new CoreNIOServices("timed tasks", null, new SocketParams());
+    services.start();
+    try {
+      List<Integer> ran = new CopyOnWriteArrayList<>();
+      CountDownLatch done = new CountDownLatch(2);
+      long start = System.nanoTime();
+      services.scheduleWriteTask(() -> {
+        ran.add(2);
+        done.countDown();
+      }, TimeUnit.MILLISECONDS.toNanos(40));
+      services.scheduleWriteTask(() -> {
+        ran.add(1);
+        done.countDown();
+      }, TimeUnit.MILLISECONDS.toNanos(20));
+      // nothing else wakes the selector, the tasks still run once their time is up
+      Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+      Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+      Assert.assertEquals(1, (int) ran.get(0));
+      Assert.assertEquals(2, (int) ran.get(1));
+    } finally {
+      services.requestStop();
+    }
+  }
+
+  @Test
+  public void testSubMillisecondTasksAreNotRoundedUp() throws Exception {
+    CoreNIOServices services = new CoreNIOServices("short timed tasks", null, new SocketParams());
+    services.start();
+    try {
+      int count = 50;
+      CountDownLatch done = new CountDownLatch(count);
+      long delay = TimeUnit.MICROSECONDS.toNanos(20);
+      long start = System.nanoTime();
+      services.scheduleWriteTask(new Runnable() {
+        @Override
+        public void run() {
+          done.countDown();
+          if (done.getCount() > 0) {
+            services.scheduleWriteTask(this, delay);
+          }
+        }
+      }, delay);
+      Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+      // waiting a whole millisecond for each would take at least count milliseconds
+      Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(count));
+    } finally {
+      services.requestStop();
+    }
+  }
+}
@@ -22,24 +22,44 @@ import com.tc.bytes.TCByteBuffer;
 import com.tc.bytes.TCByteBufferFactory;
 import com.tc.net.TCSocketAddress;
 import com.tc.net.core.event.TCConnectionEvent;
+import com.tc.net.core.event.TCConnectionErrorEvent;
 import com.tc.net.core.event.TCConnectionEventListener;
 import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.net.protocol.transport.WireProtocolAdaptorFactoryImpl;
+import com.tc.net.protocol.transport.WireProtocolHeader;
+import com.tc.net.protocol.transport.WireProtocolMessage;
 import com.tc.util.PortChooser;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import static junit.framework.TestCase.fail;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import com.tc.net.protocol.TCProtocolAdaptor;
@@ -154,6 +174,335 @@ public class TCConnectionImplTest {
     verify(bufferManager).close();
   }
   
+  @Test
+  public void testGatheringWriteRetiresContextsAfterPartialWrite() throws Exception {
+    int port = new PortChooser().chooseRandomPort();
+    ServerSocket socket = new ServerSocket();
+    socket.setReceiveBufferSize(32 * 1024);
+    socket.bind(new InetSocketAddress("localhost", port));
+    TCConnectionEventListener listener = mock(TCConnectionEventListener.class);
+    TCConnectionImpl conn = createZeroCopyConnection(listener, mock(TCProtocolAdaptor.class), port);
+    Socket peer = socket.accept();
+
+    final int messageSize = 10000;
+    final TCNetworkMessage[] msgs = new TCNetworkMessage[64];
+    final byte[] expected = new byte[msgs.length * messageSize];
+    for (int i = 0; i < msgs.length; i++) {
+      byte[] data = new byte[messageSize];
+      Arrays.fill(data, (byte) i);
+      System.arraycopy(data, 0, expected, i * messageSize, messageSize);
+      msgs[i] = mock(TCNetworkMessage.class);
+      when(msgs[i].getEntireMessageData()).thenReturn(new TCByteBuffer[] {
+          TCByteBufferFactory.wrap(Arrays.copyOfRange(data, 0, 1024)),
+          TCByteBufferFactory.wrap(Arrays.copyOfRange(data, 1024, messageSize)) });
+      when(msgs[i].getDataLength()).thenReturn(messageSize);
+      conn.putMessage(msgs[i]);
+    }
+
+    // the peer is not reading yet, so the first gathering write can only take what the socket buffers hold
+    int written = conn.doWrite();
+    Assert.assertTrue(written > messageSize);
+    Assert.assertTrue(written < expected.length);
+    for (int i = 0; i < msgs.length; i++) {
+      if ((i + 1) * messageSize <= written) {
+        verify(msgs[i]).wasSent();
+      } else {
+        verify(msgs[i], never()).wasSent();
+      }
+    }
+
+    final byte[] received = new byte[expected.length];
+    Thread reader = new Thread(() -> {
+      try {
+        new DataInputStream(peer.getInputStream()).readFully(received);
+      } catch (IOException ioe) {
+        ioe.printStackTrace();
+      }
+    });
+    reader.start();
+    long deadline = System.currentTimeMillis() + 30000;
+    while (written < expected.length && System.currentTimeMillis() < deadline) {
+      written += conn.doWrite();
+    }
+    reader.join(30000);
+
+    Assert.assertEquals(expected.length, written);
+    Assert.assertArrayEquals(expected, received);
+    InOrder order = inOrder((Object[]) msgs);
+    for (TCNetworkMessage msg : msgs) {
+      order.verify(msg).wasSent();
+    }
+    for (TCNetworkMessage msg : msgs) {
+      verify(msg, times(1)).wasSent();
+    }
+    verify(listener, never()).errorEvent(any(TCConnectionErrorEvent.class));
+
+    conn.close(100);
+    peer.close();
+    socket.close();
+  }
+
+  @Test
+  public void testScatteringReadAcrossSplitHeader() throws Exception {
+    int port = new PortChooser().chooseRandomPort();
+    ServerSocket socket = new ServerSocket(port);
+    List<WireProtocolMessage> received = new CopyOnWriteArrayList<>();
+    TCProtocolAdaptor adaptor = new WireProtocolAdaptorFactoryImpl().newWireProtocolAdaptor(received::add);
+    TCConnectionEventListener listener = mock(TCConnectionEventListener.class);
+    TCConnectionImpl conn = createZeroCopyConnection(listener, adaptor, port);
+    Socket peer = socket.accept();
+    OutputStream out = peer.getOutputStream();
+
+    byte[] payload = new byte[1000];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) i;
+    }
+    byte[] header = createHeader(payload.length);
+
+    out.write(header, 0, 10);
+    out.flush();
+    Assert.assertEquals(10, readAtLeast(conn, 10));
+    Assert.assertTrue(received.isEmpty());
+
+    out.write(header, 10, header.length - 10);
+    out.write(payload);
+    out.flush();
+    readAtLeast(conn, header.length - 10 + payload.length);
+
+    Assert.assertEquals(1, received.size());
+    Assert.assertArrayEquals(payload, toBytes(received.get(0).getPayload()));
+    verify(listener, never()).errorEvent(any(TCConnectionErrorEvent.class));
+    verify(listener, never()).endOfFileEvent(any(TCConnectionEvent.class));
+
+    conn.close(100);
+    peer.close();
+    socket.close();
+  }
+
+  @Test
+  public void testScatteringReadEndOfFileMidMessage() throws Exception {
+    int port = new PortChooser().chooseRandomPort();
+    ServerSocket socket = new ServerSocket(port);
+    List<WireProtocolMessage> received = new CopyOnWriteArrayList<>();
+    TCProtocolAdaptor adaptor = new WireProtocolAdaptorFactoryImpl().newWireProtocolAdaptor(received::add);
+    TCConnectionEventListener listener = mock(TCConnectionEventListener.class);
+    CountDownLatch eof = new CountDownLatch(1);
+    doAnswer(i -> {
+      eof.countDown();
+      return null;
+    }).when(listener).endOfFileEvent(any(TCConnectionEvent.class));
+    TCConnectionImpl conn = createZeroCopyConnection(listener, adaptor, port);
+    Socket peer = socket.accept();
+
+    byte[] header = createHeader(1000);
+    peer.getOutputStream().write(header, 0, 20);
+    peer.getOutputStream().flush();
+    peer.close();
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (eof.getCount() > 0 && System.currentTimeMillis() < deadline) {
+      conn.doRead();
+      Thread.sleep(10);
+    }
+
+    verify(listener).endOfFileEvent(any(TCConnectionEvent.class));
+    verify(listener, never()).errorEvent(any(TCConnectionErrorEvent.class));
+    Assert.assertTrue(received.isEmpty());
+
+    conn.close(100);
+    socket.close();
+  }
+
+  @Test
+  public void testScatteringReadOnClosedChannel() throws Exception {
+    int port = new PortChooser().chooseRandomPort();
+    ServerSocket socket = new ServerSocket(port);
+    List<WireProtocolMessage> received = new CopyOnWriteArrayList<>();
+    TCProtocolAdaptor adaptor = new WireProtocolAdaptorFactoryImpl().newWireProtocolAdaptor(received::add);
+    TCConnectionEventListener listener = mock(TCConnectionEventListener.class);
+    TCConnectionImpl conn = new TCConnectionImpl(listener, adaptor, new TCConnectionManagerImpl(),
+                                                 mock(CoreNIOServices.class), new SocketParams(),
+                                                 clearTextBufferManagerFactory());
+    Socket local = conn.connect(new TCSocketAddress("localhost", port), 0);
+    conn.setZeroCopy(true);
+    Socket peer = socket.accept();
+    peer.getOutputStream().write(createHeader(1000), 0, 20);
+    peer.getOutputStream().flush();
+
+    local.close();
+
+    Assert.assertEquals(0, conn.doRead());
+    verify(listener).errorEvent(any(TCConnectionErrorEvent.class));
+    Assert.assertTrue(received.isEmpty());
+
+    peer.close();
+    socket.close();
+  }
+
+  @Test
+  public void testCorkReleasedByBytes() throws Exception {
+    ServerSocket socket = new ServerSocket(0);
+    CoreNIOServices nio = mock(CoreNIOServices.class);
+    TCConnectionImpl conn = createCorkedConnection(nio, socket.getLocalPort(), TimeUnit.SECONDS.toNanos(30), 1024);
+    Socket peer = socket.accept();
+
+    TCNetworkMessage first = createMessage(512);
+    conn.putMessage(first);
+    verify(nio, times(1)).requestWriteInterest(any(TCChannelWriter.class), any(GatheringByteChannel.class));
+    // held, and the selector no longer comes back for the connection until the cork is released
+    Assert.assertEquals(0, conn.doWrite());
+    verify(first, never()).wasSent();
+    verify(nio).removeWriteInterest(any(TCConnectionImpl.class), any(SelectableChannel.class));
+    verify(nio).scheduleWriteTask(any(Runnable.class), anyLong());
+
+    TCNetworkMessage second = createMessage(512);
+    conn.putMessage(second);
+    verify(nio, times(2)).requestWriteInterest(any(TCChannelWriter.class), any(GatheringByteChannel.class));
+    Assert.assertEquals(1024, conn.doWrite());
+    verify(first).wasSent();
+    verify(second).wasSent();
+    Assert.assertEquals(1L, conn.getState().get("corkedGroups"));
+
+    conn.close(100);
+    peer.close();
+    socket.close();
+  }
+
+  @Test
+  public void testCorkReleasedByTime() throws Exception {
+    ServerSocket socket = new ServerSocket(0);
+    CoreNIOServices nio = mock(CoreNIOServices.class);
+    long corkNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    TCConnectionImpl conn = createCorkedConnection(nio, socket.getLocalPort(), corkNanos, 1024 * 1024);
+    Socket peer = socket.accept();
+
+    TCNetworkMessage msg = createMessage(512);
+    conn.putMessage(msg);
+    Assert.assertEquals(0, conn.doWrite());
+    // a second pass while still held neither schedules another wakeup nor re-arms
+    Assert.assertEquals(0, conn.doWrite());
+    ArgumentCaptor<Runnable> wakeup = ArgumentCaptor.forClass(Runnable.class);
+    ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+    verify(nio).scheduleWriteTask(wakeup.capture(), delay.capture());
+    Assert.assertTrue(delay.getValue() > 0 && delay.getValue() <= corkNanos);
+    verify(nio, times(1)).requestWriteInterest(any(TCChannelWriter.class), any(GatheringByteChannel.class));
+
+    // the comm thread runs the wakeup once the cork time is up
+    TimeUnit.NANOSECONDS.sleep(delay.getValue());
+    wakeup.getValue().run();
+    verify(nio, times(2)).requestWriteInterest(any(TCChannelWriter.class), any(GatheringByteChannel.class));
+    Assert.assertEquals(512, conn.doWrite());
+    verify(msg).wasSent();
+    Assert.assertEquals(1L, conn.getState().get("corkedGroups"));
+    Assert.assertTrue((Long) conn.getState().get("averageCorkHoldNanos") >= corkNanos);
+
+    // a wakeup for a cork already released does nothing
+    wakeup.getValue().run();
+    verify(nio, times(2)).requestWriteInterest(any(TCChannelWriter.class), any(GatheringByteChannel.class));
+
+    conn.close(100);
+    peer.close();
+    socket.close();
+  }
+
+  @Test
+  public void testCorkReleasedByFullGroup() throws Exception {
+    ServerSocket socket = new ServerSocket(0);
+    CoreNIOServices nio = mock(CoreNIOServices.class);
+    TCConnectionImpl conn = createCorkedConnection(nio, socket.getLocalPort(), TimeUnit.SECONDS.toNanos(30), Long.MAX_VALUE);
+    Socket peer = socket.accept();
+
+    TCNetworkMessage msg = createMessage(0);
+    conn.putMessage(msg);
+    Assert.assertEquals(0, conn.doWrite());
+    for (int i = 1; i < WireProtocolHeader.MAX_MESSAGE_COUNT - 1; i++) {
+      conn.putMessage(msg);
+    }
+    verify(nio, times(1)).requestWriteInterest(any(TCChannelWriter.class), any(GatheringByteChannel.class));
+    conn.putMessage(msg);
+    verify(nio, times(2)).requestWriteInterest(any(TCChannelWriter.class), any(GatheringByteChannel.class));
+    conn.doWrite();
+    verify(msg, times(WireProtocolHeader.MAX_MESSAGE_COUNT)).wasSent();
+    Assert.assertEquals(1L, conn.getState().get("corkedGroups"));
+
+    conn.close(100);
+    peer.close();
+    socket.close();
+  }
+
+  private TCConnectionImpl createCorkedConnection(CoreNIOServices nio, int port, long corkNanos, long corkBytes) throws IOException {
+    TCConnectionImpl conn = new TCConnectionImpl(mock(TCConnectionEventListener.class), mock(TCProtocolAdaptor.class),
+                                                 new TCConnectionManagerImpl(), nio, new SocketParams(),
+                                                 clearTextBufferManagerFactory());
+    conn.connect(new TCSocketAddress("localhost", port), 0);
+    conn.setZeroCopy(true);
+    conn.setCork(corkNanos, corkBytes);
+    return conn;
+  }
+
+  private static TCNetworkMessage createMessage(int size) {
+    TCNetworkMessage msg = mock(TCNetworkMessage.class);
+    when(msg.getEntireMessageData()).thenAnswer(i -> new TCByteBuffer[] {TCByteBufferFactory.wrap(new byte[size])});
+    when(msg.getDataLength()).thenReturn(size);
+    when(msg.getTotalLength()).thenReturn(size);
+    return msg;
+  }
+
+  private TCConnectionImpl createZeroCopyConnection(TCConnectionEventListener listener, TCProtocolAdaptor adaptor,
+                                                    int port) throws IOException {
+    TCConnectionImpl conn = new TCConnectionImpl(listener, adaptor, new TCConnectionManagerImpl(),
+                                                 mock(CoreNIOServices.class), new SocketParams(),
+                                                 clearTextBufferManagerFactory());
+    Socket local = conn.connect(new TCSocketAddress("localhost", port), 0);
+    local.setSendBufferSize(32 * 1024);
+    conn.setZeroCopy(true);
+    return conn;
+  }
+
+  private BufferManagerFactory clearTextBufferManagerFactory() {
+    BufferManagerFactory bufferManagerFactory = mock(BufferManagerFactory.class);
+    when(bufferManagerFactory.createBufferManager(any(SocketChannel.class), anyBoolean())).thenAnswer(invocationOnMock -> {
+      return new ClearTextBufferManager((SocketChannel) invocationOnMock.getArguments()[0]);
+    });
+    return bufferManagerFactory;
+  }
+
+  private static byte[] createHeader(int payloadLength) {
+    WireProtocolHeader header = new WireProtocolHeader();
+    header.setProtocol(WireProtocolHeader.PROTOCOL_TCM);
+    header.setTotalPacketLength(header.getHeaderByteLength() + payloadLength);
+    header.setSourcePort(1);
+    header.setDestinationPort(2);
+    header.setMessageCount(1);
+    header.computeChecksum();
+    return toBytes(new TCByteBuffer[] { header.getDataBuffer().duplicate().rewind() });
+  }
+
+  private static byte[] toBytes(TCByteBuffer[] buffers) {
+    int length = 0;
+    for (TCByteBuffer buffer : buffers) {
+      length += buffer.remaining();
+    }
+    byte[] bytes = new byte[length];
+    int offset = 0;
+    for (TCByteBuffer buffer : buffers) {
+      int remaining = buffer.remaining();
+      buffer.duplicate().get(bytes, offset, remaining);
+      offset += remaining;
+    }
+    return bytes;
+  }
+
+  private static int readAtLeast(TCConnectionImpl conn, int bytes) throws Exception {
+    int read = 0;
+    long deadline = System.currentTimeMillis() + 10000;
+    while (read < bytes && System.currentTimeMillis() < deadline) {
+      read += conn.doRead();
+      Thread.sleep(10);
+    }
+    return read;
+  }
+
   private void sleepThenClose(TCConnectionImpl conn) {
     try {
       TimeUnit.SECONDS.sleep(3);
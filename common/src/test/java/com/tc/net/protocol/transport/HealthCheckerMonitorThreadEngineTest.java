@@ -23,13 +23,19 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.tc.net.core.TCConnection;
+import com.tc.net.core.TCConnectionManager;
+import com.tc.net.protocol.NetworkLayer;
 import com.tc.properties.TCProperties;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.properties.TCPropertiesConsts;
 
 import static com.tc.net.protocol.transport.ConnectionHealthCheckerImpl.HealthCheckerMonitorThreadEngine;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Eugene Shelestovich
@@ -38,6 +44,10 @@ public class HealthCheckerMonitorThreadEngineTest {
 
   private static final Logger logger = LoggerFactory.getLogger(HealthCheckerMonitorThreadEngineTest.class);
 
+  private static final long PING_IDLE_TIME = 1000;
+  private static final long PING_INTERVAL  = 100;
+  private static final int  PING_PROBES    = 3;
+
   @Test
   public void testAllowCheckTimeIfEnabledInConfig() {
     final TCProperties props = TCPropertiesImpl.getProperties().getPropertiesFor(TCPropertiesConsts.L2_L2_HEALTH_CHECK_CATEGORY);
@@ -73,4 +83,144 @@ public class HealthCheckerMonitorThreadEngineTest {
     assertFalse(engine.canCheckTime());
   }
 
+  @Test
+  public void testBusyConnectionIsNotProbed() {
+    final CountingEngine engine = new CountingEngine();
+    final TCConnection conn = createConnection(0);
+    final NetworkLayer receiveLayer = mock(NetworkLayer.class);
+    final MessageTransportBase transport = createTransport(conn, receiveLayer, 1);
+    engine.addConnection(transport);
+
+    // checked when added, then again once it could have been idle for the idle time, 10 intervals later
+    for (int i = 0; i < 21; i++) {
+      engine.run();
+    }
+    assertEquals(0, engine.probes);
+    assertEquals(3, engine.refreshes);
+    assertEquals(1, engine.getTotalConnectionsUnderMonitor());
+  }
+
+  @Test
+  public void testIdleConnectionIsProbedEveryIntervalUntilDead() {
+    final CountingEngine engine = new CountingEngine();
+    final TCConnection conn = createConnection(PING_IDLE_TIME);
+    final NetworkLayer receiveLayer = mock(NetworkLayer.class);
+    final MessageTransportBase transport = createTransport(conn, receiveLayer, 1);
+    engine.addConnection(transport);
+
+    for (int i = 1; i <= PING_PROBES; i++) {
+      engine.run();
+      assertEquals(i, engine.probes);
+      assertEquals(1, engine.getTotalConnectionsUnderMonitor());
+    }
+    // no answer to any of the probes
+    engine.run();
+    assertEquals(0, engine.getTotalConnectionsUnderMonitor());
+    assertTrue(transport.status.isDisconnected());
+    assertEquals(1, engine.closes);
+
+    engine.run();
+    engine.run();
+    assertEquals(PING_PROBES, engine.probes);
+  }
+
+  @Test
+  public void testReAddedConnectionIsScheduledOnce() {
+    final CountingEngine engine = new CountingEngine();
+    final TCConnection conn = createConnection(0);
+    final NetworkLayer receiveLayer = mock(NetworkLayer.class);
+    final MessageTransportBase transport = createTransport(conn, receiveLayer, 1);
+    engine.addConnection(transport);
+    assertTrue(engine.removeConnection(transport));
+    engine.addConnection(transport);
+
+    engine.run();
+    assertEquals(1, engine.refreshes);
+    for (int i = 0; i < 10; i++) {
+      engine.run();
+    }
+    assertEquals(2, engine.refreshes);
+
+    // the entry left in the wheel by the first registration is dropped when it comes due
+    assertTrue(engine.removeConnection(transport));
+    engine.addConnection(transport);
+    engine.run();
+    assertEquals(3, engine.refreshes);
+    for (int i = 0; i < 10; i++) {
+      engine.run();
+    }
+    assertEquals(4, engine.refreshes);
+    assertEquals(1, engine.getTotalConnectionsUnderMonitor());
+  }
+
+  private static TCConnection createConnection(long idleReceiveTime) {
+    final TCConnection conn = mock(TCConnection.class);
+    when(conn.isConnected()).thenReturn(true);
+    when(conn.isTransportEstablished()).thenReturn(true);
+    when(conn.getIdleReceiveTime()).thenReturn(idleReceiveTime);
+    return conn;
+  }
+
+  private static MessageTransportBase createTransport(TCConnection conn, NetworkLayer receiveLayer, long channel) {
+    final ServerMessageTransport transport = new ServerMessageTransport(conn, mock(TransportHandshakeErrorHandler.class),
+                                                                        mock(TransportHandshakeMessageFactory.class));
+    transport.initConnectionID(new ConnectionID("JVM", channel));
+    // only weakly held by the transport, the caller keeps it alive
+    transport.setReceiveLayer(receiveLayer);
+    return transport;
+  }
+
+  /**
+   * Runs each check against a context which only counts what the engine asks of it, and never hears back from a probe.
+   */
+  private static class CountingEngine extends HealthCheckerMonitorThreadEngine {
+    private int refreshes;
+    private int probes;
+    private int closes;
+
+    CountingEngine() {
+      super(new HealthCheckerConfigImpl(PING_IDLE_TIME, PING_INTERVAL, PING_PROBES, "test", false), null, logger);
+    }
+
+    @Override
+    protected ConnectionHealthCheckerContext getHealthCheckerContext(MessageTransportBase transport,
+                                                                     HealthCheckerConfig conf,
+                                                                     TCConnectionManager connManager) {
+      return new ConnectionHealthCheckerContext() {
+        private int sent;
+
+        @Override
+        public void refresh() {
+          refreshes++;
+          sent = 0;
+        }
+
+        @Override
+        public boolean probeIfAlive() {
+          if (sent == PING_PROBES) {
+            return false;
+          }
+          sent++;
+          probes++;
+          return true;
+        }
+
+        @Override
+        public boolean receiveProbe(HealthCheckerProbeMessage message) {
+          return true;
+        }
+
+        @Override
+        public void checkTime() {
+          //
+        }
+
+        @Override
+        public void close() {
+          closes++;
+        }
+      };
+    }
+  }
+
 }
@@ -0,0 +1,94 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats;
+
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsCoverEveryValueWithinResolution() {
+    for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123_456_789L, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+      int bucket = LatencyHistogram.bucket(value);
+      long highest = LatencyHistogram.highestValueIn(bucket);
+      assertTrue(value + " above " + highest, value <= highest);
+      assertTrue(value + " too far below " + highest, highest - value <= value / 16);
+      if (bucket > 0) {
+        assertTrue(LatencyHistogram.highestValueIn(bucket - 1) < value);
+      }
+    }
+  }
+
+  @Test
+  public void testBucketsAreContiguous() {
+    long previous = -1;
+    for (int x = 0; x < LatencyHistogram.bucket(Long.MAX_VALUE); x++) {
+      long highest = LatencyHistogram.highestValueIn(x);
+      assertEquals(x, LatencyHistogram.bucket(highest));
+      assertEquals(x + 1, LatencyHistogram.bucket(highest + 1));
+      assertTrue(highest > previous);
+      previous = highest;
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(99));
+    for (int x = 1; x <= 1000; x++) {
+      histogram.record(x * 1000L);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1_000_000L, histogram.getMax());
+    assertWithin(500_000L, histogram.getPercentile(50));
+    assertWithin(990_000L, histogram.getPercentile(99));
+    assertEquals(1_000_000L, histogram.getPercentile(100));
+
+    Map<String, ?> state = histogram.getState();
+    assertEquals(1000L, state.get("count"));
+    assertEquals(500_500L, state.get("mean"));
+  }
+
+  @Test
+  public void testConcurrentRecording() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[4];
+    for (int x = 0; x < threads.length; x++) {
+      threads[x] = new Thread(() -> {
+        for (int y = 0; y < 100_000; y++) {
+          histogram.record(y);
+        }
+      });
+      threads[x].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(400_000, histogram.getCount());
+    assertEquals(99_999, histogram.getMax());
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(expected + " vs " + actual, actual >= expected && actual - expected <= expected / 16);
+  }
+}
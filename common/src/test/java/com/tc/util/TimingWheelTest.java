@@ -0,0 +1,113 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+  @Test
+  public void testSlotsRoundUpToPowerOfTwo() {
+    assertEquals(2, new TimingWheel<String>(1).getSlotCount());
+    assertEquals(4, new TimingWheel<String>(4).getSlotCount());
+    assertEquals(8, new TimingWheel<String>(5).getSlotCount());
+  }
+
+  @Test
+  public void testItemsComeDueOnTheirTick() {
+    TimingWheel<String> wheel = new TimingWheel<>(8);
+    wheel.schedule("a", 1);
+    wheel.schedule("b", 3);
+    wheel.schedule("c", 3);
+    assertEquals(3, wheel.size());
+
+    assertEquals(Collections.singletonList("a"), wheel.advance());
+    assertTrue(wheel.advance().isEmpty());
+    assertEquals(Arrays.asList("b", "c"), wheel.advance());
+    assertEquals(0, wheel.size());
+    assertEquals(3, wheel.getTick());
+  }
+
+  @Test
+  public void testDelaysLongerThanTheWheel() {
+    TimingWheel<String> wheel = new TimingWheel<>(4);
+    wheel.schedule("late", 9);
+    wheel.schedule("early", 1);
+    for (int tick = 1; tick < 9; ++tick) {
+      assertEquals(tick == 1 ? Collections.singletonList("early") : Collections.emptyList(), wheel.advance());
+    }
+    assertEquals(1, wheel.size());
+    assertEquals(Collections.singletonList("late"), wheel.advance());
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testRescheduleWhileDue() {
+    TimingWheel<String> wheel = new TimingWheel<>(4);
+    wheel.schedule("a", 4);
+    for (int i = 0; i < 3; ++i) {
+      wheel.advance();
+    }
+    assertEquals(Collections.singletonList("a"), wheel.advance());
+    // a full turn lands back in the slot just emptied
+    wheel.schedule("a", 4);
+    assertEquals(1, wheel.size());
+    for (int i = 0; i < 3; ++i) {
+      assertTrue(wheel.advance().isEmpty());
+    }
+    assertEquals(Collections.singletonList("a"), wheel.advance());
+  }
+
+  @Test
+  public void testAdvanceToWithinATurn() {
+    TimingWheel<String> wheel = new TimingWheel<>(8);
+    wheel.schedule("a", 2);
+    wheel.schedule("b", 5);
+    wheel.schedule("c", 6);
+    assertEquals(Arrays.asList("a", "b"), wheel.advanceTo(5));
+    assertEquals(5, wheel.getTick());
+    assertEquals(1, wheel.size());
+    assertTrue(wheel.advanceTo(5).isEmpty());
+    assertEquals(Collections.singletonList("c"), wheel.advanceTo(6));
+  }
+
+  @Test
+  public void testAdvanceToPastAWholeTurn() {
+    TimingWheel<String> wheel = new TimingWheel<>(4);
+    wheel.schedule("a", 1);
+    wheel.schedule("b", 7);
+    wheel.schedule("c", 30);
+    List<String> due = wheel.advanceTo(20);
+    Collections.sort(due);
+    assertEquals(Arrays.asList("a", "b"), due);
+    assertEquals(20, wheel.getTick());
+    assertEquals(1, wheel.size());
+    for (int tick = 21; tick < 30; ++tick) {
+      assertTrue(wheel.advance().isEmpty());
+    }
+    assertEquals(Collections.singletonList("c"), wheel.advance());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+  @Test
+  public void testCapacityRoundsUp() {
+    assertEquals(2, new RingBuffer<>(1).capacity());
+    assertEquals(8, new RingBuffer<>(5).capacity());
+    assertEquals(16, new RingBuffer<>(16).capacity());
+  }
+
+  @Test
+  public void testFifoAndBounded() {
+    RingBuffer<Integer> ring = new RingBuffer<>(4);
+    for (int x = 0; x < 4; x++) {
+      assertTrue(ring.offer(x));
+    }
+    assertFalse(ring.offer(4));
+    assertEquals(4, ring.size());
+    for (int x = 0; x < 4; x++) {
+      assertEquals(Integer.valueOf(x), ring.poll());
+    }
+    assertNull(ring.poll());
+    assertTrue(ring.isEmpty());
+  }
+
+  @Test
+  public void testPollIfOnlyTakesMatchingHead() {
+    RingBuffer<Integer> ring = new RingBuffer<>(4);
+    ring.offer(1);
+    ring.offer(2);
+    assertNull(ring.pollIf(i->i == 2));
+    assertEquals(Integer.valueOf(1), ring.pollIf(i->i == 1));
+    assertEquals(Integer.valueOf(2), ring.pollIf(i->i == 2));
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumers() throws Exception {
+    final RingBuffer<Long> ring = new RingBuffer<>(64);
+    final int threads = 4;
+    final long perThread = 100000;
+    final AtomicLong sum = new AtomicLong();
+    final AtomicLong consumed = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(threads * 2);
+    for (int t = 0; t < threads; t++) {
+      new Thread(()->{
+        for (long x = 1; x <= perThread; x++) {
+          while (!ring.offer(x)) {
+            Thread.yield();
+          }
+        }
+        done.countDown();
+      }).start();
+      new Thread(()->{
+        while (consumed.get() < threads * perThread) {
+          Long val = ring.poll();
+          if (val != null) {
+            sum.addAndGet(val);
+            consumed.incrementAndGet();
+          } else {
+            Thread.yield();
+          }
+        }
+        done.countDown();
+      }).start();
+    }
+    done.await();
+    assertEquals(threads * (perThread * (perThread + 1) / 2), sum.get());
+  }
+}
@@ -28,6 +28,14 @@ public class ClientConfigurationContext extends ConfigurationContextImpl {
   public static final String             VOLTRON_ENTITY_MULTI_RESPONSE_STAGE                      = "multi_request_ack_stage";
 
   public static final int                MAX_PENDING_REQUESTS                        = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.CLIENT_MAX_PENDING_REQUESTS, 5000);
+  public static final boolean            ADAPTIVE_REQUEST_WINDOW                     = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.CLIENT_REQUEST_WINDOW_ADAPTIVE, false);
+  public static final int                MIN_REQUEST_WINDOW                          = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.CLIENT_REQUEST_WINDOW_MIN, 32);
+  public static final long               REQUEST_WINDOW_LATENCY_FLOOR_MICROS         = TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.CLIENT_REQUEST_WINDOW_LATENCY_FLOOR, 1000L);
+  public static final long               REQUEST_WINDOW_MAX_WAIT_MILLIS              = TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.CLIENT_REQUEST_WINDOW_MAX_WAIT, 30000L);
+  public static final boolean            COALESCE_REQUESTS                           = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.CLIENT_REQUEST_COALESCE_ENABLED, false);
+  public static final int                COALESCE_MAX_COUNT                          = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.CLIENT_REQUEST_COALESCE_MAX_COUNT, 256);
+  public static final int                COALESCE_MAX_BYTES                          = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.CLIENT_REQUEST_COALESCE_MAX_BYTES, 64 * 1024);
+  public static final long               COALESCE_LINGER_MICROS                      = TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.CLIENT_REQUEST_COALESCE_LINGER, 0L);
   
   public ClientConfigurationContext(StageManager stageManager) {
     super(stageManager);
@@ -73,7 +73,6 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.LongAdder;
@@ -87,7 +86,8 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   
   private final ClientMessageChannel channel;
   private final ConcurrentMap<TransactionID, InFlightMessage> inFlightMessages;
-  private final StoppableSemaphore requestTickets = new StoppableSemaphore(ClientConfigurationContext.MAX_PENDING_REQUESTS);
+  private final InvokeWindow requestTickets;
+  private final InvokeCoalescer coalescer;
   private final TransactionSource transactionSource;
 
   private final ClientEntityStateManager stateManager;
@@ -104,17 +104,35 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private final LongAdder addWindow = new LongAdder();
   
   public ClientEntityManagerImpl(ClientMessageChannel channel, StageManager mgr) {
+    this(channel, mgr, createWindow());
+  }
+
+  ClientEntityManagerImpl(ClientMessageChannel channel, StageManager mgr, InvokeWindow window) {
     this.logger = new ClientIDLogger(channel::getClientID, LoggerFactory.getLogger(ClientEntityManager.class));
     
     this.channel = channel;
+    this.requestTickets = window;
 
     this.inFlightMessages = new ConcurrentHashMap<>();
     this.transactionSource = new TransactionSource();
     this.stateManager = new ClientEntityStateManager();
     this.objectStoreMap = new ConcurrentHashMap<>(10240, 0.75f, 128);
     this.stages = mgr;      
+    this.coalescer = ClientConfigurationContext.COALESCE_REQUESTS ? new InvokeCoalescer(channel, ClientConfigurationContext.COALESCE_MAX_COUNT,
+        ClientConfigurationContext.COALESCE_MAX_BYTES, TimeUnit.MICROSECONDS.toNanos(ClientConfigurationContext.COALESCE_LINGER_MICROS)) : null;
   }
   
+  private static InvokeWindow createWindow() {
+    if (ClientConfigurationContext.ADAPTIVE_REQUEST_WINDOW) {
+      int max = ClientConfigurationContext.MAX_PENDING_REQUESTS;
+      return new InvokeWindow(true, Math.min(ClientConfigurationContext.MIN_REQUEST_WINDOW, max), max,
+          TimeUnit.MICROSECONDS.toNanos(ClientConfigurationContext.REQUEST_WINDOW_LATENCY_FLOOR_MICROS),
+          TimeUnit.MILLISECONDS.toNanos(ClientConfigurationContext.REQUEST_WINDOW_MAX_WAIT_MILLIS));
+    } else {
+      return new InvokeWindow(ClientConfigurationContext.MAX_PENDING_REQUESTS);
+    }
+  }
+
   public boolean checkBusy() {
     try {
       return wasBusy;
@@ -135,8 +153,41 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     }
   }
 
-  private synchronized boolean enqueueMessage(InFlightMessage msg, long timeout, TimeUnit unit, boolean waitUntilRunning) throws TimeoutException {
+  private boolean enqueueMessage(InFlightMessage msg, long timeout, TimeUnit unit, boolean waitUntilRunning) throws TimeoutException {
     long end = (timeout > 0) ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    if (!waitForRunning(end, waitUntilRunning)) {
+      return false;
+    }
+    // the window is acquired outside the monitor so a caller waiting for a slot never holds up pause, unpause or shutdown
+    boolean acquired;
+    if (timeout == 0 && requestTickets.isAdaptive()) {
+      // an adaptive window is expected to fill up, so an untimed caller waits a bounded time for a slot and can be
+      // interrupted out of the wait
+      try {
+        acquired = requestTickets.acquire();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        acquired = false;
+      }
+    } else {
+      acquired = requestTickets.tryAcquireUninterruptibly(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+    synchronized (this) {
+      if (stateManager.isShutdown()) {
+        if (acquired) {
+          requestTickets.release(0L);
+        }
+        return false;
+      } else if (acquired) {
+        inFlightMessages.put(msg.getTransactionID(), msg);
+        return true;
+      } else {
+        throw new TimeoutException();
+      }
+    }
+  }
+
+  private synchronized boolean waitForRunning(long end, boolean waitUntilRunning) throws TimeoutException {
     if (waitUntilRunning) {
       boolean interrupted = Thread.interrupted();
       try {
@@ -163,19 +214,11 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       }
     }
 
-    // stop drains the permits so even if asked to not waitUntilRunning, stop is still checked
-    if (!stateManager.isShutdown()) { // enqueue here if the system is not shutdown, running or paused, the message should be readied for send
-      if (requestTickets.tryAcquireUninterruptibly(end - System.nanoTime(), TimeUnit.NANOSECONDS)) {
-        inFlightMessages.put(msg.getTransactionID(), msg);
-        return true;
-      } else {
-        throw new TimeoutException();
-      }
-    } else {
-      return false;
-    }
+    // stop closes the window so even if asked to not waitUntilRunning, stop is still checked
+    // enqueue if the system is not shutdown, running or paused, the message should be readied for send
+    return !stateManager.isShutdown();
   }
-  
+
   @SuppressWarnings("rawtypes")
   @Override
   public EntityClientEndpoint fetchEntity(EntityID entity, long version, ClientInstanceID instance, MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec, Runnable closeHook) throws EntityException {
@@ -325,7 +368,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     InFlightMessage inFlight = new InFlightMessage(eid, message, requestedAcks, monitor, false, true);
     try {
       msgCount.increment();
-      inflights.add(ClientConfigurationContext.MAX_PENDING_REQUESTS - requestTickets.availablePermits());
+      inflights.add(requestTickets.getInFlight());
       queued = enqueueMessage(inFlight);
     } catch (Throwable t) {
       transactionSource.retire(inFlight.getTransactionID());
@@ -334,7 +377,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
 
     if (queued) {
       inFlight.sent();
-      if (!inFlight.send()) {
+      if (!send(inFlight)) {
         logger.debug("message not sent.  Make sure resend happens : {}", inFlight);
       }
     } else {
@@ -364,7 +407,11 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     if (stateManager.isShutdown()) {
       sub.put("pendingMessages", "<shutdown>");
     } else {
-      sub.put("pendingMessages", ClientConfigurationContext.MAX_PENDING_REQUESTS - this.requestTickets.availablePermits());
+      sub.put("pendingMessages", this.requestTickets.getInFlight());
+    }
+    sub.put("requestWindow", this.requestTickets.getStateMap());
+    if (coalescer != null) {
+      sub.put("coalescing", coalescer.getStateMap());
     }
     map.put("channel", sub);
     if (stats instanceof PrettyPrintable) {
@@ -419,7 +466,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       InFlightMessage inFlight = inFlightMessages.remove(id);
       if (inFlight != null) {
         inFlight.retired();
-        requestTickets.release();
+        requestTickets.release(inFlight.getRoundTripNanos());
       } else {
         // resend result or stop
       }
@@ -431,6 +478,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public synchronized void pause() {
     stateManager.pause();
+    clearCoalescer();
   }
 
   @Override
@@ -457,6 +505,8 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       responderMulti.getSink().addToSink(flush);
       flush.waitForAccess();
     }
+    // Anything still waiting in the coalescer is replayed with the rest of the in-flight messages below.
+    clearCoalescer();
     // Walk the inFlightMessages, adding them all to the handshake, since we need them to be replayed.
     for (InFlightMessage inFlight : this.inFlightMessages.values()) {
       VoltronEntityMessage message = inFlight.getMessage();
@@ -475,7 +525,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       if (this.stateManager.isShutdown()) {
         return;
       } else {
-        // not sending anymore, drain the permits
+        // not sending anymore, close the window
         requestTickets.stop();
         stateManager.stop();
         notifyAll();
@@ -626,7 +676,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     InFlightMessage inFlight = new InFlightMessage(eid, message, requestedAcks, monitor, shouldBlockGetOnRetire, asyncMode);
     try {
       msgCount.increment();
-      inflights.add(ClientConfigurationContext.MAX_PENDING_REQUESTS - requestTickets.availablePermits());
+      inflights.add(requestTickets.getInFlight());
       // NOTE:  If we are already stop, the handler in outbound will fail this message for us.
       queued = enqueueMessage(inFlight, timeout, units, inFlight.getMessage().getVoltronType() != VoltronEntityMessage.Type.INVOKE_ACTION);
     } catch (Throwable t) {
@@ -636,7 +686,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
 
     if (queued) {
       inFlight.sent();
-      if (inFlight.send()) {
+      if (send(inFlight)) {
         //  when encountering a send for anything other than an invoke, wait here before sending anything else
         //  this is a bit paranoid but it is to prevent too many resends of lifecycle operations.  Just
         //  make sure those complete before sending any new invokes or lifecycle messages
@@ -653,6 +703,16 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     return inFlight;
   }
 
+  private void clearCoalescer() {
+    if (coalescer != null) {
+      coalescer.clear();
+    }
+  }
+
+  private boolean send(InFlightMessage inFlight) {
+    return (coalescer == null) ? inFlight.send() : inFlight.send(coalescer::send);
+  }
+
   private NetworkVoltronEntityMessage createMessageWithoutClientInstance(EntityID entityID, long version, boolean requiresReplication, byte[] config, VoltronEntityMessage.Type type, Set<VoltronEntityMessage.Acks> acks) {
     // We have no client instance for a create but the request currently requires a full descriptor.
     EntityDescriptor entityDescriptor = EntityDescriptor.createDescriptorForLifecycle(entityID, version);
@@ -812,38 +872,4 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       }
     }
   }
-  
-  private static class StoppableSemaphore extends Semaphore {
-
-    private final int permits;
-
-    public StoppableSemaphore(int permits) {
-      super(permits);
-      this.permits = permits;
-    }
-
-    public boolean tryAcquireUninterruptibly(long timeout, TimeUnit unit) {
-      boolean interrupted = Thread.interrupted();
-      try {
-        while (true) {
-          long start = System.nanoTime();
-          try {
-            return super.tryAcquire(timeout, unit);
-          } catch (InterruptedException e) {
-            interrupted = true;
-            timeout = unit.toNanos(timeout) - (System.nanoTime() - start);
-            unit = TimeUnit.NANOSECONDS;
-          }
-        }
-      } finally {
-        if (interrupted) {
-          Thread.currentThread().interrupt();
-        }
-      }
-    }
-
-    private void stop() {
-      reducePermits(permits);
-    }
-  }
 }
@@ -52,6 +52,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 
@@ -201,12 +202,19 @@ public class InFlightMessage implements PrettyPrintable {
   }
 
   public boolean send() {
+    return send(m->((TCMessage)m).send());
+  }
+
+  /**
+   * Send the message through the given transport rather than directly on its own channel.
+   */
+  boolean send(Predicate<VoltronEntityMessage> transport) {
     Trace.activeTrace().log("InFlightMessage.send()");
     Assert.assertFalse(this.isSent);
     this.isSent = true;
     this.send = System.nanoTime();
     try {
-      return ((TCMessage)this.message).send();
+      return transport.test(this.message);
     } finally {
       this.sent = System.nanoTime();
     }
@@ -396,6 +404,13 @@ public class InFlightMessage implements PrettyPrintable {
     }
   }
   
+  /**
+   * @return nanoseconds between the message being sent and retired or 0 if it has not been through both
+   */
+  synchronized long getRoundTripNanos() {
+    return (this.notifySent > 0 && this.retired > this.notifySent) ? this.retired - this.notifySent : 0L;
+  }
+
   void addServerStatistics(long[] stats) {
     this.serverStats = stats;
   }
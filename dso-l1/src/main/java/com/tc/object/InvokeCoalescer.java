@@ -0,0 +1,216 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import com.tc.entity.NetworkVoltronEntityMessage;
+import com.tc.entity.NetworkVoltronEntityMultiMessage;
+import com.tc.entity.VoltronEntityMessage;
+import com.tc.net.protocol.tcm.ClientMessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Packs invokes headed for the same channel into {@link NetworkVoltronEntityMultiMessage}s.
+ * <p>
+ * There is no sending thread.  The first caller to find the coalescer idle becomes the sender and keeps sending until
+ * there is nothing left to send, everything handed in by other callers in the meantime is queued behind it and goes out
+ * in the same or the next batch.  An idle client therefore pays no extra latency, a busy one gets batches roughly the
+ * size of whatever piled up during the previous send.  With a linger time the sender also waits, up to that long, for a
+ * batch to fill before sending it.
+ * <p>
+ * Messages other than invokes are never batched but go through the same queue so they keep their place relative to
+ * the invokes around them.
+ */
+class InvokeCoalescer {
+  // rough size of the per invoke fields of a batch entry other than the payload
+  private static final int     ENTRY_OVERHEAD = 64;
+
+  private final ClientMessageChannel channel;
+  private final int                  maxCount;
+  private final int                  maxBytes;
+  private final long                 lingerNanos;
+
+  private final ArrayDeque<NetworkVoltronEntityMessage> pending = new ArrayDeque<>();
+  private int                        pendingBytes;
+  private boolean                    draining;
+  private Thread                     sender;
+
+  private final LongAdder            batches   = new LongAdder();
+  private final LongAdder            batched   = new LongAdder();
+  private final LongAdder            singles   = new LongAdder();
+
+  InvokeCoalescer(ClientMessageChannel channel, int maxCount, int maxBytes, long lingerNanos) {
+    this.channel = channel;
+    this.maxCount = maxCount;
+    this.maxBytes = maxBytes;
+    this.lingerNanos = lingerNanos;
+  }
+
+  /**
+   * Send the message, possibly as part of a batch.
+   *
+   * @return false if this caller ended up sending and its message could not be sent; a message queued behind another
+   *         sender is reported as sent, if the send fails it is resent on reconnect like any other in-flight message
+   */
+  boolean send(VoltronEntityMessage message) {
+    NetworkVoltronEntityMessage network = (NetworkVoltronEntityMessage)message;
+    synchronized (this) {
+      pending.add(network);
+      pendingBytes += sizeOf(network);
+      if (draining) {
+        if (sender != null && isBatchFull()) {
+          LockSupport.unpark(sender);
+        }
+        return true;
+      }
+      draining = true;
+      sender = Thread.currentThread();
+    }
+    try {
+      return drain();
+    } catch (RuntimeException | Error t) {
+      // let the next caller pick up whatever is left
+      synchronized (this) {
+        draining = false;
+        sender = null;
+      }
+      throw t;
+    }
+  }
+
+  private boolean drain() {
+    if (lingerNanos > 0) {
+      linger();
+    }
+    boolean first = true;
+    boolean sent = true;
+    while (true) {
+      List<NetworkVoltronEntityMessage> batch;
+      synchronized (this) {
+        if (pending.isEmpty()) {
+          draining = false;
+          sender = null;
+          return sent;
+        }
+        batch = takeBatch();
+      }
+      boolean didSend = transmit(batch);
+      if (first) {
+        // the first batch always holds this caller's message
+        sent = didSend;
+        first = false;
+      }
+    }
+  }
+
+  private void linger() {
+    long deadline = System.nanoTime() + lingerNanos;
+    while (true) {
+      synchronized (this) {
+        if (pending.isEmpty() || isBatchFull() || pending.peekLast().getVoltronType() != VoltronEntityMessage.Type.INVOKE_ACTION) {
+          return;
+        }
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return;
+      }
+      LockSupport.parkNanos(this, remaining);
+    }
+  }
+
+  private boolean isBatchFull() {
+    return pending.size() >= maxCount || pendingBytes >= maxBytes;
+  }
+
+  private List<NetworkVoltronEntityMessage> takeBatch() {
+    List<NetworkVoltronEntityMessage> batch = new ArrayList<>(Math.min(pending.size(), maxCount));
+    int bytes = 0;
+    NetworkVoltronEntityMessage head = pending.poll();
+    batch.add(head);
+    bytes += sizeOf(head);
+    if (head.getVoltronType() == VoltronEntityMessage.Type.INVOKE_ACTION) {
+      while (batch.size() < maxCount && !pending.isEmpty()) {
+        NetworkVoltronEntityMessage next = pending.peek();
+        int size = sizeOf(next);
+        if (next.getVoltronType() != VoltronEntityMessage.Type.INVOKE_ACTION || bytes + size > maxBytes) {
+          break;
+        }
+        batch.add(pending.poll());
+        bytes += size;
+      }
+    }
+    pendingBytes -= bytes;
+    return batch;
+  }
+
+  private boolean transmit(List<NetworkVoltronEntityMessage> batch) {
+    if (batch.size() == 1) {
+      singles.increment();
+      return batch.get(0).send();
+    } else {
+      NetworkVoltronEntityMultiMessage multi = (NetworkVoltronEntityMultiMessage)channel.createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE);
+      for (NetworkVoltronEntityMessage message : batch) {
+        multi.addMessage(message);
+      }
+      batches.increment();
+      batched.add(batch.size());
+      return multi.send();
+    }
+  }
+
+  /**
+   * Drop everything still queued.  Called when the connection is lost, the dropped messages are all still in flight and
+   * go to the server in the reconnect handshake, sending them here as well would send them twice.  A batch already taken
+   * by the sender is not recalled.
+   */
+  synchronized void clear() {
+    pending.clear();
+    pendingBytes = 0;
+  }
+
+  private static int sizeOf(NetworkVoltronEntityMessage message) {
+    return message.getExtendedData().remaining() + ENTRY_OVERHEAD;
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("maxCount", maxCount);
+    state.put("maxBytes", maxBytes);
+    state.put("lingerNanos", lingerNanos);
+    long batchCount = batches.sum();
+    state.put("batches", batchCount);
+    state.put("batchedMessages", batched.sum());
+    state.put("unbatchedMessages", singles.sum());
+    if (batchCount > 0) {
+      state.put("averageBatchSize", batched.sum() / batchCount);
+    }
+    synchronized (this) {
+      state.put("pending", pending.size());
+    }
+    return state;
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of requests a client has in flight on one connection.
+ * <p>
+ * A fixed window behaves like a semaphore of {@code max} permits. An adaptive window starts at {@code min} and
+ * adjusts its limit AIMD style from the round trip time of each retired request: it grows by one per ack until it
+ * first sees congestion and by one per window after that, and it is halved, at most once per window, when the smoothed
+ * round trip climbs past twice the best recently observed one. A full window never blocks {@link #tryAcquire()}, so
+ * callers that can not afford to wait get an immediate backpressure signal, and {@link #acquire()} waits no longer
+ * than the window's max wait.
+ */
+class InvokeWindow {
+
+  private static final double  CONGESTION_FACTOR = 2.0;
+  private static final int     MIN_EPOCH_SAMPLES = 1024;
+
+  private final boolean        adaptive;
+  private final int            min;
+  private final int            max;
+  private final long           latencyFloor;
+  private final long           maxWait;
+
+  private final AtomicInteger  inFlight  = new AtomicInteger();
+  private final LongAdder      rejected  = new LongAdder();
+  private volatile int         limit;
+  private volatile boolean     stopped;
+  // guarded by this, read without the lock by release
+  private volatile int         waiters;
+
+  // AIMD state, guarded by adjustLock
+  private final Object         adjustLock = new Object();
+  private double               window;
+  private double               threshold;
+  private long                 smoothed;
+  private long                 baseline = Long.MAX_VALUE;
+  private long                 epochMin = Long.MAX_VALUE;
+  private long                 epochSamples;
+  private long                 sinceDecrease;
+  private long                 decreases;
+
+  /**
+   * fixed window of {@code max} requests
+   */
+  InvokeWindow(int max) {
+    this(false, max, max, 0L, 0L);
+  }
+
+  /**
+   * @param adaptive adjust the limit between {@code min} and {@code max} from observed round trip times
+   * @param min smallest limit an adaptive window will shrink to
+   * @param max largest limit
+   * @param latencyFloor round trips shorter than this, in nanoseconds, are never treated as congestion
+   * @param maxWait longest, in nanoseconds, {@link #acquire()} waits for a slot
+   */
+  InvokeWindow(boolean adaptive, int min, int max, long latencyFloor, long maxWait) {
+    if (min < 1 || max < min) {
+      throw new IllegalArgumentException("invalid window bounds min:" + min + " max:" + max);
+    }
+    this.adaptive = adaptive;
+    this.min = min;
+    this.max = max;
+    this.latencyFloor = latencyFloor;
+    this.maxWait = maxWait;
+    this.window = adaptive ? min : max;
+    this.threshold = max;
+    this.limit = (int) this.window;
+  }
+
+  boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * Take a slot in the window without waiting.
+   *
+   * @return false if the window is full or stopped
+   */
+  boolean tryAcquire() {
+    while (!stopped) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        rejected.increment();
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Take a slot in the window, waiting up to {@code timeout} for one to open. A non-positive timeout does not wait.
+   *
+   * @return false if the timeout elapsed or the window was stopped
+   */
+  boolean tryAcquireUninterruptibly(long timeout, TimeUnit unit) {
+    if (tryAcquire()) {
+      return true;
+    } else if (timeout <= 0) {
+      return false;
+    } else {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      boolean interrupted = Thread.interrupted();
+      try {
+        while (true) {
+          try {
+            return waitForSlot(deadline);
+          } catch (InterruptedException ie) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Take a slot in the window, waiting up to the window's max wait for one to open.
+   *
+   * @return false if the max wait elapsed or the window was stopped
+   * @throws InterruptedException if interrupted while waiting
+   */
+  boolean acquire() throws InterruptedException {
+    return tryAcquire() || (maxWait > 0 && waitForSlot(System.nanoTime() + maxWait));
+  }
+
+  private synchronized boolean waitForSlot(long deadline) throws InterruptedException {
+    // publish the waiter before re-checking so a release either sees it or the re-check sees the open slot
+    waiters++;
+    try {
+      while (!stopped) {
+        if (tryAcquire()) {
+          return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return false;
+    } finally {
+      waiters--;
+    }
+  }
+
+  /**
+   * Give back a slot.
+   *
+   * @param roundTrip nanoseconds from send to retire of the request that held the slot, or 0 if unknown
+   */
+  void release(long roundTrip) {
+    inFlight.decrementAndGet();
+    if (adaptive && roundTrip > 0) {
+      adjust(roundTrip);
+    }
+    if (waiters > 0) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  private void adjust(long roundTrip) {
+    synchronized (adjustLock) {
+      smoothed = (smoothed == 0) ? roundTrip : smoothed + ((roundTrip - smoothed) >> 3);
+      baseline = Math.min(baseline, roundTrip);
+      epochMin = Math.min(epochMin, roundTrip);
+      // let the baseline drift up if the server has become slower for good
+      if (++epochSamples >= Math.max(MIN_EPOCH_SAMPLES, (long) window * 8)) {
+        baseline = epochMin;
+        epochMin = Long.MAX_VALUE;
+        epochSamples = 0;
+      }
+      sinceDecrease++;
+      if (smoothed > Math.max(latencyFloor, baseline * CONGESTION_FACTOR)) {
+        if (sinceDecrease >= window) {
+          threshold = Math.max(min, window / 2);
+          window = threshold;
+          sinceDecrease = 0;
+          decreases++;
+        }
+      } else if (window < threshold) {
+        window += 1;
+      } else {
+        window += 1 / window;
+      }
+      window = Math.max(min, Math.min(max, window));
+      limit = (int) window;
+    }
+  }
+
+  void stop() {
+    stopped = true;
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+
+  boolean isFull() {
+    return stopped || inFlight.get() >= limit;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  int getLimit() {
+    return limit;
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("adaptive", adaptive);
+    state.put("limit", limit);
+    state.put("inFlight", inFlight.get());
+    state.put("rejected", rejected.sum());
+    if (adaptive) {
+      synchronized (adjustLock) {
+        state.put("min", min);
+        state.put("max", max);
+        state.put("threshold", (int) threshold);
+        state.put("smoothedRoundTrip", smoothed);
+        state.put("baselineRoundTrip", baseline == Long.MAX_VALUE ? 0 : baseline);
+        state.put("decreases", decreases);
+      }
+    }
+    return state;
+  }
+
+  @Override
+  public String toString() {
+    return "InvokeWindow{" + "adaptive=" + adaptive + ", limit=" + limit + ", inFlight=" + inFlight.get() + '}';
+  }
+}
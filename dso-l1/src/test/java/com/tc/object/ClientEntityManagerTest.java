@@ -656,6 +656,55 @@ public class ClientEntityManagerTest extends TestCase {
     } 
   }
     
+  public void testUntimedInvokeOnFullAdaptiveWindowDoesNotHang() throws Exception {
+    this.manager = new ClientEntityManagerImpl(this.channel, stageMgr, new InvokeWindow(true, 1, 1, 0L, TimeUnit.MILLISECONDS.toNanos(200)));
+    // Set the target for success.
+    final byte[] resultObject = new byte[8];
+    ByteBuffer.wrap(resultObject).putLong(1L);
+    final EntityException resultException = null;
+    when(channel.createMessage(Mockito.eq(TCMessageType.VOLTRON_ENTITY_MESSAGE))).then(new Answer<TCMessage>() {
+      @Override
+      public TCMessage answer(InvocationOnMock invocation) throws Throwable {
+        return new TestRequestBatchMessage(manager, resultObject, resultException, true);
+      }
+    });       
+    TestFetcher fetcher = new TestFetcher(this.manager, this.entityID, 1L, this.instance);
+    fetcher.start();
+    fetcher.join();
+    List<TestRequestBatchMessage> full = new ArrayList<>();
+    when(channel.createMessage(Mockito.eq(TCMessageType.VOLTRON_ENTITY_MESSAGE))).then(new Answer<TCMessage>() {
+      @Override
+      public TCMessage answer(InvocationOnMock invocation) throws Throwable {
+        TestRequestBatchMessage msg = new TestRequestBatchMessage(manager, resultObject, resultException, false);
+        full.add(msg);
+        return msg;
+      }
+    }); 
+    try {
+      EntityClientEndpoint endpoint = fetcher.getResult();
+      // takes the only slot in the window
+      endpoint.beginInvoke().invoke();
+      List<Throwable> failures = new CopyOnWriteArrayList<>();
+      Thread blocked = new Thread(()->{
+        try {
+          endpoint.beginInvoke().invoke();
+        } catch (Throwable t) {
+          failures.add(t);
+        }
+      });
+      blocked.start();
+      blocked.join(TimeUnit.SECONDS.toMillis(10));
+      assertFalse(blocked.isAlive());
+      assertEquals(1, failures.size());
+      assertThat(failures.get(0).getCause(), instanceOf(TimeoutException.class));
+    } finally {
+      full.stream().forEach(m->{
+        manager.complete(m.getTransactionID(), new byte[0]);
+        manager.retired(m.getTransactionID());
+       });
+    }
+  }
+    
   public void testThreadInterruptsDontCauseSendIssues() throws Exception {
     // Set the target for success.
     final byte[] resultObject = new byte[8];
@@ -0,0 +1,154 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.entity.NetworkVoltronEntityMessage;
+import com.tc.entity.NetworkVoltronEntityMultiMessage;
+import com.tc.entity.VoltronEntityMessage;
+import com.tc.net.protocol.tcm.ClientMessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class InvokeCoalescerTest extends TestCase {
+
+  private final List<Object> wire = new ArrayList<>();
+
+  public void testIdleSendIsNotBatched() throws Exception {
+    ClientMessageChannel channel = mock(ClientMessageChannel.class);
+    InvokeCoalescer coalescer = new InvokeCoalescer(channel, 16, 1024 * 1024, 0L);
+    NetworkVoltronEntityMessage invoke = message(VoltronEntityMessage.Type.INVOKE_ACTION, null);
+    assertTrue(coalescer.send(invoke));
+    verify(invoke).send();
+    verify(channel, never()).createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE);
+  }
+
+  public void testInvokesQueuedDuringSendAreBatchedInOrder() throws Exception {
+    List<VoltronEntityMessage> batched = new ArrayList<>();
+    ClientMessageChannel channel = mock(ClientMessageChannel.class);
+    NetworkVoltronEntityMultiMessage multi = mock(NetworkVoltronEntityMultiMessage.class);
+    doAnswer(i -> batched.add(i.getArgument(0))).when(multi).addMessage(any(NetworkVoltronEntityMessage.class));
+    when(multi.send()).then(i -> wire.add(new ArrayList<>(batched)));
+    when(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE)).thenReturn(multi);
+    InvokeCoalescer coalescer = new InvokeCoalescer(channel, 2, 1024 * 1024, 0L);
+
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    NetworkVoltronEntityMessage first = message(VoltronEntityMessage.Type.INVOKE_ACTION, () -> {
+      sending.countDown();
+      release.await();
+    });
+    Thread sender = new Thread(() -> coalescer.send(first));
+    sender.start();
+    assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+    NetworkVoltronEntityMessage second = message(VoltronEntityMessage.Type.INVOKE_ACTION, null);
+    NetworkVoltronEntityMessage third = message(VoltronEntityMessage.Type.INVOKE_ACTION, null);
+    NetworkVoltronEntityMessage releaseEntity = message(VoltronEntityMessage.Type.RELEASE_ENTITY, null);
+    NetworkVoltronEntityMessage fourth = message(VoltronEntityMessage.Type.INVOKE_ACTION, null);
+    // queued behind the sender, reported as sent
+    assertTrue(coalescer.send(second));
+    assertTrue(coalescer.send(third));
+    assertTrue(coalescer.send(releaseEntity));
+    assertTrue(coalescer.send(fourth));
+    release.countDown();
+    sender.join();
+
+    assertEquals(4, wire.size());
+    assertSame(first, wire.get(0));
+    List<?> batch = (List<?>)wire.get(1);
+    assertEquals(2, batch.size());
+    assertSame(second, batch.get(0));
+    assertSame(third, batch.get(1));
+    // not batched, keeps its place
+    assertSame(releaseEntity, wire.get(2));
+    assertSame(fourth, wire.get(3));
+  }
+
+  public void testReconnectDropsQueuedInvokes() throws Exception {
+    ClientMessageChannel channel = mock(ClientMessageChannel.class);
+    InvokeCoalescer coalescer = new InvokeCoalescer(channel, 16, 1024 * 1024, 0L);
+
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    NetworkVoltronEntityMessage first = message(VoltronEntityMessage.Type.INVOKE_ACTION, () -> {
+      sending.countDown();
+      release.await();
+    });
+    Thread sender = new Thread(() -> coalescer.send(first));
+    sender.start();
+    assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+    NetworkVoltronEntityMessage second = message(VoltronEntityMessage.Type.INVOKE_ACTION, null);
+    NetworkVoltronEntityMessage third = message(VoltronEntityMessage.Type.INVOKE_ACTION, null);
+    assertTrue(coalescer.send(second));
+    assertTrue(coalescer.send(third));
+    // the connection drops, both are resent in the handshake instead
+    coalescer.clear();
+    release.countDown();
+    sender.join();
+
+    assertEquals(1, wire.size());
+    assertSame(first, wire.get(0));
+    verify(second, never()).send();
+    verify(third, never()).send();
+    verify(channel, never()).createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE);
+    assertEquals(0, coalescer.getStateMap().get("pending"));
+
+    // after the reconnect the coalescer is idle again
+    NetworkVoltronEntityMessage fourth = message(VoltronEntityMessage.Type.INVOKE_ACTION, null);
+    assertTrue(coalescer.send(fourth));
+    assertEquals(2, wire.size());
+    assertSame(fourth, wire.get(1));
+  }
+
+  private NetworkVoltronEntityMessage message(VoltronEntityMessage.Type type, Blocker blocker) {
+    NetworkVoltronEntityMessage message = mock(NetworkVoltronEntityMessage.class);
+    when(message.getVoltronType()).thenReturn(type);
+    when(message.getExtendedData()).thenReturn(TCByteBufferFactory.wrap(new byte[8]));
+    when(message.send()).then(i -> {
+      if (blocker != null) {
+        blocker.block();
+      }
+      synchronized (wire) {
+        wire.add(message);
+      }
+      return true;
+    });
+    return message;
+  }
+
+  private interface Blocker {
+    void block() throws InterruptedException;
+  }
+}
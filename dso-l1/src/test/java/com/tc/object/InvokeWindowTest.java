@@ -0,0 +1,149 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+
+public class InvokeWindowTest extends TestCase {
+
+  public void testFixedWindowRejectsWithoutBlocking() throws Exception {
+    InvokeWindow window = new InvokeWindow(2);
+    assertTrue(window.tryAcquire());
+    assertTrue(window.tryAcquire());
+    assertTrue(window.isFull());
+    assertFalse(window.tryAcquire());
+    assertFalse(window.tryAcquireUninterruptibly(0, TimeUnit.MILLISECONDS));
+    window.release(TimeUnit.SECONDS.toNanos(10));
+    // a fixed window ignores round trip times
+    assertEquals(2, window.getLimit());
+    assertTrue(window.tryAcquire());
+  }
+
+  public void testAdaptiveWindowGrowsWhileRoundTripsAreSteady() throws Exception {
+    InvokeWindow window = new InvokeWindow(true, 4, 1000, 0L, 0L);
+    assertEquals(4, window.getLimit());
+    for (int x = 0; x < 100; x++) {
+      assertTrue(window.tryAcquire());
+      window.release(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    assertEquals(104, window.getLimit());
+  }
+
+  public void testAdaptiveWindowHalvesOnCongestion() throws Exception {
+    InvokeWindow window = new InvokeWindow(true, 4, 1000, 0L, 0L);
+    for (int x = 0; x < 60; x++) {
+      assertTrue(window.tryAcquire());
+      window.release(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    assertEquals(64, window.getLimit());
+    // at most one decrease per window of acks, counting the ones that grew it
+    for (int x = 0; x < 3; x++) {
+      assertTrue(window.tryAcquire());
+      window.release(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertEquals(64, window.getLimit());
+    assertTrue(window.tryAcquire());
+    window.release(TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(32, window.getLimit());
+    for (int x = 0; x < 31; x++) {
+      assertTrue(window.tryAcquire());
+      window.release(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertEquals(32, window.getLimit());
+    assertTrue(window.tryAcquire());
+    window.release(TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(16, window.getLimit());
+  }
+
+  public void testAdaptiveWindowRespectsLatencyFloor() throws Exception {
+    InvokeWindow window = new InvokeWindow(true, 4, 8, TimeUnit.MILLISECONDS.toNanos(50), 0L);
+    for (int x = 0; x < 20; x++) {
+      assertTrue(window.tryAcquire());
+      window.release(TimeUnit.MICROSECONDS.toNanos(10 + x * 1000));
+    }
+    assertEquals(8, window.getLimit());
+  }
+
+  public void testWaiterIsReleased() throws Exception {
+    InvokeWindow window = new InvokeWindow(1);
+    assertTrue(window.tryAcquire());
+    AtomicBoolean acquired = new AtomicBoolean();
+    Thread waiter = new Thread(() -> acquired.set(window.tryAcquireUninterruptibly(30, TimeUnit.SECONDS)));
+    waiter.start();
+    TimeUnit.MILLISECONDS.sleep(100);
+    assertFalse(acquired.get());
+    window.release(0L);
+    waiter.join();
+    assertTrue(acquired.get());
+  }
+
+  public void testStopReleasesWaiters() throws Exception {
+    InvokeWindow window = new InvokeWindow(true, 1, 1, 0L, TimeUnit.SECONDS.toNanos(30));
+    assertTrue(window.tryAcquire());
+    AtomicBoolean acquired = new AtomicBoolean(true);
+    Thread waiter = new Thread(() -> {
+      try {
+        acquired.set(window.acquire());
+      } catch (InterruptedException ie) {
+        throw new AssertionError(ie);
+      }
+    });
+    waiter.start();
+    TimeUnit.MILLISECONDS.sleep(100);
+    window.stop();
+    waiter.join();
+    assertFalse(acquired.get());
+    window.release(0L);
+    assertFalse(window.tryAcquire());
+  }
+
+  public void testAcquireGivesUpAfterMaxWait() throws Exception {
+    InvokeWindow window = new InvokeWindow(true, 1, 1, 0L, TimeUnit.MILLISECONDS.toNanos(100));
+    assertTrue(window.tryAcquire());
+    long start = System.nanoTime();
+    assertFalse(window.acquire());
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    window.release(0L);
+    assertTrue(window.acquire());
+  }
+
+  public void testAcquireIsInterruptible() throws Exception {
+    InvokeWindow window = new InvokeWindow(true, 1, 1, 0L, TimeUnit.MINUTES.toNanos(10));
+    assertTrue(window.tryAcquire());
+    AtomicBoolean interrupted = new AtomicBoolean();
+    Thread waiter = new Thread(() -> {
+      try {
+        window.acquire();
+      } catch (InterruptedException ie) {
+        interrupted.set(true);
+      }
+    });
+    waiter.start();
+    TimeUnit.MILLISECONDS.sleep(100);
+    waiter.interrupt();
+    waiter.join(10000);
+    assertFalse(waiter.isAlive());
+    assertTrue(interrupted.get());
+    assertEquals(1, window.getInFlight());
+  }
+}
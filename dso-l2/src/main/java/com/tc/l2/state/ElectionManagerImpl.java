@@ -33,16 +33,29 @@ import com.tc.net.groups.GroupException;
 import com.tc.net.groups.GroupManager;
 import com.tc.net.groups.GroupResponse;
 import com.tc.objectserver.impl.Topology;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.State;
 import java.util.Collections;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs the broadcast phase of election.  Each server casts its enrollment to the configured servers and collects the
+ * votes of the others until either every configured server has voted or the election time runs out, then the best
+ * enrollment wins.
+ * <p>
+ * With l2.election.earlyMajority set the vote collection also ends as soon as every configured server which is
+ * currently a member of the group has voted, provided those votes are a majority of the configured stripe.  This is the
+ * usual failover case, the old active can never vote, and without it the survivors always wait out the full election
+ * time.  A server still joining the group is covered by its own vote, sent as soon as it joins, and by the result
+ * confirmation the winner runs with every server before it becomes active.
+ */
 public class ElectionManagerImpl implements ElectionManager {
 
   private static final Logger logger = LoggerFactory.getLogger(ElectionManagerImpl.class);
@@ -54,6 +67,8 @@ public class ElectionManagerImpl implements ElectionManager {
 
   private final GroupManager<L2StateMessage> groupManager;
   private final Map<NodeID, Enrollment> votes        = new HashMap<>();
+  private final Set<NodeID>     members              = new HashSet<>();
+  private final boolean         earlyMajority;
 
   private State                 state                = INIT;
 
@@ -65,20 +80,37 @@ public class ElectionManagerImpl implements ElectionManager {
   private Set<NodeID>           passiveStandbys;
 
   private final long            electionTime;
-  private int             expectedServers;
+  private Set<String>           expectedServers      = Collections.emptySet();
+
+  // timings of the latest election, in milliseconds
+  private long                  electionStart;
+  private long                  votingTime;
+  private long                  confirmationTime;
+  private int                   votesCounted;
+  private String                votingEndedBy;
+  private long                  elections;
+  private long                  earlyElections;
 
   public ElectionManagerImpl(GroupManager groupManager, int electionTimeInSec) {
+    this(groupManager, electionTimeInSec,
+         TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_ELECTION_EARLY_MAJORITY, false));
+  }
+
+  ElectionManagerImpl(GroupManager groupManager, int electionTimeInSec, boolean earlyMajority) {
     this.groupManager = groupManager;
     this.electionTime = electionTimeInSec * 1000;
+    this.earlyMajority = earlyMajority;
     this.groupManager.registerForGroupEvents(new GroupEventsListener() {
       @Override
       public void nodeJoined(NodeID nodeID) {
+        memberJoined(nodeID);
         sendToNewMember(nodeID);
       }
 
       @Override
       public void nodeLeft(NodeID nodeID) {
         debugInfo("node left " + nodeID);
+        memberLeft(nodeID);
       }
     });
   }
@@ -103,10 +135,7 @@ public class ElectionManagerImpl implements ElectionManager {
     if (state == ELECTION_IN_PROGRESS) {
       Enrollment vote = msg.getEnrollment();
       Enrollment old = votes.put(vote.getNodeID(), vote);
-      if (votes.size() == expectedServers) {
-        this.state = ELECTION_VOTED;
-        notify();
-      }
+      checkVotesAreIn();
       if (myVote.isANewCandidate() || !msg.getEnrollment().isANewCandidate()) {
         // Another node is also joining in the election process, Cast its vote and notify my vote
         // Note : WE dont want to do this for new candidates when we are not new.
@@ -238,7 +267,7 @@ public class ElectionManagerImpl implements ElectionManager {
     }
   }
 
-  private synchronized void electionStarted(Enrollment e, State serverState, int expectedServers) {
+  private synchronized void electionStarted(Enrollment e, State serverState, Set<String> expectedServers) {
     if (this.state == ELECTION_IN_PROGRESS) { throw new AssertionError("Election Already in Progress"); }
     this.state = ELECTION_IN_PROGRESS;
     this.expectedServers = expectedServers;
@@ -248,15 +277,98 @@ public class ElectionManagerImpl implements ElectionManager {
     this.passiveStandbys = null;
     this.votes.clear();
     this.votes.put(e.getNodeID(), e); // Cast my vote
+    this.electionStart = System.currentTimeMillis();
+    this.votingTime = 0;
+    this.confirmationTime = 0;
+    this.votesCounted = 0;
+    this.votingEndedBy = null;
+    this.elections += 1;
     logger.info("Election Started : " + e);
   }
 
+  private synchronized void memberJoined(NodeID nodeID) {
+    members.add(nodeID);
+  }
+
+  private synchronized void memberLeft(NodeID nodeID) {
+    members.remove(nodeID);
+    // the server which left may have been the only one we were still waiting for
+    checkVotesAreIn();
+  }
+
+  private void checkVotesAreIn() {
+    if (state != ELECTION_IN_PROGRESS) {
+      return;
+    }
+    int configuredVotes = 0;
+    for (NodeID voter : votes.keySet()) {
+      if (isConfigured(voter)) {
+        configuredVotes += 1;
+      }
+    }
+    if (configuredVotes >= expectedServers.size()) {
+      votingEnded("all-votes");
+    } else if (earlyMajority && configuredVotes * 2 > expectedServers.size() && connectedMembersVoted()) {
+      earlyElections += 1;
+      votingEnded("connected-majority");
+    }
+  }
+
+  private boolean connectedMembersVoted() {
+    for (NodeID member : members) {
+      if (isConfigured(member) && !votes.containsKey(member)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isConfigured(NodeID node) {
+    return node instanceof ServerID && expectedServers.contains(((ServerID) node).getName());
+  }
+
+  private void votingEnded(String reason) {
+    this.state = ELECTION_VOTED;
+    this.votingEndedBy = reason;
+    notifyAll();
+  }
+
+  private synchronized void votingComplete() {
+    this.votingTime = System.currentTimeMillis() - electionStart;
+    this.votesCounted = votes.size();
+    if (votingEndedBy == null) {
+      votingEndedBy = (state == INIT) ? "aborted" : "timeout";
+    }
+  }
+
+  private synchronized void confirmationComplete() {
+    this.confirmationTime = System.currentTimeMillis() - electionStart - votingTime;
+  }
+
+  public synchronized Map<String, Object> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("state", state.getName());
+    map.put("electionTime", electionTime);
+    map.put("earlyMajority", earlyMajority);
+    map.put("elections", elections);
+    map.put("earlyElections", earlyElections);
+    Map<String, Object> last = new LinkedHashMap<>();
+    last.put("expectedServers", expectedServers.size());
+    last.put("votes", state == ELECTION_IN_PROGRESS ? votes.size() : votesCounted);
+    last.put("votingEndedBy", votingEndedBy);
+    last.put("votingMillis", votingTime);
+    last.put("confirmationMillis", confirmationTime);
+    last.put("totalMillis", votingTime + confirmationTime);
+    map.put("lastElection", last);
+    return map;
+  }
+
   private NodeID doElection(NodeID myNodeId, Set<String> servers, boolean isNew, WeightGeneratorFactory weightsFactory, State currentState)
       throws GroupException, InterruptedException {
 
     // Step 1: publish to cluster NodeID, weight and election start
     Enrollment e = EnrollmentFactory.createEnrollment(myNodeId, isNew, weightsFactory);
-    electionStarted(e, currentState, servers.size());
+    electionStarted(e, currentState, servers);
 
     L2StateMessage msg = L2StateMessage.createElectionStartedMessage(e, currentState);
     debugInfo("Sending my election vote to all members");
@@ -265,7 +377,8 @@ public class ElectionManagerImpl implements ElectionManager {
     // Step 2: Wait for election completion
     long waited = waitTillElectionComplete();
     Assert.assertTrue(waited <= 0 || this.state == ELECTION_VOTED || this.state == INIT);
-    logger.info("Election took " + TimeUnit.MILLISECONDS.toSeconds(electionTime - waited) + " sec. ending in " + this.state);
+    votingComplete();
+    logger.info("Election took " + (electionTime - waited) + " ms. ending in " + this.state + " by " + votingEndedBy);
     // Step 3: Compute Winner
     Enrollment lWinner = computeResult();
     if (lWinner != e) {
@@ -277,6 +390,7 @@ public class ElectionManagerImpl implements ElectionManager {
     msg = L2StateMessage.createElectionResultMessage(e, currentState);
     debugInfo("Won election, announcing to world and waiting for response...");
     GroupResponse<L2StateMessage> responses = groupManager.sendToAndWaitForResponse(servers, msg);
+    confirmationComplete();
     Set<NodeID> passives = new HashSet<>();
     for (L2StateMessage response : responses.getResponses()) {
       Assert.assertEquals(msg.getMessageID(), response.inResponseTo());
@@ -325,6 +439,7 @@ public class ElectionManagerImpl implements ElectionManager {
   private synchronized long waitTillElectionComplete() throws InterruptedException {
     long diff = electionTime;
     debugInfo("Waiting till election complete, electionTime=" + electionTime);
+    checkVotesAreIn();
     while (state == ELECTION_IN_PROGRESS && diff > 0) {
       long start = System.currentTimeMillis();
       wait(diff);
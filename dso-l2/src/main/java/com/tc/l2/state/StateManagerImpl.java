@@ -107,6 +107,7 @@ public class StateManagerImpl implements StateManager {
     map.put("currentState", this.state);
     map.put("active", this.activeNode);
     map.put("consistency", this.availabilityMgr.getStateMap());
+    map.put("election", this.electionMgr.getStateMap());
     return map;
   }
 
@@ -425,4 +425,11 @@ public class TCServerInfo extends AbstractTerracottaMBean implements TCServerInf
     PrettyPrinter pp = (shortForm) ? new AbbreviatedMapListPrettyPrint() : new MapListPrettyPrint();
     return server.getClusterState(pp);
   }
+
+  @Override
+  public String getStageLatencies() {
+    MapListPrettyPrint pp = new MapListPrettyPrint();
+    pp.println(server.getStageLatencies());
+    return pp.toString();
+  }
 }
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import com.tc.async.api.Sink;
 import com.tc.async.api.Stage;
 import com.tc.async.api.StageManager;
+import com.tc.bytes.TCByteBuffer;
 import com.tc.config.ServerConfigurationManager;
 import com.tc.config.GroupConfiguration;
 import com.tc.exception.TCRuntimeException;
@@ -481,6 +482,7 @@ public class TCGroupManagerImpl implements GroupManager<AbstractGroupMessage>, C
   @Override
   public void sendAll(AbstractGroupMessage msg, Set<? extends NodeID> nodeIDs) {
     final boolean debug = msg instanceof L2StateMessage;
+    List<TCGroupMember> targets = new ArrayList<>(members.size());
     for (TCGroupMember m : members.values()) {
       if (!nodeIDs.contains(m.getPeerNodeID())) {
         if (debug) {
@@ -496,11 +498,22 @@ public class TCGroupManagerImpl implements GroupManager<AbstractGroupMessage>, C
             debugInfo("Sending msg to " + m.getPeerNodeID() + ", " + msg + ", channel: " + m.getChannel());
           }
         }
-        m.sendIgnoreNotReady(msg);
+        targets.add(m);
       } else {
         logger.warn("Ignored sending msg to a not ready member=" + m + ", msg=" + msg);
       }
     }
+    sendToEach(msg, targets);
+  }
+
+  /**
+   * With more than one member to send to, the message is serialized once and the same bytes queued on each channel.
+   */
+  static void sendToEach(AbstractGroupMessage msg, List<TCGroupMember> targets) {
+    TCByteBuffer[] encoded = (targets.size() > 1) ? TCGroupMessageWrapper.encode(msg) : null;
+    for (TCGroupMember m : targets) {
+      m.sendIgnoreNotReady(msg, encoded);
+    }
   }
 
   @Override
@@ -875,6 +888,7 @@ public class TCGroupManagerImpl implements GroupManager<AbstractGroupMessage>, C
 
     public synchronized void sendAll(AbstractGroupMessage msg, Set<? extends NodeID> nodeIDs) {
       final boolean debug = msg instanceof L2StateMessage;
+      List<TCGroupMember> targets = new ArrayList<>();
       for (TCGroupMember m : manager.getMembers()) {
         if (!nodeIDs.contains(m.getPeerNodeID())) {
           if (debug) {
@@ -892,11 +906,12 @@ public class TCGroupManagerImpl implements GroupManager<AbstractGroupMessage>, C
               debugInfo("Sending msg to " + m.getPeerNodeID() + ", msg: " + msg + ", channel: " + m.getChannel());
             }
           }
-          m.sendIgnoreNotReady(msg);
+          targets.add(m);
         } else {
           logger.warn("SendAllAndWait to a not ready member " + m);
         }
       }
+      sendToEach(msg, targets);
     }
 
     public synchronized void addResponseFrom(ServerID nodeID, AbstractGroupMessage gmsg) {
@@ -18,6 +18,7 @@
  */
 package com.tc.net.groups;
 
+import com.tc.bytes.TCByteBuffer;
 import com.tc.net.ServerID;
 import com.tc.net.protocol.tcm.MessageChannel;
 
@@ -33,6 +34,11 @@ public interface TCGroupMember {
   
   public void sendIgnoreNotReady(AbstractGroupMessage msg);
 
+  /**
+   * Like sendIgnoreNotReady but sends msg as already serialized by TCGroupMessageWrapper.encode
+   */
+  public void sendIgnoreNotReady(AbstractGroupMessage msg, TCByteBuffer[] encoded);
+
   public void setTCGroupManager(TCGroupManagerImpl manager);
 
   public TCGroupManagerImpl getTCGroupManager();
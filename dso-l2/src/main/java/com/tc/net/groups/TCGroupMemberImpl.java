@@ -21,6 +21,7 @@ package com.tc.net.groups;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.tc.bytes.TCByteBuffer;
 import com.tc.l2.L2DebugLogging;
 import com.tc.l2.L2DebugLogging.LogLevel;
 import com.tc.net.ServerID;
@@ -70,6 +71,11 @@ public class TCGroupMemberImpl implements TCGroupMember, ChannelEventListener {
 
   @Override
   public void sendIgnoreNotReady(AbstractGroupMessage msg) {
+    sendIgnoreNotReady(msg, null);
+  }
+
+  @Override
+  public void sendIgnoreNotReady(AbstractGroupMessage msg, TCByteBuffer[] encoded) {
     if (!channel.isOpen()) {
       logger.warn("Attempting send to a not ready member " + this + ", msg will not be sent: " + msg);
       return;
@@ -78,15 +84,19 @@ public class TCGroupMemberImpl implements TCGroupMember, ChannelEventListener {
     //  at batching passive replication responses).
     Runnable sentCallback = null;
     try {
-      sendMessage(msg, sentCallback);
+      sendMessage(msg, encoded, sentCallback);
     } catch (GroupException ge) {
       logger.warn("Attempting send to a not ready member " + this + ", msg will not be sent: " + msg, ge);
     }
   }
 
   private void sendMessage(AbstractGroupMessage msg, Runnable sentCallback) throws GroupException {
+    sendMessage(msg, null, sentCallback);
+  }
+
+  private void sendMessage(AbstractGroupMessage msg, TCByteBuffer[] encoded, Runnable sentCallback) throws GroupException {
     TCGroupMessageWrapper wrapper = (TCGroupMessageWrapper) channel.createMessage(TCMessageType.GROUP_WRAPPER_MESSAGE);
-    wrapper.setGroupMessage(msg);
+    wrapper.setGroupMessage(msg, encoded);
     if (null != sentCallback) {
       wrapper.setSentCallback(sentCallback);
     }
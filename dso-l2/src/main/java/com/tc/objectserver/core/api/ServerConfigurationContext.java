@@ -45,6 +45,7 @@ public interface ServerConfigurationContext extends ConfigurationContext {
   public static final String ACTIVE_TO_PASSIVE_DRIVER_STAGE                       = "active_to_passive_driver_stage";
   public static final String PASSIVE_TO_ACTIVE_DRIVER_STAGE                       = "passive_to_active_driver_stage";
   public static final String PASSIVE_REPLICATION_STAGE                            = "passive_replication_stage";
+  public static final String PASSIVE_REPLICATION_APPLY_STAGE                            = "passive_replication_apply_stage";
   public static final String PASSIVE_OUTGOING_RESPONSE_STAGE                            = "passive_outgoing_response_stage";
   public static final String PASSIVE_REPLICATION_ACK_STAGE                            = "passive_replication_ack_stage";
 
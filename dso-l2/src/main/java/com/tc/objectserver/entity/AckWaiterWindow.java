@@ -0,0 +1,185 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ActivePassiveAckWaiters of replicated activities which are still waiting on passives, indexed by activity ID.
+ * <p>
+ * Activity IDs are handed out in increasing order and acknowledged roughly in that order, so the live waiters sit in a
+ * sliding window of IDs.  They are kept in a ring indexed by the low bits of the ID, spanning from the oldest live ID to
+ * the newest, so lookups need neither an ActivityID nor hashing.  The window slides forward as its oldest entries are
+ * retired.  If a waiter lingers long enough for the window to reach its maximum size it is moved aside into an overflow
+ * map rather than holding the window open.
+ * <p>
+ * Batches of acknowledgements are looked up and retired with one acquisition of the lock each.
+ */
+class AckWaiterWindow {
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int MAX_CAPACITY = 1 << 16;
+
+  private ActivePassiveAckWaiter[] ring = new ActivePassiveAckWaiter[INITIAL_CAPACITY];
+  private int mask = INITIAL_CAPACITY - 1;
+  // all live waiters in the ring have base <= id < limit, every slot outside that range is empty
+  private long base;
+  private long limit;
+  private int inRing;
+  private final Map<Long, ActivePassiveAckWaiter> overflow = new HashMap<>();
+  private long overflowed;
+
+  synchronized void put(long id, ActivePassiveAckWaiter waiter) {
+    if (inRing == 0) {
+      base = id;
+      limit = id;
+    }
+    if (id < base) {
+      if (limit - id > ring.length) {
+        // far older than anything in the ring, this should be rare enough not to matter
+        overflow.put(id, waiter);
+        overflowed += 1;
+        return;
+      }
+      base = id;
+    } else if (id >= limit) {
+      makeRoom(id + 1);
+      limit = id + 1;
+    }
+    ring[(int) id & mask] = waiter;
+    inRing += 1;
+  }
+
+  synchronized ActivePassiveAckWaiter get(long id) {
+    return find(id);
+  }
+
+  /**
+   * @return the waiter for each of the IDs, null where there is none
+   */
+  synchronized ActivePassiveAckWaiter[] getAll(long[] ids) {
+    ActivePassiveAckWaiter[] found = new ActivePassiveAckWaiter[ids.length];
+    for (int i = 0; i < ids.length; ++i) {
+      found[i] = find(ids[i]);
+    }
+    return found;
+  }
+
+  synchronized ActivePassiveAckWaiter remove(long id) {
+    return retire(id);
+  }
+
+  synchronized void removeAll(long[] ids, int count) {
+    for (int i = 0; i < count; ++i) {
+      retire(ids[i]);
+    }
+  }
+
+  synchronized Map<Long, ActivePassiveAckWaiter> snapshot() {
+    Map<Long, ActivePassiveAckWaiter> copy = new LinkedHashMap<>(overflow);
+    for (long id = base; id < limit; ++id) {
+      ActivePassiveAckWaiter waiter = ring[(int) id & mask];
+      if (waiter != null) {
+        copy.put(id, waiter);
+      }
+    }
+    return copy;
+  }
+
+  synchronized int size() {
+    return inRing + overflow.size();
+  }
+
+  synchronized boolean isEmpty() {
+    return size() == 0;
+  }
+
+  synchronized Map<String, Object> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("pending", inRing + overflow.size());
+    state.put("window", limit - base);
+    state.put("capacity", ring.length);
+    state.put("overflowPending", overflow.size());
+    state.put("overflowed", overflowed);
+    return state;
+  }
+
+  private ActivePassiveAckWaiter find(long id) {
+    if (id >= base && id < limit) {
+      return ring[(int) id & mask];
+    }
+    return overflow.isEmpty() ? null : overflow.get(id);
+  }
+
+  private ActivePassiveAckWaiter retire(long id) {
+    if (id >= base && id < limit) {
+      int slot = (int) id & mask;
+      ActivePassiveAckWaiter waiter = ring[slot];
+      if (waiter != null) {
+        ring[slot] = null;
+        inRing -= 1;
+        if (id == base) {
+          advanceBase();
+        }
+      }
+      return waiter;
+    }
+    return overflow.isEmpty() ? null : overflow.remove(id);
+  }
+
+  private void advanceBase() {
+    while (base < limit && ring[(int) base & mask] == null) {
+      base += 1;
+    }
+  }
+
+  private void makeRoom(long newLimit) {
+    while (newLimit - base > ring.length) {
+      if (ring.length < MAX_CAPACITY) {
+        grow();
+      } else {
+        // move the oldest waiter aside so the window can slide past it
+        int slot = (int) base & mask;
+        ActivePassiveAckWaiter waiter = ring[slot];
+        if (waiter != null) {
+          ring[slot] = null;
+          inRing -= 1;
+          overflow.put(base, waiter);
+          overflowed += 1;
+        }
+        base += 1;
+        advanceBase();
+        if (inRing == 0) {
+          base = newLimit - 1;
+        }
+      }
+    }
+  }
+
+  private void grow() {
+    ActivePassiveAckWaiter[] bigger = new ActivePassiveAckWaiter[ring.length * 2];
+    int biggerMask = bigger.length - 1;
+    for (long id = base; id < limit; ++id) {
+      bigger[(int) id & biggerMask] = ring[(int) id & mask];
+    }
+    ring = bigger;
+    mask = biggerMask;
+  }
+}
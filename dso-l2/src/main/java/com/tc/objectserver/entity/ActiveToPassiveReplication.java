@@ -24,7 +24,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.tc.l2.ha.L2HAZapNodeRequestProcessor;
-import com.tc.l2.msg.ReplicationAckTuple;
 import com.tc.l2.msg.ReplicationMessageAck;
 import com.tc.l2.msg.ReplicationResultCode;
 import com.tc.l2.msg.SyncReplicationActivity;
@@ -34,6 +33,9 @@ import com.tc.net.groups.GroupManager;
 import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.text.PrettyPrintable;
 import com.tc.util.Assert;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -53,10 +55,15 @@ import com.tc.object.session.SessionID;
 import com.tc.objectserver.handler.ReplicationReceivingAction;
 import java.util.AbstractSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
@@ -64,14 +71,18 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  *  This class lies idle until activated by setting the current passive nodes.  This should 
  *  occur only when the server is transitioning from passive-standby to active
+ *
+ *  Passive sync streams one entity at a time unless a sync parallelism greater than one is 
+ *  configured, in which case that many entities are synced to the passive at once and the sync 
+ *  payloads waiting on the passive are bounded by a memory budget.
  */
-public class ActiveToPassiveReplication implements PassiveReplicationBroker, GroupEventsListener {
+public class ActiveToPassiveReplication implements PassiveReplicationBroker, GroupEventsListener, PrettyPrintable {
   
   private static final Logger LOGGER = LoggerFactory.getLogger(ActiveToPassiveReplication.class);
   private boolean activated = false;
   private final Map<NodeID, SessionID> passiveNodes = new ConcurrentHashMap<>();
   private final Set<NodeID> standByNodes = new HashSet<>();
-  private final ConcurrentHashMap<SyncReplicationActivity.ActivityID, ActivePassiveAckWaiter> waiters = new ConcurrentHashMap<>();
+  private final AckWaiterWindow waiters = new AckWaiterWindow();
   private final ReplicationSender replicationSender;
   private final ExecutorService passiveSyncPool = Executors.newCachedThreadPool();
   private final EntityPersistor persistor;
@@ -82,8 +93,19 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   private final Sink<ReplicationReceivingAction> receiveHandler;
   private final AtomicLong sessionMaker = new AtomicLong();
   private final Map<NodeID, Integer> lane = new ConcurrentHashMap<>();
+  private final int syncParallelism;
+  private final SyncBudget syncBudget;
+  private final Map<SessionID, SyncProgress> syncProgress = new ConcurrentHashMap<>();
 
   public ActiveToPassiveReplication(ConsistencyManager consistencyMgr, ProcessTransactionHandler snapshotter, EntityPersistor persistor, ReplicationSender replicationSender, Sink<ReplicationReceivingAction> processor, GroupManager serverMatch) {
+    this(consistencyMgr, snapshotter, persistor, replicationSender, processor, serverMatch,
+        TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_PASSIVE_SYNC_PARALLELISM, 1),
+        TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.L2_PASSIVE_SYNC_MEMORY_BUDGET, 64L * 1024 * 1024));
+  }
+
+  public ActiveToPassiveReplication(ConsistencyManager consistencyMgr, ProcessTransactionHandler snapshotter, EntityPersistor persistor, ReplicationSender replicationSender, Sink<ReplicationReceivingAction> processor, GroupManager serverMatch, int syncParallelism, long syncMemoryBudget) {
+    this.syncParallelism = Math.max(1, syncParallelism);
+    this.syncBudget = (this.syncParallelism > 1 && syncMemoryBudget > 0) ? new SyncBudget(syncMemoryBudget) : null;
     this.consistencyMgr = consistencyMgr;
     this.replicationSender = replicationSender;
     this.persistor = persistor;
@@ -167,11 +189,15 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
     executePassiveSync(newNode, session);
   }
   /**
-   * Using an executor service here to sync multiple passives at once
+   * Using an executor service here to sync multiple passives at once and, when configured, 
+   * multiple entities to each passive
    * @param newNode
    */
   private void executePassiveSync(final NodeID newNode, SessionID session) {
     passiveSyncPool.execute(() -> {
+      SyncProgress progress = new SyncProgress(newNode);
+      syncProgress.values().removeIf(p->p.node.equals(newNode));
+      syncProgress.put(session, progress);
       // start passive sync message
       LOGGER.debug("starting sync for " + newNode + " on session " + session);
       Iterable<ManagedEntity> e = snapshotter.snapshotEntityList(new Consumer<List<ManagedEntity>>() {
@@ -188,21 +214,67 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
               tuplesForCreation.add(data);              
             }
           }
+          progress.entities = sortedEntities.size();
           replicateActivity(SyncReplicationActivity.
               createStartSyncMessage(tuplesForCreation.
                   toArray(new SyncReplicationActivity.EntityCreationTuple[tuplesForCreation.size()])), Collections.singleton(session)).waitForCompleted();
         }}
       );
-      for (ManagedEntity entity : e) {
-        LOGGER.debug("starting sync for entity " + newNode + "/" + entity.getID());
-        entity.sync(session);
-        LOGGER.debug("ending sync for entity " + newNode + "/" + entity.getID());
+      if (!syncEntities(e, newNode, session, progress)) {
+        return;
       }
       //  passive sync done message.  causes passive to go into passive standby mode
       LOGGER.debug("ending sync " + newNode);
       replicateActivity(SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(replicateEntityPersistor())), Collections.singleton(session)).waitForCompleted();
+      progress.finished();
+      LOGGER.info("Sync to " + newNode + " finished " + progress);
     });
   }
+
+  /**
+   * Entities are handed out to sync workers one at a time in snapshot order.  With a parallelism of 
+   * one the calling thread is the only worker and entities are synced one after the other.
+   * 
+   * @return false if the sync was interrupted
+   */
+  private boolean syncEntities(Iterable<ManagedEntity> entities, NodeID newNode, SessionID session, SyncProgress progress) {
+    Iterator<ManagedEntity> next = entities.iterator();
+    Runnable worker = ()->{
+      while (true) {
+        ManagedEntity entity;
+        synchronized (next) {
+          if (!next.hasNext()) {
+            return;
+          }
+          entity = next.next();
+        }
+        LOGGER.debug("starting sync for entity " + newNode + "/" + entity.getID());
+        entity.sync(session);
+        progress.entitySynced();
+        LOGGER.debug("ending sync for entity " + newNode + "/" + entity.getID());
+      }
+    };
+    if (syncParallelism == 1) {
+      worker.run();
+      return true;
+    }
+    List<Future<?>> workers = new ArrayList<>(syncParallelism);
+    for (int x = 0; x < syncParallelism; x++) {
+      workers.add(passiveSyncPool.submit(worker));
+    }
+    try {
+      for (Future<?> f : workers) {
+        f.get();
+      }
+      return true;
+    } catch (InterruptedException ie) {
+      LOGGER.info("interrupted while syncing " + newNode);
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException ee) {
+      throw new RuntimeException(ee.getCause());
+    }
+  }
   
   private byte[] replicateEntityPersistor() {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -220,32 +292,29 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   public void batchAckReceived(ReplicationMessageAck context) {
     NodeID messageFrom = context.messageFrom();
     this.receiveHandler.addToSink(new ReplicationReceivingAction(lane.get(messageFrom), ()->{
-      for (ReplicationAckTuple tuple : context.getBatch()) {
-        if (ReplicationResultCode.RECEIVED == tuple.result) {
-          ActivePassiveAckWaiter waiter = waiters.get(tuple.respondTo);
-          if (null != waiter) {
-            waiter.didReceiveOnPassive(messageFrom);
-          }
-        } else {
+      long[] ids = context.getRespondTo();
+      ReplicationResultCode[] results = context.getResults();
+      //  look the whole batch up at once and retire the finished waiters at once, the waiters 
+      //  themselves are notified without holding the window
+      ActivePassiveAckWaiter[] found = waiters.getAll(ids);
+      long[] done = new long[ids.length];
+      int finished = 0;
+      for (int i = 0; i < ids.length; ++i) {
+        ActivePassiveAckWaiter waiter = found[i];
+        if (null == waiter) {
+          continue;
+        }
+        if (ReplicationResultCode.RECEIVED == results[i]) {
+          waiter.didReceiveOnPassive(messageFrom);
+        } else if (waiter.didCompleteOnPassive(messageFrom, results[i])) {
           // This is a normal completion.
-          internalAckCompleted(tuple.respondTo, messageFrom, tuple.result);
+          done[finished++] = ids[i];
         }
       }
-    }));
-  }
-
-  /**
-   * This internal handling for completed is split out since it happens for both completed acks but also situations which
-   * implies no ack is forthcoming (the passive disappearing, for example).
-   */
-  private void internalAckCompleted(SyncReplicationActivity.ActivityID activityID, NodeID passive, ReplicationResultCode payload) {
-    ActivePassiveAckWaiter waiter = waiters.get(activityID);
-    if (null != waiter) {
-      boolean shouldDiscardWaiter = waiter.didCompleteOnPassive(passive, payload);
-      if (shouldDiscardWaiter) {
-        waiters.remove(activityID);
+      if (finished > 0) {
+        waiters.removeAll(done, finished);
       }
-    }
+    }));
   }
 
   @Override
@@ -268,11 +337,28 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   public ActivePassiveAckWaiter replicateActivity(SyncReplicationActivity activity, Set<SessionID> all) {
     ActivePassiveAckWaiter waiter = new ActivePassiveAckWaiter(this.passiveNodes, all, this);
     if (!all.isEmpty()) {
-      SyncReplicationActivity.ActivityID activityID = activity.getActivityID();
+      if (SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD == activity.getActivityType()) {
+        long size = activity.getExtendedData().remaining();
+        for (SessionID node : all) {
+          SyncProgress progress = syncProgress.get(node);
+          if (progress != null) {
+            progress.payloadSent(size);
+          }
+        }
+        if (syncBudget != null) {
+          //  held until the passive is done with the payload, see the budget
+          syncBudget.acquire(size);
+          waiter.runWhenCompleted(()->syncBudget.release(size));
+        }
+      }
+      long activityID = activity.getActivityID().id;
       waiters.put(activityID, waiter);
       // Note that we want to explicitly create the ReplicationEnvelope using a different helper if it is a local flush
       //  command.
       boolean isLocalFlush = (SyncReplicationActivity.ActivityType.FLUSH_LOCAL_PIPELINE == activity.getActivityType());
+      if (!isLocalFlush && all.size() > 1) {
+        activity.shareEncoding();
+      }
       for (SessionID node : all) {
         if (!isLocalFlush) {
           // This isn't local-only so try to replicate.
@@ -307,6 +393,7 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
 //  a double ack locally but that is ok.  acknowledge is loose and can tolerate it. 
   //  remove the passive node from the sender first.  nothing else is going out
       if (passiveNodes.remove(nodeID, session)) {
+        syncProgress.remove(session);
         removePassiveSession(session);
         LOGGER.info("removing passive: {}", nodeID);
       }
@@ -315,11 +402,9 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   
   private void removePassiveSession(SessionID session) {
     this.replicationSender.removePassive(session);
-    Iterator<Map.Entry<SyncReplicationActivity.ActivityID, ActivePassiveAckWaiter>> scan = waiters.entrySet().iterator();
-    while (scan.hasNext()) {
-      Map.Entry<SyncReplicationActivity.ActivityID, ActivePassiveAckWaiter> e = scan.next();
+    for (Map.Entry<Long, ActivePassiveAckWaiter> e : waiters.snapshot().entrySet()) {
       if (e.getValue().failedToSendToPassive(session)) {
-        scan.remove();
+        waiters.remove(e.getKey());
       }
     }
   }
@@ -343,8 +428,112 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
       standByNodes.notifyAll();
     }
   }
+  @Override
+  public Map<String, ?> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("className", this.getClass().getName());
+    map.put("passives", new ArrayList<>(passiveNodes.keySet()).toString());
+    map.put("pendingReplication", waiters.size());
+    map.put("ackWindow", waiters.getStateMap());
+    map.put("syncParallelism", syncParallelism);
+    if (syncBudget != null) {
+      map.put("syncMemoryBudget", syncBudget.limit);
+      map.put("syncMemoryInUse", syncBudget.inUse());
+    }
+    Map<String, Object> syncs = new LinkedHashMap<>();
+    for (SyncProgress progress : syncProgress.values()) {
+      syncs.put(progress.node.toString(), progress.getStateMap());
+    }
+    map.put("passiveSync", syncs);
+    map.put("replication", replicationSender.getStateMap());
+    return map;
+  }
+
+  /**
+   * Bounds the bytes of sync payloads sent but not yet completed by the passive.  A payload 
+   * bigger than the whole budget is let through on its own so it can't stall the sync.
+   */
+  private static class SyncBudget {
+    private final long limit;
+    private long used;
+
+    SyncBudget(long limit) {
+      this.limit = limit;
+    }
+
+    synchronized void acquire(long bytes) {
+      boolean interrupted = false;
+      while (used > 0 && used + bytes > limit) {
+        try {
+          wait();
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+      }
+      used += bytes;
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized void release(long bytes) {
+      used -= bytes;
+      notifyAll();
+    }
+
+    synchronized long inUse() {
+      return used;
+    }
+  }
+
+  private static class SyncProgress {
+    private final NodeID node;
+    private final long start = System.nanoTime();
+    private volatile int entities;
+    private final AtomicInteger syncedEntities = new AtomicInteger();
+    private final LongAdder payloads = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private volatile long end;
+
+    SyncProgress(NodeID node) {
+      this.node = node;
+    }
+
+    void entitySynced() {
+      syncedEntities.incrementAndGet();
+    }
+
+    void payloadSent(long size) {
+      payloads.increment();
+      bytes.add(size);
+    }
+
+    void finished() {
+      end = System.nanoTime();
+    }
+
+    Map<String, Object> getStateMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      long elapsed = (end == 0 ? System.nanoTime() : end) - start;
+      long sent = bytes.sum();
+      map.put("finished", end != 0);
+      map.put("entities", entities);
+      map.put("syncedEntities", syncedEntities.get());
+      map.put("payloads", payloads.sum());
+      map.put("bytes", sent);
+      map.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+      map.put("bytesPerSecond", elapsed > 0 ? (long)(sent * (double)TimeUnit.SECONDS.toNanos(1) / elapsed) : 0L);
+      return map;
+    }
+
+    @Override
+    public String toString() {
+      return getStateMap().toString();
+    }
+  }
+
   // for test
-  Map<SyncReplicationActivity.ActivityID, ActivePassiveAckWaiter> getWaiters() {
+  AckWaiterWindow getWaiters() {
     return waiters;
   }
   // for test
@@ -37,9 +37,9 @@ public class BarrierCompletion implements SimpleCompletion {
     }
   }
   
-  public void waitForCompletion(long time, TimeUnit units) {
+  public boolean waitForCompletion(long time, TimeUnit units) {
     try {
-      gate.tryAcquire(time, units);
+      return gate.tryAcquire(time, units);
     } catch (InterruptedException ie) {
       throw new RuntimeException(ie);
     }
@@ -77,13 +77,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -121,6 +125,7 @@ public class ManagedEntityImpl implements ManagedEntity {
   private final List<LifecycleListener> createListener = new CopyOnWriteArrayList<>();
 
   private final MessageCodec<EntityMessage, EntityResponse> codec;
+  private final MessageDecoder decoder;
   private final SyncMessageCodec<EntityMessage> syncCodec;
   private volatile ActiveServerEntity<EntityMessage, EntityResponse> activeServerEntity;
   private volatile ConcurrencyStrategy<EntityMessage> concurrencyStrategy;
@@ -129,6 +134,10 @@ public class ManagedEntityImpl implements ManagedEntity {
 
   private final DefermentQueue<SchedulingRunnable> runnables = new DefermentQueue<>(TCPropertiesImpl.getProperties()
         .getInt(TCPropertiesConsts.ENTITY_DEFERMENT_QUEUE_SIZE, 1024));
+  //  off by default, the deferment queue is then unbounded.  client invokes are queued past the limit, which only
+  //  counts them as over it, and never see busy
+  private final boolean refuseInvokes = TCPropertiesImpl.getProperties()
+        .getBoolean(TCPropertiesConsts.ENTITY_DEFERMENT_REFUSE_INVOKES, false);
 
   private volatile PassiveServerEntity<EntityMessage, EntityResponse> passiveServerEntity;
   //  reconnect access has to be exclusive.  it is out-of-band from normal invoke access
@@ -164,6 +173,7 @@ public class ManagedEntityImpl implements ManagedEntity {
     this.clientReferenceCount = canDelete ? 0 : ManagedEntity.UNDELETABLE_ENTITY;
     registry.setOwningEntity(this);
     this.codec = factory.getMessageCodec();
+    this.decoder = MessageDecoder.forCodec(this.codec);
     this.syncCodec = factory.getSyncMessageCodec();
   }
 
@@ -306,6 +316,7 @@ public class ManagedEntityImpl implements ManagedEntity {
         Assert.assertTrue(Thread.currentThread().getName().contains(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE));
       } else {
         Assert.assertTrue(Thread.currentThread().getName().contains(ServerConfigurationContext.PASSIVE_REPLICATION_STAGE) ||
+          Thread.currentThread().getName().contains(ServerConfigurationContext.PASSIVE_REPLICATION_APPLY_STAGE) ||
           Thread.currentThread().getName().contains(ServerConfigurationContext.L2_STATE_CHANGE_STAGE));
       }
     }
@@ -346,7 +357,7 @@ public class ManagedEntityImpl implements ManagedEntity {
       if (sr != null) {
         sr.start();
       }
-      runnables.pause();
+      runnables.awaitCleared();
     }
     return true;
   }
@@ -355,12 +366,18 @@ public class ManagedEntityImpl implements ManagedEntity {
     Trace.activeTrace().log("ManagedEntityImpl.processInvokeRequest");
     if (isInActiveState) {
       try {
-        key = this.concurrencyStrategy.concurrencyKey(message.decodeMessage(raw->this.codec.decodeMessage(raw)));
+        key = this.concurrencyStrategy.concurrencyKey(message.decodeMessage(this.decoder));
       } catch (MessageCodecException codec) {
         // use the universal key because this is going to result in error downstream
         key = ConcurrencyStrategy.UNIVERSAL_KEY;
       }
     }
+    if (refuseInvokes && message.canBeBusy()
+        && runnables.refuse(request.getNodeID(), request.getTransaction(), request.getOldestTransactionOnClient())) {
+//  deferring behind a management action with a full queue, or still refusing this client, push back as busy
+      response.failure(ServerException.createBusyException(id));
+      return;
+    }
     int locked = key;
     if (response instanceof StatisticsCapture) {
       ((StatisticsCapture)response).schedule();
@@ -452,7 +469,7 @@ public class ManagedEntityImpl implements ManagedEntity {
 
   private EntityMessage decodeMessage(MessagePayload payload, ResultCapture capture) {
     try {
-      return payload.decodeMessage(r->codec.decodeMessage(r));
+      return payload.decodeMessage(decoder);
     } catch (MessageCodecException ce) {
       capture.failure(ServerException.createMessageCodecException(id, ce));
     }
@@ -546,6 +563,7 @@ public class ManagedEntityImpl implements ManagedEntity {
   }
 
   private void disconnectClientFromEntity(ClientID cid) {
+    this.runnables.forget(cid);
     if (isActive()) {
       this.activeServerEntity.notifyDestroyed(new ClientSourceIdImpl(cid.toLong()));
       List<EntityDescriptor> eds = this.clientEntityStateManager.clientDisconnectedFromEntity(cid, this.fetchID);
@@ -1269,7 +1287,7 @@ public class ManagedEntityImpl implements ManagedEntity {
         if (logger.isDebugEnabled()) {
           try {
             if (request.getAction() == ServerEntityAction.INVOKE_ACTION) {
-              payload.decodeMessage(raw->codec.decodeMessage(raw));
+              payload.decodeMessage(decoder);
             }
           } catch (MessageCodecException codec) {
 
@@ -1295,7 +1313,7 @@ public class ManagedEntityImpl implements ManagedEntity {
       }
       if (isActive() && request.getAction() == ServerEntityAction.INVOKE_ACTION) {
         try {
-          ExecutionStrategy.Location loc = executionStrategy.getExecutionLocation(payload.decodeMessage(raw->codec.decodeMessage(raw)));
+          ExecutionStrategy.Location loc = executionStrategy.getExecutionLocation(payload.decodeMessage(decoder));
           if (loc != ExecutionStrategy.Location.IGNORE) {
             replicate = loc.runOnPassive();
           }
@@ -1355,18 +1373,32 @@ public class ManagedEntityImpl implements ManagedEntity {
     }
   };
 
+  /**
+   * Holds the requests scheduled while a management action has the entity to itself.  Never blocks the scheduling
+   * thread, once the limit is reached requests are queued past it and counted.  Unless refusing client invokes as busy
+   * has been turned on (see {@link #refuse(ClientID, TransactionID, TransactionID)}) the limit bounds nothing.
+   */
   private static class DefermentQueue<T> implements Iterable<T> {
-    private final LinkedList<T> queue = new LinkedList<>();
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
     private final int limit;
     private volatile boolean deferCleared = true;
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder overLimit = new LongAdder();
+    //  the last transaction refused for each client still refused everything it sends
+    private final Map<ClientID, TransactionID> refusing = new ConcurrentHashMap<>();
 
     public DefermentQueue(int limit) {
       this.limit = limit;
     }
 
     T checkDeferred() {
-      if (deferCleared && !queue.isEmpty()) {
-        return queue.pop();
+      if (deferCleared) {
+        T next = queue.poll();
+        if (next != null) {
+          size.decrementAndGet();
+        }
+        return next;
       }
       return null;
     }
@@ -1395,8 +1427,8 @@ public class ManagedEntityImpl implements ManagedEntity {
     boolean offer(T msg) {
       if (!deferCleared || !queue.isEmpty()) {
         queue.add(msg);
-        if (queue.size() == limit) {
-          pause();
+        if (size.incrementAndGet() > limit) {
+          overLimit.increment();
         }
         return true;
       } else {
@@ -1404,6 +1436,46 @@ public class ManagedEntityImpl implements ManagedEntity {
       }
     }
 
+    /**
+     * @return true if deferring and already holding as many requests as the limit allows
+     */
+    boolean isFull() {
+      return !deferCleared && size.get() >= limit;
+    }
+
+    /**
+     * Refuses a client request once the queue is full, and from then on every later request from the same client
+     * until it has retired the last one refused.  Anything the client sent before hearing it was refused is turned
+     * away too, so it can never run ahead of a refused request.
+     *
+     * @return true if the request should be failed as busy
+     */
+    boolean refuse(ClientID client, TransactionID transaction, TransactionID oldestOnClient) {
+      TransactionID last = refusing.get(client);
+      if (last != null) {
+        if (oldestOnClient.isNull() || oldestOnClient.toLong() > last.toLong()) {
+          refusing.remove(client, last);
+        } else {
+          refused(client, transaction);
+          return true;
+        }
+      }
+      if (isFull()) {
+        refused(client, transaction);
+        return true;
+      }
+      return false;
+    }
+
+    private void refused(ClientID client, TransactionID transaction) {
+      refusing.put(client, transaction);
+      refused.increment();
+    }
+
+    void forget(ClientID client) {
+      refusing.remove(client);
+    }
+
     @Override
     public Iterator<T> iterator() {
       return new Iterator<T>() {
@@ -1422,7 +1494,8 @@ public class ManagedEntityImpl implements ManagedEntity {
       };
     }
 
-    private synchronized void pause() {
+//  only for callers that need the queue drained, like a sync or a flush, scheduling never waits here
+    private synchronized void awaitCleared() {
       boolean interrupted = false;
       while (!deferCleared) {
         try {
@@ -1439,6 +1512,11 @@ public class ManagedEntityImpl implements ManagedEntity {
     private Map<String, Object> getState() {
       Map<String, Object> map = new LinkedHashMap<>();
       map.put("deferring", !this.deferCleared);
+      map.put("size", size.get());
+      map.put("limit", limit);
+      map.put("refusedAsBusy", refused.sum());
+      map.put("queuedOverLimit", overLimit.sum());
+      map.put("refusingClients", refusing.size());
       map.put("queue", queue.stream().map(String::valueOf).collect(Collectors.toList()));
       return map;
     }
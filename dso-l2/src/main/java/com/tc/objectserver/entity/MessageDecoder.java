@@ -18,7 +18,10 @@
  */
 package com.tc.objectserver.entity;
 
+import com.tc.spi.ByteBufferMessageDecoder;
+import java.nio.ByteBuffer;
 import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 
 /**
@@ -26,4 +29,35 @@ import org.terracotta.entity.MessageCodecException;
  */
 public interface MessageDecoder {
   EntityMessage decode(byte[] raw) throws MessageCodecException;
+
+  /**
+   * Decode from a read-only view of the received bytes.  Decoders which can only work from an array get a copy.
+   */
+  default EntityMessage decode(ByteBuffer raw) throws MessageCodecException {
+    byte[] copy = new byte[raw.remaining()];
+    raw.get(copy);
+    return decode(copy);
+  }
+
+  /**
+   * A decoder for the codec which decodes straight from the received bytes if the codec supports it.
+   */
+  static MessageDecoder forCodec(MessageCodec<? extends EntityMessage, ?> codec) {
+    if (codec instanceof ByteBufferMessageDecoder) {
+      ByteBufferMessageDecoder<?> direct = (ByteBufferMessageDecoder<?>)codec;
+      return new MessageDecoder() {
+        @Override
+        public EntityMessage decode(byte[] raw) throws MessageCodecException {
+          return codec.decodeMessage(raw);
+        }
+
+        @Override
+        public EntityMessage decode(ByteBuffer raw) throws MessageCodecException {
+          return direct.decodeMessage(raw);
+        }
+      };
+    } else {
+      return raw -> codec.decodeMessage(raw);
+    }
+  }
 }
@@ -111,7 +111,8 @@ public class MessagePayload {
     }
     try {
       if (message == null) {
-        message = codec.decode(convertRawToBytes());
+        // the view is handed out rather than a copy, the codec either decodes straight from it or copies it itself
+        message = codec.decode(TCByteBufferFactory.readOnlyView(raw));
       }
       return message;
     } catch (MessageCodecException ce) {
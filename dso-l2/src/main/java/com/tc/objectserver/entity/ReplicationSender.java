@@ -32,7 +32,9 @@ import com.tc.objectserver.handler.ReplicationSendingAction;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -50,6 +52,12 @@ public class ReplicationSender {
   // Find out how many messages we should keep in-flight and our maximum batch size.
   private static int maximumBatchSize = TCPropertiesImpl.getProperties().getInt("active-passive.batchsize", DEFAULT_BATCH_LIMIT);
   private static int idealMessagesInFlight = TCPropertiesImpl.getProperties().getInt("active-passive.inflight", DEFAULT_INFLIGHT_MESSAGES);
+  // If above active-passive.inflight, the number of messages in flight adapts between the two to what the link to
+  //  each passive can take, and batches grow and shrink with it.
+  private static int maximumMessagesInFlight = TCPropertiesImpl.getProperties().getInt("active-passive.inflight.max", 0);
+  // Batches carrying at least this many payload bytes are compressed on the wire, 0 to never compress.  Only when it is
+  //  on do batches use the encoding with a compression flag, which every server in the stripe must understand.
+  private static int compressionThreshold = TCPropertiesImpl.getProperties().getInt("active-passive.compression.threshold", 0);
   //  this is all single threaded.  If there is any attempt to make this multi-threaded,
   //  control structures must be fixed
   private final GroupManager<AbstractGroupMessage> group;
@@ -127,6 +135,14 @@ public class ReplicationSender {
       logger.debug("ignoring: " + session + " no longer exists");
     }
   }
+  public Map<String, Object> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    for (SyncState sync : filtering.values()) {
+      state.put(sync.target.toString(), sync.batchContext.getStateMap());
+    }
+    return state;
+  }
+
 // for testing only
   boolean isSyncOccuring(SessionID origin) {
     SyncState state = filtering.get(origin);
@@ -140,19 +156,18 @@ public class ReplicationSender {
     private final NodeID target;
     // liveSet is the total set of entities which we believe have finished syncing and fully exist on the passive.
     private final Set<FetchID> liveFetch = new HashSet<>();
-    // syncdID is the set of concurrency keys, of the entity syncingID, which we believe have finished syncing and fully
-    //  exist on the passive.
-    private final Set<Integer> syncdID = new HashSet<>();
-    // syncingID is the entity currently being synced to this passive.
-    private FetchID syncingFetch = FetchID.NULL_ID;
-    // syncingConcurrency is the concurrency key we are currently syncing to syncingID, 0 if none is in progress.
-    private int syncingConcurrency = -1;
+    // syncing holds the entities currently being synced to this passive, more than one when the active syncs entities
+    //  in parallel.
+    private final Map<FetchID, EntitySync> syncing = new HashMap<>();
     // begun is true when we decide to start syncing to this passive node (triggered by SYNC_BEGIN).
     boolean begun = false;
     // complete is true when we decide that syncing to this node is now complete (triggered by SYNC_END).
     boolean complete = false;
     private SyncReplicationActivity.ActivityType lastSeen;
     private SyncReplicationActivity.ActivityType lastSent;
+    // the sync messages of each entity are validated as a sequence of their own
+    private final Map<FetchID, SyncReplicationActivity.ActivityType> lastSeenForEntity = new HashMap<>();
+    private final Map<FetchID, SyncReplicationActivity.ActivityType> lastSentForEntity = new HashMap<>();
 
     private final GroupMessageBatchContext<ReplicationMessage, SyncReplicationActivity> batchContext;
     
@@ -164,7 +179,8 @@ public class ReplicationSender {
       this.session = nodeToId;
       this.executionLane = lane;
       
-      this.batchContext = new GroupMessageBatchContext<>(ReplicationMessage::createActivityContainer, group, target, maximumBatchSize, idealMessagesInFlight, (node)->flushBatch());  
+      this.batchContext = new GroupMessageBatchContext<>((activity)->ReplicationMessage.createActivityContainer(activity, compressionThreshold),
+          group, target, maximumBatchSize, idealMessagesInFlight, maximumMessagesInFlight, (node)->flushBatch());
     }
     
     private boolean isSameSession(SessionID session) {
@@ -215,39 +231,34 @@ public class ReplicationSender {
             if (liveFetch.contains(activity.getFetchID())) {
               return false;
             } else {
-              syncingFetch = activity.getFetchID();
-              syncdID.clear();
-              syncdID.add(ConcurrencyStrategy.MANAGEMENT_KEY);
-              syncdID.add(ConcurrencyStrategy.UNIVERSAL_KEY);
-              syncingConcurrency = 0;
+              syncing.put(activity.getFetchID(), new EntitySync());
               return true;
             }
-          case SYNC_ENTITY_CONCURRENCY_BEGIN:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              Assert.assertEquals(syncingConcurrency, 0);
-              syncingConcurrency = activity.getConcurrency();
+          case SYNC_ENTITY_CONCURRENCY_BEGIN: {
+            EntitySync entity = syncing.get(activity.getFetchID());
+            if (entity != null) {
+              Assert.assertEquals(entity.syncingConcurrency, 0);
+              entity.syncingConcurrency = activity.getConcurrency();
               return true;
             } else {
               return false;
             }
+          }
           case SYNC_ENTITY_CONCURRENCY_PAYLOAD:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              return true;
-            } else {
-              return false;
-            }
-          case SYNC_ENTITY_CONCURRENCY_END:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              syncdID.add(syncingConcurrency);
-              syncingConcurrency = 0;
+            return syncing.containsKey(activity.getFetchID());
+          case SYNC_ENTITY_CONCURRENCY_END: {
+            EntitySync entity = syncing.get(activity.getFetchID());
+            if (entity != null) {
+              entity.syncdID.add(entity.syncingConcurrency);
+              entity.syncingConcurrency = 0;
               return true;
             } else {
               return false;
             }
+          }
           case SYNC_ENTITY_END:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              liveFetch.add(syncingFetch);
-              syncingFetch = FetchID.NULL_ID;
+            if (syncing.remove(activity.getFetchID()) != null) {
+              liveFetch.add(activity.getFetchID());
               return true;
             } else {
               return false;
@@ -256,8 +267,7 @@ public class ReplicationSender {
  //  sync is complete, clear all collections and let everything pass
             complete = true;
             liveFetch.clear();
-            syncdID.clear();
-            syncingFetch = FetchID.NULL_ID;
+            syncing.clear();
             return true;
           case CREATE_ENTITY:
 // if this create came through, it is not part of the snapshot set so everything
@@ -272,20 +282,22 @@ public class ReplicationSender {
           case DISCONNECT_CLIENT:
           case DESTROY_ENTITY:
             return begun;
-          case INVOKE_ACTION:
+          case INVOKE_ACTION: {
+            EntitySync entity = syncing.get(activity.getFetchID());
             if (liveFetch.contains(activity.getFetchID())) {
               return true;
-            } else if (syncingFetch.equals(activity.getFetchID())) {
+            } else if (entity != null) {
               int concurrencyKey = activity.getConcurrency();
-              if (syncingConcurrency == concurrencyKey) {
+              if (entity.syncingConcurrency == concurrencyKey) {
 //  special case.  passive will apply this after sync of the key is complete
                 return true;
               }
-              return syncdID.contains(concurrencyKey);
+              return entity.syncdID.contains(concurrencyKey);
             } else {
 // hasn't been sync'd yet.  state will be captured in sync
               return false;
             }
+          }
           case LOCAL_ENTITY_GC:
           case FLUSH_LOCAL_PIPELINE:
           case ORDERING_PLACEHOLDER:
@@ -302,14 +314,37 @@ public class ReplicationSender {
     public SyncReplicationActivity.ActivityType validateInput(SyncReplicationActivity activity) {
       SyncReplicationActivity.ActivityType type = activity.getActivityType();
       if (activity.isSyncActivity()) {
-        lastSeen = validate(type, lastSeen);
+        lastSeen = validate(activity, lastSeen, lastSeenForEntity);
       }
       return type;
     }
     
     public void validateSending(SyncReplicationActivity activity) {
       if (activity.isSyncActivity()) {
-        lastSent = validate(activity.getActivityType(), lastSent);
+        lastSent = validate(activity, lastSent, lastSentForEntity);
+      }
+    }
+
+    /**
+     * Messages for a single entity are checked against the last one seen for that entity, as if it was the only 
+     * entity syncing, everything else against the last message for the whole sync.
+     */
+    private SyncReplicationActivity.ActivityType validate(SyncReplicationActivity activity, SyncReplicationActivity.ActivityType last, Map<FetchID, SyncReplicationActivity.ActivityType> lastForEntity) {
+      SyncReplicationActivity.ActivityType type = activity.getActivityType();
+      switch (type) {
+        case SYNC_START:
+        case SYNC_BEGIN:
+          return validate(type, last);
+        case SYNC_END:
+          for (SyncReplicationActivity.ActivityType entity : lastForEntity.values()) {
+            Assert.assertTrue(type + " " + entity, SyncReplicationActivity.ActivityType.SYNC_ENTITY_END == entity);
+          }
+          lastForEntity.clear();
+          return validate(type, last);
+        default:
+          SyncReplicationActivity.ActivityType compare = lastForEntity.getOrDefault(activity.getFetchID(), last);
+          lastForEntity.put(activity.getFetchID(), validate(type, compare));
+          return last;
       }
     }
     
@@ -334,7 +369,7 @@ public class ReplicationSender {
           Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_END).contains(compare));
           break;
         case SYNC_END:
-          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_END, SyncReplicationActivity.ActivityType.SYNC_BEGIN).contains(compare));
+          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_BEGIN).contains(compare));
           break;
         case SYNC_START:
           break;
@@ -363,4 +398,17 @@ public class ReplicationSender {
     }
 
   }
+
+  private static class EntitySync {
+    // syncdID is the set of concurrency keys of this entity which we believe have finished syncing and fully
+    //  exist on the passive.
+    private final Set<Integer> syncdID = new HashSet<>();
+    // syncingConcurrency is the concurrency key we are currently syncing, 0 if none is in progress.
+    private int syncingConcurrency = 0;
+
+    private EntitySync() {
+      syncdID.add(ConcurrencyStrategy.MANAGEMENT_KEY);
+      syncdID.add(ConcurrencyStrategy.UNIVERSAL_KEY);
+    }
+  }
 }
@@ -18,6 +18,7 @@
  */
 package com.tc.objectserver.entity;
 
+import com.tc.async.api.MonitoredEventContext;
 import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.async.api.Sink;
 import com.tc.async.api.StageManager;
@@ -37,6 +38,7 @@ import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -49,7 +51,8 @@ public class RequestProcessor {
   private PassiveReplicationBroker passives;
   private final Sink<EntityRequest> requestExecution;
   private final Sink<EntityRequest> syncExecution;
-  private boolean isActive = false;
+  private volatile boolean isActive = false;
+  private final ReentrantLock[] scheduleStripes = createStripes();
   private static final Logger PLOGGER = LoggerFactory.getLogger(MessagePayload.class);
   
   public RequestProcessor(StageManager stageManager, int maxQueueSize, boolean use_direct) {
@@ -83,9 +86,19 @@ public class RequestProcessor {
     this.passives = passives;
   }
 
-//  this is synchronized because both PTH and Request Processor thread has access to this method.  the replication and schduling on the executor needs
-//  to happen in the same order.  synchronizing this method enforces that
-  public synchronized void scheduleRequest(boolean inSync, EntityID eid, long version, FetchID fetchID, ServerEntityRequest request, MessagePayload payload, Consumer<ActivePassiveAckWaiter> call, boolean replicate, int concurrencyKey) {
+  private static ReentrantLock[] createStripes() {
+    int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 2);
+    ReentrantLock[] stripes = new ReentrantLock[count];
+    for (int x = 0; x < count; x++) {
+      stripes[x] = new ReentrantLock();
+    }
+    return stripes;
+  }
+
+//  both PTH and Request Processor thread have access to this method.  the replication and scheduling on the executor needs
+//  to happen in the same order for requests that share a scheduling key so insertion into the sink is guarded by a lock
+//  striped on that key.  requests on the management key flush every queue so they take every stripe, in order.
+  public void scheduleRequest(boolean inSync, EntityID eid, long version, FetchID fetchID, ServerEntityRequest request, MessagePayload payload, Consumer<ActivePassiveAckWaiter> call, boolean replicate, int concurrencyKey) {
     // Determine if this kind of action is one we want to replicate.
     final ServerEntityAction requestAction = (!replicate && request.requiresReceived()) ? ServerEntityAction.ORDER_PLACEHOLDER_ONLY : request.getAction();
     // We will try to replicate anything which isn't just a local flush operation.
@@ -108,12 +121,30 @@ public class RequestProcessor {
         : NoReplicationBroker.NOOP_WAITER;
     };
     
-    EntityRequest entityRequest =  new EntityRequest(eid, call, token, concurrencyKey, payload);
+    EntityRequest entityRequest =  new EntityRequest(eid, requestAction, call, token, concurrencyKey, payload);
+    Sink<EntityRequest> sink = inSync ? syncExecution : requestExecution;
 
-    if (inSync) {
-      syncExecution.addToSink(entityRequest);
+    if (entityRequest.flush()) {
+      for (ReentrantLock stripe : scheduleStripes) {
+        stripe.lock();
+      }
+      try {
+        sink.addToSink(entityRequest);
+      } finally {
+        for (int x = scheduleStripes.length - 1; x >= 0; x--) {
+          scheduleStripes[x].unlock();
+        }
+      }
     } else {
-      requestExecution.addToSink(entityRequest);
+      Object schedulingKey = entityRequest.getSchedulingKey();
+      int hash = (schedulingKey != null) ? schedulingKey.hashCode() : eid.hashCode();
+      ReentrantLock stripe = scheduleStripes[(hash ^ (hash >>> 16)) & (scheduleStripes.length - 1)];
+      stripe.lock();
+      try {
+        sink.addToSink(entityRequest);
+      } finally {
+        stripe.unlock();
+      }
     }
   }
 
@@ -142,15 +173,17 @@ public class RequestProcessor {
     return activity;
   }
   
-  public static class EntityRequest implements MultiThreadedEventContext, Runnable {
+  public static class EntityRequest implements MultiThreadedEventContext, MonitoredEventContext, Runnable {
     private final EntityID entity;
+    private final ServerEntityAction action;
     private final Consumer<ActivePassiveAckWaiter> invoke;
     private final int key;
     private final Supplier<ActivePassiveAckWaiter> waiter;
     private final MessagePayload debug;
 
-    EntityRequest(EntityID entity, Consumer<ActivePassiveAckWaiter> runnable, Supplier<ActivePassiveAckWaiter> waiter, int key, MessagePayload debug) {
+    EntityRequest(EntityID entity, ServerEntityAction action, Consumer<ActivePassiveAckWaiter> runnable, Supplier<ActivePassiveAckWaiter> waiter, int key, MessagePayload debug) {
       this.entity = entity;
+      this.action = action;
       this.invoke = runnable;
       this.key = key;
       this.waiter = waiter;
@@ -165,6 +198,11 @@ public class RequestProcessor {
 //  create some additional entropy so all entities are not ordered the same
       return key ^ entity.hashCode();
     }
+
+    @Override
+    public Object getMonitoringKey() {
+      return action;
+    }
 //  Runnable so handler can cast and execute
     @Override
     public void run() {
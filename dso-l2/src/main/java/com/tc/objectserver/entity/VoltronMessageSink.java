@@ -22,6 +22,7 @@ import com.tc.entity.MessageCodecSupplier;
 import com.tc.async.api.Sink;
 import com.tc.async.api.Stage;
 import com.tc.entity.NetworkVoltronEntityMessage;
+import com.tc.entity.NetworkVoltronEntityMultiMessage;
 import com.tc.entity.VoltronEntityMessage;
 import com.tc.net.core.TCComm;
 import com.tc.net.protocol.tcm.HydrateContext;
@@ -37,6 +38,9 @@ public class VoltronMessageSink extends TCMessageHydrateSink<VoltronEntityMessag
   private final MessageCodecSupplier codecSupplier;
   private final Stage<HydrateContext> helper;
   private final Sink<VoltronEntityMessage> dest;
+  // a batch of invokes is not itself a voltron message, once hydrated each invoke is passed on in the order it was sent
+  private final Sink<NetworkVoltronEntityMultiMessage> unpack;
+  private final TCMessageHydrateSink<NetworkVoltronEntityMultiMessage> batchHydrator;
   private static final Logger LOGGER = LoggerFactory.getLogger(VoltronMessageSink.class);
   private boolean always_hydrate = TCPropertiesImpl.getProperties()
                                                      .getBoolean(TCPropertiesConsts.L2_SEDA_STAGE_ALWAYS_HYDRATE, false);
@@ -46,22 +50,39 @@ public class VoltronMessageSink extends TCMessageHydrateSink<VoltronEntityMessag
     this.helper = helper;
     this.codecSupplier = codecSupplier;
     this.dest = destSink;
+    this.unpack = batch -> {
+      for (VoltronEntityMessage message : batch.getMessages()) {
+        destSink.addToSink(message);
+      }
+    };
+    this.batchHydrator = new TCMessageHydrateSink<>(this.unpack);
   }
 
   @Override
   public void putMessage(TCMessage message) { 
     if (message instanceof NetworkVoltronEntityMessage) {
       ((NetworkVoltronEntityMessage)message).setMessageCodecSupplier(codecSupplier);
-      if (always_hydrate || TCComm.hasPendingRead() || !helper.isEmpty()) {
+      if (shouldHydrateLater()) {
         helper.getSink().addToSink(new HydrateContext(message, this.dest));
       } else {
         super.putMessage(message);
       }
+    } else if (message instanceof NetworkVoltronEntityMultiMessage) {
+      ((NetworkVoltronEntityMultiMessage)message).setMessageCodecSupplier(codecSupplier);
+      if (shouldHydrateLater()) {
+        helper.getSink().addToSink(new HydrateContext(message, this.unpack));
+      } else {
+        batchHydrator.putMessage(message);
+      }
     } else {
       Assert.fail();
     }
   }
   
+  private boolean shouldHydrateLater() {
+    return always_hydrate || TCComm.hasPendingRead() || !helper.isEmpty();
+  }
+
   public void setAlwaysHydrate(boolean hydrate) {
     always_hydrate = hydrate;
   }
@@ -0,0 +1,172 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides when a {@link GroupMessageBatchContext} should stop batching and send.
+ * <p>
+ * The number of messages allowed in flight is adjusted AIMD style from the time each message takes from being handed
+ * to the group manager until the network reports it done: it grows by one per window of completions while that time
+ * stays near the best recently seen and is halved, at most once per window, when the smoothed time climbs past twice
+ * that.  While the window is full activities keep piling into the pending batch, so batches grow exactly when the link
+ * is busy and stay small, and cheap in latency, when it is not.  A batch is sent early regardless of the window once it
+ * holds more than the bandwidth delay product observed over the connection, there is no throughput to gain by letting
+ * it grow past what the link can carry in one round trip.
+ * <p>
+ * Not thread safe, the owning batch context calls it under its own lock.
+ */
+class AdaptiveBatchController {
+
+  private static final double  CONGESTION_FACTOR = 2.0;
+  private static final int     MIN_EPOCH_SAMPLES = 256;
+  private static final double  RATE_GAIN = 0.25;
+
+  private final int            min;
+  private final int            max;
+  private final long           minBatchBytes;
+  private final long           maxBatchBytes;
+  private final long           latencyFloor;
+
+  private double               window;
+  private boolean              limited;
+  private long                 smoothed;
+  private long                 baseline = Long.MAX_VALUE;
+  private long                 epochMin = Long.MAX_VALUE;
+  private long                 epochSamples;
+  private long                 sinceDecrease;
+  private long                 decreases;
+  // observed delivery rate, in bytes per nanosecond
+  private double               rate;
+  private long                 lastDone;
+  private long                 bytesInFlight;
+  private long                 earlyFlushes;
+
+  /**
+   * @param min smallest number of messages in flight the window will shrink to
+   * @param max largest number of messages in flight
+   * @param minBatchBytes batches smaller than this are never sent early
+   * @param maxBatchBytes batches larger than this are always sent
+   * @param latencyFloor completion times shorter than this, in nanoseconds, are never treated as congestion
+   */
+  AdaptiveBatchController(int min, int max, long minBatchBytes, long maxBatchBytes, long latencyFloor) {
+    if (min < 1 || max < min) {
+      throw new IllegalArgumentException("invalid window bounds min:" + min + " max:" + max);
+    }
+    this.min = min;
+    this.max = max;
+    this.minBatchBytes = minBatchBytes;
+    this.maxBatchBytes = maxBatchBytes;
+    this.latencyFloor = latencyFloor;
+    this.window = min;
+  }
+
+  /**
+   * @return true if the pending batch should be sent now
+   */
+  boolean shouldFlush(int messagesInFlight, int batchSize, int maximumBatchSize, long batchBytes) {
+    if (messagesInFlight < (int) window) {
+      return true;
+    }
+    limited = true;
+    if (batchSize >= maximumBatchSize || batchBytes >= getTargetBatchBytes()) {
+      earlyFlushes++;
+      return true;
+    }
+    return false;
+  }
+
+  void sent(long bytes) {
+    bytesInFlight += bytes;
+  }
+
+  /**
+   * @param bytes payload size of the completed message
+   * @param elapsed nanoseconds from send to network done
+   * @param messagesInFlight messages in flight, including this one
+   * @param now the current nanoTime
+   */
+  void done(long bytes, long elapsed, int messagesInFlight, long now) {
+    bytesInFlight -= bytes;
+    if (elapsed <= 0) {
+      return;
+    }
+    // with others queued behind it, the gap since the last completion is the time the link took for this one
+    long interval = (messagesInFlight > 1 && lastDone != 0) ? Math.min(now - lastDone, elapsed) : elapsed;
+    lastDone = now;
+    if (interval > 0 && bytes > 0) {
+      double sample = (double) bytes / interval;
+      rate = (rate == 0) ? sample : rate + (sample - rate) * RATE_GAIN;
+    }
+
+    smoothed = (smoothed == 0) ? elapsed : smoothed + ((elapsed - smoothed) >> 3);
+    baseline = Math.min(baseline, elapsed);
+    epochMin = Math.min(epochMin, elapsed);
+    // let the baseline drift up if the passive has become slower for good
+    if (++epochSamples >= Math.max(MIN_EPOCH_SAMPLES, (long) window * 8)) {
+      baseline = epochMin;
+      epochMin = Long.MAX_VALUE;
+      epochSamples = 0;
+    }
+    sinceDecrease++;
+    if (smoothed > Math.max(latencyFloor, baseline * CONGESTION_FACTOR)) {
+      if (sinceDecrease >= window) {
+        window = Math.max(min, window / 2);
+        sinceDecrease = 0;
+        decreases++;
+      }
+    } else if (limited) {
+      // only grow a window that is actually being used
+      window = Math.min(max, window + 1 / window);
+      limited = false;
+    }
+  }
+
+  /**
+   * @return the batch size, in bytes, past which a batch is sent even if the window is full
+   */
+  long getTargetBatchBytes() {
+    if (rate == 0 || smoothed == 0) {
+      return maxBatchBytes;
+    }
+    long bdp = (long) (rate * smoothed);
+    return Math.max(minBatchBytes, Math.min(maxBatchBytes, bdp));
+  }
+
+  int getLimit() {
+    return (int) window;
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("limit", (int) window);
+    state.put("min", min);
+    state.put("max", max);
+    state.put("bytesInFlight", bytesInFlight);
+    state.put("targetBatchBytes", getTargetBatchBytes());
+    state.put("smoothedCompletion", smoothed);
+    state.put("baselineCompletion", baseline == Long.MAX_VALUE ? 0 : baseline);
+    state.put("bytesPerSecond", (long) (rate * 1_000_000_000L));
+    state.put("decreases", decreases);
+    state.put("earlyFlushes", earlyFlushes);
+    return state;
+  }
+}
@@ -26,6 +26,9 @@ import com.tc.net.NodeID;
 import com.tc.net.groups.AbstractGroupMessage;
 import com.tc.net.groups.GroupException;
 import com.tc.net.groups.GroupManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -34,6 +37,10 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
   private static final Logger LOGGER = LoggerFactory.getLogger(GroupMessageBatchContext.class);
   
   private static final long THRESHOLD = 16 * 1024 * 1024;
+  // adaptive batches below this size are never sent early, whatever the link looks like
+  private static final long MINIMUM_ADAPTIVE_BATCH = 64 * 1024;
+  // network completions faster than this are never considered a sign of congestion
+  private static final long LATENCY_FLOOR = TimeUnit.MILLISECONDS.toNanos(1);
   
   private final Function<E, M> messageFactory;
   private final GroupManager<AbstractGroupMessage> groupManager;
@@ -41,18 +48,40 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
   private final int maximumBatchSize;
   private final int idealMessagesInFlight;
   private final Consumer<NodeID> networkDoneTarget;
+  // null unless batches are sized adaptively, guarded by this
+  private final AdaptiveBatchController controller;
   
   private int messagesInFlight;
   private M cachedMessage;
   private long nextReplicationID;
+  private long messagesSent;
+  private long activitiesSent;
 
 
   public GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, NodeID target, int maximumBatchSize, int idealMessagesInFlight, Consumer<NodeID> networkDoneTarget) {
+    this(messageFactory, groupManager, target, maximumBatchSize, idealMessagesInFlight, (AdaptiveBatchController) null, networkDoneTarget);
+  }
+
+  /**
+   * @param maximumMessagesInFlight If larger than idealMessagesInFlight, the number of messages in flight adapts
+   *  between the two to what the connection to the target can take and batches are sized to match, see
+   *  {@link AdaptiveBatchController}.  The maximum batch size still applies.
+   */
+  public GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, NodeID target, int maximumBatchSize, int idealMessagesInFlight, int maximumMessagesInFlight, Consumer<NodeID> networkDoneTarget) {
+    this(messageFactory, groupManager, target, maximumBatchSize, idealMessagesInFlight,
+        maximumMessagesInFlight > Math.max(1, idealMessagesInFlight)
+            ? new AdaptiveBatchController(Math.max(1, idealMessagesInFlight), maximumMessagesInFlight, MINIMUM_ADAPTIVE_BATCH, THRESHOLD, LATENCY_FLOOR)
+            : null,
+        networkDoneTarget);
+  }
+
+  GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, NodeID target, int maximumBatchSize, int idealMessagesInFlight, AdaptiveBatchController controller, Consumer<NodeID> networkDoneTarget) {
     this.messageFactory = messageFactory;
     this.groupManager = groupManager;
     this.target = target;
     this.maximumBatchSize = maximumBatchSize;
     this.idealMessagesInFlight = idealMessagesInFlight;
+    this.controller = controller;
     this.networkDoneTarget = networkDoneTarget;
   }
 
@@ -88,19 +117,22 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
    */
   public long flushBatch() throws GroupException {
     IBatchableGroupMessage<E> messageToSend = null;
+    long payloadSize = 0;
     synchronized (this) {
       // See if we have a batched message and are ready to send one.
       // Note that we will override the ideal number of in-flight messages if the batch is getting too large.
       if (null != this.cachedMessage) {
-        if ((0 == this.idealMessagesInFlight) ||
-          (this.messagesInFlight < this.idealMessagesInFlight) ||
-          (this.cachedMessage.getBatchSize() >= this.maximumBatchSize) || 
-          (this.cachedMessage.getPayloadSize() > THRESHOLD)
-        ) {
+        payloadSize = this.cachedMessage.getPayloadSize();
+        if (isReadyToSend(payloadSize)) {
           // There is a batched message so send it.
           messageToSend = this.cachedMessage;
           this.cachedMessage = null;
           this.messagesInFlight += 1;
+          this.messagesSent += 1;
+          this.activitiesSent += messageToSend.getBatchSize();
+          if (this.controller != null) {
+            this.controller.sent(payloadSize);
+          }
         }
       }
     }
@@ -108,22 +140,36 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
     // Note that we don't want to make this call to send the message under lock since it results in the message
     //  serialization, which is potentially slow and shouldn't block other attempts to batch.
     if (null != messageToSend) {
+      long bytes = payloadSize;
+      long start = System.nanoTime();
       try {
         AbstractGroupMessage msg = messageToSend.asAbstractGroupMessage();
-        this.groupManager.sendToWithSentCallback(this.target, msg, this::handleNetworkDone);
-        if (messageToSend.getPayloadSize() > THRESHOLD) {
+        this.groupManager.sendToWithSentCallback(this.target, msg, ()->handleNetworkDone(bytes, System.nanoTime() - start));
+        if (payloadSize > THRESHOLD) {
           waitForFlush();
         }
         return msg.getMessageID().toLong();
       } catch (GroupException e) {
         LOGGER.warn("replication message failed", e);
         //  message failed but we still need to reset state
-        this.handleNetworkDone();
+        this.handleNetworkDone(bytes, 0L);
         throw e;
       }
     }
     return -1L;
   }
+
+  private boolean isReadyToSend(long payloadSize) {
+    if (payloadSize > THRESHOLD) {
+      return true;
+    } else if (this.controller != null) {
+      return this.controller.shouldFlush(this.messagesInFlight, this.cachedMessage.getBatchSize(), this.maximumBatchSize, payloadSize);
+    } else {
+      return (0 == this.idealMessagesInFlight) ||
+          (this.messagesInFlight < this.idealMessagesInFlight) ||
+          (this.cachedMessage.getBatchSize() >= this.maximumBatchSize);
+    }
+  }
   
   private synchronized void waitForFlush() {
     try {
@@ -136,7 +182,17 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
   }
 
   public void handleNetworkDone() {
+    handleNetworkDone(0L, 0L);
+  }
+
+  /**
+   * @param elapsed Nanoseconds the message took to reach the network, 0 if it failed and tells us nothing about the link
+   */
+  private void handleNetworkDone(long bytes, long elapsed) {
     synchronized (this) {
+      if (this.controller != null) {
+        this.controller.done(bytes, elapsed, this.messagesInFlight, System.nanoTime());
+      }
       this.messagesInFlight -= 1;
       notifyAll();
     }
@@ -146,4 +202,19 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
       this.networkDoneTarget.accept(target);
     }
   }
+
+  public synchronized Map<String, Object> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("messagesInFlight", this.messagesInFlight);
+    state.put("messagesSent", this.messagesSent);
+    state.put("activitiesSent", this.activitiesSent);
+    state.put("pending", this.cachedMessage == null ? 0 : this.cachedMessage.getBatchSize());
+    if (this.controller != null) {
+      state.put("adaptive", this.controller.getStateMap());
+    } else {
+      state.put("maximumBatchSize", this.maximumBatchSize);
+      state.put("idealMessagesInFlight", this.idealMessagesInFlight);
+    }
+    return state;
+  }
 }
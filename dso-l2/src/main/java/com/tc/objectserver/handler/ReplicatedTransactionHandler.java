@@ -68,12 +68,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -81,6 +85,15 @@ import org.slf4j.LoggerFactory;
 import org.terracotta.entity.ConcurrencyStrategy;
 
 
+/**
+ * Applies the activities replicated from the active, in the order they were replicated.
+ *
+ * Normally each activity is looked up and handed to its entity on the replication stage thread.  When given apply 
+ * threads, the ordering work stays on the replication stage thread, that is sync state, deferral, lifecycle operations 
+ * and persisting the transaction order, while the lookup and handoff of the other activities is spread over the apply 
+ * threads by entity.  Each entity still sees its activities in order.  Before anything which is not per entity is done 
+ * on the replication stage thread, everything already given to the apply threads is allowed to finish.
+ */
 public class ReplicatedTransactionHandler {
   private static final int DEFAULT_BATCH_LIMIT = 64;
   private static final int DEFAULT_INFLIGHT_MESSAGES = 1;
@@ -102,6 +115,9 @@ public class ReplicatedTransactionHandler {
   private NodeID cachedMessageAckFrom;
   private GroupMessageBatchContext<ReplicationMessageAck, ReplicationAckTuple> cachedBatchAck;
   private final Sink<Runnable> sentToActive;
+  // null when everything is applied on the replication stage thread
+  private final Stage<ReplicationApplyAction> applyLanes;
+  private final AtomicInteger pendingApply = new AtomicInteger();
 
   private volatile long currentSequence = 0;
 
@@ -111,8 +127,14 @@ public class ReplicatedTransactionHandler {
   
   public ReplicatedTransactionHandler(StateManager state, Stage<Runnable> sendToActive, Persistor persistor, 
       EntityManager manager, GroupManager<AbstractGroupMessage> groupManager) {
+    this(state, sendToActive, null, persistor, manager, groupManager);
+  }
+
+  public ReplicatedTransactionHandler(StateManager state, Stage<Runnable> sendToActive, Stage<ReplicationApplyAction> applyLanes, 
+      Persistor persistor, EntityManager manager, GroupManager<AbstractGroupMessage> groupManager) {
     this.stateManager = state;
     this.sentToActive = sendToActive.getSink();
+    this.applyLanes = applyLanes;
     this.entityManager = manager;
     this.persistor = persistor;
     this.groupManager = groupManager;
@@ -148,6 +170,7 @@ public class ReplicatedTransactionHandler {
 
     @Override
     public void destroy() {
+      drainApply();
       ServerEntityRequest req = new ServerEntityRequest() {
         @Override
         public ServerEntityAction getAction() {
@@ -214,15 +237,15 @@ public class ReplicatedTransactionHandler {
     ServerID activeSender = (ServerID) rep.messageFrom();
     for (SyncReplicationActivity activity : rep.getActivities()) {
       EntityID eid = null;
-      if (activity.getActivityType() != ActivityType.SYNC_BEGIN) {
+      //  the lookup is only for logging, don't pay for it otherwise
+      if (LOGGER.isDebugEnabled() && activity.getActivityType() != ActivityType.SYNC_BEGIN) {
         Optional<ManagedEntity> opt = entityManager.getEntity(EntityDescriptor.createDescriptorForInvoke(activity.getFetchID(), activity.getClientInstanceID()));
         eid = opt.map(ManagedEntity::getID).orElse(activity.getEntityID());
         Long fid = opt.map(ManagedEntity::getConsumerID).orElse(activity.getFetchID().toLong());
-        if (LOGGER.isDebugEnabled()) {
-          LOGGER.debug("RECEIVING:" + eid + ":" + fid + " " + activity.getActivityType() + " " + activity.getActivityID().id);
-        }
+        LOGGER.debug("RECEIVING:" + eid + ":" + fid + " " + activity.getActivityType() + " " + activity.getActivityID().id);
       }
       if (activity.isSyncActivity()) {
+        drainApply();
         if (SyncReplicationActivity.ActivityType.SYNC_BEGIN == activity.getActivityType()) {
           syncBeginEntityListReceived(activeSender, activity);
         } else {
@@ -281,8 +304,6 @@ public class ReplicatedTransactionHandler {
 
 //  don't need to worry about resends here for lifecycle messages.  active will filer them  
   private void replicatedActivityReceived(ServerID activeSender, SyncReplicationActivity activity) throws ServerException {
-    Trace trace = new Trace(String.valueOf(activity.getActivityID().id), "Replication");
-    trace.start();
     ClientID sourceNodeID = activity.getSource();
     TransactionID transactionID = activity.getTransactionID();
     TransactionID oldestTransactionOnClient = activity.getOldestTransactionOnClient();
@@ -290,12 +311,75 @@ public class ReplicatedTransactionHandler {
     Future<Void> tmpFuture = null;
     // Note that we only want to persist the messages with a true sourceNodeID.  Synthetic invocations and sync messages
     // don't have one (although sync messages shouldn't come down this path).
+    //  The transaction order is always recorded here, in replication order.
     if (sourceNodeID != null && !sourceNodeID.isNull() && transactionID.isValid()) {
       Assert.assertTrue(oldestTransactionOnClient.isValid());
       tmpFuture = this.persistor.getTransactionOrderPersistor().updateWithNewMessage(sourceNodeID, transactionID,oldestTransactionOnClient);
     }
 
     final Future<Void> transactionOrderPersistenceFuture = tmpFuture;
+    if (this.applyLanes != null && canApplyOnLane(activity)) {
+      this.pendingApply.incrementAndGet();
+      this.applyLanes.getSink().addToSink(new ReplicationApplyAction(activity.getFetchID(), ()->{
+        try {
+          applyReplicatedActivity(activeSender, activity, transactionOrderPersistenceFuture);
+        } catch (Throwable t) {
+          throw Assert.failure("Unexpected exception executing replicated message", t);
+        } finally {
+          this.pendingApply.decrementAndGet();
+        }
+      }));
+    } else {
+      drainApply();
+      applyReplicatedActivity(activeSender, activity, transactionOrderPersistenceFuture);
+    }
+  }
+
+  /**
+   * Lifecycle operations change the entity index and the entity persistor so they stay on the replication stage thread, 
+   * anything else only concerns its own entity.
+   */
+  private static boolean canApplyOnLane(SyncReplicationActivity activity) {
+    switch (activity.getActivityType()) {
+      case CREATE_ENTITY:
+      case RECONFIGURE_ENTITY:
+      case DESTROY_ENTITY:
+      case LOCAL_ENTITY_GC:
+        return false;
+      default:
+        return !activity.getFetchID().isNull();
+    }
+  }
+
+  /**
+   * Waits for everything handed to the apply threads to be handed to its entity.  Only called on the replication stage 
+   * thread, the only thread which hands anything to the apply threads.  Gives up once the apply stage is destroyed, 
+   * destroying it runs out everything it holds before its threads stop.
+   */
+  private void drainApply() {
+    if (this.pendingApply.get() > 0) {
+      BarrierCompletion drained = new BarrierCompletion();
+      try {
+        this.applyLanes.getSink().addToSink(ReplicationApplyAction.barrier(drained::complete));
+      } catch (IllegalStateException closed) {
+        LOGGER.debug("apply stage already destroyed", closed);
+        return;
+      }
+      while (!drained.waitForCompletion(1, TimeUnit.SECONDS)) {
+        if (!this.applyLanes.isStarted()) {
+          LOGGER.warn("apply stage stopped with " + this.pendingApply.get() + " activities pending");
+          return;
+        }
+      }
+    }
+  }
+
+  private void applyReplicatedActivity(ServerID activeSender, SyncReplicationActivity activity, Future<Void> transactionOrderPersistenceFuture) throws ServerException {
+    Trace trace = new Trace(String.valueOf(activity.getActivityID().id), "Replication");
+    trace.start();
+    ClientID sourceNodeID = activity.getSource();
+    TransactionID transactionID = activity.getTransactionID();
+    TransactionID oldestTransactionOnClient = activity.getOldestTransactionOnClient();
 
     TCByteBuffer extendedData = activity.getExtendedData();
 
@@ -516,7 +600,7 @@ public class ReplicatedTransactionHandler {
   }
   
   private void finish(FetchID fetch) {
-    state.endEntity(fetch);
+    scheduleDeferred(state.endEntity(fetch));
   }
   
   private void finish(FetchID fetch, int concurrency) {
@@ -693,13 +777,10 @@ public class ReplicatedTransactionHandler {
   }  
   
  private class SyncState {
-    private LinkedList<DeferredContainer> defer = new LinkedList<>();
  //  at this point, id based checking is legacy.  Everything should have a fetchid.  TODO: remove 
     private final Set<FetchID> syncdFetches = new HashSet<>();
-    private final Set<Integer> syncdKeys = new HashSet<>();
- //  at this point, id based checking is legacy.  Everything should have a fetchid 
-    private FetchID syncingFetch = FetchID.NULL_ID;
-    private int currentKey = -1;
+ //  more than one entity is in here when the active syncs entities in parallel
+    private final Map<FetchID, EntitySync> syncing = new HashMap<>();
     private boolean finished = false;
     private boolean started = false;
     
@@ -709,42 +790,41 @@ public class ReplicatedTransactionHandler {
     
     private void startEntity(FetchID fetch) {
       assertStarted(null);
-      Assert.assertTrue(syncingFetch.isNull());
-      syncingFetch = fetch;
-// these keys are never sync'd only replicated so add them to the set
-      syncdKeys.add(ConcurrencyStrategy.MANAGEMENT_KEY);
-      syncdKeys.add(ConcurrencyStrategy.UNIVERSAL_KEY);
+      Assert.assertNull(syncing.put(fetch, new EntitySync()));
       LOGGER.debug("Starting " + fetch);
     }
     
-    private void endEntity(FetchID fetch) {
+    private Deque<DeferredContainer> endEntity(FetchID fetch) {
       assertStarted(null);
-      Assert.assertEquals(syncingFetch, fetch);
+      EntitySync entity = syncing.remove(fetch);
+      Assert.assertNotNull(entity);
       syncdFetches.add(fetch);
-      syncdKeys.clear();
-      syncingFetch = FetchID.NULL_ID;
       LOGGER.debug("Ending " + fetch);
+//  anything still deferred for this entity was on the universal key after the last concurrency key
+      return entity.defer;
     }
     
     private void startConcurrency(FetchID fetch, int concurrency) {
       assertStarted(null);
-      Assert.assertEquals(syncingFetch, fetch);
-      currentKey = concurrency;
+      EntitySync entity = syncing.get(fetch);
+      Assert.assertNotNull(entity);
+      entity.currentKey = concurrency;
       if (LOGGER.isDebugEnabled()) {
-        LOGGER.debug("Starting " + fetch + "/" + currentKey);
+        LOGGER.debug("Starting " + fetch + "/" + concurrency);
       }
     }
     
     private Deque<DeferredContainer> endConcurrency(FetchID fetch, int concurrency) {
       assertStarted(null);
+      EntitySync entity = syncing.get(fetch);
+      Assert.assertNotNull(entity);
       try {
-        Assert.assertEquals(syncingFetch, fetch);
-        Assert.assertEquals(currentKey, concurrency);
-        syncdKeys.add(concurrency);
-        currentKey = -1;
-        return defer;
+        Assert.assertEquals(entity.currentKey, concurrency);
+        entity.syncdKeys.add(concurrency);
+        entity.currentKey = -1;
+        return entity.defer;
       } finally {
-        defer = new LinkedList<>();
+        entity.defer = new LinkedList<>();
       }
     }
     
@@ -752,7 +832,12 @@ public class ReplicatedTransactionHandler {
       assertStarted(null);
       syncdFetches.clear();
       finished = true;
-      return defer;
+      LinkedList<DeferredContainer> remaining = new LinkedList<>();
+      for (EntitySync entity : syncing.values()) {
+        remaining.addAll(entity.defer);
+      }
+      syncing.clear();
+      return remaining;
     }
     
     private boolean ignore(SyncReplicationActivity activity) {
@@ -782,9 +867,10 @@ public class ReplicatedTransactionHandler {
       
       SyncReplicationActivity.ActivityType activityType = activity.getActivityType();
 
-      if (fetch.equals(syncingFetch)) {
+      EntitySync entity = syncing.get(fetch);
+      if (entity != null) {
         int concurrencyKey = activity.getConcurrency();
-        if (syncdKeys.contains(concurrencyKey)) {
+        if (entity.syncdKeys.contains(concurrencyKey)) {
           return false;
         } else if (SyncReplicationActivity.ActivityType.CREATE_ENTITY == activityType) {
           return true;
@@ -794,14 +880,14 @@ public class ReplicatedTransactionHandler {
         } else if (SyncReplicationActivity.ActivityType.DESTROY_ENTITY == activityType) {
 //          Assert.fail("destroy received during a sync of an entity " + activity);
           return false;
-        } else if (currentKey == concurrencyKey) {
-          defer.add(new DeferredContainer(activeSender, activity));
+        } else if (entity.currentKey == concurrencyKey) {
+          entity.defer.add(new DeferredContainer(activeSender, activity));
           return true;
         } else if (concurrencyKey == ConcurrencyStrategy.UNIVERSAL_KEY) {
           // if a message comes on the universal key, make sure it lags at least one step by deferrign the 
           // operation.  This prevents the invoke from possibly outracing the creation message at the start 
           // of sync.  Consider deferring all universal key operations to the end of entity sync.
-          defer.add(new DeferredContainer(activeSender, activity));
+          entity.defer.add(new DeferredContainer(activeSender, activity));
           return true;
         }
       }
@@ -826,6 +912,21 @@ public class ReplicatedTransactionHandler {
       Assert.assertTrue(activity, started);
     }
   }
+
+  /**
+   * Sync state of one entity being sync'd from the active.
+   */
+  private static class EntitySync {
+    private LinkedList<DeferredContainer> defer = new LinkedList<>();
+    private final Set<Integer> syncdKeys = new HashSet<>();
+    private int currentKey = -1;
+
+    private EntitySync() {
+// these keys are never sync'd only replicated so add them to the set
+      syncdKeys.add(ConcurrencyStrategy.MANAGEMENT_KEY);
+      syncdKeys.add(ConcurrencyStrategy.UNIVERSAL_KEY);
+    }
+  }
  
   public static class BasicServerEntityRequest implements ServerEntityRequest {
     private final ServerEntityAction action;
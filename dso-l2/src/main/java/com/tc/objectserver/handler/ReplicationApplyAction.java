@@ -0,0 +1,64 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.async.api.MultiThreadedEventContext;
+
+/**
+ * Hands a replicated activity to its entity on one of the passive's apply threads.  Actions for the same entity share
+ * a scheduling key so they reach the entity in the order they were replicated.
+ */
+public class ReplicationApplyAction implements MultiThreadedEventContext, Runnable {
+
+  private final Runnable apply;
+  private final Object key;
+  private final boolean flush;
+
+  public ReplicationApplyAction(Object key, Runnable apply) {
+    this(key, apply, false);
+  }
+
+  private ReplicationApplyAction(Object key, Runnable apply, boolean flush) {
+    this.key = key;
+    this.apply = apply;
+    this.flush = flush;
+  }
+
+  /**
+   * @return an action which runs only once everything handed to the apply threads before it has run
+   */
+  public static ReplicationApplyAction barrier(Runnable apply) {
+    return new ReplicationApplyAction(null, apply, true);
+  }
+
+  @Override
+  public void run() {
+    apply.run();
+  }
+
+  @Override
+  public Object getSchedulingKey() {
+    return key;
+  }
+
+  @Override
+  public boolean flush() {
+    return flush;
+  }
+}
@@ -64,6 +64,9 @@ public class ServerClientHandshakeManager {
     STARTED,
   }
   static final int                       RECONNECT_WARN_INTERVAL           = 15000;
+  // a rejected request to add the reconnected clients is retried, backing off from the first interval to the last
+  static final long                      ADD_CLIENT_RETRY_FIRST            = 50;
+  static final long                      ADD_CLIENT_RETRY_MAX              = 5000;
   private static final boolean           SHOULD_SEND_STATS                 = TCPropertiesImpl.getProperties().getBoolean("client.send.stats", false);
   private State                          state                             = State.INIT;
   private final List<ReconnectListener>     waitingForReconnect = new ArrayList<>();
@@ -76,6 +79,7 @@ public class ServerClientHandshakeManager {
   private final Set<ClientID>            existingUnconnectedClients        = new HashSet<>();
   private final Logger consoleLogger;
   private final Sink<VoltronEntityMessage> voltron;
+  private long                           reconnectWindowStart;
 
   public ServerClientHandshakeManager(Logger logger, ConsistencyManager consistency, DSOChannelManager channelManager,
                                       Timer timer, Supplier<Long> reconnectTimeoutSupplier, Sink<VoltronEntityMessage> voltron,
@@ -202,13 +206,18 @@ public class ServerClientHandshakeManager {
   // Should be called from within the sync block
   private void start() {
     final Set<NodeID> cids = Collections.unmodifiableSet(this.channelManager.getAllClientIDs());
+    // the rejection is usually brief, waiting for the voters to confirm the new active, so retry quickly at first
+    long retry = ADD_CLIENT_RETRY_FIRST;
     while (!cids.isEmpty() && !this.consistency.requestTransition(ServerMode.ACTIVE, ClientID.NULL_ID, ConsistencyManager.Transition.ADD_CLIENT)) {
-      consoleLogger.info("request to add reconnect clients has been rejected, will try again in 5 seconds");
+      if (retry == ADD_CLIENT_RETRY_FIRST || retry == ADD_CLIENT_RETRY_MAX) {
+        consoleLogger.info("request to add reconnect clients has been rejected, will try again in " + retry + " ms");
+      }
       try {
-        TimeUnit.SECONDS.sleep(5);
+        TimeUnit.MILLISECONDS.sleep(retry);
       } catch (InterruptedException i) {
         throw new RuntimeException(i);
       }
+      retry = Math.min(retry * 2, ADD_CLIENT_RETRY_MAX);
     }
     // It is important to start all the managers before sending the ack to the clients
     for (NodeID nid : cids) {
@@ -218,6 +227,10 @@ public class ServerClientHandshakeManager {
       }
     }
     this.state = State.STARTED;
+    if (this.reconnectWindowStart > 0) {
+      this.consoleLogger.info("Reconnect window was open for " + (System.currentTimeMillis() - this.reconnectWindowStart)
+                              + " ms, " + cids.size() + " clients connected.");
+    }
     notifyComplete();
     // Tell the transaction handler the message to replay any resends we received.  Schedule a noop 
     // in case all the clients are waiting on resends
@@ -246,6 +259,9 @@ public class ServerClientHandshakeManager {
 
   public void startReconnectWindow() {
     long reconnectTimeout = reconnectTimeoutSupplier.get();
+    synchronized (this) {
+      this.reconnectWindowStart = System.currentTimeMillis();
+    }
     String message = "Starting reconnect window: " + reconnectTimeout + " ms. Waiting for "
                      + this.existingUnconnectedClients.size() + " clients to connect.";
     if (this.existingUnconnectedClients.size() <= 10) {
@@ -32,7 +32,9 @@ import com.tc.net.core.ClearTextBufferManagerFactory;
 import com.tc.objectserver.api.EntityManager;
 import com.tc.services.PlatformConfigurationImpl;
 import com.tc.services.PlatformServiceProvider;
+import com.tc.services.ISimpleTimer;
 import com.tc.services.SingleThreadedTimer;
+import com.tc.services.TimingWheelTimer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +58,7 @@ import com.tc.entity.DiagnosticMessageImpl;
 import com.tc.entity.DiagnosticResponseImpl;
 import com.tc.entity.LinearVoltronEntityMultiResponse;
 import com.tc.entity.NetworkVoltronEntityMessageImpl;
+import com.tc.entity.NetworkVoltronEntityMultiMessageImpl;
 import com.tc.entity.VoltronEntityAppliedResponseImpl;
 import com.tc.entity.VoltronEntityMessage;
 import com.tc.entity.VoltronEntityReceivedResponseImpl;
@@ -200,6 +203,8 @@ import java.nio.charset.Charset;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.terracotta.entity.BasicServiceConfiguration;
@@ -222,6 +227,7 @@ import com.tc.objectserver.handler.ResponseMessage;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import com.tc.objectserver.entity.VoltronMessageSink;
+import com.tc.objectserver.handler.ReplicationApplyAction;
 import com.tc.objectserver.handler.ReplicationReceivingAction;
 import com.tc.objectserver.handler.ReplicationSendingAction;
 import com.tc.objectserver.handshakemanager.ClientHandshakePrettyPrintable;
@@ -262,6 +268,7 @@ public class DistributedObjectServer {
   private Persistor                              persistor;
 
   private L2Coordinator                          l2Coordinator;
+  private ActiveToPassiveReplication             passiveReplication;
 
   private TCProperties                           tcProperties;
 
@@ -273,7 +280,7 @@ public class DistributedObjectServer {
   private GroupManager<AbstractGroupMessage> groupCommManager;
   private StripeIDStateManagerImpl               stripeIDStateManager;
 
-  private final SingleThreadedTimer timer;
+  private final ISimpleTimer timer;
   private final TerracottaServiceProviderRegistryImpl serviceRegistry;
   private WeightGeneratorFactory globalWeightGeneratorFactory;
   private EntityManagerImpl entityManager;
@@ -300,12 +307,41 @@ public class DistributedObjectServer {
     this.seda = seda;
     this.server = server;
     this.serverBuilder = createServerBuilder(configSetupManager.getGroupConfiguration(), logger, server);
-    this.timer = new SingleThreadedTimer(null, threadGroup);
+    this.timer = createServiceTimer(threadGroup);
     this.timer.start();
+    stopServiceTimerOnExit(this.timer);
     this.serviceRegistry = new TerracottaServiceProviderRegistryImpl();
     this.topologyManager = new TopologyManager(this.configSetupManager.getGroupConfiguration().getHostPorts());
   }
 
+  private static ISimpleTimer createServiceTimer(ThreadGroup threadGroup) {
+    TCProperties props = TCPropertiesImpl.getProperties();
+    if (!props.getBoolean(TCPropertiesConsts.L2_SERVICES_TIMER_WHEEL, false)) {
+      return new SingleThreadedTimer(null, threadGroup);
+    }
+    long tick = props.getLong(TCPropertiesConsts.L2_SERVICES_TIMER_WHEEL_TICK, 10L);
+    int threads = props.getInt(TCPropertiesConsts.L2_SERVICES_TIMER_THREADS, 0);
+    Executor callbacks = (threads > 0) ? Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(threadGroup, r, "TimingWheelTimer callback");
+      t.setDaemon(true);
+      return t;
+    }) : null;
+    return new TimingWheelTimer(null, threadGroup, tick, 512, callbacks);
+  }
+
+  private static void stopServiceTimerOnExit(ISimpleTimer timer) {
+    CommonShutDownHook.addShutdownHook(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          timer.stop();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+  }
+
   protected final ServerBuilder createServerBuilder(GroupConfiguration groupConfiguration, Logger tcLogger,
                                                     TCServer server) {
     return new StandardServerBuilder(groupConfiguration, tcLogger);
@@ -357,6 +393,9 @@ public class DistributedObjectServer {
     collectState(new ClientHandshakePrettyPrintable(this.context.getChannelManager().getActiveChannels()), pp);
     collectState(this.groupCommManager, pp);
     collectState(this.l2Coordinator, pp);
+    if (this.passiveReplication != null) {
+      collectState(this.passiveReplication, pp);
+    }
     collectState(this.entityManager, pp);
     collectState(this.serviceRegistry, pp);
     collectState(this.managementContext, pp);
@@ -446,7 +485,8 @@ public class DistributedObjectServer {
     this.tcProperties = TCPropertiesImpl.getProperties();
 
     TCByteBufferFactory.setPoolingEnabled(tcProperties.getBoolean(TCPropertiesConsts.BYTEBUFFER_POOLING, false));
-    TCByteBufferFactory.setPoolingThreadMax(tcProperties.getInt(TCPropertiesConsts.BYTEBUFFER_POOLING_THREAD_MAX, 1024));
+    TCByteBufferFactory.setPoolingMaxBytes(tcProperties.getLong(TCPropertiesConsts.BYTEBUFFER_POOLING_MAX_BYTES, 64L * 1024 * 1024));
+    TCByteBufferFactory.setLeakDetectionEnabled(tcProperties.getBoolean(TCPropertiesConsts.BYTEBUFFER_POOLING_LEAK_DETECTION, false));
     final int maxStageSize = tcProperties.getInt(TCPropertiesConsts.L2_SEDA_STAGE_SINK_CAPACITY);
     final int fastStageSize = 1024;
     final StageManager stageManager = this.seda.getStageManager();
@@ -680,6 +720,7 @@ public class DistributedObjectServer {
     VoltronMessageSink voltronSink = new VoltronMessageSink(hydrator, fast.getSink(), entityManager);
     messageRouter.routeMessageType(TCMessageType.CLIENT_HANDSHAKE_MESSAGE, new TCMessageHydrateSink<>(clientHandshake.getSink()));
     messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_MESSAGE, voltronSink);
+    messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE, voltronSink);
     messageRouter.routeMessageType(TCMessageType.DIAGNOSTIC_REQUEST, m -> diagStage.getSink().addToSink(m));
 
     HASettingsChecker haChecker = new HASettingsChecker(configSetupManager, tcProperties);
@@ -695,8 +736,11 @@ public class DistributedObjectServer {
     // And the stage for handling their response batching/serialization.
     Stage<Runnable> replicationResponseStage = stageManager.createStage(ServerConfigurationContext.PASSIVE_OUTGOING_RESPONSE_STAGE, Runnable.class,
         new GenericHandler<>(), 1, maxStageSize);
-//  routing for passive to receive replication
-    ReplicatedTransactionHandler replicatedTransactionHandler = new ReplicatedTransactionHandler(state, replicationResponseStage, this.persistor, entityManager, groupCommManager);
+//  routing for passive to receive replication, optionally handing activities to entities on more than one thread
+    int applyThreads = tcProperties.getInt(TCPropertiesConsts.L2_PASSIVE_REPLICATION_APPLY_THREADS, 0);
+    Stage<ReplicationApplyAction> applyLanes = (applyThreads > 0) ? stageManager.createStage(ServerConfigurationContext.PASSIVE_REPLICATION_APPLY_STAGE,
+        ReplicationApplyAction.class, new GenericHandler<>(), applyThreads, maxStageSize) : null;
+    ReplicatedTransactionHandler replicatedTransactionHandler = new ReplicatedTransactionHandler(state, replicationResponseStage, applyLanes, this.persistor, entityManager, groupCommManager);
     sequenceWeight.setReplicatedTransactionHandler(replicatedTransactionHandler);
 // This requires both the stage for handling the replication/sync messages.
     Stage<ReplicationMessage> replicationStage = stageManager.createStage(ServerConfigurationContext.PASSIVE_REPLICATION_STAGE, ReplicationMessage.class,
@@ -728,6 +772,7 @@ public class DistributedObjectServer {
                                  ReplicationReceivingAction.class, new GenericHandler<>(), max(3, knownPeers), maxStageSize).getSink();
     final ActiveToPassiveReplication passives = new ActiveToPassiveReplication(consistencyMgr, processTransactionHandler, this.persistor.getEntityPersistor(), replicationSender, replicationReceivingStage, this.getGroupManager());
     processor.setReplication(passives);
+    this.passiveReplication = passives;
 
     Stage<ReplicationMessageAck> replicationStageAck = stageManager.createStage(ServerConfigurationContext.PASSIVE_REPLICATION_ACK_STAGE, ReplicationMessageAck.class,
       new AbstractEventHandler<ReplicationMessageAck>() {
@@ -889,6 +934,7 @@ public class DistributedObjectServer {
   private void startStages(StageManager stageManager, List<PostInit> toInit) {
 //  exclude from startup specific stages that are controlled by the stage controller.
     // NOTE:  PASSIVE_OUTGOING_RESPONSE_STAGE must be active whenever PASSIVE_REPLICATION_STAGE is.
+    // PASSIVE_REPLICATION_APPLY_STAGE, when configured, too.  It comes after so it is destroyed after the replication stage drains into it.
     stageManager.startAll(this.context, toInit,
         ServerConfigurationContext.SINGLE_THREADED_FAST_PATH,
         ServerConfigurationContext.REQUEST_PROCESSOR_DURING_SYNC_STAGE,
@@ -940,13 +986,17 @@ public class DistributedObjectServer {
     StageController control = new StageController(this::getContext);
 //  PASSIVE-UNINITIALIZED handle replicate messages right away.
     // NOTE:  PASSIVE_OUTGOING_RESPONSE_STAGE must be active whenever PASSIVE_REPLICATION_STAGE is.
+    // PASSIVE_REPLICATION_APPLY_STAGE, when configured, too.  It comes after so it is destroyed after the replication stage drains into it.
     control.addStageToState(ServerMode.UNINITIALIZED.getState(), ServerConfigurationContext.PASSIVE_REPLICATION_STAGE);
+    control.addStageToState(ServerMode.UNINITIALIZED.getState(), ServerConfigurationContext.PASSIVE_REPLICATION_APPLY_STAGE);
     control.addStageToState(ServerMode.UNINITIALIZED.getState(), ServerConfigurationContext.PASSIVE_OUTGOING_RESPONSE_STAGE);
 //  REPLICATION needs to continue in STANDBY so include that stage here.  SYNC also needs to be handled.
     control.addStageToState(ServerMode.SYNCING.getState(), ServerConfigurationContext.PASSIVE_REPLICATION_STAGE);
+    control.addStageToState(ServerMode.SYNCING.getState(), ServerConfigurationContext.PASSIVE_REPLICATION_APPLY_STAGE);
     control.addStageToState(ServerMode.SYNCING.getState(), ServerConfigurationContext.PASSIVE_OUTGOING_RESPONSE_STAGE);
 //  REPLICATION needs to continue in STANDBY so include that stage here. SYNC goes away
     control.addStageToState(ServerMode.PASSIVE.getState(), ServerConfigurationContext.PASSIVE_REPLICATION_STAGE);
+    control.addStageToState(ServerMode.PASSIVE.getState(), ServerConfigurationContext.PASSIVE_REPLICATION_APPLY_STAGE);
     control.addStageToState(ServerMode.PASSIVE.getState(), ServerConfigurationContext.PASSIVE_OUTGOING_RESPONSE_STAGE);
 //  turn on the process transaction handler, the active to passive driver, and the replication ack handler, replication handler needs to be shutdown and empty for
 //  active to start
@@ -1060,6 +1110,7 @@ public class DistributedObjectServer {
     messageTypeClassMapping.put(TCMessageType.CLUSTER_MEMBERSHIP_EVENT_MESSAGE, ClusterMembershipMessage.class);
 
     messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_MESSAGE, NetworkVoltronEntityMessageImpl.class);
+    messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE, NetworkVoltronEntityMultiMessageImpl.class);
     messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_RECEIVED_RESPONSE, VoltronEntityReceivedResponseImpl.class);
     messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_COMPLETED_RESPONSE, VoltronEntityAppliedResponseImpl.class);
     messageTypeClassMapping.put(TCMessageType.VOLTRON_ENTITY_RETIRED_RESPONSE, VoltronEntityRetiredResponseImpl.class);
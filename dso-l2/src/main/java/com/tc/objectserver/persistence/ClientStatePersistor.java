@@ -41,10 +41,20 @@ public class ClientStatePersistor {
   
   private final IPlatformPersistence storageManager;
   private final ConcurrentHashMap<ClientID, Boolean> clients;
+  // changes to clients are made through the log, under its lock, so they are logged in the order they happened
+  private final MapChangeLog<ClientID, Boolean> clientsLog;
   private final MutableSequence clientIDSequence;
   
-  @SuppressWarnings("unchecked")
   public ClientStatePersistor(IPlatformPersistence storageManager) {
+    this(storageManager, 0);
+  }
+
+  /**
+   * @param compactAfter number of changes logged against the client map before it is rewritten whole, 0 to rewrite it
+   *  on every change
+   */
+  @SuppressWarnings("unchecked")
+  public ClientStatePersistor(IPlatformPersistence storageManager, int compactAfter) {
     this.storageManager = storageManager;
     
     ConcurrentHashMap<ClientID, Boolean> clientsMap = null;
@@ -53,6 +63,8 @@ public class ClientStatePersistor {
       if (null == clientsMap) {
         clientsMap = new ConcurrentHashMap<>();
       }
+      this.clientsLog = new MapChangeLog<>(storageManager, CLIENTS_MAP_FILE_NAME, compactAfter, clientsMap);
+      this.clientsLog.replay();
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading ClientStatePersistor data", e);
@@ -88,15 +100,17 @@ public class ClientStatePersistor {
     // if the client is in the orphaned set, do not add it to the saved list because 
     // it should never connect again.  this can happen if the ConnectionIDFactory services
     // a connection before the existing clients are loaded into the reconnect window
-    clients.put(channelID, product.isPermanent());
-    safeStoreClients();
+    synchronized (this.clientsLog) {
+      this.clientsLog.put(channelID, product.isPermanent());
+    }
   }
 
   public void deleteClientState(ClientID id) throws ClientNotFoundException {
-    if (clients.remove(id) == null) {
-      throw new ClientNotFoundException();
+    synchronized (this.clientsLog) {
+      if (this.clientsLog.remove(id) == null) {
+        throw new ClientNotFoundException();
+      }
     }
-    safeStoreClients();
   }
 
   Map<String, Object> reportStateToMap(Map<String, Object> map) {
@@ -107,19 +121,13 @@ public class ClientStatePersistor {
       cs.add(clientID.toString());
     }
     map.put("next", clientIDSequence.current());
+    synchronized (this.clientsLog) {
+      map.put("clientsLog", this.clientsLog.getStateMap());
+    }
 
     return map;
   }
   
-  private void safeStoreClients() {
-    try {
-      this.storageManager.storeDataElement(CLIENTS_MAP_FILE_NAME, this.clients);
-    } catch (IOException e) {
-      // Not expected during run.
-      Assert.fail(e.getLocalizedMessage());
-    }
-  }
-
 
   private static class Sequence implements MutableSequence {
     private final IPlatformPersistence storageManager;
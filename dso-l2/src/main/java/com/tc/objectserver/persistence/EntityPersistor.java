@@ -59,10 +59,20 @@ public class EntityPersistor {
   private final HashMap<EntityData.Key, EntityData.Value> deletes = new HashMap<>();
   private final HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal;
   private final HashMap<String, Long> counters;
+  private final MapChangeLog<EntityData.Key, EntityData.Value> entitiesLog;
+  private final MapChangeLog<ClientID, List<EntityData.JournalEntry>> journalLog;
   private final Map<EntityID, PermanentEntityResult> result = new ConcurrentHashMap<>();
 
-  @SuppressWarnings({ "unchecked" })
   public EntityPersistor(IPlatformPersistence storageManager) {
+    this(storageManager, 0);
+  }
+
+  /**
+   * @param compactAfter number of changes logged against the entity and journal maps before they are rewritten whole,
+   *  0 to rewrite them on every change
+   */
+  @SuppressWarnings({ "unchecked" })
+  public EntityPersistor(IPlatformPersistence storageManager, int compactAfter) {
     this.storageManager = storageManager;
     try {
       HashMap<EntityData.Key, EntityData.Value> entities = (HashMap<Key, Value>) this.storageManager.loadDataElement(ENTITIES_ALIVE_FILE_NAME);
@@ -75,6 +85,10 @@ public class EntityPersistor {
       if (!this.counters.containsKey(COUNTERS_CONSUMER_ID)) {
         this.counters.put(COUNTERS_CONSUMER_ID, new Long(1));
       }
+      this.entitiesLog = new MapChangeLog<>(storageManager, ENTITIES_ALIVE_FILE_NAME, compactAfter, this.entities);
+      this.entitiesLog.replay();
+      this.journalLog = new MapChangeLog<>(storageManager, JOURNAL_CONTAINER_FILE_NAME, compactAfter, this.entityLifeJournal);
+      this.journalLog.replay();
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading EntityPersistor map files", e);
@@ -82,16 +96,14 @@ public class EntityPersistor {
   }
 
   public synchronized void clear() {
-    this.entities.clear();
-    this.entityLifeJournal.clear();
+    // We can destroy the backing for these objects.
+    this.entitiesLog.clear();
+    this.journalLog.clear();
     this.counters.clear();
     if (!this.counters.containsKey(COUNTERS_CONSUMER_ID)) {
       this.counters.put(COUNTERS_CONSUMER_ID, new Long(1));
     }
-    // We can destroy the backing for these objects.
     try {
-      this.storageManager.storeDataElement(ENTITIES_ALIVE_FILE_NAME, null);
-      this.storageManager.storeDataElement(JOURNAL_CONTAINER_FILE_NAME, null);
       this.storageManager.storeDataElement(COUNTERS_FILE_NAME, null);
     } catch (IOException e) {
       // In general, we have no way of solving this problem so throw it.
@@ -100,13 +112,7 @@ public class EntityPersistor {
   }
   
   public synchronized void clearEntityClientJournal() {
-    this.entityLifeJournal.clear();
-    try {
-      this.storageManager.storeDataElement(JOURNAL_CONTAINER_FILE_NAME, null);
-    } catch (IOException e) {
-      // In general, we have no way of solving this problem so throw it.
-      throw new RuntimeException("Failure storing EntityPersistor map files", e);
-    }
+    this.journalLog.clear();
   }
 
   public synchronized Collection<EntityData.Value> loadEntityData() {
@@ -212,9 +218,8 @@ public class EntityPersistor {
     key.entityName = id.getEntityName();
     Assert.assertTrue(this.entities.containsKey(key) || this.deletes.containsKey(key));
     if (this.deletes.remove(key) == null) {
-      this.entities.remove(key);
+      this.entitiesLog.remove(key);
     }
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
     
     // Record this in the journal - null error on success.
     addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.DESTROY, null, null);
@@ -263,8 +268,7 @@ public class EntityPersistor {
     val.configuration = configuration;
     Assert.assertEquals(version, val.version);
     
-    this.entities.put(key, val);
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    this.entitiesLog.put(key, val);
     
     // Record this in the journal.
     addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.RECONFIGURE, previousConfiguration, null);
@@ -289,14 +293,13 @@ public class EntityPersistor {
   }
   
   public synchronized void addTrackingForClient(ClientID sourceNodeID) {
-    if (this.entityLifeJournal.putIfAbsent(sourceNodeID, new ArrayList<>()) == null) {
-      storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    if (!this.entityLifeJournal.containsKey(sourceNodeID)) {
+      this.journalLog.put(sourceNodeID, new ArrayList<>());
     }
   }
   
   public synchronized void removeTrackingForClient(ClientID sourceNodeID) {
-    this.entityLifeJournal.remove(sourceNodeID);
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    this.journalLog.remove(sourceNodeID);
   }
 
   public void reportStateToMap(Map<String, Object> map) {
@@ -322,6 +325,8 @@ public class EntityPersistor {
     }
 
     map.put("nextConsumerID", this.counters.get(COUNTERS_CONSUMER_ID));
+    map.put("entitiesLog", this.entitiesLog.getStateMap());
+    map.put("journalLog", this.journalLog.getStateMap());
   }
   
   private List<JournalEntry> filterJournal(List<JournalEntry> list, long oldestTransactionOnClient) {
@@ -347,8 +352,7 @@ public class EntityPersistor {
         newEntry.failure = error;
         newEntry.reconfigureResponse = reconfigureResult;
         clientJournal.add(newEntry);
-        this.entityLifeJournal.put(clientID, clientJournal);
-        storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+        this.journalLog.put(clientID, clientJournal);
       }
     }
   }
@@ -383,11 +387,10 @@ public class EntityPersistor {
     value.canDelete = canDelete;
     value.entityName = entityName;
     value.configuration = configuration;
-    EntityData.Value previous = this.entities.put(key, value);
+    EntityData.Value previous = this.entitiesLog.put(key, value);
     if (previous != null) {
       deletes.put(key, value);
     }
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
   }
   
   private void permanentEntityCreated(EntityID id, long consumerid, Exception e) {
@@ -401,8 +404,13 @@ public class EntityPersistor {
   }
   
   public synchronized void removeOrphanedClientsFromJournal(Set<ClientID> connectedClients) {
-    this.entityLifeJournal.entrySet().removeIf(e->!connectedClients.contains(e.getKey()));
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    List<ClientID> orphans = new ArrayList<>();
+    for (ClientID clientID : this.entityLifeJournal.keySet()) {
+      if (!connectedClients.contains(clientID)) {
+        orphans.add(clientID);
+      }
+    }
+    this.journalLog.removeAll(orphans);
   }
   
   public synchronized void serialize(ObjectOutput bucket) throws IOException {
@@ -420,13 +428,14 @@ public class EntityPersistor {
     try {
       int size = bucket.readInt();
       LOGGER.debug("log size " + size);
+      Map<ClientID, List<EntityData.JournalEntry>> layered = new LinkedHashMap<>();
       for (int x=0;x<size;x++) {
         ClientID key = (ClientID)bucket.readObject();
         @SuppressWarnings("unchecked")
         List<EntityData.JournalEntry> journal = (List<EntityData.JournalEntry>)bucket.readObject();
         List<EntityData.JournalEntry> check = (List<EntityData.JournalEntry>)this.entityLifeJournal.get(key);
         if (check == null) {
-          this.entityLifeJournal.put(key, journal);
+          layered.put(key, journal);
           LOGGER.debug(key + " putting " + journal);
         } else {
           int pos = 0;
@@ -439,13 +448,13 @@ public class EntityPersistor {
             }
           }
           LOGGER.debug(key + " layering " + journal + " " + check);
-          this.entityLifeJournal.put(key, check);
+          layered.put(key, check);
         }
       }
+      this.journalLog.putAll(layered);
     } catch (ClassNotFoundException cnf) {
       throw new IOException(cnf);
     }
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
     long nextConsumer = bucket.readLong();
     this.counters.put(COUNTERS_CONSUMER_ID, nextConsumer);
     storeToDisk(COUNTERS_FILE_NAME, this.counters);
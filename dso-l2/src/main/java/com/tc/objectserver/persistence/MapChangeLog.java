@@ -0,0 +1,220 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.terracotta.persistence.IPlatformPersistence;
+
+
+/**
+ * Keeps a map persistent as a snapshot plus an append-only log of changes, instead of re-storing the whole map on
+ *  every change.
+ *
+ * The snapshot is stored under the map's own name, in the same form it always was, so existing data loads unchanged.
+ *  Each change is stored as its own small data element, named after the current generation and its position in the log.
+ *  Once the log holds compactAfter changes the map is written as a new snapshot, the generation is bumped and the old
+ *  changes are deleted.  Changes are absolute puts and removes so replaying a generation over a snapshot which already
+ *  contains it, as happens if we stop between storing a snapshot and bumping the generation, is harmless.
+ *
+ * A compactAfter of 0 turns the log off, every change stores the snapshot as before.
+ *
+ * Not thread safe, callers serialize all access to the log and to the map it persists.
+ */
+class MapChangeLog<K, V> {
+  private final IPlatformPersistence storageManager;
+  private final String name;
+  private final int compactAfter;
+  private final Map<K, V> map;
+  private long generation;
+  private int changes;
+  private long compactions;
+
+  /**
+   * @param map the live map, already holding the snapshot stored under name, if there was one
+   */
+  MapChangeLog(IPlatformPersistence storageManager, String name, int compactAfter, Map<K, V> map) {
+    this.storageManager = storageManager;
+    this.name = name;
+    this.compactAfter = compactAfter;
+    this.map = map;
+  }
+
+  /**
+   * Applies the changes stored since the last snapshot to the map.
+   */
+  @SuppressWarnings("unchecked")
+  void replay() throws IOException {
+    Long storedGeneration = (Long) this.storageManager.loadDataElement(generationName());
+    this.generation = (null != storedGeneration) ? storedGeneration : 0L;
+    while (true) {
+      Change change = (Change) this.storageManager.loadDataElement(changeName(this.generation, this.changes));
+      if (null == change) {
+        break;
+      }
+      if (change.removed) {
+        this.map.remove((K) change.key);
+      } else {
+        this.map.put((K) change.key, (V) change.value);
+      }
+      this.changes += 1;
+    }
+    // Anything left over from a log which has since been turned off, or a lot of changes, is folded in now.
+    if (this.changes > 0 && (0 == this.compactAfter || this.changes >= this.compactAfter)) {
+      compact();
+    }
+  }
+
+  V put(K key, V value) {
+    V previous = this.map.put(key, value);
+    append(Collections.singletonList(new Change(key, value, false)));
+    return previous;
+  }
+
+  V remove(K key) {
+    V previous = this.map.remove(key);
+    if (null != previous) {
+      append(Collections.singletonList(new Change(key, null, true)));
+    }
+    return previous;
+  }
+
+  /**
+   * Puts every entry, storing the snapshot at most once for the lot rather than once per entry.
+   */
+  void putAll(Map<? extends K, ? extends V> entries) {
+    List<Change> batch = new ArrayList<>(entries.size());
+    for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+      this.map.put(entry.getKey(), entry.getValue());
+      batch.add(new Change(entry.getKey(), entry.getValue(), false));
+    }
+    append(batch);
+  }
+
+  /**
+   * Removes every key, storing the snapshot at most once for the lot rather than once per key.
+   */
+  void removeAll(Collection<? extends K> keys) {
+    List<Change> batch = new ArrayList<>(keys.size());
+    for (K key : keys) {
+      if (null != this.map.remove(key)) {
+        batch.add(new Change(key, null, true));
+      }
+    }
+    append(batch);
+  }
+
+  /**
+   * Empties the map and drops its snapshot and log.
+   */
+  void clear() {
+    this.map.clear();
+    rollGeneration(null);
+  }
+
+  /**
+   * Writes the map as a new snapshot and drops the log.
+   */
+  void compact() {
+    if (this.changes > 0) {
+      this.compactions += 1;
+    }
+    rollGeneration((Serializable) this.map);
+  }
+
+  Map<String, Object> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("generation", this.generation);
+    state.put("changes", this.changes);
+    state.put("compactAfter", this.compactAfter);
+    state.put("compactions", this.compactions);
+    return state;
+  }
+
+  private void append(List<Change> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (0 == this.compactAfter) {
+      store(this.name, (Serializable) this.map);
+    } else if (this.changes + batch.size() >= this.compactAfter) {
+      compact();
+    } else {
+      for (Change change : batch) {
+        store(changeName(this.generation, this.changes), change);
+        this.changes += 1;
+      }
+    }
+  }
+
+  private void rollGeneration(Serializable snapshot) {
+    // The snapshot has to be in place before the generation moves past the changes it includes.
+    store(this.name, snapshot);
+    if (0 == this.changes) {
+      // nothing logged against this generation, it can stay
+      return;
+    }
+    long oldGeneration = this.generation;
+    int oldChanges = this.changes;
+    this.generation += 1;
+    this.changes = 0;
+    store(generationName(), this.generation);
+    for (int i = 0; i < oldChanges; ++i) {
+      store(changeName(oldGeneration, i), null);
+    }
+  }
+
+  private void store(String dataName, Serializable dataElement) {
+    try {
+      this.storageManager.storeDataElement(dataName, dataElement);
+    } catch (IOException e) {
+      // In general, we have no way of solving this problem so throw it.
+      throw new RuntimeException("Failure storing " + this.name, e);
+    }
+  }
+
+  private String generationName() {
+    return this.name + ".generation";
+  }
+
+  private String changeName(long generation, int index) {
+    return this.name + "." + generation + "." + index;
+  }
+
+  private static class Change implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Object key;
+    private final Object value;
+    private final boolean removed;
+
+    Change(Object key, Object value, boolean removed) {
+      this.key = key;
+      this.value = value;
+      this.removed = removed;
+    }
+  }
+}
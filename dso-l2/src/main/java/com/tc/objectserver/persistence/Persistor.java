@@ -21,6 +21,9 @@ package com.tc.objectserver.persistence;
 import com.tc.net.ClientID;
 import com.tc.objectserver.api.ClientNotFoundException;
 import com.tc.net.core.ProductID;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -38,16 +41,21 @@ public class Persistor implements PrettyPrintable {
   private ClientStatePersistor clientStatePersistor;
   private final EntityPersistor entityPersistor;
   private TransactionOrderPersistor transactionOrderPersistor;
+  private final int changeLogCompactAfter;
 
   public Persistor(IPlatformPersistence persistentStorage) {
     this.persistentStorage = persistentStorage;
+    this.changeLogCompactAfter = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_PERSISTENCE_CHANGELOG_COMPACT_AFTER, 0);
     this.clusterStatePersistor = new ClusterStatePersistor(persistentStorage);
-    this.entityPersistor = new EntityPersistor(persistentStorage);
+    this.entityPersistor = new EntityPersistor(persistentStorage, this.changeLogCompactAfter);
   }
 
   public boolean start(boolean trackClients) {
-    clientStatePersistor = new ClientStatePersistor(persistentStorage);
-    this.transactionOrderPersistor = new TransactionOrderPersistor(persistentStorage, this.clientStatePersistor.loadPermanentClientIDs());
+    clientStatePersistor = new ClientStatePersistor(persistentStorage, this.changeLogCompactAfter);
+    TCProperties properties = TCPropertiesImpl.getProperties();
+    this.transactionOrderPersistor = new TransactionOrderPersistor(persistentStorage, this.clientStatePersistor.loadPermanentClientIDs(),
+        properties.getBoolean(TCPropertiesConsts.L2_TRANSACTION_ORDER_GROUP_COMMIT, false),
+        properties.getLong(TCPropertiesConsts.L2_TRANSACTION_ORDER_GROUP_COMMIT_TICK, 0L));
     for (ClientID orphan : clientStatePersistor.loadOrphanClientIDs()) {
       try {
         removeClientState(orphan);
@@ -65,6 +73,9 @@ public class Persistor implements PrettyPrintable {
   }
 
   public void close() {
+    if (transactionOrderPersistor != null) {
+      transactionOrderPersistor.close();
+    }
   }
   
   public void addClientState(ClientID node, ProductID product) {
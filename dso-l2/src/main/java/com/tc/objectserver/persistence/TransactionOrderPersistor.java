@@ -29,37 +29,71 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
  * Stores the information mapping the client-local TransactionIDs of in-flight transactions into a global order.
  * This is persisted because reconnect on restart needs to ensure that the transactions being replayed are done so in
  * the same order as their original order.
+ * <p>
+ * By default the sequence of a permanent client is written to storage as each transaction arrives.  In group commit
+ * mode transactions only get their place in the global order on arrival and are then written, for all clients, in one
+ * batch by a background flusher.  Every transaction of a batch shares the batch's future, which completes once the whole
+ * batch is stored.  A transaction already retired by a later one in the same batch is never written.
  */
 public class TransactionOrderPersistor {
   private final IPlatformPersistence storageManager;
-  private Long receivedTransactionCount = 0L;
+  private volatile long receivedTransactionCount = 0L;
     
   private List<ClientTransaction> globalList = null;
-  private final Set<ClientID> permNodeIDs = new HashSet<>();
-  private final Map<ClientID, List<ClientTransaction>> fastSequenceCache = new HashMap<>();
-  
+  private final Set<ClientID> permNodeIDs = ConcurrentHashMap.newKeySet();
+  private final Map<ClientID, SequenceRing> fastSequenceCache = new HashMap<>();
+
+  // group commit, storageLock orders the batches and is always taken before this
+  private final long groupCommitNanos;
+  private final Object storageLock = new Object();
+  private final Thread flusher;
+  private CommitBatch pending;
+  private boolean stopped;
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder batchedTransactions = new LongAdder();
+  private final LongAdder writtenTransactions = new LongAdder();
+
   public TransactionOrderPersistor(IPlatformPersistence storageManager, Set<ClientID> clients) {
+    this(storageManager, clients, false, 0L);
+  }
+
+  /**
+   * @param groupCommit if true, sequences of permanent clients are written in batches by a background thread
+   * @param tickMicros how long the flusher waits for a batch to fill once the first transaction is pending, 0 to write
+   *                   as soon as the previous batch is stored
+   */
+  public TransactionOrderPersistor(IPlatformPersistence storageManager, Set<ClientID> clients, boolean groupCommit, long tickMicros) {
     this.storageManager = storageManager;
     // these are permanent clients because we steart with them
     for (ClientID oneClient : clients) {
       this.permNodeIDs.add(oneClient);
     }
+    this.groupCommitNanos = TimeUnit.MICROSECONDS.toNanos(tickMicros);
+    if (groupCommit) {
+      this.pending = new CommitBatch();
+      this.flusher = new Thread(this::runGroupCommit, "TransactionOrderPersistor group commit");
+      this.flusher.setDaemon(true);
+      this.flusher.start();
+    } else {
+      this.flusher = null;
+    }
   }
 
   /**
@@ -87,6 +121,9 @@ public class TransactionOrderPersistor {
     // the server and does not need to be kept.
     if (!source.isNull() && oldestTransactionOnClient.isValid()) {
       if (this.permNodeIDs.contains(source)) {
+        if (this.pending != null && !this.stopped) {
+          return addToBatch(source, transactionID.toLong(), oldestTransactionOnClient.toLong());
+        }
         // Create the new pair.
         IPlatformPersistence.SequenceTuple transaction = new IPlatformPersistence.SequenceTuple();
         transaction.localSequenceID = transactionID.toLong();
@@ -94,22 +131,40 @@ public class TransactionOrderPersistor {
 
         return this.storageManager.fastStoreSequence(source.toLong(), transaction, oldestTransactionOnClient.toLong());
       } else {
-        ClientTransaction transaction = new ClientTransaction();
-        transaction.localTransactionID = transactionID.toLong();
-        transaction.globalTransactionID = this.receivedTransactionCount;
-        return fastStoreSequence(source, transaction, oldestTransactionOnClient.toLong());
+        SequenceRing sequence = fastSequenceCache.get(source);
+        if (sequence != null) {
+          sequence.add(transactionID.toLong(), this.receivedTransactionCount, oldestTransactionOnClient.toLong());
+        } else {
+          // must be a client that will not reconnect
+        }
+        return null;
       }
     } else {
       return null;
     }
   }
+
+  private Future<Void> addToBatch(ClientID source, long transactionID, long oldestTransactionOnClient) {
+    CommitBatch batch = this.pending;
+    SequenceRing sequence = batch.sequences.get(source);
+    if (sequence == null) {
+      sequence = new SequenceRing();
+      batch.sequences.put(source, sequence);
+    }
+    sequence.add(transactionID, this.receivedTransactionCount, oldestTransactionOnClient);
+    if (batch.transactions++ == 0) {
+      // the flusher only waits for an empty batch to get its first transaction
+      notifyAll();
+    }
+    return batch.committed;
+  }
   
   synchronized void addTrackingForClient(ClientID source, ProductID product) {
     // Make sure we have tracking for this client.
     if (product.isPermanent()) {
       this.permNodeIDs.add(source);
     } else if (product.isReconnectEnabled()) {
-      this.fastSequenceCache.put(source, new LinkedList<>());
+      this.fastSequenceCache.put(source, new SequenceRing());
     } else {
       // do nothing, this type of client will never reconnect
     }
@@ -118,39 +173,196 @@ public class TransactionOrderPersistor {
   /**
    * Called when we no longer need to track transaction ordering information from source (presumably due to a disconnect).
    */
-  synchronized void removeTrackingForClient(ClientID source) {
-    long sourceID = source.toLong();
-    try {
-      if (this.permNodeIDs.remove(source)) {
-        this.storageManager.deleteSequence(sourceID);
-      } else {
+  void removeTrackingForClient(ClientID source) {
+    boolean permanent;
+    synchronized (this) {
+      permanent = this.permNodeIDs.remove(source);
+      if (!permanent) {
         fastSequenceCache.remove(source);
       }
-    } catch (IOException e) {
-      Assert.fail(e.getLocalizedMessage());
+    }
+    if (permanent) {
+      // a batch being written skips clients that are gone, wait for it so it can't recreate the sequence
+      synchronized (storageLock) {
+        try {
+          this.storageManager.deleteSequence(source.toLong());
+        } catch (IOException e) {
+          Assert.fail(e.getLocalizedMessage());
+        }
+      }
     }
   }
 
-  private Future<Void> fastStoreSequence(ClientID sequenceIndex, ClientTransaction newEntry, long oldestValidSequenceID) {
-    List<ClientTransaction> sequence = fastSequenceCache.get(sequenceIndex);
-    if (sequence != null) {
-      if (!sequence.isEmpty()) {
-  //  exploiting the knowledge that sequences are always updated in an increasing fashion, as soon as the first
-  //  cleaning function fails, bail on the iteration
-        Iterator<ClientTransaction> tuple = sequence.iterator();
-        while (tuple.hasNext()) {
-          if (tuple.next().localTransactionID < oldestValidSequenceID) {
-            tuple.remove();
-          } else {
+  private void runGroupCommit() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (!this.stopped && this.pending.transactions == 0) {
+            wait();
+          }
+          if (this.stopped) {
             break;
           }
+          // give the batch one tick to fill
+          long deadline = System.nanoTime() + this.groupCommitNanos;
+          long remaining = this.groupCommitNanos;
+          while (!this.stopped && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+          }
         }
+        flush();
       }
-      sequence.add(newEntry);
-    } else {
-      // must be a client that will not reconnect
+    } catch (InterruptedException e) {
+      // shutting down
+    }
+    flush();
+  }
+
+  /**
+   * Writes out the pending batch, if any, and waits for it to be stored.
+   */
+  void flush() {
+    if (this.flusher == null) {
+      return;
+    }
+    CommitBatch batch;
+    List<Future<Void>> writes = new ArrayList<>();
+    synchronized (storageLock) {
+      synchronized (this) {
+        batch = this.pending;
+        if (batch.transactions == 0) {
+          return;
+        }
+        this.pending = new CommitBatch();
+      }
+      try {
+        for (Map.Entry<ClientID, SequenceRing> entry : batch.sequences.entrySet()) {
+          ClientID client = entry.getKey();
+          if (!this.permNodeIDs.contains(client)) {
+            continue;
+          }
+          SequenceRing sequence = entry.getValue();
+          for (int x = 0; x < sequence.size(); x++) {
+            IPlatformPersistence.SequenceTuple transaction = new IPlatformPersistence.SequenceTuple();
+            transaction.localSequenceID = sequence.localAt(x);
+            transaction.globalSequenceID = sequence.globalAt(x);
+            Future<Void> write = this.storageManager.fastStoreSequence(client.toLong(), transaction, sequence.oldest);
+            if (write != null) {
+              writes.add(write);
+            }
+          }
+          this.writtenTransactions.add(sequence.size());
+        }
+      } catch (RuntimeException | Error t) {
+        batch.committed.completeExceptionally(t);
+        throw t;
+      }
+    }
+    this.batches.increment();
+    this.batchedTransactions.add(batch.transactions);
+    try {
+      for (Future<Void> write : writes) {
+        write.get();
+      }
+      batch.committed.complete(null);
+    } catch (ExecutionException e) {
+      batch.committed.completeExceptionally(e.getCause());
+    } catch (InterruptedException e) {
+      batch.committed.completeExceptionally(e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stops the group commit flusher once the pending batch is written.  Transactions arriving afterwards are written
+   * directly.
+   */
+  public void close() {
+    if (this.flusher == null) {
+      return;
+    }
+    // write the last batch before anything can be written directly behind it
+    synchronized (storageLock) {
+      synchronized (this) {
+        this.stopped = true;
+        notifyAll();
+        flush();
+      }
+    }
+    try {
+      this.flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
-    return null;
+  }
+
+  /**
+   * The transactions of one client in order of arrival, held in primitive arrays used as a ring.  Local ids only ever
+   * grow so expired transactions are always pruned from the head.
+   */
+  private static class SequenceRing {
+    private long[] locals = new long[16];
+    private long[] globals = new long[16];
+    private int head;
+    private int size;
+    private long oldest = Long.MIN_VALUE;
+
+    void add(long localTransactionID, long globalTransactionID, long oldestValidTransactionID) {
+      prune(oldestValidTransactionID);
+      if (size == locals.length) {
+        grow();
+      }
+      int tail = (head + size) & (locals.length - 1);
+      locals[tail] = localTransactionID;
+      globals[tail] = globalTransactionID;
+      size += 1;
+    }
+
+    private void prune(long oldestValidTransactionID) {
+      if (oldestValidTransactionID > oldest) {
+        oldest = oldestValidTransactionID;
+      }
+  //  exploiting the knowledge that sequences are always updated in an increasing fashion, as soon as the first
+  //  cleaning function fails, bail on the iteration
+      while (size > 0 && locals[head] < oldest) {
+        head = (head + 1) & (locals.length - 1);
+        size -= 1;
+      }
+    }
+
+    private void grow() {
+      long[] newLocals = new long[locals.length * 2];
+      long[] newGlobals = new long[globals.length * 2];
+      for (int x = 0; x < size; x++) {
+        newLocals[x] = localAt(x);
+        newGlobals[x] = globalAt(x);
+      }
+      locals = newLocals;
+      globals = newGlobals;
+      head = 0;
+    }
+
+    int size() {
+      return size;
+    }
+
+    long localAt(int index) {
+      return locals[(head + index) & (locals.length - 1)];
+    }
+
+    long globalAt(int index) {
+      return globals[(head + index) & (globals.length - 1)];
+    }
+  }
+
+  /**
+   * Transactions waiting for the next group commit.
+   */
+  private static class CommitBatch {
+    private final Map<ClientID, SequenceRing> sequences = new HashMap<>();
+    private final CompletableFuture<Void> committed = new CompletableFuture<>();
+    private int transactions;
   }
     
   private static class ClientTransaction {
@@ -205,11 +417,14 @@ public class TransactionOrderPersistor {
           }
         }
       }
-      for (List<ClientTransaction> all : this.fastSequenceCache.values()) {
-        if (all != null) {
-          for (ClientTransaction t : all) {
-            sortMap.put(t.globalTransactionID, t);
-          }
+      for (Map.Entry<ClientID, SequenceRing> entry : this.fastSequenceCache.entrySet()) {
+        SequenceRing sequence = entry.getValue();
+        for (int x = 0; x < sequence.size(); x++) {
+          ClientTransaction transaction = new ClientTransaction();
+          transaction.clientID = entry.getKey().toLong();
+          transaction.localTransactionID = sequence.localAt(x);
+          transaction.globalTransactionID = sequence.globalAt(x);
+          sortMap.put(transaction.globalTransactionID, transaction);
         }
       }
       globalList = Collections.unmodifiableList(new ArrayList<>(sortMap.values()));
@@ -226,6 +441,8 @@ public class TransactionOrderPersistor {
     long sourceID = source.toLong();
     long transactionID = transaction.toLong();
     
+    // the global list is built from storage so anything still waiting for a group commit has to go out first
+    flush();
     int index = -1;
     List<ClientTransaction> list = buildGlobalListIfNecessary();
     int seek = 0;
@@ -242,16 +459,28 @@ public class TransactionOrderPersistor {
   /**
    * Clears all internal state.
    */
-  public synchronized  void clearAllRecords() {
-    this.globalList = null;
-    for (ClientID nodeID : this.permNodeIDs) {
-      try {
-        this.storageManager.deleteSequence(nodeID.toLong());
-      } catch (IOException e) {
-        Assert.fail(e.getLocalizedMessage());
+  public void clearAllRecords() {
+    CommitBatch discarded = null;
+    synchronized (storageLock) {
+      synchronized (this) {
+        this.globalList = null;
+        if (this.pending != null) {
+          discarded = this.pending;
+          this.pending = new CommitBatch();
+        }
+        for (ClientID nodeID : this.permNodeIDs) {
+          try {
+            this.storageManager.deleteSequence(nodeID.toLong());
+          } catch (IOException e) {
+            Assert.fail(e.getLocalizedMessage());
+          }
+        }
+        this.fastSequenceCache.clear();
       }
     }
-    this.fastSequenceCache.clear();
+    if (discarded != null) {
+      discarded.committed.complete(null);
+    }
   }
 
   /**
@@ -264,6 +493,15 @@ public class TransactionOrderPersistor {
   public synchronized Map<String, Object> reportStateToMap(Map<String, Object> map) {
     map.put("className", this.getClass().getName());
     map.put("receivedTransactions", getReceivedTransactionCount());
+    if (this.flusher != null) {
+      Map<String, Object> groupCommit = new LinkedHashMap<>();
+      map.put("groupCommit", groupCommit);
+      groupCommit.put("tickMicros", TimeUnit.NANOSECONDS.toMicros(this.groupCommitNanos));
+      groupCommit.put("batches", this.batches.sum());
+      groupCommit.put("batchedTransactions", this.batchedTransactions.sum());
+      groupCommit.put("writtenTransactions", this.writtenTransactions.sum());
+      groupCommit.put("pendingTransactions", this.pending.transactions);
+    }
     if(this.permNodeIDs != null && storageManager != null) {
       Map<String, Object> clientMap = new LinkedHashMap<>();
       map.put("permanentClients", clientMap);
@@ -286,13 +524,12 @@ public class TransactionOrderPersistor {
 
     Map<String, Object> clientMap = new LinkedHashMap<>();
     map.put("regularClients", clientMap);
-    for (Map.Entry<ClientID, List<ClientTransaction>> entry : fastSequenceCache.entrySet()) {
+    for (Map.Entry<ClientID, SequenceRing> entry : fastSequenceCache.entrySet()) {
       List<String> trans = new ArrayList<>();
-      if (entry.getValue() != null) {
-        clientMap.put(entry.getKey().toString(), trans);
-        for (ClientTransaction transaction : entry.getValue()) {
-          trans.add("Global seq Id = " + transaction.globalTransactionID + ", local seq id = " + transaction.localTransactionID);
-        }
+      clientMap.put(entry.getKey().toString(), trans);
+      SequenceRing sequence = entry.getValue();
+      for (int x = 0; x < sequence.size(); x++) {
+        trans.add("Global seq Id = " + sequence.globalAt(x) + ", local seq id = " + sequence.localAt(x));
       }
     }
     return map;
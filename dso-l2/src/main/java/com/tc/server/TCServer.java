@@ -24,6 +24,7 @@ import com.tc.config.schema.setup.ConfigurationSetupException;
 import com.tc.spi.Pauseable;
 import com.tc.text.PrettyPrinter;
 import com.tc.util.State;
+import java.util.Map;
 import org.terracotta.server.StopAction;
 
 
@@ -81,4 +82,6 @@ public interface TCServer extends Pauseable {
   void reloadConfiguration() throws ConfigurationSetupException;
 
   String getClusterState(PrettyPrinter form);
+
+  Map<String, ?> getStageLatencies();
 }
@@ -474,6 +474,11 @@ public class TCServerImpl extends SEDA implements TCServer {
     }
   }
 
+  @Override
+  public Map<String, ?> getStageLatencies() {
+    return this.getStageManager().getLatencyState();
+  }
+
   @Override
   public Map<String, ?> getStateMap() {
     return this.getStageManager().getStateMap();
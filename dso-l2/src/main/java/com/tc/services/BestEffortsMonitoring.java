@@ -19,8 +19,11 @@
 package com.tc.services;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +39,11 @@ import java.util.Collection;
 /**
  * Manages the cache and delayed dispatch of best-efforts data passed to IMonitoringProducer while the server is in passive
  *  mode.
- * Note that this interface is synchronized to ensure safe interaction with internal threads.
+ * The cache is sharded per consumerID so that pushes, which arrive once per operation from the management layer, only
+ *  contend with pushes for the same consumer.  Repeated pushes of the same name are coalesced in the cache and everything
+ *  cached is sent to the active in a single batch when the flush timer fires.
+ * Pushes only take the lock of this object when no flush is pending, the timer and active changes are synchronized to
+ *  ensure safe interaction with internal threads.
  */
 public class BestEffortsMonitoring {
 
@@ -47,34 +54,42 @@ public class BestEffortsMonitoring {
   public static final long ASYNC_FLUSH_DELAY_MILLIS = 1000;
 
   private final ISimpleTimer timer;
-  private final Map<Long, Map<String, Serializable>> bestEffortsCache;
+  private final ConcurrentHashMap<Long, Map<String, Serializable>> bestEffortsCache;
   private ActivePipeWrapper activeWrapper;
   private long outstandingTimerToken;
+  // True when anything added to the cache is guaranteed to be picked up without a further request:  either a flush timer
+  //  is outstanding or there is no active yet and attaching one will flush.  It is cleared before the cache is drained.
+  private volatile boolean flushPending;
 
 
   public BestEffortsMonitoring(ISimpleTimer timer) {
     this.timer = timer;
-    this.bestEffortsCache = new HashMap<Long, Map<String, Serializable>>();
+    this.bestEffortsCache = new ConcurrentHashMap<Long, Map<String, Serializable>>();
+    this.flushPending = true;
   }
 
   public synchronized void flushAfterActivePromotion(PlatformServer thisServer, TerracottaServiceProviderRegistry globalRegistry) {
     // We no longer care about the timer so clear it, if one exists.
     ensureTimerCancelled();
+    // Nothing will be sent to an active from here on.
+    this.flushPending = true;
     
     // Walk each consumerID, looking up their registries, and flushing all entries to the implementation.
-    for (Map.Entry<Long, Map<String, Serializable>> perConsumerEntry : this.bestEffortsCache.entrySet()) {
+    for (Long consumerID : this.bestEffortsCache.keySet()) {
+      Map<String, Serializable> perConsumer = this.bestEffortsCache.remove(consumerID);
+      if (null == perConsumer) {
+        continue;
+      }
       IStripeMonitoring collector = null;
-      Collection<IStripeMonitoring> underlyingCollector = globalRegistry.subRegistry(perConsumerEntry.getKey()).getServices(new BasicServiceConfiguration<>(IStripeMonitoring.class));
+      Collection<IStripeMonitoring> underlyingCollector = globalRegistry.subRegistry(consumerID).getServices(new BasicServiceConfiguration<>(IStripeMonitoring.class));
       // NOTE:  We assert that there _is_ a registry for IStripeMonitoring if we received this call.
       Assert.assertNotNull(underlyingCollector);
       collector = new IStripeMonitoringWrapper(underlyingCollector, LOGGER);
 
-      for (Map.Entry<String, Serializable> entry : perConsumerEntry.getValue().entrySet()) {
+      for (Map.Entry<String, Serializable> entry : perConsumer.entrySet()) {
         collector.pushBestEffortsData(thisServer, entry.getKey(), entry.getValue());
       }
     }
-    // We can now drop this (gratuitous but makes it clear we are done).
-    this.bestEffortsCache.clear();
   }
 
   public synchronized void attachToNewActive(ActivePipeWrapper activeWrapper) {
@@ -83,6 +98,8 @@ public class BestEffortsMonitoring {
     
     // Note that it is possible that there already is an active and this is replacing it.
     this.activeWrapper = activeWrapper;
+    // From here on, new data needs a timer.
+    this.flushPending = false;
     
     // See if we need to flush, now that we have an attached active.
     // We can only flush if there is something here so check that it is even possible (since none of the top-level entries
@@ -92,18 +109,20 @@ public class BestEffortsMonitoring {
     }
   }
 
-  public synchronized void pushBestEfforts(long consumerID, String name, Serializable data) {
-    // We lazily build the cache.
-    if (!this.bestEffortsCache.containsKey(consumerID)) {
-      this.bestEffortsCache.put(consumerID, new HashMap<String, Serializable>());
-    }
-    
-    // Update the cache.
-    Map<String, Serializable> map = this.bestEffortsCache.get(consumerID);
-    map.put(name, data);
+  public void pushBestEfforts(long consumerID, String name, Serializable data) {
+    // Update the cache, lazily building the per-consumer map.  The map is only touched under the lock of its cache entry.
+    this.bestEffortsCache.compute(consumerID, (id, map) -> {
+      if (null == map) {
+        map = new HashMap<String, Serializable>();
+      }
+      map.put(name, data);
+      return map;
+    });
     
     // Request a flush, if needed.
-    requestFlushIfNonePending();
+    if (!this.flushPending) {
+      requestFlushIfNonePending();
+    }
   }
 
   /**
@@ -120,8 +139,7 @@ public class BestEffortsMonitoring {
   }
 
 
-  private void requestFlushIfNonePending() {
-    // NOTE:  This must be called under lock!
+  private synchronized void requestFlushIfNonePending() {
     if ((0 == this.outstandingTimerToken) && (null != this.activeWrapper)) {
       // There is no timer running so request one.
       this.outstandingTimerToken = this.timer.addDelayed(new Runnable(){
@@ -131,6 +149,8 @@ public class BestEffortsMonitoring {
         }}, this.timer.currentTimeMillis() + ASYNC_FLUSH_DELAY_MILLIS);
       Assert.assertTrue(this.outstandingTimerToken > 0);
     }
+    // Either a timer is now outstanding or there is no active, in which case attaching one will flush.
+    this.flushPending = true;
   }
 
   private void flushCacheAndReset() {
@@ -140,34 +160,35 @@ public class BestEffortsMonitoring {
     // Calling this with a pending timer is an error (if this was called _via_ the timer, it must clear the token before
     //  calling).
     Assert.assertTrue(0 == this.outstandingTimerToken);
+    // Clear this before draining so any push which misses the drain requests the next flush.
+    this.flushPending = false;
     
-    // First, traverse the tree to see how many messages we are going to send in this batch.
-    int messagesInBatch = 0;
-    for (Map.Entry<Long, Map<String, Serializable>> entry : this.bestEffortsCache.entrySet()) {
-      messagesInBatch += entry.getValue().size();
+    // Drain the cache, one consumer at a time, into a single batch.
+    List<Long> consumerIDs = new ArrayList<>();
+    List<String> keys = new ArrayList<>();
+    List<Serializable> values = new ArrayList<>();
+    for (Long consumerID : this.bestEffortsCache.keySet()) {
+      Map<String, Serializable> perConsumer = this.bestEffortsCache.remove(consumerID);
+      if (null != perConsumer) {
+        for (Map.Entry<String, Serializable> mapEntry : perConsumer.entrySet()) {
+          consumerIDs.add(consumerID);
+          keys.add(mapEntry.getKey());
+          values.add(mapEntry.getValue());
+        }
+      }
+    }
+    // A racing push can request a timer for data an earlier flush already picked up.
+    if (keys.isEmpty()) {
+      return;
     }
-    // Note that we currently ensure that this is only called when non-empty.
-    Assert.assertTrue(messagesInBatch > 0);
     
-    // Serialize the cache.
-    long[] consumerIDs = new long[messagesInBatch];
-    String[] keys = new String[messagesInBatch];
-    Serializable[] values = new Serializable[messagesInBatch];
-    int index = 0;
-    for (Map.Entry<Long, Map<String, Serializable>> entry : this.bestEffortsCache.entrySet()) {
-      long consumerID = entry.getKey();
-      for (Map.Entry<String, Serializable> mapEntry : entry.getValue().entrySet()) {
-        consumerIDs[index] = consumerID;
-        keys[index] = mapEntry.getKey();
-        values[index] = mapEntry.getValue();
-        index += 1;
-      }
+    long[] consumerIDArray = new long[consumerIDs.size()];
+    for (int i = 0; i < consumerIDArray.length; ++i) {
+      consumerIDArray[i] = consumerIDs.get(i);
     }
-    // Clear it.
-    this.bestEffortsCache.clear();
     
     // Push the batch.
-    this.activeWrapper.pushBestEffortsBatch(consumerIDs, keys, values);
+    this.activeWrapper.pushBestEffortsBatch(consumerIDArray, keys.toArray(new String[keys.size()]), values.toArray(new Serializable[values.size()]));
   }
 
   private void ensureTimerCancelled() {
@@ -37,13 +37,14 @@ public class ClientAccount {
     this.channel = channel;
   }
 
-  synchronized void sendNoResponse(ClientInstanceID clientInstance, byte[] payload) {
+  // sends need no lock, the sender orders messages per client and a send racing close is dropped with the channel
+  void sendNoResponse(ClientInstanceID clientInstance, byte[] payload) {
     if (open) {
       this.sender.send(this.clientID, clientInstance, payload);
     }
   }
 
-  synchronized void sendInvokeMessage(TransactionID transaction, byte[] payload) {
+  void sendInvokeMessage(TransactionID transaction, byte[] payload) {
     if (open) {
       this.sender.send(this.clientID, transaction, payload);
     }
@@ -25,8 +25,8 @@ import com.tc.objectserver.api.ManagedEntity;
 import com.tc.util.Assert;
 import com.tc.net.core.ProductID;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import org.terracotta.entity.ClientCommunicator;
@@ -81,7 +81,7 @@ public class CommunicatorService implements ImplementationProvidedServiceProvide
 
   @Override
   public Collection<Class<?>> getProvidedServiceTypes() {
-    return Collections.singleton(ClientCommunicator.class);
+    return Arrays.asList(ClientCommunicator.class, MulticastClientCommunicator.class);
   }
 
   public void close() {
@@ -25,16 +25,16 @@ import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.entity.ClientDescriptorImpl;
 import com.tc.util.Assert;
 
-import org.terracotta.entity.ClientCommunicator;
 import org.terracotta.entity.ClientDescriptor;
 import org.terracotta.entity.EntityResponse;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 
+import java.util.Collection;
 import java.util.concurrent.ConcurrentMap;
 
 
-public class EntityClientCommunicatorService implements ClientCommunicator {
+public class EntityClientCommunicatorService implements MulticastClientCommunicator {
   private final ConcurrentMap<NodeID, ClientAccount> clientAccounts;
   private final ManagedEntity owningEntity;
   
@@ -59,6 +59,21 @@ public class EntityClientCommunicatorService implements ClientCommunicator {
     }
   }
 
+  @Override
+  public void multicastNoResponse(Collection<? extends ClientDescriptor> clientDescriptors, EntityResponse message) throws MessageCodecException {
+    byte[] payload = null;
+    for (ClientDescriptor clientDescriptor : clientDescriptors) {
+      ClientDescriptorImpl rawDescriptor = (ClientDescriptorImpl)clientDescriptor;
+      ClientAccount clientAccount = clientAccounts.get(rawDescriptor.getNodeID());
+      if (clientAccount != null) {
+        if (payload == null) {
+          payload = serialize(this.owningEntity.getCodec(), message);
+        }
+        clientAccount.sendNoResponse(rawDescriptor.getClientInstanceID(), payload);
+      }
+    }
+  }
+
   public void sendInvokeMessage(ClientDescriptor clientDescriptor, long invokeID, EntityResponse message) throws MessageCodecException {
     // We are in internal code so downcast the descriptor.
     ClientDescriptorImpl rawDescriptor = (ClientDescriptorImpl)clientDescriptor;
@@ -23,6 +23,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,8 +62,9 @@ import java.util.Arrays;
  *  In the future, we may have a better solution to this problem by treating the platform's "fake" entity as something more
  *  real, and accessing it through that.
  *
- * XXX: The synchronization through this class should be re-thought since it introduces bottlenecks and brittle code which
- *  probably has better solutions.
+ * Changes of mode (becoming active or attaching to a new active) take the write side of modeLock.  Everything else takes
+ *  the read side so calls for different consumerIDs never wait on each other.  While passive, changes to a consumer's
+ *  cached tree, and forwarding them to the active, are serialized on the root node of that consumer's tree.
  */
 @BuiltinService
 public class LocalMonitoringProducer implements ImplementationProvidedServiceProvider, ManagedEntity.LifecycleListener {
@@ -67,31 +72,33 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
   private final TerracottaServiceProviderRegistry globalRegistry;
   private final PlatformServer thisServer;
   private final Map<ServerID, PlatformServer> otherServers;
-  private ActivePipeWrapper activeWrapper;
+  private final ReadWriteLock modeLock = new ReentrantReadWriteLock();
+  private volatile ActivePipeWrapper activeWrapper;
   // We only keep the cached tree root until we become active.
   // (the tree is per-consumerID).
-  private Map<Long, CacheNode> cachedTreeRoot;
-  private BestEffortsMonitoring bestEfforts;
+  private volatile Map<Long, CacheNode> cachedTreeRoot;
+  private volatile BestEffortsMonitoring bestEfforts;
   private final ServiceClassLoader classLoader;
 
   public LocalMonitoringProducer(ClassLoader loader, TerracottaServiceProviderRegistry globalRegistry, PlatformServer thisServer, ISimpleTimer timer) {
     this.globalRegistry = globalRegistry;
     this.thisServer = thisServer;
-    this.otherServers = new HashMap<>();
-    this.cachedTreeRoot = new HashMap<>();
+    this.otherServers = new ConcurrentHashMap<>();
+    this.cachedTreeRoot = new ConcurrentHashMap<>();
     this.bestEfforts = new BestEffortsMonitoring(timer);
     this.classLoader = new ServiceClassLoader(loader);
   }
 
   @Override
-  public synchronized void entityCreated(ManagedEntity sender) {
+  public void entityCreated(ManagedEntity sender) {
 
   }
 
   @Override
-  public synchronized void entityDestroyed(ManagedEntity sender) {
-    if (this.cachedTreeRoot != null) {
-      this.cachedTreeRoot.remove(sender.getConsumerID());
+  public void entityDestroyed(ManagedEntity sender) {
+    Map<Long, CacheNode> tree = this.cachedTreeRoot;
+    if (tree != null) {
+      tree.remove(sender.getConsumerID());
     }
   }
 
@@ -104,15 +111,15 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
   }
 
   @Override
-  public synchronized <T> T getService(long consumerID, ManagedEntity owningEntity, ServiceConfiguration<T> configuration) {
+  public <T> T getService(long consumerID, ManagedEntity owningEntity, ServiceConfiguration<T> configuration) {
     Class<T> type = configuration.getServiceType();
     // If we are caching, make sure that we have a node.
     IStripeMonitoring underlyingCollector = getIStripeMonitoringService(consumerID);
 
     T service = null;
     if (null != underlyingCollector) {
-      if ((null != this.cachedTreeRoot) && !this.cachedTreeRoot.containsKey(consumerID)) {
-        this.cachedTreeRoot.put(consumerID, new CacheNode(null));
+      Map<Long, CacheNode> tree = this.cachedTreeRoot;
+      if ((null != tree) && (null == tree.putIfAbsent(consumerID, new CacheNode(null)))) {
         if (owningEntity != null) {
           owningEntity.addLifecycleListener(this);
         }
@@ -147,11 +154,21 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
   }
 
   @Override
-  public synchronized void serverDidBecomeActive() {
+  public void serverDidBecomeActive() {
  //  avoid this notification,  it happens too early.  the method below will be called directly in the correct sequence
   }
 
-  public synchronized void serverIsActive() {
+  public void serverIsActive() {
+    Lock lock = this.modeLock.writeLock();
+    lock.lock();
+    try {
+      becomeActive();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void becomeActive() {
     // Tell the ID0 instance that the server is active.
     IStripeMonitoring platformCollector = getIStripeMonitoringService(ServiceProvider.PLATFORM_CONSUMER_ID);
 
@@ -184,7 +201,17 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
    *
    * @param activeWrapper
    */
-  public synchronized void sendToNewActive(ActivePipeWrapper activeWrapper) {
+  public void sendToNewActive(ActivePipeWrapper activeWrapper) {
+    Lock lock = this.modeLock.writeLock();
+    lock.lock();
+    try {
+      attachToNewActive(activeWrapper);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void attachToNewActive(ActivePipeWrapper activeWrapper) {
     // Store the new wrapper.
     this.activeWrapper = activeWrapper;
 
@@ -239,7 +266,18 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
     }
   }
 
-  public synchronized void handleRemoteAdd(ServerID sender, long consumerID, String[] parents, String name, Serializable value) {
+  public void handleRemoteAdd(ServerID sender, long consumerID, String[] parents, String name, Serializable value) {
+    // Events arriving while we are still becoming active wait for it to finish.
+    Lock lock = this.modeLock.readLock();
+    lock.lock();
+    try {
+      addFromRemote(sender, consumerID, parents, name, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void addFromRemote(ServerID sender, long consumerID, String[] parents, String name, Serializable value) {
     // If we are getting these, we MUST be in active mode.
     if (this.cachedTreeRoot != null) {
       LOGGER.error("tree root is not null");
@@ -256,7 +294,18 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
     }
   }
 
-  public synchronized void handleRemoteRemove(ServerID sender, long consumerID, String[] parents, String name) {
+  public void handleRemoteRemove(ServerID sender, long consumerID, String[] parents, String name) {
+    // Events arriving while we are still becoming active wait for it to finish.
+    Lock lock = this.modeLock.readLock();
+    lock.lock();
+    try {
+      removeFromRemote(sender, consumerID, parents, name);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void removeFromRemote(ServerID sender, long consumerID, String[] parents, String name) {
     // If we are getting these, we MUST be in active mode.
     if (this.cachedTreeRoot != null) {
       LOGGER.error("tree root is not null");
@@ -273,7 +322,18 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
     }
   }
 
-  public synchronized void handleRemoteBestEffortsBatch(ServerID sender, long[] consumerIDs, String[] keys, Serializable[] values) {
+  public void handleRemoteBestEffortsBatch(ServerID sender, long[] consumerIDs, String[] keys, Serializable[] values) {
+    // Events arriving while we are still becoming active wait for it to finish.
+    Lock lock = this.modeLock.readLock();
+    lock.lock();
+    try {
+      pushBestEffortsBatchFromRemote(sender, consumerIDs, keys, values);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void pushBestEffortsBatchFromRemote(ServerID sender, long[] consumerIDs, String[] keys, Serializable[] values) {
     // If we are getting these, we MUST be in active mode.
     if (this.cachedTreeRoot != null) {
       LOGGER.error("tree root is not null");
@@ -296,7 +356,7 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
    * @return True if the receiver is in a mode to receive events from passives, as the active.  False is returned if
    * the receiver still believes it is running in a passive mode.
    */
-  public synchronized boolean isReadyToReceiveRemoteEvents() {
+  public boolean isReadyToReceiveRemoteEvents() {
     // The presence of cachedTreeRoot implies that we are still caching, as a passive, so null means we are active.
     return (null == this.cachedTreeRoot);
   }
@@ -310,76 +370,101 @@ public class LocalMonitoringProducer implements ImplementationProvidedServicePro
   }
 
 
-  private synchronized boolean addNodeFromShim(long consumerID, IStripeMonitoring underlyingCollector, String[] parents, String name, Serializable value) {
-    boolean didStore = false;
+  private boolean addNodeFromShim(long consumerID, IStripeMonitoring underlyingCollector, String[] parents, String name, Serializable value) {
     if (value instanceof Class) {
       this.classLoader.addServiceClass((Class)value);
       return true;
     }
-    // First off, see if we have a cache - this determines if we are in active or passive mode.
-    if (null != LocalMonitoringProducer.this.cachedTreeRoot) {
-      // This means we are passive.
-      CacheNode parentNode = findParent(consumerID, parents);
-      if (null != parentNode) {
-        parentNode.children.put(name, new CacheNode(value));
-        // This could be cached so we can also send it to any waiting active and return success.
-        if (null != LocalMonitoringProducer.this.activeWrapper) {
-          LocalMonitoringProducer.this.activeWrapper.addNode(consumerID, parents, name, value);
+    Lock lock = this.modeLock.readLock();
+    lock.lock();
+    try {
+      boolean didStore = false;
+      // First off, see if we have a cache - this determines if we are in active or passive mode.
+      Map<Long, CacheNode> tree = this.cachedTreeRoot;
+      if (null != tree) {
+        // This means we are passive.
+        CacheNode root = tree.get(consumerID);
+        if (null != root) {
+          synchronized (root) {
+            CacheNode parentNode = findParent(root, parents);
+            if (null != parentNode) {
+              parentNode.children.put(name, new CacheNode(value));
+              // This could be cached so we can also send it to any waiting active and return success.
+              if (null != this.activeWrapper) {
+                this.activeWrapper.addNode(consumerID, parents, name, value);
+              }
+              didStore = true;
+            }
+          }
         }
-        didStore = true;
+      } else {
+        // This means we are active so just pass it through.
+        didStore = underlyingCollector.addNode(this.thisServer, parents, name, value);
       }
-    } else {
-      // This means we are active so just pass it through.
-      didStore = underlyingCollector.addNode(LocalMonitoringProducer.this.thisServer, parents, name, value);
+      return didStore;
+    } finally {
+      lock.unlock();
     }
-    return didStore;
-  }
-
-  private synchronized boolean removeNodeFromShim(long consumerID, IStripeMonitoring underlyingCollector, String[] parents, String name) {
-    boolean didRemove = false;
-    // First off, see if we have a cache - this determines if we are in active or passive mode.
-    if (null != this.cachedTreeRoot) {
-      // This means we are passive.
-      CacheNode parentNode = findParent(consumerID, parents);
-      if (null != parentNode) {
-        CacheNode removed = parentNode.children.remove(name);
-        if (null != removed) {
-          // This could be cached so we can also send it to any waiting actives and return success.
-          if (null != this.activeWrapper) {
-            this.activeWrapper.removeNode(consumerID, parents, name);
+  }
+
+  private boolean removeNodeFromShim(long consumerID, IStripeMonitoring underlyingCollector, String[] parents, String name) {
+    Lock lock = this.modeLock.readLock();
+    lock.lock();
+    try {
+      boolean didRemove = false;
+      // First off, see if we have a cache - this determines if we are in active or passive mode.
+      Map<Long, CacheNode> tree = this.cachedTreeRoot;
+      if (null != tree) {
+        // This means we are passive.
+        CacheNode root = tree.get(consumerID);
+        if (null != root) {
+          synchronized (root) {
+            CacheNode parentNode = findParent(root, parents);
+            if (null != parentNode) {
+              CacheNode removed = parentNode.children.remove(name);
+              if (null != removed) {
+                // This could be cached so we can also send it to any waiting actives and return success.
+                if (null != this.activeWrapper) {
+                  this.activeWrapper.removeNode(consumerID, parents, name);
+                }
+                didRemove = true;
+              }
+            }
           }
-          didRemove = true;
         }
+      } else {
+        // This means we are active so just pass it through.
+        didRemove = underlyingCollector.removeNode(this.thisServer, parents, name);
       }
-    } else {
-      // This means we are active so just pass it through.
-      didRemove = underlyingCollector.removeNode(this.thisServer, parents, name);
+      return didRemove;
+    } finally {
+      lock.unlock();
     }
-    return didRemove;
   }
 
-  private synchronized void pushBestEffortsFromShim(long consumerID, IStripeMonitoring underlyingCollector, String name, Serializable data) {
-    if (null != this.bestEfforts) {
-      // Pass this to the BestEffortsMonitoring object so it can handle this.
-      this.bestEfforts.pushBestEfforts(consumerID, name, data);
-    } else {
-      // We are the active so just push this through.
-      underlyingCollector.pushBestEffortsData(this.thisServer, name, data);
+  private void pushBestEffortsFromShim(long consumerID, IStripeMonitoring underlyingCollector, String name, Serializable data) {
+    Lock lock = this.modeLock.readLock();
+    lock.lock();
+    try {
+      BestEffortsMonitoring cache = this.bestEfforts;
+      if (null != cache) {
+        // Pass this to the BestEffortsMonitoring object so it can handle this.
+        cache.pushBestEfforts(consumerID, name, data);
+      } else {
+        // We are the active so just push this through.
+        underlyingCollector.pushBestEffortsData(this.thisServer, name, data);
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
-  private CacheNode findParent(long consumerID, String[] parents) {
-    CacheNode parentNode = null;
-    if (null != this.cachedTreeRoot) {
-      CacheNode oneNode = this.cachedTreeRoot.get(consumerID);
-      for (int i = 0; (parents != null) && (null != oneNode)  && (i < parents.length); ++i) {
-        oneNode = oneNode.children.get(parents[i]);
-      }
-      if (null != oneNode) {
-        parentNode = oneNode;
-      }
+  private CacheNode findParent(CacheNode root, String[] parents) {
+    CacheNode oneNode = root;
+    for (int i = 0; (parents != null) && (null != oneNode)  && (i < parents.length); ++i) {
+      oneNode = oneNode.children.get(parents[i]);
     }
-    return parentNode;
+    return oneNode;
   }
 
   private void walkCacheChildren(String[] parents, Map<String, CacheNode> nodeChildren, CacheWalker walker) {
@@ -0,0 +1,260 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tc.util.Assert;
+import com.tc.util.TimingWheel;
+
+
+/**
+ * An {@link ISimpleTimer} which keeps its tasks in a {@link TimingWheel} instead of a heap.
+ * <p>
+ * Scheduling and cancelling never take a lock: a new task is handed to the wheel thread through a queue and the wheel
+ *  thread alone files it in the wheel for the tick its start time falls in, a cancel just takes the task out
+ *  of the id map and marks it so the wheel thread drops it when it comes due.  Each tick the wheel thread advances the
+ *  wheel over the ticks which have passed and runs what is due.  Tasks run no earlier than their start time and up to
+ *  one tick late.
+ * <p>
+ * Tasks run on the wheel thread unless an executor is given, in which case they are handed to it so a slow task only
+ *  holds up the tasks queued behind it in that executor.  An {@link ExecutorService} given this way belongs to the timer
+ *  and is shut down when the timer is stopped.  A periodic task is not rescheduled until its run completes so it never
+ *  overlaps itself.
+ */
+public class TimingWheelTimer implements ISimpleTimer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TimingWheelTimer.class);
+
+  private final TimeSource timeSource;
+  private final long tickMillis;
+  private final TimingWheel<Task> wheel;
+  private final Executor executor;
+  private final Thread timerThread;
+  private final AtomicLong nextId = new AtomicLong(1L);
+  private final Map<Long, Task> scheduled = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Task> incoming = new ConcurrentLinkedQueue<>();
+  private volatile boolean threadIsRunning = false;
+  private volatile boolean idle = false;
+  // the clock tick the wheel started at, the wheel and the current tick's tasks are only touched by the wheel thread
+  private long startTick;
+  private final List<Task> currentTickTasks = new ArrayList<>();
+
+  /**
+   * @param source The time source, the system clock if null
+   * @param group The thread group of the wheel thread
+   * @param tickMillis The resolution of the wheel
+   * @param wheelSize The number of slots, rounded up to a power of two
+   * @param executor Runs the tasks, if null they run on the wheel thread, shut down by {@link #stop()} if it is an
+   *  {@link ExecutorService}
+   */
+  public TimingWheelTimer(TimeSource source, ThreadGroup group, long tickMillis, int wheelSize, Executor executor) {
+    Assert.assertTrue(tickMillis > 0);
+    Assert.assertTrue(wheelSize > 0 && wheelSize <= (1 << 30));
+    this.timeSource = (null != source) ? source : TimeSource.SYSTEM_TIME_SOURCE;
+    this.tickMillis = tickMillis;
+    this.wheel = new TimingWheel<>(wheelSize);
+    this.executor = executor;
+    this.timerThread = new Thread(group, this::runWheel, "TimingWheelTimer");
+    this.timerThread.setDaemon(true);
+  }
+
+  @Override
+  public synchronized void start() {
+    this.startTick = this.timeSource.currentTimeMillis() / this.tickMillis;
+    this.threadIsRunning = true;
+    this.timerThread.start();
+  }
+
+  @Override
+  public void stop() throws InterruptedException {
+    this.threadIsRunning = false;
+    LockSupport.unpark(this.timerThread);
+    this.timerThread.join();
+    if (this.executor instanceof ExecutorService) {
+      ((ExecutorService) this.executor).shutdown();
+    }
+  }
+
+  @Override
+  public long currentTimeMillis() {
+    return this.timeSource.currentTimeMillis();
+  }
+
+  @Override
+  public long addDelayed(Runnable toRun, long startTimeMillis) {
+    Assert.assertNotNull(toRun);
+    return schedule(toRun, startTimeMillis, 0L);
+  }
+
+  @Override
+  public long addPeriodic(Runnable toRun, long startTimeMillis, long repeatPeriodMillis) {
+    Assert.assertNotNull(toRun);
+    Assert.assertTrue(repeatPeriodMillis > 0);
+    return schedule(toRun, startTimeMillis, repeatPeriodMillis);
+  }
+
+  @Override
+  public boolean cancel(long id) {
+    Task task = this.scheduled.remove(id);
+    if (null == task) {
+      return false;
+    }
+    // the wheel thread drops it when it comes due
+    task.cancelled = true;
+    return true;
+  }
+
+  public void cancelAll() {
+    for (Long id : this.scheduled.keySet()) {
+      cancel(id);
+    }
+  }
+
+  /**
+   * @return The number of tasks which are scheduled and not cancelled, periodic tasks count until cancelled.
+   */
+  public int size() {
+    return this.scheduled.size();
+  }
+
+  private long schedule(Runnable toRun, long startTimeMillis, long repeatPeriodMillis) {
+    long id = this.nextId.getAndIncrement();
+    Task task = new Task(id, toRun, startTimeMillis, repeatPeriodMillis);
+    this.scheduled.put(id, task);
+    submit(task);
+    return id;
+  }
+
+  private void submit(Task task) {
+    this.incoming.add(task);
+    if (this.idle) {
+      LockSupport.unpark(this.timerThread);
+    }
+  }
+
+  private void runWheel() {
+    while (this.threadIsRunning) {
+      long now = this.timeSource.currentTimeMillis();
+      long currentTick = now / this.tickMillis;
+      List<Task> due = this.wheel.advanceTo(currentTick - this.startTick);
+      due.addAll(this.currentTickTasks);
+      this.currentTickTasks.clear();
+      for (Task task : due) {
+        file(task, now, currentTick);
+      }
+      Task task;
+      while (null != (task = this.incoming.poll())) {
+        file(task, now, currentTick);
+      }
+      waitForWork(currentTick);
+    }
+  }
+
+  private void file(Task task, long now, long currentTick) {
+    if (task.cancelled) {
+      return;
+    }
+    if (task.startTimeMillis <= now) {
+      fire(task);
+      return;
+    }
+    long dueTick = task.startTimeMillis / this.tickMillis;
+    if (dueTick > currentTick) {
+      this.wheel.schedule(task, dueTick - currentTick);
+    } else {
+      // due later in the current tick, looked at again every time round until then
+      this.currentTickTasks.add(task);
+    }
+  }
+
+  private void waitForWork(long currentTick) {
+    if (this.scheduled.isEmpty()) {
+      this.idle = true;
+      // re-check after publishing idle so a racing schedule either is seen here or unparks us
+      if (this.threadIsRunning && this.incoming.isEmpty() && this.scheduled.isEmpty()) {
+        LockSupport.park(this);
+      }
+      this.idle = false;
+    } else {
+      long untilNextTick = (currentTick + 1) * this.tickMillis - this.timeSource.currentTimeMillis();
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(1L, Math.min(this.tickMillis, untilNextTick))));
+    }
+  }
+
+  private void fire(Task task) {
+    if (task.periodTimeMillis == 0) {
+      // a one shot task can no longer be cancelled once it is picked to run
+      if (!this.scheduled.remove(task.id, task)) {
+        return;
+      }
+    }
+    if (null == this.executor) {
+      runTask(task);
+    } else {
+      try {
+        this.executor.execute(() -> runTask(task));
+      } catch (RejectedExecutionException e) {
+        LOGGER.warn("timer executor rejected a task, running it on the timer thread", e);
+        runTask(task);
+      }
+    }
+  }
+
+  private void runTask(Task task) {
+    try {
+      task.toRun.run();
+    } catch (Throwable t) {
+      LOGGER.error("Unexpected exception in timer (timed events may be dropped)", t);
+    }
+    if (task.periodTimeMillis > 0 && !task.cancelled) {
+      task.startTimeMillis += task.periodTimeMillis;
+      submit(task);
+    }
+  }
+
+
+  private static class Task {
+    private final long id;
+    private final Runnable toRun;
+    private final long periodTimeMillis;
+    // only changed by whoever runs the task, before it is handed back to the wheel
+    private volatile long startTimeMillis;
+    private volatile boolean cancelled;
+
+    private Task(long id, Runnable toRun, long startTimeMillis, long periodTimeMillis) {
+      this.id = id;
+      this.toRun = toRun;
+      this.startTimeMillis = startTimeMillis;
+      this.periodTimeMillis = periodTimeMillis;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.l2.state;
+
+import com.tc.l2.ha.RandomWeightGenerator;
+import com.tc.l2.ha.WeightGeneratorFactory;
+import com.tc.l2.msg.L2StateMessage;
+import com.tc.net.NodeID;
+import com.tc.net.ServerID;
+import com.tc.net.groups.GroupEventsListener;
+import com.tc.net.groups.GroupManager;
+import com.tc.net.groups.GroupResponse;
+import com.tc.util.State;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ElectionManagerImplTest {
+
+  private final ServerID local = new ServerID("localhost:9510", new byte[] {1});
+  private final ServerID peer = new ServerID("localhost:9520", new byte[] {2});
+  private final Set<String> servers = new HashSet<>(Arrays.asList("localhost:9510", "localhost:9520", "localhost:9530"));
+  private final WeightGeneratorFactory weights = RandomWeightGenerator.createTestingFactory(2);
+  private final State currentState = new State("PASSIVE-STANDBY");
+
+  private GroupManager<L2StateMessage> groupManager;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    groupManager = mock(GroupManager.class);
+    GroupResponse<L2StateMessage> noResponses = mock(GroupResponse.class);
+    when(noResponses.getResponses()).thenReturn(Collections.emptyList());
+    when(groupManager.sendToAndWaitForResponse(anySet(), any(L2StateMessage.class))).thenReturn(noResponses);
+  }
+
+  @Test
+  public void testConnectedMajorityEndsElectionEarly() throws Exception {
+    ElectionManagerImpl election = new ElectionManagerImpl(groupManager, 60, true);
+    peerJoined();
+    CompletableFuture<NodeID> winner = startElection(election);
+    vote(election, peer);
+
+    // the third server is down, the two connected servers are a majority
+    assertEquals(peer, winner.get(10, TimeUnit.SECONDS));
+    Map<String, Object> last = lastElection(election);
+    assertEquals("connected-majority", last.get("votingEndedBy"));
+    assertEquals(2, last.get("votes"));
+    assertTrue((Long) last.get("votingMillis") < 10_000);
+    assertEquals(1L, election.getStateMap().get("earlyElections"));
+  }
+
+  @Test
+  public void testElectionWaitsWithoutEarlyMajority() throws Exception {
+    ElectionManagerImpl election = new ElectionManagerImpl(groupManager, 1, false);
+    peerJoined();
+    CompletableFuture<NodeID> winner = startElection(election);
+    vote(election, peer);
+
+    assertEquals(peer, winner.get(10, TimeUnit.SECONDS));
+    Map<String, Object> last = lastElection(election);
+    assertEquals("timeout", last.get("votingEndedBy"));
+    assertTrue((Long) last.get("votingMillis") >= 1000);
+  }
+
+  @Test
+  public void testMinorityWaitsForTimeout() throws Exception {
+    ElectionManagerImpl election = new ElectionManagerImpl(groupManager, 1, true);
+    // nobody else is connected, this server alone is no majority of three
+    CompletableFuture<NodeID> winner = startElection(election);
+
+    assertEquals(local, winner.get(10, TimeUnit.SECONDS));
+    assertEquals("timeout", lastElection(election).get("votingEndedBy"));
+    assertEquals(0L, election.getStateMap().get("earlyElections"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void peerJoined() {
+    ArgumentCaptor<GroupEventsListener> listener = ArgumentCaptor.forClass(GroupEventsListener.class);
+    verify(groupManager).registerForGroupEvents(listener.capture());
+    listener.getValue().nodeJoined(peer);
+  }
+
+  private CompletableFuture<NodeID> startElection(ElectionManagerImpl election) throws Exception {
+    CompletableFuture<NodeID> winner = new CompletableFuture<>();
+    ElectionContext context = new ElectionContext(local, servers, false, weights, currentState, winner::complete);
+    Thread runner = new Thread(() -> {
+      try {
+        election.getEventHandler().handleEvent(context);
+      } catch (Exception e) {
+        winner.completeExceptionally(e);
+      }
+    });
+    runner.setDaemon(true);
+    runner.start();
+    while (!"Election-In-Progress".equals(election.getStateMap().get("state"))) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    return winner;
+  }
+
+  private void vote(ElectionManagerImpl election, ServerID voter) {
+    // a trump enrollment always wins so the result does not depend on the random weights
+    Enrollment enrollment = EnrollmentFactory.createTrumpEnrollment(voter, weights);
+    election.handleStartElectionRequest(L2StateMessage.createElectionStartedMessage(enrollment, currentState), currentState);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> lastElection(ElectionManagerImpl election) {
+    return (Map<String, Object>) election.getStateMap().get("lastElection");
+  }
+}
@@ -18,6 +18,7 @@
  */
 package com.tc.net.groups;
 
+import com.tc.bytes.TCByteBuffer;
 import com.tc.config.GroupConfiguration;
 import com.tc.io.TCByteBufferInput;
 import com.tc.io.TCByteBufferOutput;
@@ -33,6 +34,7 @@ import com.tc.net.protocol.tcm.ChannelEvent;
 import com.tc.net.protocol.tcm.ChannelEventListener;
 import com.tc.net.protocol.tcm.MessageChannel;
 import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.net.protocol.transport.NullConnectionPolicy;
 import com.tc.object.session.SessionID;
@@ -46,21 +48,27 @@ import com.tc.util.UUID;
 import com.tc.util.concurrent.NoExceptionLinkedQueue;
 import com.tc.util.runtime.ThreadDump;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mock;
 
@@ -829,6 +837,81 @@ public class TCGroupManagerImplTest extends TCTestCase {
     }
   }
 
+  public void testSendToEachSerializesOnce() throws Exception {
+    CountingMessage msg = new CountingMessage("shared");
+    List<TCGroupMember> targets = Arrays.asList(mock(TCGroupMember.class), mock(TCGroupMember.class), mock(TCGroupMember.class));
+    TCGroupManagerImpl.sendToEach(msg, targets);
+    assertEquals(1, msg.serialized);
+
+    TCByteBuffer[] shared = null;
+    for (TCGroupMember member : targets) {
+      ArgumentCaptor<TCByteBuffer[]> encoded = ArgumentCaptor.forClass(TCByteBuffer[].class);
+      verify(member).sendIgnoreNotReady(same(msg), encoded.capture());
+      assertNotNull(encoded.getValue());
+      if (shared == null) {
+        shared = encoded.getValue();
+      }
+      // every member is handed the same encoded buffers
+      assertSame(shared, encoded.getValue());
+    }
+
+    // and every member's wrapper sends the whole message from them without serializing it again
+    for (int i = 0; i < targets.size(); ++i) {
+      TCGroupMessageWrapper sent = new TCGroupMessageWrapper(SessionID.NULL_ID, mock(MessageMonitor.class), new TCByteBufferOutputStream(), mock(MessageChannel.class), TCMessageType.GROUP_WRAPPER_MESSAGE);
+      sent.setGroupMessage(msg, shared);
+      sent.dehydrate();
+      TCGroupMessageWrapper received = new TCGroupMessageWrapper(SessionID.NULL_ID, mock(MessageMonitor.class), mock(MessageChannel.class), (TCMessageHeader) sent.getHeader(), sent.getPayload());
+      received.hydrate();
+      assertEquals(msg, received.getGroupMessage());
+    }
+    assertEquals(1, msg.serialized);
+  }
+
+  public void testSendToOneMemberSerializesInWrapper() throws Exception {
+    CountingMessage msg = new CountingMessage("single");
+    TCGroupMember member = mock(TCGroupMember.class);
+    TCGroupManagerImpl.sendToEach(msg, Collections.singletonList(member));
+    verify(member).sendIgnoreNotReady(same(msg), isNull());
+    assertEquals(0, msg.serialized);
+  }
+
+  public static final class CountingMessage extends AbstractGroupMessage {
+
+    String msg;
+    // not part of the message, how many times this instance was serialized
+    int    serialized;
+
+    public CountingMessage() {
+      super(0);
+    }
+
+    public CountingMessage(String message) {
+      super(0);
+      this.msg = message;
+    }
+
+    @Override
+    protected void basicDeserializeFrom(TCByteBufferInput in) throws IOException {
+      msg = in.readString();
+    }
+
+    @Override
+    protected void basicSerializeTo(TCByteBufferOutput out) {
+      serialized++;
+      out.writeString(msg);
+    }
+
+    @Override
+    public int hashCode() {
+      return msg.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CountingMessage && this.msg.equals(((CountingMessage) o).msg);
+    }
+  }
+
   private static final class TestMessage extends AbstractGroupMessage {
 
     // to make serialization sane
@@ -0,0 +1,113 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class AckWaiterWindowTest {
+
+  @Test
+  public void testOutOfOrderRemoval() throws Exception {
+    AckWaiterWindow window = new AckWaiterWindow();
+    ActivePassiveAckWaiter[] waiters = new ActivePassiveAckWaiter[10];
+    for (int i = 0; i < waiters.length; ++i) {
+      waiters[i] = waiter();
+      window.put(100 + i, waiters[i]);
+    }
+    assertSame(waiters[5], window.remove(105));
+    assertNull(window.remove(105));
+    assertNull(window.get(105));
+    assertSame(waiters[0], window.remove(100));
+    assertSame(waiters[9], window.get(109));
+    assertEquals(8, window.size());
+    // an activity older than anything in the window
+    ActivePassiveAckWaiter older = waiter();
+    window.put(99, older);
+    assertSame(older, window.get(99));
+    assertSame(waiters[1], window.get(101));
+    for (int i = 1; i < waiters.length; ++i) {
+      window.remove(100 + i);
+    }
+    window.remove(99);
+    assertTrue(window.isEmpty());
+  }
+
+  @Test
+  public void testGrowsToFitWindow() throws Exception {
+    AckWaiterWindow window = new AckWaiterWindow();
+    ActivePassiveAckWaiter first = waiter();
+    window.put(1, first);
+    ActivePassiveAckWaiter[] waiters = new ActivePassiveAckWaiter[5000];
+    for (int i = 0; i < waiters.length; ++i) {
+      waiters[i] = waiter();
+      window.put(2 + i, waiters[i]);
+    }
+    assertSame(first, window.get(1));
+    for (int i = 0; i < waiters.length; ++i) {
+      assertSame(waiters[i], window.get(2 + i));
+    }
+    assertEquals(0L, window.getStateMap().get("overflowed"));
+  }
+
+  @Test
+  public void testStragglerMovesToOverflow() throws Exception {
+    AckWaiterWindow window = new AckWaiterWindow();
+    ActivePassiveAckWaiter straggler = waiter();
+    window.put(0, straggler);
+    // keep the window moving far past the straggler
+    for (long id = 1; id < 200_000; ++id) {
+      window.put(id, waiter());
+      window.remove(id);
+    }
+    assertEquals(1L, window.getStateMap().get("overflowed"));
+    assertSame(straggler, window.get(0));
+    assertEquals(1, window.size());
+    assertSame(straggler, window.remove(0));
+    assertTrue(window.isEmpty());
+  }
+
+  @Test
+  public void testBatchLookupAndRemoval() throws Exception {
+    AckWaiterWindow window = new AckWaiterWindow();
+    ActivePassiveAckWaiter a = waiter();
+    ActivePassiveAckWaiter b = waiter();
+    window.put(7, a);
+    window.put(8, b);
+    ActivePassiveAckWaiter[] found = window.getAll(new long[] {8, 6, 7});
+    assertSame(b, found[0]);
+    assertNull(found[1]);
+    assertSame(a, found[2]);
+    window.removeAll(new long[] {7, 8, 9}, 1);
+    Map<Long, ActivePassiveAckWaiter> left = window.snapshot();
+    assertEquals(Collections.singletonMap(8L, b), left);
+  }
+
+  private static ActivePassiveAckWaiter waiter() {
+    return new ActivePassiveAckWaiter(Collections.emptyMap(), Collections.emptySet(), null);
+  }
+}
@@ -24,15 +24,23 @@ import com.tc.net.ServerID;
 import com.tc.net.groups.GroupManager;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.objectserver.api.ManagedEntity;
 import com.tc.util.Assert;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import com.tc.l2.state.ConsistencyManager;
 import com.tc.l2.state.ConsistencyManager.Transition;
@@ -103,6 +111,59 @@ public class ActiveToPassiveReplicationTest {
     Assert.assertTrue(replication.getWaiters().isEmpty());
   }
   
+  @Test
+  public void testParallelSyncStreamsEntitiesConcurrently() throws Exception {
+    ReplicationSender replicate = mock(ReplicationSender.class);
+    when(replicate.addPassive(any(NodeID.class), any(SessionID.class), anyInt(), any(SyncReplicationActivity.class))).thenReturn(Boolean.TRUE);
+    // nothing is listening, fail every send so sync messages don't wait for acks
+    doAnswer(i->{
+      ((Consumer<Boolean>)i.getArgument(2)).accept(false);
+      return null;
+    }).when(replicate).replicateMessage(any(SessionID.class), any(SyncReplicationActivity.class), any(Consumer.class));
+    ConsistencyManager cmgr = mock(ConsistencyManager.class);
+    when(cmgr.requestTransition(any(ServerMode.class), any(NodeID.class), any(Transition.class))).thenReturn(Boolean.TRUE);
+
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch together = new CountDownLatch(4);
+    List<ManagedEntity> entities = new ArrayList<>();
+    for (int x = 0; x < 8; x++) {
+      ManagedEntity entity = mock(ManagedEntity.class);
+      doAnswer(i->{
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        together.countDown();
+        together.await(10, TimeUnit.SECONDS);
+        running.decrementAndGet();
+        return null;
+      }).when(entity).sync(any(SessionID.class));
+      entities.add(entity);
+    }
+    ProcessTransactionHandler pth = mock(ProcessTransactionHandler.class);
+    when(pth.snapshotEntityList(any(Consumer.class))).thenReturn(entities);
+
+    replication = new ActiveToPassiveReplication(cmgr, pth, mock(EntityPersistor.class), replicate, mock(Sink.class), mock(GroupManager.class), 4, 1024);
+    replication.enterActiveState(Collections.emptySet());
+    replication.nodeJoined(passive);
+    replication.startPassiveSync(passive);
+
+    long deadline = System.currentTimeMillis() + 10000;
+    Map<String, Object> progress = null;
+    while (System.currentTimeMillis() < deadline) {
+      progress = (Map<String, Object>)((Map<String, Object>)replication.getStateMap().get("passiveSync")).get(passive.toString());
+      if (progress != null && (Boolean)progress.get("finished")) {
+        break;
+      }
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assert.assertNotNull(progress);
+    Assert.assertTrue((Boolean)progress.get("finished"));
+    Assert.assertEquals(8, ((Integer)progress.get("syncedEntities")).intValue());
+    Assert.assertEquals(4, maxRunning.get());
+    for (ManagedEntity entity : entities) {
+      verify(entity).sync(any(SessionID.class));
+    }
+  }
+
   @After
   public void tearDown() {
   }
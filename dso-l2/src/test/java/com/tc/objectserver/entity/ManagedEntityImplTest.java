@@ -36,6 +36,8 @@ import com.tc.objectserver.api.ServerEntityRequest;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.core.impl.ManagementTopologyEventCollector;
 import com.tc.objectserver.entity.RequestProcessor.EntityRequest;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.services.InternalServiceRegistry;
 import com.tc.util.Assert;
 import org.junit.AfterClass;
@@ -65,9 +67,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -150,18 +155,7 @@ public class ManagedEntityImplTest {
     
     requestMulti = processor;
     
-    Mockito.doAnswer((invoke)->{
-      System.out.println(invoke.getArguments()[0]);
-      exec.submit(()->{
-        try {
-          ((Runnable)invoke.getArguments()[0]).run();
-        } catch (Exception e) {
-          e.printStackTrace();
-          throw e;
-        }
-      });
-      return null;
-    }).when(executionSink).addToSink(ArgumentMatchers.any());
+    runSinkOnExecutor();
     
     activeServerEntity = mock(ActiveServerEntity.class);
     passiveServerEntity = mock(PassiveServerEntity.class);
@@ -180,6 +174,20 @@ public class ManagedEntityImplTest {
     invokeOnTransactionHandler(()->Thread.currentThread().setName(ServerConfigurationContext.PASSIVE_REPLICATION_STAGE));
   }
   
+  private void runSinkOnExecutor() {
+    Mockito.doAnswer((invoke)->{
+      exec.submit(()->{
+        try {
+          ((Runnable)invoke.getArguments()[0]).run();
+        } catch (Exception e) {
+          e.printStackTrace();
+          throw e;
+        }
+      });
+      return null;
+    }).when(executionSink).addToSink(ArgumentMatchers.any());
+  }
+
   private void invokeOnTransactionHandler(Runnable r) throws ExecutionException, InterruptedException {
     pth.submit((Callable)()->{
       try {
@@ -728,6 +736,108 @@ public class ManagedEntityImplTest {
     verify(loopback, times(3)).completed(Mockito.any(EntityID.class), Mockito.any(FetchID.class), Mockito.any(ServerEntityAction.class));
   }
 
+  @Test
+  public void testFullDefermentQueueKeepsInvokesInOrder() throws Exception {
+    createActiveWithDefermentLimit(2, false);
+    List<EntityMessage> invoked = new ArrayList<>();
+    when(activeServerEntity.invokeActive(any(), any(EntityMessage.class))).then((invoke)->{
+      invoked.add((EntityMessage)invoke.getArguments()[1]);
+      return new EntityResponse() {};
+    });
+//  hold everything handed to the request processor so the first invoke keeps the entity deferring
+    List<Runnable> held = new ArrayList<>();
+    Mockito.doAnswer((invoke)->held.add((Runnable)invoke.getArguments()[0])).when(executionSink).addToSink(ArgumentMatchers.any());
+
+//  every invoke is on the management key with the default concurrency strategy
+    List<EntityMessage> sent = new ArrayList<>();
+    List<TestingResponse> responses = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      EntityMessage message = mock(EntityMessage.class);
+      TestingResponse response = mockResponse();
+      sent.add(message);
+      responses.add(response);
+      invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(),
+          MessagePayload.commonMessagePayloadBusy(TCByteBufferFactory.wrap(new byte[0]), message, true), response));
+    }
+    Assert.assertEquals(1, held.size());
+    @SuppressWarnings("unchecked")
+    Map<String, Object> deferred = (Map<String, Object>)managedEntity.getState().get("waitForExclusive");
+    Assert.assertEquals(4, deferred.get("size"));
+    Assert.assertEquals(0L, deferred.get("refusedAsBusy"));
+    Assert.assertEquals(2L, deferred.get("queuedOverLimit"));
+
+    runSinkOnExecutor();
+    exec.submit(held.get(0)).get();
+    for (TestingResponse response : responses) {
+      response.waitFor();
+      verify(response, never()).failure(any());
+    }
+    Assert.assertEquals(sent, invoked);
+  }
+
+  @Test
+  public void testFullDefermentQueueRefusesInvokesWhenEnabled() throws Exception {
+    createActiveWithDefermentLimit(2, true);
+//  hold everything handed to the request processor so the first invoke keeps the entity deferring
+    List<Runnable> held = new ArrayList<>();
+    Mockito.doAnswer((invoke)->held.add((Runnable)invoke.getArguments()[0])).when(executionSink).addToSink(ArgumentMatchers.any());
+
+//  every invoke is on the management key with the default concurrency strategy
+    TestingResponse exclusive = mockResponse();
+    TestingResponse first = mockResponse();
+    TestingResponse second = mockResponse();
+    TestingResponse refused = mockResponse();
+    TestingResponse passive = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(1, 1), mockInvokePayload(), exclusive));
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(2, 1), mockInvokePayload(), first));
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(3, 1), mockInvokePayload(), second));
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(4, 1), mockInvokePayload(), refused));
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(),
+        MessagePayload.commonMessagePayloadNotBusy(TCByteBufferFactory.wrap(new byte[0]), mock(EntityMessage.class), true), passive));
+
+    Assert.assertEquals(1, held.size());
+    verify(refused).failure(any(ServerException.class));
+    verify(first, never()).failure(any());
+    verify(second, never()).failure(any());
+    verify(passive, never()).failure(any());
+    @SuppressWarnings("unchecked")
+    Map<String, Object> deferred = (Map<String, Object>)managedEntity.getState().get("waitForExclusive");
+    Assert.assertEquals(3, deferred.get("size"));
+    Assert.assertEquals(1L, deferred.get("refusedAsBusy"));
+    Assert.assertEquals(1L, deferred.get("queuedOverLimit"));
+
+    runSinkOnExecutor();
+    exec.submit(held.get(0)).get();
+    first.waitFor();
+    second.waitFor();
+    passive.waitFor();
+//  sent before the client retired the refused invoke, it must not run ahead of it even with room in the queue
+    TestingResponse overtaking = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(5, 2), mockInvokePayload(), overtaking));
+    overtaking.waitFor();
+    verify(overtaking).failure(any(ServerException.class));
+//  sent once the client has heard about both refusals
+    TestingResponse after = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(6, 6), mockInvokePayload(), after));
+    after.waitFor();
+    verify(after, never()).failure(any());
+  }
+
+  private void createActiveWithDefermentLimit(int limit, boolean refuseInvokes) throws Exception {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.ENTITY_DEFERMENT_QUEUE_SIZE, Integer.toString(limit));
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.ENTITY_DEFERMENT_REFUSE_INVOKES, Boolean.toString(refuseInvokes));
+    try {
+      invokeOnTransactionHandler(()->managedEntity = new ManagedEntityImpl(entityID, version, consumerID, loopback, serviceRegistry, clientEntityStateManager, eventCollector, messageSelf, requestMulti, serverEntityService, false, true));
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.ENTITY_DEFERMENT_QUEUE_SIZE, "1024");
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.ENTITY_DEFERMENT_REFUSE_INVOKES, "false");
+    }
+    TestingResponse response = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockCreateEntityRequest(), MessagePayload.emptyPayload(), response));
+    response.waitFor();
+    promote();
+  }
+
   @Test (expected = EntityUserException.class)
   public void testCodecException() throws Exception {
 // this test is no longer relevant, decode is done in the hydrate stage or process/replicated transaction handler
@@ -926,6 +1036,14 @@ public class ManagedEntityImplTest {
     return request;
   }
 
+  private ServerEntityRequest mockInvokeRequest(long transaction, long oldestOnClient) {
+    ServerEntityRequest request = mockRequestForAction(ServerEntityAction.INVOKE_ACTION);
+    when(request.getNodeID()).thenReturn(nodeID);
+    when(request.getTransaction()).thenReturn(new TransactionID(transaction));
+    when(request.getOldestTransactionOnClient()).thenReturn(new TransactionID(oldestOnClient));
+    return request;
+  }
+
   private ServerEntityRequest mockExecutionInvokeRequest(ExecutionStrategy.Location loc) {
     ServerEntityRequest request = mock(ServerEntityRequest.class);
     when(request.getClientInstance()).thenReturn(clientInstanceID);
@@ -24,8 +24,17 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.spi.ByteBufferMessageDecoder;
+import java.nio.ByteBuffer;
+
 /**
  *
  */
@@ -63,4 +72,73 @@ public class MessagePayloadTest {
             // expected
         }
     }
+
+    @Test
+    public void testByteBufferDecoderGetsView() throws Exception {
+        byte[] data = new byte[] {1, 2, 3, 4, 5, 6};
+        TCByteBuffer buffer = TCByteBufferFactory.getInstance(true, 16);
+        buffer.put(new byte[2]).put(data).flip().position(2);
+        MessagePayload payload = MessagePayload.rawDataOnly(buffer);
+        EntityMessage decoded = mock(EntityMessage.class);
+        ByteBuffer[] seen = new ByteBuffer[1];
+        MessageDecoder decoder = MessageDecoder.forCodec(new ViewCodec(decoded, seen));
+
+        assertSame(decoded, payload.decodeMessage(decoder));
+        assertTrue(seen[0].isReadOnly());
+        assertEquals(data.length, seen[0].remaining());
+        byte[] copy = new byte[data.length];
+        seen[0].get(copy);
+        assertArrayEquals(data, copy);
+        // the payload itself is untouched
+        assertArrayEquals(data, payload.getRawPayload());
+    }
+
+    @Test
+    public void testArrayDecoderGetsCopy() throws Exception {
+        byte[] data = new byte[] {1, 2, 3};
+        MessagePayload payload = MessagePayload.rawDataOnly(TCByteBufferFactory.wrap(data));
+        EntityMessage decoded = mock(EntityMessage.class);
+        byte[][] seen = new byte[1][];
+        assertSame(decoded, payload.decodeMessage(raw -> {
+            seen[0] = raw;
+            return decoded;
+        }));
+        assertArrayEquals(data, seen[0]);
+    }
+
+    private static class ViewCodec implements MessageCodec<EntityMessage, EntityResponse>, ByteBufferMessageDecoder<EntityMessage> {
+        private final EntityMessage decoded;
+        private final ByteBuffer[] seen;
+
+        ViewCodec(EntityMessage decoded, ByteBuffer[] seen) {
+            this.decoded = decoded;
+            this.seen = seen;
+        }
+
+        @Override
+        public EntityMessage decodeMessage(ByteBuffer payload) {
+            seen[0] = payload;
+            return decoded;
+        }
+
+        @Override
+        public byte[] encodeMessage(EntityMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EntityMessage decodeMessage(byte[] payload) {
+            throw new AssertionError("should have decoded from the buffer");
+        }
+
+        @Override
+        public byte[] encodeResponse(EntityResponse response) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EntityResponse decodeResponse(byte[] payload) {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -309,6 +309,46 @@ public class ReplicationSenderTest {
     validateCollector(validation);
   }
   
+  @Test
+  public void interleavedEntitySync() throws Exception {
+    entity = new EntityID("TEST", "test");
+    FetchID first = new FetchID(1L);
+    FetchID second = new FetchID(2L);
+    ClientID source = new ClientID(1);
+    ClientInstanceID instance = new ClientInstanceID(1);
+    this.testSender.addPassive(node, session, 1, SyncReplicationActivity.createStartMessage());
+    List<SyncReplicationActivity> origin = new LinkedList<>();
+    List<Boolean> expected = new LinkedList<>();
+    origin.add(makeMessage(SyncReplicationActivity.ActivityType.SYNC_BEGIN)); expected.add(true);
+    origin.add(SyncReplicationActivity.createStartEntityMessage(entity, 1, first, TCByteBufferFactory.wrap(new byte[0]), 0)); expected.add(true);
+    origin.add(SyncReplicationActivity.createStartEntityMessage(entity, 1, second, TCByteBufferFactory.wrap(new byte[0]), 0)); expected.add(true);
+    origin.add(SyncReplicationActivity.createStartEntityKeyMessage(entity, 1, first, 1)); expected.add(true);
+    origin.add(SyncReplicationActivity.createStartEntityKeyMessage(entity, 1, second, 1)); expected.add(true);
+    origin.add(SyncReplicationActivity.createPayloadMessage(entity, 1, first, 1, TCByteBufferFactory.wrap(new byte[0]), "")); expected.add(true);
+    origin.add(SyncReplicationActivity.createPayloadMessage(entity, 1, second, 1, TCByteBufferFactory.wrap(new byte[0]), "")); expected.add(true);
+    origin.add(SyncReplicationActivity.createEndEntityKeyMessage(entity, 1, first, 1)); expected.add(true);
+    // key 1 of the first entity is done, key 2 of the second has not been synced yet
+    origin.add(SyncReplicationActivity.createInvokeMessage(first, source, instance, TransactionID.NULL_ID, TransactionID.NULL_ID, SyncReplicationActivity.ActivityType.INVOKE_ACTION, TCByteBufferFactory.wrap(new byte[0]), 1, "")); expected.add(true);
+    origin.add(SyncReplicationActivity.createInvokeMessage(second, source, instance, TransactionID.NULL_ID, TransactionID.NULL_ID, SyncReplicationActivity.ActivityType.INVOKE_ACTION, TCByteBufferFactory.wrap(new byte[0]), 2, "")); expected.add(false);
+    origin.add(SyncReplicationActivity.createEndEntityKeyMessage(entity, 1, second, 1)); expected.add(true);
+    origin.add(SyncReplicationActivity.createEndEntityMessage(entity, 1, first)); expected.add(true);
+    origin.add(SyncReplicationActivity.createEndEntityMessage(entity, 1, second)); expected.add(true);
+    origin.add(makeMessage(SyncReplicationActivity.ActivityType.SYNC_END)); expected.add(true);
+
+    Iterator<Boolean> check = expected.iterator();
+    for (SyncReplicationActivity activity : origin) {
+      boolean shouldSend = check.next();
+      SetOnceFlag sent = new SetOnceFlag();
+      this.testSender.replicateMessage(session, activity, didSend->{
+        if (didSend) {
+          sent.set();
+        }
+      });
+      Assert.assertEquals(activity.toString(), shouldSend, sent.isSet());
+    }
+    Assert.assertFalse(testSender.isSyncOccuring(session));
+  }
+  
   private void validateCollector(Collection<SyncReplicationActivity> valid) {
     Iterator<SyncReplicationActivity> next = valid.iterator();
     collector.stream().forEach(msg->{
@@ -39,6 +39,9 @@ import com.tc.properties.TCPropertiesImpl;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -228,6 +231,46 @@ public class RequestProcessorTest {
 //    verify(broker).replicateMessage(Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any(),Matchers.any(), Matchers.any());
   }
   
+  @Test
+  public void testManagementKeyOrdersAgainstKeyedRequests() throws Exception {
+    EntityID testid = new EntityID("MockEntity", "foo");
+    ServerEntityRequest management = mock(ServerEntityRequest.class);
+    when(management.replicateTo(anySet())).thenReturn(Collections.emptySet());
+    when(management.getAction()).thenReturn(ServerEntityAction.CREATE_ENTITY);
+    ServerEntityRequest invoke = mock(ServerEntityRequest.class);
+    when(invoke.replicateTo(anySet())).thenReturn(Collections.emptySet());
+    when(invoke.getAction()).thenReturn(ServerEntityAction.INVOKE_ACTION);
+
+    CountDownLatch inManagement = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger added = new AtomicInteger();
+    Sink<EntityRequest> dump = mock(Sink.class);
+    doAnswer(i->{
+      EntityRequest req = (EntityRequest)i.getArguments()[0];
+      if (req.flush()) {
+        inManagement.countDown();
+        release.await();
+      }
+      added.incrementAndGet();
+      return null;
+    }).when(dump).addToSink(any());
+    RequestProcessor instance = new RequestProcessor(dump);
+
+    Thread mgmt = new Thread(()->instance.scheduleRequest(false, testid, 1L, new FetchID(1L), management, MessagePayload.emptyPayload(), (w)->{}, true, ConcurrencyStrategy.MANAGEMENT_KEY));
+    mgmt.start();
+    Assert.assertTrue(inManagement.await(10, TimeUnit.SECONDS));
+
+    Thread keyed = new Thread(()->instance.scheduleRequest(false, testid, 1L, new FetchID(1L), invoke, MessagePayload.emptyPayload(), (w)->{}, true, 1));
+    keyed.start();
+    keyed.join(500);
+//  keyed request cannot be inserted while the management request is being inserted
+    Assert.assertEquals(0, added.get());
+    release.countDown();
+    mgmt.join();
+    keyed.join();
+    Assert.assertEquals(2, added.get());
+  }
+
   private static byte[] intToArray(int val) {
     byte[] four = new byte[4];
     for (int x=0;x<four.length;x++) {
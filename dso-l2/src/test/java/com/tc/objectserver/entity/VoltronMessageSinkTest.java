@@ -0,0 +1,85 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.async.api.Sink;
+import com.tc.async.api.Stage;
+import com.tc.entity.MessageCodecSupplier;
+import com.tc.entity.NetworkVoltronEntityMultiMessage;
+import com.tc.entity.VoltronEntityMessage;
+import com.tc.net.protocol.tcm.HydrateContext;
+import com.tc.net.protocol.tcm.HydrateHandler;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class VoltronMessageSinkTest {
+
+  @Test
+  public void testBatchIsUnpackedInOrder() throws Exception {
+    checkBatchIsUnpacked(false);
+  }
+
+  @Test
+  public void testBatchIsUnpackedInOrderWhenHydratedLater() throws Exception {
+    checkBatchIsUnpacked(true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void checkBatchIsUnpacked(boolean alwaysHydrate) throws Exception {
+    Stage<HydrateContext> helper = mock(Stage.class);
+    Sink<HydrateContext> helperSink = mock(Sink.class);
+    doAnswer(invocation -> {
+      new HydrateHandler().handleEvent((HydrateContext) invocation.getArguments()[0]);
+      return null;
+    }).when(helperSink).addToSink(any(HydrateContext.class));
+    when(helper.getSink()).thenReturn(helperSink);
+    when(helper.isEmpty()).thenReturn(true);
+    Sink<VoltronEntityMessage> dest = mock(Sink.class);
+    MessageCodecSupplier supplier = mock(MessageCodecSupplier.class);
+    VoltronMessageSink sink = new VoltronMessageSink(helper, dest, supplier);
+    sink.setAlwaysHydrate(alwaysHydrate);
+
+    List<VoltronEntityMessage> invokes = Arrays.asList(mock(VoltronEntityMessage.class), mock(VoltronEntityMessage.class), mock(VoltronEntityMessage.class));
+    NetworkVoltronEntityMultiMessage batch = mock(NetworkVoltronEntityMultiMessage.class);
+    when(batch.getMessages()).thenReturn(invokes);
+
+    sink.putMessage(batch);
+
+    InOrder order = inOrder(batch, dest);
+    order.verify(batch).setMessageCodecSupplier(supplier);
+    order.verify(batch).hydrate();
+    for (VoltronEntityMessage invoke : invokes) {
+      order.verify(dest).addToSink(invoke);
+    }
+    verify(dest, times(invokes.size())).addToSink(any(VoltronEntityMessage.class));
+    verify(helperSink, times(alwaysHydrate ? 1 : 0)).addToSink(any(HydrateContext.class));
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class AdaptiveBatchControllerTest {
+  private static final long KB = 1024;
+  private static final long MB = 1024 * KB;
+
+  private long now = 1L;
+
+  private void complete(AdaptiveBatchController controller, int inFlight, long bytes, long elapsed) {
+    controller.sent(bytes);
+    now += elapsed;
+    controller.done(bytes, elapsed, inFlight, now);
+  }
+
+  @Test
+  public void testSendsImmediatelyWhileWindowIsOpen() throws Exception {
+    AdaptiveBatchController controller = new AdaptiveBatchController(2, 8, 64 * KB, 16 * MB, 0L);
+    assertTrue(controller.shouldFlush(0, 1, 64, 100));
+    assertTrue(controller.shouldFlush(1, 1, 64, 100));
+    assertFalse(controller.shouldFlush(2, 1, 64, 100));
+    // the maximum batch size still applies
+    assertTrue(controller.shouldFlush(2, 64, 64, 100));
+  }
+
+  @Test
+  public void testWindowGrowsOnlyWhenUsed() throws Exception {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 8, 64 * KB, 16 * MB, 0L);
+    for (int x = 0; x < 100; x++) {
+      complete(controller, 1, KB, TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    // nothing ever waited on the window
+    assertEquals(1, controller.getLimit());
+    for (int x = 0; x < 100; x++) {
+      assertFalse(controller.shouldFlush(controller.getLimit(), 1, 64, KB));
+      complete(controller, controller.getLimit(), KB, TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    assertEquals(8, controller.getLimit());
+  }
+
+  @Test
+  public void testWindowHalvesOnSlowCompletions() throws Exception {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 8, 64 * KB, 16 * MB, 0L);
+    for (int x = 0; x < 100; x++) {
+      controller.shouldFlush(controller.getLimit(), 1, 64, KB);
+      complete(controller, controller.getLimit(), KB, TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    assertEquals(8, controller.getLimit());
+    for (int x = 0; x < 40; x++) {
+      controller.shouldFlush(controller.getLimit(), 1, 64, KB);
+      complete(controller, controller.getLimit(), KB, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertEquals(1, controller.getLimit());
+  }
+
+  @Test
+  public void testLatencyFloorPreventsDecrease() throws Exception {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 4, 64 * KB, 16 * MB, TimeUnit.MILLISECONDS.toNanos(50));
+    for (int x = 0; x < 50; x++) {
+      controller.shouldFlush(controller.getLimit(), 1, 64, KB);
+      complete(controller, controller.getLimit(), KB, TimeUnit.MICROSECONDS.toNanos(10 + x * 500));
+    }
+    assertEquals(4, controller.getLimit());
+  }
+
+  @Test
+  public void testBatchIsSentEarlyOnceItFillsTheLink() throws Exception {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 1, 64 * KB, 16 * MB, 0L);
+    // nothing known about the link yet
+    assertEquals(16 * MB, controller.getTargetBatchBytes());
+    // 1MB per millisecond with one message in flight is a 1MB pipe
+    for (int x = 0; x < 20; x++) {
+      complete(controller, 1, MB, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    long target = controller.getTargetBatchBytes();
+    assertTrue(Long.toString(target), target > 900 * KB && target < 1100 * KB);
+    assertFalse(controller.shouldFlush(1, 10, 64, 512 * KB));
+    assertTrue(controller.shouldFlush(1, 10, 64, 2 * MB));
+    // but never below the minimum
+    for (int x = 0; x < 20; x++) {
+      complete(controller, 1, KB, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertEquals(64 * KB, controller.getTargetBatchBytes());
+  }
+}
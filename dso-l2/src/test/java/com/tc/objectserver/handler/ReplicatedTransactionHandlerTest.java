@@ -22,7 +22,9 @@ import com.tc.async.api.EventHandler;
 import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.Sink;
 import com.tc.async.api.Stage;
+import com.tc.async.api.StageManager;
 import com.tc.bytes.TCByteBufferFactory;
+import com.tc.classloader.ServiceLocator;
 import com.tc.entity.VoltronEntityAppliedResponse;
 import com.tc.entity.VoltronEntityReceivedResponse;
 import com.tc.io.TCByteBufferInput;
@@ -49,18 +51,29 @@ import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.api.ResultCapture;
 import com.tc.objectserver.api.ServerEntityAction;
 import com.tc.objectserver.api.ServerEntityRequest;
+import com.tc.objectserver.core.api.ServerConfigurationContext;
+import com.tc.objectserver.core.impl.ManagementTopologyEventCollector;
+import com.tc.objectserver.entity.ClientEntityStateManagerImpl;
+import com.tc.objectserver.entity.EntityManagerImpl;
 import com.tc.objectserver.entity.MessagePayload;
+import com.tc.objectserver.entity.PassiveReplicationBroker;
 import com.tc.objectserver.entity.PlatformEntity;
+import com.tc.objectserver.entity.RequestProcessor;
 import com.tc.objectserver.entity.SimpleCompletion;
 import com.tc.objectserver.persistence.EntityPersistor;
 import com.tc.objectserver.persistence.Persistor;
 import com.tc.objectserver.persistence.TransactionOrderPersistor;
+import com.tc.services.InternalServiceRegistry;
+import com.tc.services.TerracottaServiceProviderRegistry;
 import com.tc.util.Assert;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import org.junit.After;
@@ -68,11 +81,13 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.Mockito;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -80,6 +95,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.terracotta.entity.ConcurrencyStrategy;
 import org.terracotta.entity.MessageCodec;
+import org.terracotta.monitoring.IMonitoringProducer;
 
 
 public class ReplicatedTransactionHandlerTest {
@@ -92,6 +108,8 @@ public class ReplicatedTransactionHandlerTest {
   private StateManager stateManager;
   private EntityManager entityManager;
   private ManagedEntity platform;
+  private Persistor persistor;
+  private Stage<Runnable> runner;
   private GroupManager<AbstractGroupMessage> groupManager;
   
   private long rid = 0;
@@ -102,7 +120,7 @@ public class ReplicatedTransactionHandlerTest {
     this.entityPersistor = mock(EntityPersistor.class);
     this.transactionOrderPersistor = mock(TransactionOrderPersistor.class);
     
-    Persistor persistor = mock(Persistor.class);
+    this.persistor = mock(Persistor.class);
     when(persistor.getEntityPersistor()).thenReturn(this.entityPersistor);
     when(persistor.getTransactionOrderPersistor()).thenReturn(this.transactionOrderPersistor);
     
@@ -120,7 +138,7 @@ public class ReplicatedTransactionHandlerTest {
     }).when(platform).addRequestMessage(any(ServerEntityRequest.class), any(MessagePayload.class), any(ResultCapture.class));
     when(entityManager.getEntity(any(EntityDescriptor.class))).thenReturn(Optional.empty());
     when(entityManager.getEntity(eq(EntityDescriptor.createDescriptorForLifecycle(PlatformEntity.PLATFORM_ID, 1L)))).thenReturn(Optional.of(platform));
-    Stage runner = mock(Stage.class);
+    this.runner = mock(Stage.class);
     Sink<Runnable> sink = mock(Sink.class);
     when(runner.getSink()).thenReturn(sink);
     doAnswer(answer->{
@@ -232,6 +250,138 @@ public class ReplicatedTransactionHandlerTest {
     verify(groupManager, times(2)).sendToWithSentCallback(eq(sid), any(), any());
   }
   
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testPipelinedApplyKeepsEntityOrder() throws Exception {
+    List<ReplicationApplyAction> queued = new ArrayList<>();
+    Stage<ReplicationApplyAction> lanes = mockApplyLanes(queued);
+    EventHandler<ReplicationMessage> pipelined = new ReplicatedTransactionHandler(stateManager, runner, lanes, persistor, this.entityManager, this.groupManager).getEventHandler();
+
+    EntityID eid = new EntityID("foo", "bar");
+    FetchID fetch = new FetchID(1L);
+    ServerID sid = new ServerID("test", "test".getBytes());
+    ManagedEntity entity = mock(ManagedEntity.class);
+    List<ServerEntityAction> applied = new ArrayList<>();
+    doAnswer(invocation->{
+      applied.add(((ServerEntityRequest)invocation.getArguments()[0]).getAction());
+      return null;
+    }).when(entity).addRequestMessage(any(), any(), any());
+    when(entity.getID()).thenReturn(eid);
+    SyncReplicationActivity invoke = mock(SyncReplicationActivity.class);
+    when(invoke.getActivityType()).thenReturn(SyncReplicationActivity.ActivityType.INVOKE_ACTION);
+    when(invoke.getEntityID()).thenReturn(eid);
+    when(invoke.getFetchID()).thenReturn(fetch);
+    when(invoke.getOldestTransactionOnClient()).thenReturn(TransactionID.NULL_ID);
+    when(invoke.getActivityID()).thenReturn(SyncReplicationActivity.ActivityID.getNextID());
+    ReplicationMessage msg = mock(ReplicationMessage.class);
+    when(msg.messageFrom()).thenReturn(sid);
+    when(msg.getActivities()).thenReturn(Collections.singletonList(invoke));
+
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(raw);
+    out.writeInt(0);
+    out.close();
+    pipelined.handleEvent(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createStartSyncMessage(new SyncReplicationActivity.EntityCreationTuple[0])));
+    pipelined.handleEvent(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(raw.toByteArray()))));
+    when(this.entityManager.getEntity(any())).thenReturn(Optional.of(entity));
+    pipelined.handleEvent(msg);
+    // handed to the apply threads, not yet to the entity
+    Assert.assertEquals(1, queued.size());
+    verify(entity, never()).addRequestMessage(any(), any(), any());
+
+    // a lifecycle operation runs on the replication thread, after what is already on the apply threads
+    pipelined.handleEvent(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createLifecycleMessage(eid, 1L, fetch, ClientID.NULL_ID, ClientInstanceID.NULL_ID, TransactionID.NULL_ID, TransactionID.NULL_ID, SyncReplicationActivity.ActivityType.DESTROY_ENTITY, TCByteBufferFactory.wrap(new byte[0]))));
+    Assert.assertTrue(queued.isEmpty());
+    Assert.assertEquals(Arrays.asList(ServerEntityAction.INVOKE_ACTION, ServerEntityAction.DESTROY_ENTITY), applied);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testPipelinedApplyReachesRealEntity() throws Exception {
+    List<ReplicationApplyAction> queued = new ArrayList<>();
+    EventHandler<ReplicationMessage> pipelined = new ReplicatedTransactionHandler(stateManager, runner, mockApplyLanes(queued), persistor, this.entityManager, this.groupManager).getEventHandler();
+
+//  a real passive entity, it checks which thread schedules its requests
+    StageManager stageManager = mock(StageManager.class);
+    List<Object> scheduled = new ArrayList<>();
+    Sink<Object> requests = mock(Sink.class);
+    doAnswer(answer->scheduled.add(answer.getArguments()[0])).when(requests).addToSink(any());
+    Stage<Object> requestStage = mock(Stage.class);
+    when(requestStage.getSink()).thenReturn(requests);
+    when(stageManager.createStage(any(), any(), any(), anyInt(), anyInt(), anyBoolean())).thenReturn(requestStage);
+    RequestProcessor processor = new RequestProcessor(stageManager, 1024, true);
+    PassiveReplicationBroker broker = mock(PassiveReplicationBroker.class);
+    when(broker.passives()).thenReturn(Collections.emptySet());
+    processor.setReplication(broker);
+    TerracottaServiceProviderRegistry registry = mock(TerracottaServiceProviderRegistry.class);
+    when(registry.subRegistry(any(Long.class))).thenReturn(mock(InternalServiceRegistry.class));
+    EntityManagerImpl entities = new EntityManagerImpl(registry, new ClientEntityStateManagerImpl(), 
+        new ManagementTopologyEventCollector(mock(IMonitoringProducer.class)), processor, (eid, fid, action)->{}, 
+        new ServiceLocator(this.getClass().getClassLoader()));
+    entities.setMessageSink(mock(Sink.class));
+    EntityID eid = new EntityID("com.tc.objectserver.testentity.TestEntity", "foo");
+    ManagedEntity entity = entities.createEntity(eid, 1L, 1L, true);
+
+    FetchID fetch = new FetchID(1L);
+    SyncReplicationActivity invoke = mock(SyncReplicationActivity.class);
+    when(invoke.getActivityType()).thenReturn(SyncReplicationActivity.ActivityType.INVOKE_ACTION);
+    when(invoke.getEntityID()).thenReturn(eid);
+    when(invoke.getFetchID()).thenReturn(fetch);
+    when(invoke.getClientInstanceID()).thenReturn(ClientInstanceID.NULL_ID);
+    when(invoke.getSource()).thenReturn(ClientID.NULL_ID);
+    when(invoke.getTransactionID()).thenReturn(TransactionID.NULL_ID);
+    when(invoke.getOldestTransactionOnClient()).thenReturn(TransactionID.NULL_ID);
+    when(invoke.getExtendedData()).thenReturn(TCByteBufferFactory.wrap(new byte[0]));
+    when(invoke.getActivityID()).thenReturn(SyncReplicationActivity.ActivityID.getNextID());
+    ReplicationMessage msg = mock(ReplicationMessage.class);
+    when(msg.messageFrom()).thenReturn(new ServerID("test", "test".getBytes()));
+    when(msg.getActivities()).thenReturn(Collections.singletonList(invoke));
+
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(raw);
+    out.writeInt(0);
+    out.close();
+    pipelined.handleEvent(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createStartSyncMessage(new SyncReplicationActivity.EntityCreationTuple[0])));
+    pipelined.handleEvent(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(raw.toByteArray()))));
+    when(this.entityManager.getEntity(any())).thenReturn(Optional.of(entity));
+    pipelined.handleEvent(msg);
+    Assert.assertEquals(1, queued.size());
+
+//  run it the way an apply stage worker would
+    Throwable[] failure = new Throwable[1];
+    Thread worker = new Thread(()->{
+      try {
+        queued.get(0).run();
+      } catch (Throwable t) {
+        failure[0] = t;
+      }
+    }, "WorkerThread(" + ServerConfigurationContext.PASSIVE_REPLICATION_APPLY_STAGE + ", 0)");
+    worker.start();
+    worker.join();
+    Assert.assertNull(failure[0]);
+    Assert.assertEquals(1, scheduled.size());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Stage<ReplicationApplyAction> mockApplyLanes(List<ReplicationApplyAction> queued) {
+    Sink<ReplicationApplyAction> lanes = mock(Sink.class);
+    doAnswer(answer->{
+      ReplicationApplyAction action = (ReplicationApplyAction)answer.getArguments()[0];
+      if (action.flush()) {
+        queued.forEach(ReplicationApplyAction::run);
+        queued.clear();
+        action.run();
+      } else {
+        queued.add(action);
+      }
+      return null;
+    }).when(lanes).addToSink(any(ReplicationApplyAction.class));
+    Stage<ReplicationApplyAction> stage = mock(Stage.class);
+    when(stage.getSink()).thenReturn(lanes);
+    when(stage.isStarted()).thenReturn(true);
+    return stage;
+  }
+
   @Test
   public void testDestroy() throws Exception {
     this.rth.getEventHandler().destroy();
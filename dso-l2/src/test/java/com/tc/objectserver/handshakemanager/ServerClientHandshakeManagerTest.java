@@ -50,6 +50,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -61,6 +62,7 @@ public class ServerClientHandshakeManagerTest {
   private ServerClientHandshakeManager manager;
   private Stage voltronStage;
   private Sink voltronSink;
+  private ConsistencyManager consistency;
 
   @Before
   public void setUp() throws Exception {
@@ -75,7 +77,7 @@ public class ServerClientHandshakeManagerTest {
     voltronSink = mock(Sink.class);
     when(voltronStage.getSink()).thenReturn(voltronSink);
     when(stageManager.getStage(any(), any())).thenReturn(voltronStage);
-    ConsistencyManager consistency = mock(ConsistencyManager.class);
+    consistency = mock(ConsistencyManager.class);
     when(consistency.requestTransition(any(ServerMode.class), any(NodeID.class), any(ConsistencyManager.Transition.class))).thenReturn(Boolean.TRUE);
     this.manager = new ServerClientHandshakeManager(logger, consistency, this.channelManager, timer, reconnectTimeoutSupplier, voltronSink, consoleLogger);
   }
@@ -185,4 +187,19 @@ public class ServerClientHandshakeManagerTest {
     this.manager.notifyTimeout();
     assertTrue(this.manager.getUnconnectedClients().isEmpty());
   }
+
+  @Test
+  public void testRejectedAddClientRetriesWithBackoff() throws Exception {
+    ClientID client1 = new ClientID(1);
+    when(this.channelManager.getAllClientIDs()).thenReturn(Collections.singleton(client1));
+    when(this.consistency.requestTransition(any(ServerMode.class), any(NodeID.class), any(ConsistencyManager.Transition.class)))
+        .thenReturn(Boolean.FALSE, Boolean.FALSE, Boolean.TRUE);
+
+    long start = System.currentTimeMillis();
+    this.manager.setStarting(Collections.emptySet());
+    assertTrue(this.manager.isStarted());
+    // two quick retries rather than a full retry interval each
+    assertTrue(System.currentTimeMillis() - start < ServerClientHandshakeManager.ADD_CLIENT_RETRY_MAX);
+    verify(this.consistency, times(3)).requestTransition(any(ServerMode.class), any(NodeID.class), any(ConsistencyManager.Transition.class));
+  }
 }
\ No newline at end of file
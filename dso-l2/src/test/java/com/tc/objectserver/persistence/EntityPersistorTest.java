@@ -229,6 +229,28 @@ public class EntityPersistorTest extends TCTestCase {
     Assert.assertFalse(this.entityPersistor.wasEntityCreatedInJournal(eid, client, 1L));
   }
   
+  /**
+   * Test that entities and journal entries kept only in the change log survive a restart.
+   */
+  public void testRestartWithChangeLog() throws Exception {
+    NullPlatformPersistentStorage storage = new NullPlatformPersistentStorage();
+    EntityPersistor persistor = new EntityPersistor(storage, 16);
+    persistor.addTrackingForClient(this.client);
+    EntityID kept = new EntityID("test", "kept");
+    EntityID destroyed = new EntityID("test", "destroyed");
+    persistor.entityCreated(this.client, 1L, 0L, kept, 1L, 1L, true, new byte[0]);
+    persistor.entityCreated(this.client, 2L, 0L, destroyed, 1L, 2L, true, new byte[0]);
+    persistor.entityDestroyed(this.client, 3L, 0L, destroyed);
+    // Nothing has been compacted so the maps only exist as logged changes.
+    Assert.assertNull(storage.loadDataElement("entities_alive.map"));
+
+    EntityPersistor restarted = new EntityPersistor(storage, 16);
+    Assert.assertTrue(restarted.containsEntity(kept));
+    Assert.assertFalse(restarted.containsEntity(destroyed));
+    Assert.assertTrue(restarted.wasEntityCreatedInJournal(kept, this.client, 1L));
+    Assert.assertTrue(restarted.wasEntityDestroyedInJournal(destroyed, this.client, 3L));
+  }
+
   public void testPermanentEntityCreation() throws Exception {
     EntityID eid = new EntityID("test", "test");
     this.entityPersistor.entityCreatedNoJournal(eid, 1L, 1L, false, new byte[0]);
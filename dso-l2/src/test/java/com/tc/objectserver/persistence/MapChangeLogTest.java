@@ -0,0 +1,148 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class MapChangeLogTest {
+
+  private final NullPlatformPersistentStorage storage = new NullPlatformPersistentStorage();
+
+  @Test
+  public void testChangesReplayOverSnapshot() throws Exception {
+    MapChangeLog<String, Integer> log = open(4);
+    log.put("a", 1);
+    log.put("b", 2);
+    log.remove("a");
+    // only the changes were stored
+    assertNull(this.storage.loadDataElement("test.map"));
+
+    Map<String, Integer> replayed = new HashMap<>();
+    new MapChangeLog<>(this.storage, "test.map", 4, replayed).replay();
+    assertEquals(1, replayed.size());
+    assertEquals(Integer.valueOf(2), replayed.get("b"));
+  }
+
+  @Test
+  public void testCompactionDropsChanges() throws Exception {
+    MapChangeLog<String, Integer> log = open(4);
+    for (int i = 0; i < 4; ++i) {
+      log.put("key" + i, i);
+    }
+    // the fourth change rewrote the snapshot and moved to the next generation
+    assertEquals(4, ((Map<?, ?>) this.storage.loadDataElement("test.map")).size());
+    assertEquals(1L, this.storage.loadDataElement("test.map.generation"));
+    assertEquals(2, this.storage.nameToDataMap.size());
+
+    log.put("key4", 4);
+    assertTrue(this.storage.nameToDataMap.containsKey("test.map.1.0"));
+  }
+
+  @Test
+  public void testLeftoverChangesCompactedWhenLogOff() throws Exception {
+    MapChangeLog<String, Integer> log = open(8);
+    log.put("a", 1);
+    log.put("b", 2);
+
+    Map<String, Integer> replayed = new HashMap<>();
+    MapChangeLog<String, Integer> off = new MapChangeLog<>(this.storage, "test.map", 0, replayed);
+    off.replay();
+    assertEquals(2, ((Map<?, ?>) this.storage.loadDataElement("test.map")).size());
+    assertEquals(2, this.storage.nameToDataMap.size());
+
+    // with the log off every change stores the snapshot
+    off.put("c", 3);
+    assertEquals(3, ((Map<?, ?>) this.storage.loadDataElement("test.map")).size());
+    assertEquals(2, this.storage.nameToDataMap.size());
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    MapChangeLog<String, Integer> log = open(8);
+    log.put("a", 1);
+    log.clear();
+    Map<String, Integer> replayed = new HashMap<>();
+    new MapChangeLog<>(this.storage, "test.map", 8, replayed).replay();
+    assertTrue(replayed.isEmpty());
+  }
+
+  @Test
+  public void testBatchStoresSnapshotOnce() throws Exception {
+    int[] stores = new int[1];
+    NullPlatformPersistentStorage counting = new NullPlatformPersistentStorage() {
+      @Override
+      public void storeDataElement(String name, Serializable element) throws IOException {
+        stores[0] += 1;
+        super.storeDataElement(name, element);
+      }
+    };
+    Map<String, Integer> entries = new LinkedHashMap<>();
+    for (int i = 0; i < 16; ++i) {
+      entries.put("key" + i, i);
+    }
+    MapChangeLog<String, Integer> off = new MapChangeLog<>(counting, "test.map", 0, new HashMap<>());
+    off.putAll(entries);
+    assertEquals(1, stores[0]);
+    assertEquals(16, ((Map<?, ?>) counting.loadDataElement("test.map")).size());
+    off.removeAll(Arrays.asList("key0", "key1", "missing"));
+    assertEquals(2, stores[0]);
+    assertEquals(14, ((Map<?, ?>) counting.loadDataElement("test.map")).size());
+    // nothing removed, nothing stored
+    off.removeAll(Arrays.asList("missing"));
+    assertEquals(2, stores[0]);
+  }
+
+  @Test
+  public void testBatchIsLoggedOrCompacted() throws Exception {
+    MapChangeLog<String, Integer> log = open(4);
+    Map<String, Integer> entries = new LinkedHashMap<>();
+    entries.put("a", 1);
+    entries.put("b", 2);
+    log.putAll(entries);
+    assertTrue(this.storage.nameToDataMap.containsKey("test.map.0.1"));
+    assertNull(this.storage.loadDataElement("test.map"));
+
+    // two more would reach compactAfter, the batch is folded into a new snapshot instead
+    log.removeAll(Arrays.asList("a", "b"));
+    assertTrue(((Map<?, ?>) this.storage.loadDataElement("test.map")).isEmpty());
+    assertEquals(1L, this.storage.loadDataElement("test.map.generation"));
+
+    Map<String, Integer> replayed = new HashMap<>();
+    new MapChangeLog<>(this.storage, "test.map", 4, replayed).replay();
+    assertTrue(replayed.isEmpty());
+  }
+
+  private MapChangeLog<String, Integer> open(int compactAfter) throws Exception {
+    MapChangeLog<String, Integer> log = new MapChangeLog<>(this.storage, "test.map", compactAfter, new HashMap<>());
+    log.replay();
+    return log;
+  }
+}
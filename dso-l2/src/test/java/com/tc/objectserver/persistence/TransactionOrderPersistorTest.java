@@ -29,6 +29,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 public class TransactionOrderPersistorTest extends TCTestCase {
@@ -364,6 +366,101 @@ public class TransactionOrderPersistorTest extends TCTestCase {
   }
 
 
+  public void testReconnectableClientInterleavedGlobally() {
+    ClientID client3 = new ClientID(3);
+    this.orderPersistor.addTrackingForClient(client3, ProductID.STRIPE);
+    TransactionID oldest = new TransactionID(1L);
+    for (int i = 1; i < 10; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      this.orderPersistor.updateWithNewMessage(this.client1, transaction, oldest);
+      this.orderPersistor.updateWithNewMessage(client3, transaction, oldest);
+    }
+    for (int i = 1; i < 10; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      assertEquals((i - 1) * 2 + 1, this.orderPersistor.getIndexToReplay(client3, transaction));
+    }
+  }
+
+  public void testGroupCommitSharesOneWrite() throws Exception {
+    CountingStorage storage = new CountingStorage();
+    // a tick long enough that only a replay query or close writes the batch
+    TransactionOrderPersistor persistor = new TransactionOrderPersistor(storage, Collections.emptySet(), true, TimeUnit.HOURS.toMicros(1));
+    persistor.addTrackingForClient(client1, ProductID.PERMANENT);
+    persistor.addTrackingForClient(client2, ProductID.PERMANENT);
+    TransactionID oldest = new TransactionID(1L);
+    Future<Void> first = persistor.updateWithNewMessage(client1, new TransactionID(1), oldest);
+    persistor.updateWithNewMessage(client2, new TransactionID(1), oldest);
+    for (int i = 2; i < 10; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      assertSame(first, persistor.updateWithNewMessage(client1, transaction, oldest));
+      assertSame(first, persistor.updateWithNewMessage(client2, transaction, oldest));
+    }
+    assertFalse(first.isDone());
+    assertEquals(0, storage.stores);
+
+    for (int i = 1; i < 10; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      assertEquals((i - 1) * 2, persistor.getIndexToReplay(client1, transaction));
+      assertEquals((i - 1) * 2 + 1, persistor.getIndexToReplay(client2, transaction));
+    }
+    assertTrue(first.isDone());
+    assertEquals(18, storage.stores);
+
+    Future<Void> next = persistor.updateWithNewMessage(client1, new TransactionID(10), oldest);
+    assertNotSame(first, next);
+    persistor.close();
+    assertTrue(next.isDone());
+    assertEquals(19, storage.stores);
+    // written directly once closed
+    Future<Void> direct = persistor.updateWithNewMessage(client1, new TransactionID(11), oldest);
+    assertTrue(direct.isDone());
+    assertEquals(20, storage.stores);
+  }
+
+  public void testGroupCommitSkipsRetiredTransactions() throws Exception {
+    CountingStorage storage = new CountingStorage();
+    TransactionOrderPersistor persistor = new TransactionOrderPersistor(storage, Collections.singleton(client1), true, TimeUnit.HOURS.toMicros(1));
+    Future<Void> batch = null;
+    for (int i = 1; i < 100; ++i) {
+      TransactionID transaction = new TransactionID(i);
+      // each transaction is the oldest the client still has
+      batch = persistor.updateWithNewMessage(client1, transaction, transaction);
+    }
+    persistor.close();
+    batch.get();
+    // everything but the last was retired before the batch went out
+    assertEquals(1, storage.stores);
+    assertEquals(1, storage.loadSequence(client1.toLong()).size());
+    assertEquals(99, storage.loadSequence(client1.toLong()).get(0).localSequenceID);
+  }
+
+  public void testGroupCommitFlushesInBackground() throws Exception {
+    CountingStorage storage = new CountingStorage();
+    TransactionOrderPersistor persistor = new TransactionOrderPersistor(storage, Collections.singleton(client1), true, 0L);
+    try {
+      TransactionID oldest = new TransactionID(1L);
+      Future<Void> last = null;
+      for (int i = 1; i < 100; ++i) {
+        last = persistor.updateWithNewMessage(client1, new TransactionID(i), oldest);
+      }
+      last.get(10, TimeUnit.SECONDS);
+      assertEquals(99, storage.stores);
+    } finally {
+      persistor.close();
+    }
+  }
+
+  private static class CountingStorage extends NullPlatformPersistentStorage {
+    private int stores;
+
+    @Override
+    public synchronized Future<Void> fastStoreSequence(long sequenceIndex, SequenceTuple newEntry, long oldestValidSequenceID) {
+      stores += 1;
+      return super.fastStoreSequence(sequenceIndex, newEntry, oldestValidSequenceID);
+    }
+  }
+
+
   private static class ClientThread extends Thread {
     private TransactionOrderPersistor persistor;
     private ClientID client;
@@ -231,6 +231,28 @@ public class BestEffortsMonitoringTest {
     Assert.assertEquals(1, lateWrapper.pushCount);
   }
 
+  @Test
+  public void testFlushCoalescesIntoOneBatch() throws Exception {
+    // Attach an active, then push repeatedly for two consumers before the timer fires.
+    TestPipeWrapper wrapper = new TestPipeWrapper();
+    this.monitoring.attachToNewActive(wrapper);
+    for (int i = 0; i < 10; ++i) {
+      this.monitoring.pushBestEfforts(1, "name1", "data" + i);
+      this.monitoring.pushBestEfforts(1, "name2", "data" + i);
+      this.monitoring.pushBestEfforts(2, "name1", "data" + i);
+    }
+    Assert.assertEquals(0, wrapper.pushCount);
+    this.source.passTime(BestEffortsMonitoring.ASYNC_FLUSH_DELAY_MILLIS);
+    this.timer.poke();
+    
+    // Only the latest value for each name is sent, all in the same batch.
+    Assert.assertEquals(1, wrapper.pushCount);
+    Assert.assertEquals(3, wrapper.lastKeys.length);
+    for (Serializable value : wrapper.lastValues) {
+      Assert.assertEquals("data9", value);
+    }
+  }
+
 
   @SuppressWarnings("unchecked")
   private TerracottaServiceProviderRegistry mockRegistry(IStripeMonitoring consumer1, IStripeMonitoring consumer2) throws Exception {
@@ -251,6 +273,8 @@ public class BestEffortsMonitoringTest {
 
   private static class TestPipeWrapper implements ActivePipeWrapper {
     public int pushCount = 0;
+    public String[] lastKeys;
+    public Serializable[] lastValues;
     
     @Override
     public void addNode(long consumerID, String[] parents, String name, Serializable value) {
@@ -265,6 +289,8 @@ public class BestEffortsMonitoringTest {
     @Override
     public void pushBestEffortsBatch(long[] consumerIDs, String[] keys, Serializable[] values) {
       this.pushCount += 1;
+      this.lastKeys = keys;
+      this.lastValues = values;
     }
   }
 
@@ -35,11 +35,14 @@ import com.tc.object.net.DSOChannelManager;
 import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.entity.ClientDescriptorImpl;
 
+import java.util.Arrays;
+
 import org.mockito.Mockito;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -133,4 +136,30 @@ public class CommunicatorServiceTest {
     verify(clientMessageSender).send(clientID, instance2, payload2);
     verify(clientMessageSender, never()).send(eq(clientID), eq(instance1), any(byte[].class));
   }
+
+  @Test
+  public void testMulticastEncodesOnce() throws Exception {
+    ClientID otherID = new ClientID(2);
+    MessageChannel otherChannel = mock(MessageChannel.class);
+    when(otherChannel.getRemoteNodeID()).thenReturn(otherID);
+    communicatorService.channelCreated(otherChannel);
+    ClientInstanceID otherInstance = new ClientInstanceID(2);
+
+    MulticastClientCommunicator clientCommunicator = communicatorService.getService(consumerID, this.owningEntity, new MulticastCommunicatorServiceConfiguration());
+    clientCommunicator.multicastNoResponse(Arrays.asList(clientDescriptor,
+        new ClientDescriptorImpl(otherID, otherInstance),
+        new ClientDescriptorImpl(new ClientID(3), clientInstanceID)), response);
+
+    verify(codec, times(1)).encodeResponse(response);
+    verify(clientMessageSender).send(clientID, clientInstanceID, payload);
+    verify(clientMessageSender).send(otherID, otherInstance, payload);
+  }
+
+  @Test
+  public void testMulticastToDisconnectedClientsDoesNotEncode() throws Exception {
+    MulticastClientCommunicator clientCommunicator = communicatorService.getService(consumerID, this.owningEntity, new MulticastCommunicatorServiceConfiguration());
+    clientCommunicator.multicastNoResponse(Arrays.asList(new ClientDescriptorImpl(new ClientID(3), clientInstanceID)), response);
+
+    verify(codec, never()).encodeResponse(response);
+  }
 }
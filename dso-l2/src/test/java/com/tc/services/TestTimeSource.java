@@ -23,7 +23,7 @@ package com.tc.services;
  * A time source for use in tests which use a SingleThreadedTimer.
  */
 public class TestTimeSource implements TimeSource {
-  private long currentTimeMillis;
+  private volatile long currentTimeMillis;
   
   public TestTimeSource(long currentTimeMillis) {
     this.currentTimeMillis = currentTimeMillis;
@@ -0,0 +1,155 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.services;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TimingWheelTimerTest {
+  private static final long INTERVAL_MILLIS = 100;
+  private static final long TICK_MILLIS = 10;
+
+  private TestTimeSource source;
+  private ExecutorService executor;
+  private TimingWheelTimer timer;
+
+
+  @Before
+  public void setUp() throws Exception {
+    this.source = new TestTimeSource(1);
+    this.executor = Executors.newFixedThreadPool(2);
+    this.timer = new TimingWheelTimer(this.source, null, TICK_MILLIS, 8, this.executor);
+    this.timer.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.timer.stop();
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  public void testRunOneTask() throws Exception {
+    long startTime = this.source.currentTimeMillis() + INTERVAL_MILLIS;
+    CountDownLatch latch = new CountDownLatch(1);
+    this.timer.addDelayed(latch::countDown, startTime);
+    // not yet due
+    Assert.assertFalse(latch.await(5 * TICK_MILLIS, TimeUnit.MILLISECONDS));
+    this.source.passTime(INTERVAL_MILLIS);
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(0, this.timer.size());
+  }
+
+  @Test
+  public void testTaskBeyondOneRotation() throws Exception {
+    // 8 buckets of 10ms, so this wraps around the wheel several times
+    long startTime = this.source.currentTimeMillis() + 10 * INTERVAL_MILLIS + 3;
+    CountDownLatch latch = new CountDownLatch(1);
+    this.timer.addDelayed(latch::countDown, startTime);
+    for (int x = 0; x < 10; x++) {
+      this.source.passTime(INTERVAL_MILLIS);
+      Assert.assertFalse(latch.await(3 * TICK_MILLIS, TimeUnit.MILLISECONDS));
+    }
+    this.source.passTime(3);
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testRunPeriodicTask() throws Exception {
+    long startTime = this.source.currentTimeMillis() + INTERVAL_MILLIS;
+    CountDownLatch latch = new CountDownLatch(2);
+    this.timer.addPeriodic(latch::countDown, startTime, INTERVAL_MILLIS);
+    this.source.passTime(2 * INTERVAL_MILLIS);
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void cancelTask() throws Exception {
+    long startTime = this.source.currentTimeMillis() + INTERVAL_MILLIS;
+    AtomicBoolean bool = new AtomicBoolean(false);
+    long id = this.timer.addDelayed(() -> bool.set(true), startTime);
+    Assert.assertTrue(id > 0);
+    Assert.assertTrue(this.timer.cancel(id));
+    Assert.assertFalse(this.timer.cancel(id));
+    // a task scheduled after it runs, so the cancelled one had its chance
+    CountDownLatch later = new CountDownLatch(1);
+    this.timer.addDelayed(later::countDown, startTime + 1);
+    this.source.passTime(INTERVAL_MILLIS + 1);
+    Assert.assertTrue(later.await(10, TimeUnit.SECONDS));
+    Assert.assertFalse(bool.get());
+  }
+
+  @Test
+  public void cancelPeriodTaskWhileRunning() throws Exception {
+    long startTime = this.source.currentTimeMillis() + INTERVAL_MILLIS;
+    AtomicInteger counter = new AtomicInteger();
+    long[] id = new long[1];
+    CountDownLatch ran = new CountDownLatch(1);
+    id[0] = this.timer.addPeriodic(() -> {
+      counter.incrementAndGet();
+      Assert.assertTrue(this.timer.cancel(id[0]));
+      ran.countDown();
+    }, startTime, INTERVAL_MILLIS);
+    this.source.passTime(INTERVAL_MILLIS);
+    Assert.assertTrue(ran.await(10, TimeUnit.SECONDS));
+    this.source.passTime(2 * INTERVAL_MILLIS);
+    CountDownLatch later = new CountDownLatch(1);
+    this.timer.addDelayed(later::countDown, this.source.currentTimeMillis());
+    Assert.assertTrue(later.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(1, counter.get());
+  }
+
+  @Test
+  public void slowTaskDoesNotHoldUpOthers() throws Exception {
+    long startTime = this.source.currentTimeMillis() + INTERVAL_MILLIS;
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch fast = new CountDownLatch(1);
+    this.timer.addDelayed(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, startTime);
+    this.timer.addDelayed(fast::countDown, startTime);
+    this.source.passTime(INTERVAL_MILLIS);
+    Assert.assertTrue(fast.await(10, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  @Test
+  public void stopShutsDownTheExecutor() throws Exception {
+    ExecutorService callbacks = Executors.newSingleThreadExecutor();
+    TimingWheelTimer owned = new TimingWheelTimer(this.source, null, TICK_MILLIS, 8, callbacks);
+    owned.start();
+    Assert.assertFalse(callbacks.isShutdown());
+    owned.stop();
+    Assert.assertTrue(callbacks.isShutdown());
+  }
+}
@@ -102,4 +102,6 @@ public interface TCServerInfoMBean extends TerracottaMBean, RuntimeStatisticCons
   void setPipelineMonitoring(boolean monitor);
   
   String getClusterState(boolean shortForm);
+
+  String getStageLatencies();
 }
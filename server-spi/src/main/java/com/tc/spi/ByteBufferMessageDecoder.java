@@ -0,0 +1,43 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.spi;
+
+import java.nio.ByteBuffer;
+
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.MessageCodecException;
+
+/**
+ * Optionally implemented by an entity's {@link org.terracotta.entity.MessageCodec} to decode messages straight out of
+ *  the buffers they were received in.  The server then hands it a read-only view of the message bytes instead of
+ *  copying them into a byte[] first, on the active as well as on passives applying the replicated message.
+ *
+ * @param <M> the message type of the codec
+ */
+public interface ByteBufferMessageDecoder<M extends EntityMessage> {
+  /**
+   * Decode a message.  The view is only valid for the duration of the call, a message which needs the bytes later must
+   *  copy what it keeps.
+   *
+   * @param payload A read-only view of exactly the message bytes, positioned at the start
+   * @return The decoded message
+   * @throws MessageCodecException The bytes could not be decoded
+   */
+  M decodeMessage(ByteBuffer payload) throws MessageCodecException;
+}
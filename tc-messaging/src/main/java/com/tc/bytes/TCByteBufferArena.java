@@ -0,0 +1,252 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.bytes;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide, size classed pool of TCByteBuffers. Buffers may be returned on any thread, not just the one that
+ * allocated them. Each size class keeps a set of lock-free magazines (fixed arrays of slots claimed with CAS) striped by
+ * thread so that the common case of a thread returning what it allocated does not contend with other threads.
+ * <p>
+ * The total number of idle bytes held across all size classes is capped; buffers returned past the cap are simply
+ * dropped and left to the GC. When leak tracking is on, every checked out buffer is weakly tracked and buffers that
+ * are collected without ever being returned are counted and logged.
+ */
+class TCByteBufferArena implements BufferPool {
+
+  static final int[]                        SIZE_CLASSES   = { 4 * 1024, 16 * 1024, 64 * 1024, 1024 * 1024 };
+  private static final int                  MAGAZINE_SLOTS = 64;
+  private static final Logger               logger         = LoggerFactory.getLogger(TCByteBufferArena.class);
+
+  private final boolean                     direct;
+  private final long                        maxPooledBytes;
+  private final boolean                     trackLeaks;
+  private final SizeClass[]                 classes;
+  private final int                         stripeMask;
+
+  private final AtomicLong                  pooledBytes    = new AtomicLong();
+  private final AtomicLong                  checkedOutBytes = new AtomicLong();
+  private final AtomicLong                  allocations    = new AtomicLong();
+  private final AtomicLong                  hits           = new AtomicLong();
+  private final AtomicLong                  leaks          = new AtomicLong();
+
+  private final ReferenceQueue<TCByteBuffer>           leakQueue = new ReferenceQueue<>();
+  private final Map<Reference<TCByteBuffer>, Integer>  tracked   = new ConcurrentHashMap<>();
+
+  TCByteBufferArena(boolean direct, long maxPooledBytes, boolean trackLeaks) {
+    this.direct = direct;
+    this.maxPooledBytes = maxPooledBytes;
+    this.trackLeaks = trackLeaks;
+    int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+    this.stripeMask = stripes - 1;
+    this.classes = new SizeClass[SIZE_CLASSES.length];
+    for (int i = 0; i < SIZE_CLASSES.length; i++) {
+      this.classes[i] = new SizeClass(SIZE_CLASSES[i], stripes);
+    }
+  }
+
+  /**
+   * @return the smallest size class that can hold {@code size} bytes, or -1 if the request is too large to pool
+   */
+  static int sizeClassFor(int size) {
+    for (int i = 0; i < SIZE_CLASSES.length; i++) {
+      if (size <= SIZE_CLASSES[i]) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static boolean isPoolable(int size) {
+    return size > 0 && size <= SIZE_CLASSES[SIZE_CLASSES.length - 1];
+  }
+
+  /**
+   * Check out a buffer with a capacity of at least {@code size}. The buffer's limit is set to {@code size}.
+   */
+  TCByteBuffer allocate(int size) {
+    int sizeClass = sizeClassFor(size);
+    if (sizeClass < 0) {
+      throw new IllegalArgumentException("size " + size + " exceeds the largest pooled size class");
+    }
+    expungeLeaks();
+    allocations.incrementAndGet();
+    SizeClass sc = classes[sizeClass];
+    TCByteBufferImpl buf = sc.poll(stripe());
+    if (buf != null) {
+      hits.incrementAndGet();
+      pooledBytes.addAndGet(-sc.size);
+    } else {
+      buf = new TCByteBufferImpl(sc.size, direct, this);
+    }
+    buf.checkedOut();
+    checkedOutBytes.addAndGet(sc.size);
+    if (trackLeaks) {
+      WeakReference<TCByteBuffer> ref = new WeakReference<>(buf, leakQueue);
+      buf.setLeakTracker(ref);
+      tracked.put(ref, sc.size);
+    }
+    buf.limit(size);
+    return buf;
+  }
+
+  /**
+   * Return a buffer to the arena. The buffer must already have been committed by the caller.
+   */
+  @Override
+  public void offer(TCByteBuffer buf) {
+    TCByteBufferImpl impl = (TCByteBufferImpl) buf;
+    int capacity = impl.capacity();
+    checkedOutBytes.addAndGet(-capacity);
+    if (trackLeaks) {
+      Reference<?> ref = impl.setLeakTracker(null);
+      if (ref != null) {
+        tracked.remove(ref);
+        ref.clear();
+      }
+    }
+    int sizeClass = sizeClassFor(capacity);
+    if (sizeClass < 0 || SIZE_CLASSES[sizeClass] != capacity) {
+      return;
+    }
+    if (!reserve(capacity)) {
+      return;
+    }
+    impl.clear();
+    if (!classes[sizeClass].offer(stripe(), impl)) {
+      pooledBytes.addAndGet(-capacity);
+    }
+  }
+
+  private boolean reserve(int capacity) {
+    while (true) {
+      long current = pooledBytes.get();
+      if (current + capacity > maxPooledBytes) {
+        return false;
+      }
+      if (pooledBytes.compareAndSet(current, current + capacity)) {
+        return true;
+      }
+    }
+  }
+
+  private void expungeLeaks() {
+    if (!trackLeaks) {
+      return;
+    }
+    Reference<? extends TCByteBuffer> ref;
+    while ((ref = leakQueue.poll()) != null) {
+      Integer size = tracked.remove(ref);
+      if (size != null) {
+        checkedOutBytes.addAndGet(-size);
+        long total = leaks.incrementAndGet();
+        logger.warn("{} buffer of {} bytes was garbage collected without being returned to the pool ({} leaks so far)",
+                    direct ? "direct" : "heap", size, total);
+      }
+    }
+  }
+
+  private int stripe() {
+    return (int) Thread.currentThread().getId() & stripeMask;
+  }
+
+  long getPooledBytes() {
+    return pooledBytes.get();
+  }
+
+  long getCheckedOutBytes() {
+    expungeLeaks();
+    return checkedOutBytes.get();
+  }
+
+  long getLeakCount() {
+    expungeLeaks();
+    return leaks.get();
+  }
+
+  long getAllocationCount() {
+    return allocations.get();
+  }
+
+  long getHitCount() {
+    return hits.get();
+  }
+
+  @Override
+  public String toString() {
+    return "TCByteBufferArena{" + (direct ? "direct" : "heap") + ", pooled=" + pooledBytes.get() + "/" + maxPooledBytes
+           + ", checkedOut=" + checkedOutBytes.get() + ", allocations=" + allocations.get() + ", hits=" + hits.get()
+           + ", leaks=" + leaks.get() + '}';
+  }
+
+  private static final class SizeClass {
+    private final int                                        size;
+    private final AtomicReferenceArray<TCByteBufferImpl>[]   magazines;
+    private final AtomicInteger                              available = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    SizeClass(int size, int stripes) {
+      this.size = size;
+      this.magazines = new AtomicReferenceArray[stripes];
+      for (int i = 0; i < stripes; i++) {
+        this.magazines[i] = new AtomicReferenceArray<>(MAGAZINE_SLOTS);
+      }
+    }
+
+    TCByteBufferImpl poll(int stripe) {
+      if (available.get() <= 0) {
+        return null;
+      }
+      for (int m = 0; m < magazines.length; m++) {
+        AtomicReferenceArray<TCByteBufferImpl> magazine = magazines[(stripe + m) % magazines.length];
+        for (int i = 0; i < MAGAZINE_SLOTS; i++) {
+          TCByteBufferImpl candidate = magazine.get(i);
+          if (candidate != null && magazine.compareAndSet(i, candidate, null)) {
+            available.decrementAndGet();
+            return candidate;
+          }
+        }
+      }
+      return null;
+    }
+
+    boolean offer(int stripe, TCByteBufferImpl buf) {
+      for (int m = 0; m < magazines.length; m++) {
+        AtomicReferenceArray<TCByteBufferImpl> magazine = magazines[(stripe + m) % magazines.length];
+        for (int i = 0; i < MAGAZINE_SLOTS; i++) {
+          if (magazine.get(i) == null && magazine.compareAndSet(i, null, buf)) {
+            available.incrementAndGet();
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -18,11 +18,7 @@
  */
 package com.tc.bytes;
 
-import java.nio.ReadOnlyBufferException;
-import java.util.AbstractQueue;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Queue;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,33 +26,57 @@ import org.slf4j.LoggerFactory;
  * TCByteBuffer source that hides JDK dependencies and that can pool instances. Instance pooling is likely to be a good
  * idea for fixed size buffers and definitely a good idea for java direct buffers (since their allocation/deallocation
  * is more expensive than regular java objects).
+ * <p>
+ * When pooling is enabled buffers come from a process wide, size classed {@link TCByteBufferArena} (one for direct and
+ * one for heap buffers) so they can be freed on a different thread than the one that allocated them.
  * 
  * @author teck
  */
 public class TCByteBufferFactory {
 
-  private static boolean POOLING = false;
-  private static int THREAD_MAX = 1024;
+  private static final long                DEFAULT_POOL_MAX_BYTES  = 64L * 1024 * 1024;                                           // 64MiB
+  private static volatile boolean POOLING = false;
+  private static volatile long POOL_MAX_BYTES = DEFAULT_POOL_MAX_BYTES;
+  private static volatile boolean LEAK_DETECTION = false;
   public static final int                  FIXED_BUFFER_SIZE       = 4 * 1024;                                                        // 4KiB
   private static final int                 WARN_THRESHOLD          = 10 * 1024 * 1024;                                                // 10MiB
   private static final TCByteBuffer[]      EMPTY_BB_ARRAY          = new TCByteBuffer[0];
   private static final TCByteBuffer        ZERO_BYTE_BUFFER        = TCByteBufferImpl.wrap(new byte[0]);
   private static final Logger logger = LoggerFactory.getLogger(TCByteBufferFactory.class);
   
-  private static final ThreadLocal<Queue<TCByteBuffer>>  DIRECT_POOL = ThreadLocal.withInitial(PoolQueue::new);
-  private static final ThreadLocal<Queue<TCByteBuffer>>  HEAP_POOL = ThreadLocal.withInitial(PoolQueue::new);
+  private static volatile TCByteBufferArena DIRECT_ARENA = new TCByteBufferArena(true, DEFAULT_POOL_MAX_BYTES, false);
+  private static volatile TCByteBufferArena HEAP_ARENA = new TCByteBufferArena(false, DEFAULT_POOL_MAX_BYTES, false);
   
   public static void setPoolingEnabled(boolean val) {
     POOLING = val;
   }
   
-  public static void setPoolingThreadMax(int size) {
-    THREAD_MAX = size;
+  /**
+   * Configure the cap on idle bytes held by each of the direct and heap pools. Replaces the existing pools, buffers
+   * still checked out from the old pools go back to them when returned and are discarded with them.
+   */
+  public static synchronized void setPoolingMaxBytes(long maxBytes) {
+    if (maxBytes < 0) { throw new IllegalArgumentException("pool size cannot be less than zero"); }
+    POOL_MAX_BYTES = maxBytes;
+    resetArenas();
+  }
+  
+  /**
+   * Enable tracking of pooled buffers that are garbage collected without being returned. Replaces the existing pools.
+   */
+  public static synchronized void setLeakDetectionEnabled(boolean val) {
+    LEAK_DETECTION = val;
+    resetArenas();
+  }
+
+  private static void resetArenas() {
+    DIRECT_ARENA = new TCByteBufferArena(true, POOL_MAX_BYTES, LEAK_DETECTION);
+    HEAP_ARENA = new TCByteBufferArena(false, POOL_MAX_BYTES, LEAK_DETECTION);
   }
     
   private static TCByteBuffer createNewInstance(boolean direct, int capacity, int index, int totalCount, boolean usePool) {
     try {
-      TCByteBuffer rv = new TCByteBufferImpl(capacity, direct, usePool ? direct ? DIRECT_POOL.get() : HEAP_POOL.get() : null);
+      TCByteBuffer rv = usePool ? (direct ? DIRECT_ARENA : HEAP_ARENA).allocate(capacity) : new TCByteBufferImpl(capacity, direct, null);
       // Assert.assertEquals(0, rv.position());
       // Assert.assertEquals(capacity, rv.capacity());
       // Assert.assertEquals(capacity, rv.limit());
@@ -69,10 +89,12 @@ public class TCByteBufferFactory {
     }
   }
   /**
-   * Get a single variable sized TCByteBuffer instance Note: These are not pooled (yet)
+   * Get a single variable sized TCByteBuffer instance. When pooling is enabled direct buffers up to the largest arena
+   * size class are taken from the pool; heap buffers are never pooled here.
    * 
-   * @param size The desired minimum capacity of the buffer. The actual capacity may be higher. The buffer's limit will
-   *        be equal to it's capacity.
+   * @param size The desired minimum capacity of the buffer. The actual capacity may be higher for pooled direct
+   *        buffers, in which case the limit is set to {@code size}. Otherwise the buffer's limit will be equal to it's
+   *        capacity.
    * @param direct True to hint that the buffer should be a direct buffer (ie. not on the Java heap). A direct buffer
    *        will never be returned if this parameter is false. A direct buffer may or MAY NOT returned if the parameter
    *        is true TODO :: Make this the only interface and make it return fixed size buffer also make sure only
@@ -86,12 +108,7 @@ public class TCByteBufferFactory {
     if (size < 0) { throw new IllegalArgumentException("Requested length cannot be less than zero"); }
     if (size == 0) { return ZERO_BYTE_BUFFER; }
 
-    // Don't give 4k ByteBuffer from pool for smaller size requests.
-    return createNewInstance(direct, size);
-  }
-
-  private static TCByteBuffer createNewInstance(boolean direct, int bufferSize) {
-    return createNewInstance(direct, bufferSize, 0, 1, false);
+    return createNewInstance(direct, size, 0, 1, POOLING && direct && TCByteBufferArena.isPoolable(size));
   }
   
   /**
@@ -115,16 +132,8 @@ public class TCByteBufferFactory {
 
     int numBuffers = getBufferCountNeededForMessageSize(length);
     TCByteBuffer rv[] = new TCByteBuffer[numBuffers];
-    Queue<TCByteBuffer> pool = !POOLING ? null : direct ? DIRECT_POOL.get() : HEAP_POOL.get();
     for (int i = 0; i < numBuffers; i++) {
-      if (pool != null) {
-        rv[i] = pool.poll();
-      }
-      if (rv[i] == null) {
-        rv[i] = createNewInstance(direct, FIXED_BUFFER_SIZE, i, numBuffers, POOLING);
-      } else {
-        rv[i].checkedOut();
-      }
+      rv[i] = createNewInstance(direct, FIXED_BUFFER_SIZE, i, numBuffers, POOLING);
     }
 
     // adjust limit of last buffer returned
@@ -155,17 +164,15 @@ public class TCByteBufferFactory {
   }
 
   public static void returnBuffer(TCByteBuffer buf) {
-    if (buf.capacity() == FIXED_BUFFER_SIZE) {
-      BufferPool bufferPool = buf.getBufferPool();
+    BufferPool bufferPool = buf.getBufferPool();
+    if (bufferPool != null) {
+      // commit() asserts the buffer is not returned twice
       buf.commit();
-
-      if (bufferPool != null) {
-        try {
-          bufferPool.offer(buf);
-        } catch (InterruptedException e) {
-          logger.warn("interrupted while trying to return buffer", e);
-          Thread.currentThread().interrupt();
-        }
+      try {
+        bufferPool.offer(buf);
+      } catch (InterruptedException e) {
+        logger.warn("interrupted while trying to return buffer", e);
+        Thread.currentThread().interrupt();
       }
     }
   }
@@ -184,8 +191,8 @@ public class TCByteBufferFactory {
     byte[] array = null;
     try {
       array = buffer.array();
-    } catch (ReadOnlyBufferException ro) {
-      // ignore
+    } catch (UnsupportedOperationException ro) {
+      // read-only or direct, either way there is no array to hand out
     }
     if (array == null || buffer.position() != 0 || buffer.remaining() != array.length || buffer.arrayOffset() != 0) {
       array = new byte[buffer.remaining()];
@@ -194,6 +201,17 @@ public class TCByteBufferFactory {
     return array;
   }
 
+  /**
+   * A read-only NIO view of the remaining bytes of the buffer, without copying them.  Changes to the position of either
+   *  buffer are not seen by the other.
+   */
+  public static ByteBuffer readOnlyView(TCByteBuffer buffer) {
+    if (buffer == null) {
+      return null;
+    }
+    return buffer.duplicate().getNioBuffer().slice().asReadOnlyBuffer();
+  }
+
   public static TCByteBuffer copyAndWrap(byte[] buf) {
     TCByteBuffer rv = null;
     if (buf != null) {
@@ -205,46 +223,44 @@ public class TCByteBufferFactory {
     return rv;
   }
 
+  /**
+   * Copy the remaining bytes of the buffers into a single buffer that is not from any pool and so can be shared and
+   *  recycled by any number of readers.  The source buffers are not recycled.
+   */
+  public static TCByteBuffer copyUnpooled(TCByteBuffer[] buffers) {
+    int length = 0;
+    for (TCByteBuffer buffer : buffers) {
+      length += buffer.remaining();
+    }
+    byte[] copy = new byte[length];
+    int offset = 0;
+    for (TCByteBuffer buffer : buffers) {
+      int remaining = buffer.remaining();
+      buffer.duplicate().get(copy, offset, remaining);
+      offset += remaining;
+    }
+    return TCByteBufferImpl.wrap(copy);
+  }
+
   public static boolean isPoolingEnabled() {
     return POOLING;
   }
-  
-  private static class PoolQueue extends AbstractQueue<TCByteBuffer> {
-    
-    private TCByteBuffer[] store = new TCByteBuffer[THREAD_MAX];
-    private int pointer = 0;
-    
-    @Override
-    public Iterator<TCByteBuffer> iterator() {
-      throw new UnsupportedOperationException("Not supported yet.");
-    }
 
-    @Override
-    public int size() {
-      return pointer;
-    }
-
-    @Override
-    public synchronized boolean offer(TCByteBuffer e) {
-      if (store.length != THREAD_MAX) {
-        store = Arrays.copyOf(store, THREAD_MAX);
-      }
-      if (pointer < store.length) {
-        store[pointer++] = e;
-        return true;
-      } else {
-        return false;
-      }
-    }
+  /**
+   * @return bytes currently checked out of the pools and not yet returned
+   */
+  public static long getPooledBytesInUse() {
+    return DIRECT_ARENA.getCheckedOutBytes() + HEAP_ARENA.getCheckedOutBytes();
+  }
 
-    @Override
-    public synchronized TCByteBuffer poll() {
-      return (pointer > 0) ? store[--pointer] : null;
-    }
+  /**
+   * @return number of pooled buffers that were garbage collected without being returned, if leak detection is enabled
+   */
+  public static long getLeakedBufferCount() {
+    return DIRECT_ARENA.getLeakCount() + HEAP_ARENA.getLeakCount();
+  }
 
-    @Override
-    public TCByteBuffer peek() {
-      throw new UnsupportedOperationException("Not supported yet.");
-    }
+  public static String getPoolStatistics() {
+    return DIRECT_ARENA + " " + HEAP_ARENA;
   }
 }
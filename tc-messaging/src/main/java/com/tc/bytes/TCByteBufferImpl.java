@@ -21,8 +21,8 @@ package com.tc.bytes;
 import com.tc.util.Assert;
 import com.tc.util.State;
 
+import java.lang.ref.Reference;
 import java.nio.ByteBuffer;
-import java.util.Queue;
 
 /**
  * @author teck A thin wrapper to a real java.nio.ByteBuffer instance
@@ -30,7 +30,7 @@ import java.util.Queue;
 
 // XXX: Should we wrap the native java.nio overflow, underflow and readOnly exceptions with the TC versions?
 // This would make the TCByteBuffer interface consistent w.r.t. exceptions (whilst being blind to JDK13 vs JDK14)
-public class TCByteBufferImpl implements TCByteBuffer, BufferPool {
+public class TCByteBufferImpl implements TCByteBuffer {
 
   private static final State        INIT        = new State("INIT");
   private static final State        CHECKED_OUT = new State("CHECKED_OUT");
@@ -38,17 +38,18 @@ public class TCByteBufferImpl implements TCByteBuffer, BufferPool {
 
   private final ByteBuffer          buffer;
   private final TCByteBuffer        root;
-  private final Queue<TCByteBuffer> bufPool;
+  private final BufferPool          bufPool;
   private State                     state       = INIT;
+  private Reference<?>              leakTracker;
   private final boolean isReadOnly;
   
-  TCByteBufferImpl(int capacity, boolean direct, Queue<TCByteBuffer> poolQueue) {
+  TCByteBufferImpl(int capacity, boolean direct, BufferPool pool) {
     if (direct) {
       buffer = ByteBuffer.allocateDirect(capacity);
     } else {
       buffer = ByteBuffer.allocate(capacity);
     }
-    bufPool = poolQueue;
+    bufPool = pool;
     root = this;
     isReadOnly = false;
   }
@@ -596,14 +597,16 @@ public class TCByteBufferImpl implements TCByteBuffer, BufferPool {
 
   @Override
   public BufferPool getBufferPool() {
-    return this;
+    return bufPool;
   }
 
-  @Override
-  public void offer(TCByteBuffer buf) throws InterruptedException {
-    if (this.bufPool != null) {
-      this.bufPool.offer(buf);
-    }
+  /**
+   * Swap the reference the owning pool uses to notice this buffer being collected while checked out.
+   */
+  Reference<?> setLeakTracker(Reference<?> tracker) {
+    Reference<?> old = leakTracker;
+    leakTracker = tracker;
+    return old;
   }
 
   /* This is the debug version. PLEASE DONT DELETE */
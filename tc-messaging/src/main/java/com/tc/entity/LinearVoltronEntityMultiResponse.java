@@ -19,6 +19,7 @@
 package com.tc.entity;
 
 import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.protocol.tcm.MessageChannel;
 import com.tc.net.protocol.tcm.MessageMonitor;
@@ -41,6 +42,9 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
   
   private final byte OP_ID = 1;
   private final byte DONE_ID = 2;
+  // payloads at least this big are linked into the message rather than copied, a multicast payload is shared by the
+  // messages to every client it goes to
+  private static final int LINK_THRESHOLD = 4 * 1024;
   
   public enum Operation {
     RECEIVED,
@@ -264,7 +268,11 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
       getOutputStream().writeLong(op.id);
       if (op.type.hasData()) {
         getOutputStream().writeInt(op.data.length);
-        getOutputStream().write(op.data);
+        if (op.data.length >= LINK_THRESHOLD) {
+          getOutputStream().write(TCByteBufferFactory.wrap(op.data));
+        } else {
+          getOutputStream().write(op.data);
+        }
       }
       count++;
     }
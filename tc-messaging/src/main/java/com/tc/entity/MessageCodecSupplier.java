@@ -18,14 +18,29 @@
  */
 package com.tc.entity;
 
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.object.EntityDescriptor;
+import com.tc.spi.ByteBufferMessageDecoder;
 import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.EntityResponse;
 import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
 
 /**
  *
  */
 public interface MessageCodecSupplier {
   MessageCodec<? extends EntityMessage, ? extends EntityResponse> getMessageCodec(EntityDescriptor fetchID);
+
+  /**
+   * Decode a received message, without copying it if the codec can decode from a {@link java.nio.ByteBuffer}.
+   */
+  static EntityMessage decodeMessage(MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec, TCByteBuffer data) throws MessageCodecException {
+    if (codec instanceof ByteBufferMessageDecoder) {
+      return ((ByteBufferMessageDecoder<?>)codec).decodeMessage(TCByteBufferFactory.readOnlyView(data));
+    } else {
+      return codec.decodeMessage(TCByteBufferFactory.unwrap(data));
+    }
+  }
 }
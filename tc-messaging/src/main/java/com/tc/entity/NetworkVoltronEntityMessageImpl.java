@@ -20,7 +20,6 @@
 package com.tc.entity;
 
 import com.tc.bytes.TCByteBuffer;
-import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.ClientID;
 import com.tc.net.protocol.tcm.MessageChannel;
@@ -220,7 +219,7 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
     try {
       if (this.type == Type.INVOKE_ACTION) {
         MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec = supplier.getMessageCodec(this.entityDescriptor);
-        this.message = codec.decodeMessage(TCByteBufferFactory.unwrap(extendedData));
+        this.message = MessageCodecSupplier.decodeMessage(codec, extendedData);
       }
     } catch (MessageCodecException exception) {
 /*  swallow it - this is an optimzation which does not handle the failure case.  
@@ -0,0 +1,48 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.TCMessage;
+import java.util.List;
+
+
+/**
+ * A batch of invokes from one client packed into a single network message.  The batch is only a transport, it is not a
+ * {@link VoltronEntityMessage} itself: the server unpacks it once hydrated and hands each invoke on to the voltron
+ * pipeline, in the order the messages were added.
+ */
+public interface NetworkVoltronEntityMultiMessage extends TCMessage {
+  /**
+   * Adds an invoke to the batch.  Only called on the sending side, before the batch is sent.
+   */
+  void addMessage(NetworkVoltronEntityMessage message);
+
+  /**
+   * @return the messages in the batch, in the order they were added
+   */
+  List<VoltronEntityMessage> getMessages();
+
+  /**
+   * @return the client every message in the batch came from
+   */
+  ClientID getSource();
+
+  void setMessageCodecSupplier(MessageCodecSupplier supplier);
+}
@@ -0,0 +1,234 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.entity.VoltronEntityMessage.Acks;
+import com.tc.entity.VoltronEntityMessage.Type;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.msg.DSOMessageBase;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import com.tc.util.Assert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
+
+
+public class NetworkVoltronEntityMultiMessageImpl extends DSOMessageBase implements NetworkVoltronEntityMultiMessage {
+  private ClientID clientID;
+  private final List<VoltronEntityMessage> messages = new ArrayList<>();
+  private MessageCodecSupplier supplier;
+
+  public NetworkVoltronEntityMultiMessageImpl(SessionID sessionID, MessageMonitor monitor, TCByteBufferOutputStream out, MessageChannel channel, TCMessageType type) {
+    super(sessionID, monitor, out, channel, type);
+  }
+
+  public NetworkVoltronEntityMultiMessageImpl(SessionID sessionID, MessageMonitor monitor, MessageChannel channel, TCMessageHeader header, TCByteBuffer[] data) {
+    super(sessionID, monitor, channel, header, data);
+  }
+
+  @Override
+  public void addMessage(NetworkVoltronEntityMessage message) {
+    Assert.assertTrue(message.getVoltronType() == Type.INVOKE_ACTION);
+    if (this.clientID == null) {
+      this.clientID = message.getSource();
+    } else {
+      Assert.assertEquals(this.clientID, message.getSource());
+    }
+    this.messages.add(message);
+  }
+
+  @Override
+  public List<VoltronEntityMessage> getMessages() {
+    return Collections.unmodifiableList(this.messages);
+  }
+
+  @Override
+  public void setMessageCodecSupplier(MessageCodecSupplier supplier) {
+    this.supplier = supplier;
+  }
+
+  @Override
+  public ClientID getSource() {
+    Assert.assertNotNull(this.clientID);
+    return this.clientID;
+  }
+
+  @Override
+  protected void dehydrateValues() {
+    TCByteBufferOutputStream outputStream = getOutputStream();
+    // same layout as NetworkVoltronEntityMessageImpl, the client is written once for the whole batch
+    putNVPair((byte)0, (byte)0);
+
+    this.clientID.serializeTo(outputStream);
+
+    outputStream.writeInt(this.messages.size());
+    for (VoltronEntityMessage message : this.messages) {
+      NetworkVoltronEntityMessage network = (NetworkVoltronEntityMessage)message;
+      outputStream.writeLong(network.getTransactionID().toLong());
+      network.getEntityDescriptor().serializeTo(outputStream);
+      TCByteBuffer extendedData = network.getExtendedData();
+      outputStream.writeInt(extendedData.remaining());
+      outputStream.write(extendedData);
+      outputStream.writeBoolean(network.doesRequireReplication());
+      outputStream.writeLong(network.getOldestTransactionOnClient().toLong());
+      Set<Acks> acks = network.getRequestedAcks();
+      outputStream.writeByte(acks.size());
+      for (Acks ack : acks) {
+        outputStream.writeByte(ack.ordinal());
+      }
+    }
+  }
+
+  @Override
+  protected boolean hydrateValue(byte name) throws IOException {
+    Assert.assertTrue(0 == name);
+    Assert.assertTrue(null == this.clientID);
+    // Read our dummy byte.
+    getByteValue();
+
+    this.clientID = ClientID.readFrom(getInputStream());
+    int count = getIntValue();
+    for (int x = 0; x < count; x++) {
+      TransactionID transactionID = new TransactionID(getLongValue());
+      EntityDescriptor descriptor = EntityDescriptor.readFrom(getInputStream());
+      TCByteBuffer extendedData = getByteBuffer();
+      boolean requiresReplication = getBooleanValue();
+      TransactionID oldest = new TransactionID(getLongValue());
+      Set<Acks> acks = EnumSet.noneOf(Acks.class);
+      int ac = getByteValue();
+      for (int a = 0; a < ac; a++) {
+        acks.add(Acks.values()[getByteValue()]);
+      }
+      EntityMessage decoded = null;
+      try {
+        MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec = supplier.getMessageCodec(descriptor);
+        decoded = MessageCodecSupplier.decodeMessage(codec, extendedData);
+      } catch (MessageCodecException exception) {
+/*  swallow it - same as NetworkVoltronEntityMessageImpl, a later stage will decode
+    again and send the failure back to the client.
+      */
+      }
+      this.messages.add(new BatchedInvoke(this.clientID, transactionID, descriptor, extendedData, requiresReplication, oldest, acks, decoded));
+    }
+    return true;
+  }
+
+  @Override
+  protected String describePayload() {
+    return "client=" + clientID + ", messages=" + messages.size();
+  }
+
+  /**
+   * One invoke unpacked from a batch on the receiving side.
+   */
+  private static class BatchedInvoke implements VoltronEntityMessage {
+    private final ClientID clientID;
+    private final TransactionID transactionID;
+    private final EntityDescriptor entityDescriptor;
+    private final TCByteBuffer extendedData;
+    private final boolean requiresReplication;
+    private final TransactionID oldestTransactionPending;
+    private final Set<Acks> requestedAcks;
+    private final EntityMessage message;
+
+    BatchedInvoke(ClientID clientID, TransactionID transactionID, EntityDescriptor entityDescriptor, TCByteBuffer extendedData,
+                  boolean requiresReplication, TransactionID oldestTransactionPending, Set<Acks> requestedAcks, EntityMessage message) {
+      this.clientID = clientID;
+      this.transactionID = transactionID;
+      this.entityDescriptor = entityDescriptor;
+      this.extendedData = extendedData.asReadOnlyBuffer();
+      this.requiresReplication = requiresReplication;
+      this.oldestTransactionPending = oldestTransactionPending;
+      this.requestedAcks = requestedAcks;
+      this.message = message;
+    }
+
+    @Override
+    public ClientID getSource() {
+      return clientID;
+    }
+
+    @Override
+    public TransactionID getTransactionID() {
+      return transactionID;
+    }
+
+    @Override
+    public EntityDescriptor getEntityDescriptor() {
+      return entityDescriptor;
+    }
+
+    @Override
+    public boolean doesRequireReplication() {
+      return requiresReplication;
+    }
+
+    @Override
+    public boolean doesRequestReceived() {
+      return requestedAcks.contains(Acks.RECEIVED);
+    }
+
+    @Override
+    public boolean doesRequestRetired() {
+      return requestedAcks.contains(Acks.RETIRED);
+    }
+
+    @Override
+    public Type getVoltronType() {
+      return Type.INVOKE_ACTION;
+    }
+
+    @Override
+    public TCByteBuffer getExtendedData() {
+      return extendedData.duplicate();
+    }
+
+    @Override
+    public TransactionID getOldestTransactionOnClient() {
+      return oldestTransactionPending;
+    }
+
+    @Override
+    public EntityMessage getEntityMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      return "BatchedInvoke{" + "client=" + clientID + ", transaction=" + transactionID + ", entity=" + entityDescriptor + '}';
+    }
+  }
+}
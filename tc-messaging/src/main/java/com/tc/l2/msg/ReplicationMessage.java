@@ -19,9 +19,14 @@
 package com.tc.l2.msg;
 
 import com.tc.async.api.OrderedEventContext;
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferInputStream;
 import com.tc.io.TCByteBufferOutput;
+import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.groups.AbstractGroupMessage;
+import com.tc.object.compression.LZ4BlockCodec;
 import com.tc.util.Assert;
 
 import java.io.IOException;
@@ -32,6 +37,9 @@ import java.util.List;
 public class ReplicationMessage extends AbstractGroupMessage implements OrderedEventContext, IBatchableGroupMessage<SyncReplicationActivity> {
   // We don't have an explicit message type - the ReplicationMessage is only a container.
   public static final int IGNORED = 0;
+  // The same container, but a flag ahead of the activities says whether they are compressed.  Only used when compression
+  //  is turned on so the IGNORED encoding stays as it always was.
+  public static final int COMPRESSIBLE = 1;
 
   // Factory methods.
   public static ReplicationMessage createActivityContainer(SyncReplicationActivity activity) {
@@ -39,6 +47,21 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
     return new ReplicationMessage(activity);
   }
 
+  /**
+   * Like createActivityContainer but the batch is compressed on the wire once its payloads add up to at least
+   *  compressionThreshold bytes.  A threshold of 0 disables compression and the batch is sent exactly as
+   *  createActivityContainer would send it.
+   */
+  public static ReplicationMessage createActivityContainer(SyncReplicationActivity activity, int compressionThreshold) {
+    if (compressionThreshold <= 0) {
+      return createActivityContainer(activity);
+    }
+    Assert.assertNotNull(activity);
+    ReplicationMessage message = new ReplicationMessage(COMPRESSIBLE, activity);
+    message.compressionThreshold = compressionThreshold;
+    return message;
+  }
+
   public static ReplicationMessage createLocalContainer(SyncReplicationActivity activity) {
     Assert.assertNotNull(activity);
     ReplicationMessage message = new ReplicationMessage(activity);
@@ -49,6 +72,7 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
 
   private List<SyncReplicationActivity> activities;
   long rid = 0;
+  private int compressionThreshold;
   // We will keep a flag to track whether this message is outgoing (created here and being sent to the network) or incoming
   //  (created elsewhere and decoded here) to ensure that it is being used correctly.
   // (Note that this check can be removed in the future - it is mostly to validate during refactoring and buffering
@@ -67,7 +91,11 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
   
 //  a true replicated message
   private ReplicationMessage(SyncReplicationActivity activity) {
-    super(IGNORED);
+    this(IGNORED, activity);
+  }
+
+  private ReplicationMessage(int type, SyncReplicationActivity activity) {
+    super(type);
     this.activities = new ArrayList<SyncReplicationActivity>();
     this.activities.add(activity);
     this.didCreateLocally = true;
@@ -107,13 +135,18 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
     int messageType = getType();
     switch (messageType) {
       case IGNORED:
+      case COMPRESSIBLE:
         this.rid = in.readLong();
         int batchSize = in.readInt();
         // We don't send empty batches.
         Assert.assertTrue(batchSize > 0);
         this.activities = new ArrayList<SyncReplicationActivity>();
+        TCByteBufferInput source = in;
+        if (messageType == COMPRESSIBLE && in.readBoolean()) {
+          source = new TCByteBufferInputStream(TCByteBufferFactory.wrap(decompress(in)));
+        }
         for (int i = 0; i < batchSize; ++i) {
-          SyncReplicationActivity activity = SyncReplicationActivity.deserializeFrom(in);
+          SyncReplicationActivity activity = SyncReplicationActivity.deserializeFrom(source);
           Assert.assertNotNull(activity);
           this.activities.add(activity);
         }
@@ -135,7 +168,61 @@ public class ReplicationMessage extends AbstractGroupMessage implements OrderedE
           activity.serializeTo(out);
         }
         break;
+      case COMPRESSIBLE:
+        out.writeLong(rid);
+        Assert.assertTrue(this.activities.size() > 0);
+        out.writeInt(this.activities.size());
+        if (getPayloadSize() >= this.compressionThreshold) {
+          writeCompressed(out);
+        } else {
+          out.writeBoolean(false);
+          for (SyncReplicationActivity activity : this.activities) {
+            activity.serializeTo(out);
+          }
+        }
+        break;
+    }
+  }
+
+  private void writeCompressed(TCByteBufferOutput out) {
+    TCByteBufferOutputStream raw = new TCByteBufferOutputStream();
+    for (SyncReplicationActivity activity : this.activities) {
+      activity.serializeTo(raw);
+    }
+    byte[] uncompressed = new byte[raw.getBytesWritten()];
+    int position = 0;
+    for (TCByteBuffer buffer : raw.toArray()) {
+      int length = buffer.remaining();
+      buffer.get(uncompressed, position, length);
+      position += length;
+    }
+    raw.recycle();
+    byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(uncompressed.length)];
+    int compressedLength = LZ4BlockCodec.compress(uncompressed, 0, uncompressed.length, compressed, 0);
+    // not worth making the passive decompress for a few percent
+    if (compressedLength < uncompressed.length - uncompressed.length / 16) {
+      out.writeBoolean(true);
+      out.writeInt(uncompressed.length);
+      out.writeInt(compressedLength);
+      out.write(compressed, 0, compressedLength);
+    } else {
+      // (nearly) incompressible, send what we already serialized as is
+      out.writeBoolean(false);
+      out.write(uncompressed);
+    }
+  }
+
+  private static byte[] decompress(TCByteBufferInput in) throws IOException {
+    int uncompressedLength = in.readInt();
+    int compressedLength = in.readInt();
+    byte[] compressed = new byte[compressedLength];
+    in.readFully(compressed);
+    byte[] uncompressed = new byte[uncompressedLength];
+    int length = LZ4BlockCodec.decompress(compressed, 0, compressedLength, uncompressed, 0, uncompressedLength);
+    if (length != uncompressedLength) {
+      throw new IOException("expected " + uncompressedLength + " bytes, decompressed " + length);
     }
+    return uncompressed;
   }
   
   public String getDebugId() {
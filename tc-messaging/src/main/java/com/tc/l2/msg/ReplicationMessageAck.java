@@ -44,7 +44,10 @@ public class ReplicationMessageAck extends AbstractGroupMessage implements IBatc
   }
 
 
+  // the sending side builds the batch as tuples, the receiving side decodes it straight into these
   private List<ReplicationAckTuple> batch;
+  private long[] respondTo;
+  private ReplicationResultCode[] results;
 
   public ReplicationMessageAck() {
     super(INVALID);
@@ -68,12 +71,47 @@ public class ReplicationMessageAck extends AbstractGroupMessage implements IBatc
 
   @Override
   public int getBatchSize() {
-    return this.batch.size();
+    return (null != this.batch) ? this.batch.size() : this.respondTo.length;
   }
 
   public List<ReplicationAckTuple> getBatch() {
+    if (null == this.batch && null != this.respondTo) {
+      List<ReplicationAckTuple> tuples = new ArrayList<ReplicationAckTuple>(this.respondTo.length);
+      for (int i = 0; i < this.respondTo.length; ++i) {
+        tuples.add(new ReplicationAckTuple(new SyncReplicationActivity.ActivityID(this.respondTo[i]), this.results[i]));
+      }
+      return tuples;
+    }
     return this.batch;
   }
+
+  /**
+   * @return the activity IDs acknowledged, in batch order, without building an ActivityID for each
+   */
+  public long[] getRespondTo() {
+    if (null == this.respondTo) {
+      long[] ids = new long[this.batch.size()];
+      for (int i = 0; i < ids.length; ++i) {
+        ids[i] = this.batch.get(i).respondTo.id;
+      }
+      return ids;
+    }
+    return this.respondTo;
+  }
+
+  /**
+   * @return the result of each acknowledgement, parallel to {@link #getRespondTo()}
+   */
+  public ReplicationResultCode[] getResults() {
+    if (null == this.results) {
+      ReplicationResultCode[] codes = new ReplicationResultCode[this.batch.size()];
+      for (int i = 0; i < codes.length; ++i) {
+        codes[i] = this.batch.get(i).result;
+      }
+      return codes;
+    }
+    return this.results;
+  }
   
   @Override
   public void setSequenceID(long rid) {
@@ -86,11 +124,12 @@ public class ReplicationMessageAck extends AbstractGroupMessage implements IBatc
       int batchSize = in.readInt();
       // We should never send an empty message.
       Assert.assertTrue(batchSize > 0);
-      this.batch = new ArrayList<ReplicationAckTuple>();
+      this.batch = null;
+      this.respondTo = new long[batchSize];
+      this.results = new ReplicationResultCode[batchSize];
       for (int i = 0; i < batchSize; ++i) {
-        SyncReplicationActivity.ActivityID respondTo = new SyncReplicationActivity.ActivityID(in.readLong());
-        ReplicationResultCode result = ReplicationResultCode.decode(in.readInt());
-        this.batch.add(new ReplicationAckTuple(respondTo, result));
+        this.respondTo[i] = in.readLong();
+        this.results[i] = ReplicationResultCode.decode(in.readInt());
       }
     }
   }
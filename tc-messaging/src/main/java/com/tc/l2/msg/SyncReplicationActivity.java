@@ -23,6 +23,7 @@ import com.tc.bytes.TCByteBuffer;
 import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferInput;
 import com.tc.io.TCByteBufferOutput;
+import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.ClientID;
 import com.tc.net.NodeID;
 import com.tc.object.ClientInstanceID;
@@ -224,6 +225,11 @@ public class SyncReplicationActivity implements OrderedEventContext {
 
   final String debugId;
 
+  // set once the activity is known to go to more than one passive, see shareEncoding()
+  private volatile boolean shareEncoding;
+  // guarded by this
+  private TCByteBuffer[] encoded;
+
   private SyncReplicationActivity(ActivityID id, EntityCreationTuple[] entitiesForSyncStart, EntityID entity, long version, FetchID fetch, ClientID src, ClientInstanceID instance, TransactionID tid, TransactionID oldest, ActivityType action, TCByteBuffer payload, int concurrency, int referenceCount, String debugId) {
     Assert.assertNotNull(id);
     Assert.assertNotNull(action);
@@ -333,7 +339,43 @@ public class SyncReplicationActivity implements OrderedEventContext {
     return (this.action.ordinal() >= ActivityType.SYNC_START.ordinal() && this.action.ordinal() < ActivityType.DISCONNECT_CLIENT.ordinal());
   }
 
+  /**
+   * The activity is about to be replicated to more than one passive.  Each passive batches it separately but the
+   *  activity itself is serialized once, by whichever batch gets to it first, and the others reuse the same bytes.
+   */
+  public void shareEncoding() {
+    this.shareEncoding = true;
+  }
+
   protected void serializeTo(TCByteBufferOutput out) {
+    if (this.shareEncoding) {
+      TCByteBuffer[] shared = getEncoded();
+      TCByteBuffer[] data = new TCByteBuffer[shared.length];
+      for (int i = 0; i < data.length; ++i) {
+        data[i] = shared[i].duplicate();
+      }
+      out.write(data);
+    } else {
+      encodeTo(out);
+    }
+  }
+
+  synchronized TCByteBuffer[] getEncoded() {
+    if (this.encoded == null) {
+      TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+      encodeTo(out);
+//  every batch that writes these recycles its own duplicates, so the shared copy must not come from a pool
+      TCByteBuffer[] written = out.toArray();
+      TCByteBuffer buffer = TCByteBufferFactory.copyUnpooled(written);
+      for (TCByteBuffer w : written) {
+        w.recycle();
+      }
+      this.encoded = new TCByteBuffer[] {buffer.asReadOnlyBuffer()};
+    }
+    return this.encoded;
+  }
+
+  private void encodeTo(TCByteBufferOutput out) {
     // This activity better be valid.
     Assert.assertTrue(ActivityType.INVALID != this.action);
     // We should NOT be serializing local flush activities.
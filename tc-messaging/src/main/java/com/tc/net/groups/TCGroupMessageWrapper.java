@@ -19,6 +19,7 @@
 package com.tc.net.groups;
 
 import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.io.TCByteBufferInputStream;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.protocol.tcm.MessageChannel;
@@ -36,6 +37,8 @@ import java.io.IOException;
 public class TCGroupMessageWrapper extends DSOMessageBase {
   private final static byte GROUP_MESSAGE_ID = 1;
   private AbstractGroupMessage      message;
+  // the message already serialized, shared with the wrappers sending it to other members
+  private TCByteBuffer[]            encoded;
 
   public TCGroupMessageWrapper(SessionID sessionID, MessageMonitor monitor, TCByteBufferOutputStream out,
                                MessageChannel channel, TCMessageType type) {
@@ -51,6 +54,30 @@ public class TCGroupMessageWrapper extends DSOMessageBase {
     this.message = message;
   }
 
+  /**
+   * Send a message already serialized by {@link #encode(AbstractGroupMessage)} rather than serializing it again.
+   */
+  public void setGroupMessage(AbstractGroupMessage message, TCByteBuffer[] encoded) {
+    this.message = message;
+    this.encoded = encoded;
+  }
+
+  /**
+   * Serialize a message once so it can be sent to any number of members.  The buffers are read only and are never
+   *  consumed, each wrapper sending them reads its own duplicates.  They are copied out of the stream so that no
+   *  pooled buffer is shared, each wrapper recycles its duplicates after the write.
+   */
+  public static TCByteBuffer[] encode(AbstractGroupMessage message) {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    message.serializeTo(out);
+    TCByteBuffer[] written = out.toArray();
+    TCByteBuffer encoded = TCByteBufferFactory.copyUnpooled(written);
+    for (TCByteBuffer buffer : written) {
+      buffer.recycle();
+    }
+    return new TCByteBuffer[] {encoded.asReadOnlyBuffer()};
+  }
+
   public AbstractGroupMessage getGroupMessage() {
     return this.message;
   }
@@ -58,7 +85,15 @@ public class TCGroupMessageWrapper extends DSOMessageBase {
   @Override
   protected void dehydrateValues() {
     putNVPair(GROUP_MESSAGE_ID, this.message.getClass().getName());
-    this.message.serializeTo(getOutputStream());
+    if (this.encoded != null) {
+      TCByteBuffer[] data = new TCByteBuffer[this.encoded.length];
+      for (int i = 0; i < data.length; ++i) {
+        data[i] = this.encoded[i].duplicate();
+      }
+      getOutputStream().write(data);
+    } else {
+      this.message.serializeTo(getOutputStream());
+    }
   }
 
   @Override
@@ -30,9 +30,10 @@ import com.tc.net.groups.NodeIDSerializer;
 import com.tc.net.protocol.AbstractTCNetworkMessage;
 import com.tc.util.AbstractIdentifier;
 import com.tc.util.Assert;
-import com.tc.util.concurrent.SetOnceFlag;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * @author teck
@@ -40,9 +41,19 @@ import java.io.IOException;
 public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements TCMessage {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TCMessageImpl.class);
+  private static final AtomicIntegerFieldUpdater<TCMessageImpl> PROCESSED = AtomicIntegerFieldUpdater.newUpdater(TCMessageImpl.class, "processed");
+  private static final AtomicIntegerFieldUpdater<TCMessageImpl> SENT = AtomicIntegerFieldUpdater.newUpdater(TCMessageImpl.class, "sent");
+  private static final int              UNPROCESSED       = 0;
+  private static final int              PROCESSING        = 1;
+  private static final int              DONE              = 2;
+  // hydration in progress and another caller is parked on the monitor waiting for it
+  private static final int              WAITED            = 3;
+  // recent payload sizes by message type, see getPayloadSizeHint
+  private static final AtomicIntegerArray PAYLOAD_SIZES  = new AtomicIntegerArray(TCMessageType.values().length);
   private final MessageMonitor          monitor;
-  private final SetOnceFlag             processed         = new SetOnceFlag();
-  private final SetOnceFlag             isSent            = new SetOnceFlag();
+  // field updaters rather than flag objects, one less allocation each for every message
+  private volatile int                  processed         = UNPROCESSED;
+  private volatile int                  sent;
   private final TCMessageType           type;
   private final MessageChannel          channel;
   private final boolean                 isOutgoing;
@@ -128,7 +139,7 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
   }
 
   private void dehydrate(TCByteBuffer[] nvData) {
-    if (processed.attemptSet()) {
+    if (PROCESSED.compareAndSet(this, UNPROCESSED, PROCESSING)) {
       try {
         if (nvData == null) nvData = nvToTCByteBufferArray();
         setPayload(nvData);
@@ -140,6 +151,7 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
       } finally {
         this.out.close();
         if (!isOutputStreamRecycled()) this.out = null;
+        this.processed = DONE;
       }
     }
   }
@@ -147,6 +159,7 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
   private final TCByteBuffer[] nvToTCByteBufferArray() {
     dehydrateValues();
 
+    recordPayloadSize(type, out.getBytesWritten());
     final TCByteBuffer[] nvData = out.toArray();
 
     Assert.eval(nvData.length > 0);
@@ -154,6 +167,26 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
     return nvData;
   }
 
+  private static void recordPayloadSize(TCMessageType type, int size) {
+    int index = type.ordinal();
+    int current = PAYLOAD_SIZES.get(index);
+    // follow increases at once and decreases slowly so the odd small message does not shrink the hint
+    int next = Math.max(size, current - (current >> 3));
+    if (next != current) {
+      PAYLOAD_SIZES.lazySet(index, next);
+    }
+  }
+
+  /**
+   * A rough size, in bytes, of the payload of recently sent messages of the given type.  Lets message factories start
+   * small messages with small buffers instead of the output stream default.
+   *
+   * @return the size, or 0 if no message of this type has been sent yet
+   */
+  public static int getPayloadSizeHint(TCMessageType type) {
+    return PAYLOAD_SIZES.get(type.ordinal());
+  }
+
   private void populateHeader() {
     TCMessageHeader hdr = (TCMessageHeader) getHeader();
     hdr.setMessageType(getMessageType().getType());
@@ -162,12 +195,14 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
 
   /**
    * Reads the payload byte buffer data and sets instance data. This should be called after the message is read from the
-   * network before it is released to the client for use. XXX:: This synchronization is there to create proper memory
-   * boundary.
+   * network before it is released to the client for use.  The volatile write of the processed state at the end of
+   * hydration, and the volatile read of it by any other caller, provide the memory boundary a monitor used to.  A
+   * caller which finds hydration already running parks on the monitor until it is done, the monitor is only taken when
+   * that actually happens.
    */
   @Override
-  public synchronized void hydrate() throws IOException, UnknownNameException {
-    if (processed.attemptSet()) {
+  public void hydrate() throws IOException, UnknownNameException {
+    if (PROCESSED.compareAndSet(this, UNPROCESSED, PROCESSING)) {
       try {
         final int count = bbis.readInt();
         if (count < 0) { throw new IOException("negative NV count: " + count); }
@@ -183,8 +218,35 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
         this.bbis.close();
         this.bbis = null;
         doRecycleOnRead();
+        if (PROCESSED.getAndSet(this, DONE) == WAITED) {
+          synchronized (this) {
+            notifyAll();
+          }
+        }
       }
       monitor.newIncomingMessage(this);
+    } else {
+      awaitHydrated();
+    }
+  }
+
+  // another thread is hydrating, wait for it to finish publishing the values
+  private void awaitHydrated() {
+    if (!PROCESSED.compareAndSet(this, PROCESSING, WAITED) && this.processed == DONE) {
+      return;
+    }
+    boolean interrupted = false;
+    synchronized (this) {
+      while (this.processed != DONE) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -364,7 +426,7 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
    */
   @Override
   public boolean send() {
-    if (isSent.attemptSet()) {
+    if (SENT.compareAndSet(this, 0, 1)) {
       dehydrate();
       try {
         basicSend();
@@ -389,7 +451,7 @@ public abstract class TCMessageImpl extends AbstractTCNetworkMessage implements
    * send with payload from a dehydrated message
    */
   public void cloneAndSend(TCMessageImpl message) throws IOException {
-    if (isSent.attemptSet()) {
+    if (SENT.compareAndSet(this, 0, 1)) {
       dehydrate(message.getPayload());
       basicSend();
     }
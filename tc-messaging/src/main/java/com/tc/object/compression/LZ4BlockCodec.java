@@ -0,0 +1,212 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.compression;
+
+import java.io.IOException;
+
+/**
+ * A small, dependency free codec for the LZ4 block format.
+ *
+ * The compressor is the simple greedy one: a single hash table of the last position each 4 byte sequence was seen at,
+ *  no chains, and a skip that speeds up over incompressible input.  It trades some ratio for speed, which is what we
+ *  want on the replication path where the link, not the CPU, is usually the bottleneck.
+ *
+ * Only raw blocks are handled, there is no frame, checksum or length header.  Callers need to carry the uncompressed
+ *  length themselves.
+ */
+public class LZ4BlockCodec {
+  private static final int MIN_MATCH = 4;
+  // the format requires the last 5 bytes to be literals and the last match to start 12 bytes before the end
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT = 12;
+  private static final int MAX_OFFSET = 65535;
+  private static final int RUN_MASK = 15;
+  private static final int HASH_LOG = 12;
+  private static final int SKIP_STRENGTH = 6;
+
+  /**
+   * @param length Uncompressed length
+   * @return The largest size a block of that length can compress to
+   */
+  public static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compress src[srcOff, srcOff + srcLen) into dest at destOff.
+   *
+   * @return The number of bytes written to dest, which must have at least maxCompressedLength(srcLen) bytes free
+   */
+  public static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+    int srcEnd = srcOff + srcLen;
+    int anchor = srcOff;
+    int op = destOff;
+    if (srcLen > MF_LIMIT) {
+      // positions are stored as offset + 1 so that 0 means empty
+      int[] table = new int[1 << HASH_LOG];
+      int matchLimit = srcEnd - LAST_LITERALS;
+      int mfLimit = srcEnd - MF_LIMIT;
+      int ip = srcOff;
+      while (ip < mfLimit) {
+        int sequence = readInt(src, ip);
+        int h = hash(sequence);
+        int candidate = table[h];
+        table[h] = ip - srcOff + 1;
+        if (candidate != 0) {
+          int ref = srcOff + candidate - 1;
+          if (ip - ref <= MAX_OFFSET && readInt(src, ref) == sequence) {
+            while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+              ip -= 1;
+              ref -= 1;
+            }
+            int length = MIN_MATCH;
+            while (ip + length < matchLimit && src[ref + length] == src[ip + length]) {
+              length += 1;
+            }
+            op = writeSequence(src, anchor, ip - anchor, ip - ref, length, dest, op);
+            ip += length;
+            anchor = ip;
+            continue;
+          }
+        }
+        // move faster the longer we go without finding a match
+        ip += 1 + ((ip - anchor) >>> SKIP_STRENGTH);
+      }
+    }
+    op = writeLastLiterals(src, anchor, srcEnd - anchor, dest, op);
+    return op - destOff;
+  }
+
+  /**
+   * Decompress the block src[srcOff, srcOff + srcLen) into dest at destOff.
+   *
+   * @param destLen The space available in dest, normally the known uncompressed length
+   * @return The number of bytes written to dest
+   * @throws IOException The block is malformed or does not fit in destLen bytes
+   */
+  public static int decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen) throws IOException {
+    int ip = srcOff;
+    int srcEnd = srcOff + srcLen;
+    int op = destOff;
+    int destEnd = destOff + destLen;
+    while (true) {
+      if (ip >= srcEnd) {
+        throw new IOException("truncated block");
+      }
+      int token = src[ip++] & 0xff;
+      int literals = token >>> 4;
+      if (literals == RUN_MASK) {
+        int more;
+        do {
+          if (ip >= srcEnd) {
+            throw new IOException("truncated literal length");
+          }
+          more = src[ip++] & 0xff;
+          literals += more;
+        } while (more == 255);
+      }
+      if (literals > srcEnd - ip || literals > destEnd - op) {
+        throw new IOException("literal run out of bounds");
+      }
+      System.arraycopy(src, ip, dest, op, literals);
+      ip += literals;
+      op += literals;
+      if (ip == srcEnd) {
+        // the last sequence has no match
+        return op - destOff;
+      }
+      if (srcEnd - ip < 2) {
+        throw new IOException("truncated match offset");
+      }
+      int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+      ip += 2;
+      int ref = op - offset;
+      if (offset == 0 || ref < destOff) {
+        throw new IOException("match offset out of bounds: " + offset);
+      }
+      int length = token & RUN_MASK;
+      if (length == RUN_MASK) {
+        int more;
+        do {
+          if (ip >= srcEnd) {
+            throw new IOException("truncated match length");
+          }
+          more = src[ip++] & 0xff;
+          length += more;
+        } while (more == 255);
+      }
+      length += MIN_MATCH;
+      if (length > destEnd - op) {
+        throw new IOException("match out of bounds");
+      }
+      // byte by byte since the match may overlap what it is writing
+      for (int i = 0; i < length; ++i) {
+        dest[op++] = dest[ref++];
+      }
+    }
+  }
+
+  private static int writeSequence(byte[] src, int anchor, int literals, int offset, int matchLength, byte[] dest, int op) {
+    int token = op++;
+    op = writeLiteralRun(src, anchor, literals, dest, token, op);
+    dest[op++] = (byte) offset;
+    dest[op++] = (byte) (offset >>> 8);
+    int length = matchLength - MIN_MATCH;
+    if (length >= RUN_MASK) {
+      dest[token] |= RUN_MASK;
+      op = writeLength(length - RUN_MASK, dest, op);
+    } else {
+      dest[token] |= length;
+    }
+    return op;
+  }
+
+  private static int writeLastLiterals(byte[] src, int anchor, int literals, byte[] dest, int op) {
+    int token = op++;
+    return writeLiteralRun(src, anchor, literals, dest, token, op);
+  }
+
+  private static int writeLiteralRun(byte[] src, int anchor, int literals, byte[] dest, int token, int op) {
+    if (literals >= RUN_MASK) {
+      dest[token] = (byte) (RUN_MASK << 4);
+      op = writeLength(literals - RUN_MASK, dest, op);
+    } else {
+      dest[token] = (byte) (literals << 4);
+    }
+    System.arraycopy(src, anchor, dest, op, literals);
+    return op + literals;
+  }
+
+  private static int writeLength(int length, byte[] dest, int op) {
+    while (length >= 255) {
+      dest[op++] = (byte) 255;
+      length -= 255;
+    }
+    dest[op++] = (byte) length;
+    return op;
+  }
+
+  private static int readInt(byte[] buf, int i) {
+    return (buf[i] & 0xff) | ((buf[i + 1] & 0xff) << 8) | ((buf[i + 2] & 0xff) << 16) | ((buf[i + 3] & 0xff) << 24);
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+}
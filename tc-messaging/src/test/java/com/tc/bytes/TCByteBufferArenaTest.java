@@ -0,0 +1,106 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.bytes;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TCByteBufferArenaTest {
+
+  @Test
+  public void testSizeClasses() {
+    TCByteBufferArena arena = new TCByteBufferArena(true, 1024 * 1024 * 8, false);
+    TCByteBuffer small = arena.allocate(100);
+    assertEquals(4 * 1024, small.capacity());
+    assertEquals(100, small.limit());
+    assertTrue(small.isDirect());
+
+    TCByteBuffer medium = arena.allocate(5000);
+    assertEquals(16 * 1024, medium.capacity());
+
+    TCByteBuffer large = arena.allocate(1024 * 1024);
+    assertEquals(1024 * 1024, large.capacity());
+
+    try {
+      arena.allocate(1024 * 1024 + 1);
+      fail("allocated past the largest size class");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReturnOnAnotherThreadIsReused() throws Exception {
+    TCByteBufferArena arena = new TCByteBufferArena(true, 1024 * 1024, false);
+    TCByteBuffer buf = arena.allocate(4096);
+    Thread t = new Thread(() -> TCByteBufferFactory.returnBuffer(buf));
+    t.start();
+    t.join();
+    assertEquals(4096, arena.getPooledBytes());
+    assertEquals(0, arena.getCheckedOutBytes());
+
+    TCByteBuffer again = arena.allocate(10);
+    assertSame(buf, again);
+    assertEquals(10, again.limit());
+    assertEquals(1, arena.getHitCount());
+  }
+
+  @Test
+  public void testCapIsHonored() {
+    TCByteBufferArena arena = new TCByteBufferArena(false, 4096, false);
+    TCByteBuffer one = arena.allocate(4096);
+    TCByteBuffer two = arena.allocate(4096);
+    TCByteBufferFactory.returnBuffer(one);
+    TCByteBufferFactory.returnBuffer(two);
+    assertEquals(4096, arena.getPooledBytes());
+  }
+
+  @Test
+  public void testDoubleReturnIsDetected() {
+    TCByteBufferArena arena = new TCByteBufferArena(false, 4096, false);
+    TCByteBuffer buf = arena.allocate(4096);
+    TCByteBufferFactory.returnBuffer(buf);
+    try {
+      TCByteBufferFactory.returnBuffer(buf);
+      fail("returned the same buffer twice");
+    } catch (AssertionError expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLeakDetection() throws Exception {
+    TCByteBufferArena arena = new TCByteBufferArena(false, 4096, true);
+    AtomicReference<TCByteBuffer> ref = new AtomicReference<>(arena.allocate(4096));
+    assertEquals(4096, arena.getCheckedOutBytes());
+    ref.set(null);
+    for (int i = 0; i < 50 && arena.getLeakCount() == 0; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    assertEquals(1, arena.getLeakCount());
+    assertEquals(0, arena.getCheckedOutBytes());
+  }
+}
@@ -21,6 +21,7 @@ package com.tc.bytes;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 public class TCByteBufferTest {
@@ -58,4 +59,37 @@ public class TCByteBufferTest {
     }
 
   }
+
+  @Test
+  public void testUnpooledCopyCanBeRecycledByEveryReader() {
+    boolean pooling = TCByteBufferFactory.isPoolingEnabled();
+    TCByteBufferFactory.setPoolingEnabled(true);
+    try {
+      long inUse = TCByteBufferFactory.getPooledBytesInUse();
+      TCByteBuffer[] pooled = TCByteBufferFactory.getFixedSizedInstancesForLength(false, 6000);
+      byte value = 0;
+      for (TCByteBuffer buffer : pooled) {
+        while (buffer.hasRemaining()) {
+          buffer.put(value++);
+        }
+        buffer.flip();
+      }
+      TCByteBuffer copy = TCByteBufferFactory.copyUnpooled(pooled);
+      TCByteBufferFactory.returnBuffers(pooled);
+      assertEquals(inUse, TCByteBufferFactory.getPooledBytesInUse());
+
+      for (int reader = 0; reader < 2; reader++) {
+        TCByteBuffer view = copy.duplicate();
+        assertEquals(6000, view.remaining());
+        for (int i = 0; i < 6000; i++) {
+          assertEquals((byte)i, view.get());
+        }
+        assertFalse(view.hasRemaining());
+        view.recycle();
+      }
+      assertEquals(inUse, TCByteBufferFactory.getPooledBytesInUse());
+    } finally {
+      TCByteBufferFactory.setPoolingEnabled(pooling);
+    }
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+
+public class LinearVoltronEntityMultiResponseTest {
+  @Test
+  public void testSharedPayloadRoundtrip() throws Exception {
+    byte[] small = new byte[] {1, 2, 3};
+    byte[] large = new byte[64 * 1024];
+    for (int x = 0; x < large.length; x++) {
+      large[x] = (byte)(x * 31);
+    }
+    // the same payload going to two clients, as a multicast does
+    LinearVoltronEntityMultiResponse first = roundtrip(small, large);
+    LinearVoltronEntityMultiResponse second = roundtrip(small, large);
+
+    for (LinearVoltronEntityMultiResponse received : new LinearVoltronEntityMultiResponse[] {first, second}) {
+      List<byte[]> messages = new ArrayList<>();
+      received.replay(new VoltronEntityMultiResponse.ReplayReceiver() {
+        @Override
+        public void received(TransactionID tid) {
+        }
+
+        @Override
+        public void retired(TransactionID tid) {
+        }
+
+        @Override
+        public void result(TransactionID tid, byte[] result) {
+        }
+
+        @Override
+        public void message(ClientInstanceID cid, byte[] message) {
+          messages.add(message);
+        }
+
+        @Override
+        public void message(TransactionID tid, byte[] message) {
+          messages.add(message);
+        }
+
+        @Override
+        public void stats(TransactionID tid, long[] message) {
+        }
+      });
+      assertEquals(3, messages.size());
+      assertArrayEquals(small, messages.get(0));
+      assertArrayEquals(large, messages.get(1));
+      assertArrayEquals(small, messages.get(2));
+    }
+  }
+
+  private LinearVoltronEntityMultiResponse roundtrip(byte[] small, byte[] large) throws Exception {
+    LinearVoltronEntityMultiResponse sent = new LinearVoltronEntityMultiResponse(new SessionID(0), mock(MessageMonitor.class),
+        new TCByteBufferOutputStream(4, 4096, false), null, TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+    sent.startAdding();
+    sent.addServerMessage(new ClientInstanceID(1), small);
+    sent.addServerMessage(new ClientInstanceID(1), large);
+    sent.addServerMessage(new TransactionID(2), small);
+    sent.stopAdding();
+    sent.dehydrate();
+
+    TCMessageHeader header = (TCMessageHeader) sent.getHeader();
+    TCByteBuffer[] payload = sent.getPayload();
+    LinearVoltronEntityMultiResponse received = new LinearVoltronEntityMultiResponse(SessionID.NULL_ID, mock(MessageMonitor.class), null, header, payload);
+    received.hydrate();
+    return received;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.entity.VoltronEntityMessage.Acks;
+import com.tc.entity.VoltronEntityMessage.Type;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.EntityID;
+import com.tc.object.FetchID;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.MessageCodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+
+public class NetworkVoltronEntityMultiMessageImplTest {
+  @Test
+  public void testSerializationKeepsOrder() throws Exception {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream outputStream = new TCByteBufferOutputStream(4, 4096, false);
+    NetworkVoltronEntityMultiMessageImpl batch = new NetworkVoltronEntityMultiMessageImpl(new SessionID(0), monitor, outputStream, null, TCMessageType.VOLTRON_ENTITY_MULTI_MESSAGE);
+
+    ClientID clientID = new ClientID(1);
+    EntityDescriptor descriptor = EntityDescriptor.createDescriptorForInvoke(new FetchID(3), new ClientInstanceID(4));
+    for (int x = 0; x < 3; x++) {
+      NetworkVoltronEntityMessageImpl invoke = new NetworkVoltronEntityMessageImpl(new SessionID(0), monitor, new TCByteBufferOutputStream(), null, TCMessageType.VOLTRON_ENTITY_MESSAGE);
+      invoke.setContents(clientID, new TransactionID(10 + x), EntityID.NULL_ID, descriptor, Type.INVOKE_ACTION,
+          x == 1, TCByteBufferFactory.wrap(new byte[] {(byte)x, (byte)x}), new TransactionID(10),
+          x == 2 ? EnumSet.of(Acks.RECEIVED, Acks.RETIRED) : EnumSet.of(Acks.RETIRED));
+      batch.addMessage(invoke);
+    }
+    batch.dehydrate();
+
+    TCMessageHeader header = (TCMessageHeader) batch.getHeader();
+    TCByteBuffer[] payload = batch.getPayload();
+    outputStream.close();
+
+    EntityMessage decoded = mock(EntityMessage.class);
+    MessageCodec<?, ?> codec = mock(MessageCodec.class);
+    doReturn(decoded).when(codec).decodeMessage(any(byte[].class));
+    MessageCodecSupplier supplier = mock(MessageCodecSupplier.class);
+    doReturn(codec).when(supplier).getMessageCodec(any(EntityDescriptor.class));
+
+    NetworkVoltronEntityMultiMessageImpl received = new NetworkVoltronEntityMultiMessageImpl(SessionID.NULL_ID, monitor, null, header, payload);
+    received.setMessageCodecSupplier(supplier);
+    received.hydrate();
+
+    assertEquals(clientID, received.getSource());
+    List<VoltronEntityMessage> messages = received.getMessages();
+    assertEquals(3, messages.size());
+    for (int x = 0; x < 3; x++) {
+      VoltronEntityMessage invoke = messages.get(x);
+      assertEquals(clientID, invoke.getSource());
+      assertEquals(new TransactionID(10 + x), invoke.getTransactionID());
+      assertEquals(descriptor, invoke.getEntityDescriptor());
+      assertEquals(Type.INVOKE_ACTION, invoke.getVoltronType());
+      assertEquals(x == 1, invoke.doesRequireReplication());
+      assertEquals(x == 2, invoke.doesRequestReceived());
+      assertTrue(invoke.doesRequestRetired());
+      assertEquals(new TransactionID(10), invoke.getOldestTransactionOnClient());
+      TCByteBuffer data = invoke.getExtendedData();
+      assertEquals(2, data.remaining());
+      assertEquals((byte)x, data.get());
+      assertSame(decoded, invoke.getEntityMessage());
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.l2.msg;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.object.EntityID;
+import com.tc.object.FetchID;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicationMessageTest {
+
+  private static final EntityID ENTITY = new EntityID("com.example.Entity", "test");
+
+  @SuppressWarnings("resource")
+  private int writeAndRead(ReplicationMessage message, byte[][] payloads) throws Exception {
+    TCByteBufferOutputStream bo = new TCByteBufferOutputStream();
+    message.serializeTo(bo);
+    int written = bo.getBytesWritten();
+    TCByteBufferInputStream bi = new TCByteBufferInputStream(bo.toArray());
+    ReplicationMessage read = new ReplicationMessage();
+    read.deserializeFrom(bi);
+
+    assertEquals(message.getSequenceID(), read.getSequenceID());
+    List<SyncReplicationActivity> activities = read.getActivities();
+    assertEquals(payloads.length, activities.size());
+    for (int x = 0; x < payloads.length; x++) {
+      SyncReplicationActivity activity = activities.get(x);
+      assertEquals(SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD, activity.getActivityType());
+      assertEquals(new FetchID(1), activity.getFetchID());
+      assertEquals(x + 1, activity.getConcurrency());
+      TCByteBuffer data = activity.getExtendedData();
+      byte[] bytes = new byte[data.remaining()];
+      data.get(bytes);
+      assertEquals(payloads[x].length, bytes.length);
+      for (int b = 0; b < bytes.length; b++) {
+        assertEquals(payloads[x][b], bytes[b]);
+      }
+    }
+    return written;
+  }
+
+  private ReplicationMessage createBatch(byte[][] payloads, int compressionThreshold) {
+    ReplicationMessage message = null;
+    for (int x = 0; x < payloads.length; x++) {
+      SyncReplicationActivity activity = SyncReplicationActivity.createPayloadMessage(ENTITY, 1, new FetchID(1), x + 1, TCByteBufferFactory.wrap(payloads[x]), "");
+      if (message == null) {
+        message = ReplicationMessage.createActivityContainer(activity, compressionThreshold);
+        message.setSequenceID(7);
+      } else {
+        message.addToBatch(activity);
+      }
+    }
+    return message;
+  }
+
+  private byte[][] compressiblePayloads(int count, int size) {
+    byte[][] payloads = new byte[count][];
+    for (int x = 0; x < count; x++) {
+      payloads[x] = new byte[size];
+      for (int b = 0; b < size; b++) {
+        payloads[x][b] = (byte) ((b / 16) % 8);
+      }
+    }
+    return payloads;
+  }
+
+  @Test
+  public void testCompressedBatchRoundtrip() throws Exception {
+    byte[][] payloads = compressiblePayloads(8, 4096);
+    int plain = writeAndRead(createBatch(payloads, 0), payloads);
+    int compressed = writeAndRead(createBatch(payloads, 1024), payloads);
+    assertTrue(plain + " " + compressed, compressed < plain / 4);
+  }
+
+  @Test
+  public void testSmallBatchIsNotCompressed() throws Exception {
+    byte[][] payloads = compressiblePayloads(2, 64);
+    int plain = writeAndRead(createBatch(payloads, 0), payloads);
+    int belowThreshold = writeAndRead(createBatch(payloads, 1024), payloads);
+    // just the flag saying it isn't compressed
+    assertEquals(plain + 1, belowThreshold);
+  }
+
+  @Test
+  public void testUncompressedBatchKeepsOriginalEncoding() throws Exception {
+    byte[][] payloads = compressiblePayloads(2, 64);
+    SyncReplicationActivity first = SyncReplicationActivity.createPayloadMessage(ENTITY, 1, new FetchID(1), 1, TCByteBufferFactory.wrap(payloads[0]), "");
+    SyncReplicationActivity second = SyncReplicationActivity.createPayloadMessage(ENTITY, 1, new FetchID(1), 2, TCByteBufferFactory.wrap(payloads[1]), "");
+    ReplicationMessage message = ReplicationMessage.createActivityContainer(first, 0);
+    message.setSequenceID(7);
+    message.addToBatch(second);
+    assertEquals(ReplicationMessage.IGNORED, message.getType());
+    TCByteBufferOutputStream bo = new TCByteBufferOutputStream();
+    message.serializeTo(bo);
+    TCByteBufferOutputStream expected = new TCByteBufferOutputStream();
+    expected.writeLong(7);
+    expected.writeInt(2);
+    first.serializeTo(expected);
+    second.serializeTo(expected);
+    // the batch ends the message, with no compression flag ahead of the activities
+    byte[] written = bytes(bo);
+    byte[] body = bytes(expected);
+    assertTrue(written.length > body.length);
+    for (int b = 0; b < body.length; b++) {
+      assertEquals(body[b], written[written.length - body.length + b]);
+    }
+  }
+
+  private static byte[] bytes(TCByteBufferOutputStream out) {
+    byte[] bytes = new byte[out.getBytesWritten()];
+    int position = 0;
+    for (TCByteBuffer buffer : out.toArray()) {
+      int length = buffer.remaining();
+      buffer.get(bytes, position, length);
+      position += length;
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testSharedEncodingIsReusedAcrossBatches() throws Exception {
+    byte[][] payloads = compressiblePayloads(4, 256);
+    int plain = writeAndRead(createBatch(payloads, 0), payloads);
+    SyncReplicationActivity[] activities = new SyncReplicationActivity[payloads.length];
+    AtomicInteger[] encodes = new AtomicInteger[payloads.length];
+    for (int x = 0; x < payloads.length; x++) {
+      encodes[x] = new AtomicInteger();
+      activities[x] = SyncReplicationActivity.createPayloadMessage(ENTITY, 1, new FetchID(1), x + 1, countingPayload(payloads[x], encodes[x]), "");
+      activities[x].shareEncoding();
+    }
+    // the same activities batched for two passives, one of them compressed
+    TCByteBuffer[][] shared = new TCByteBuffer[activities.length][];
+    for (int threshold : new int[] {0, 1}) {
+      ReplicationMessage message = ReplicationMessage.createActivityContainer(activities[0], threshold);
+      message.setSequenceID(7);
+      for (int x = 1; x < activities.length; x++) {
+        message.addToBatch(activities[x]);
+      }
+      int written = writeAndRead(message, payloads);
+      if (threshold == 0) {
+        assertEquals(plain, written);
+      }
+      for (int x = 0; x < activities.length; x++) {
+        if (shared[x] == null) {
+          shared[x] = activities[x].getEncoded();
+        }
+        // both passives are sent the same cached buffers
+        assertSame(shared[x], activities[x].getEncoded());
+      }
+    }
+    // and each activity was serialized only once
+    for (AtomicInteger encoded : encodes) {
+      assertEquals(1, encoded.get());
+    }
+  }
+
+  /**
+   * A read only payload counting the times its activity is serialized.
+   */
+  private static TCByteBuffer countingPayload(byte[] payload, AtomicInteger encodes) {
+    TCByteBuffer data = TCByteBufferFactory.wrap(payload);
+    return (TCByteBuffer) Proxy.newProxyInstance(TCByteBuffer.class.getClassLoader(), new Class<?>[] {TCByteBuffer.class}, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "isReadOnly":
+          return true;
+        case "asReadOnlyBuffer":
+          return proxy;
+        case "remaining":
+          // serializing the activity writes out the length of the payload, other users read a duplicate
+          encodes.incrementAndGet();
+          // fall through
+        default:
+          return method.invoke(data, args);
+      }
+    });
+  }
+
+  @Test
+  public void testIncompressibleBatchIsSentAsIs() throws Exception {
+    Random random = new Random(11);
+    byte[][] payloads = new byte[4][4096];
+    for (byte[] payload : payloads) {
+      random.nextBytes(payload);
+    }
+    int plain = writeAndRead(createBatch(payloads, 0), payloads);
+    int attempted = writeAndRead(createBatch(payloads, 1024), payloads);
+    assertEquals(plain + 1, attempted);
+  }
+}
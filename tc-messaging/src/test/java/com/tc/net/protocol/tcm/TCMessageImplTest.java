@@ -0,0 +1,140 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.tcm;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.entity.VoltronEntityReceivedResponseImpl;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+public class TCMessageImplTest {
+  @Test
+  public void testDehydrateRecordsPayloadSize() throws Exception {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    VoltronEntityReceivedResponseImpl sent = new VoltronEntityReceivedResponseImpl(new SessionID(0), monitor, new TCByteBufferOutputStream(), null, TCMessageType.VOLTRON_ENTITY_RECEIVED_RESPONSE);
+    sent.setTransactionID(new TransactionID(7));
+    sent.dehydrate();
+    int hint = TCMessageImpl.getPayloadSizeHint(TCMessageType.VOLTRON_ENTITY_RECEIVED_RESPONSE);
+    // NV count, name and a long
+    assertTrue(String.valueOf(hint), hint >= 13 && hint < 64);
+  }
+
+  @Test
+  public void testConcurrentHydrateSeesValues() throws Exception {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    ExecutorService readers = Executors.newFixedThreadPool(4);
+    try {
+      for (int x = 1; x <= 100; x++) {
+        VoltronEntityReceivedResponseImpl sent = new VoltronEntityReceivedResponseImpl(new SessionID(0), monitor, new TCByteBufferOutputStream(), null, TCMessageType.VOLTRON_ENTITY_RECEIVED_RESPONSE);
+        sent.setTransactionID(new TransactionID(x));
+        sent.dehydrate();
+        TCByteBuffer[] payload = sent.getPayload();
+        VoltronEntityReceivedResponseImpl received = new VoltronEntityReceivedResponseImpl(SessionID.NULL_ID, monitor, null, (TCMessageHeader) sent.getHeader(), payload);
+
+        CountDownLatch go = new CountDownLatch(1);
+        @SuppressWarnings("unchecked")
+        Future<TransactionID>[] results = new Future[4];
+        for (int y = 0; y < results.length; y++) {
+          results[y] = readers.submit(() -> {
+            go.await();
+            received.hydrate();
+            return received.getTransactionID();
+          });
+        }
+        go.countDown();
+        for (Future<TransactionID> result : results) {
+          assertEquals(new TransactionID(x), result.get(10, TimeUnit.SECONDS));
+        }
+      }
+    } finally {
+      readers.shutdown();
+    }
+    // hydrated once per message no matter how many callers
+    verify(monitor, times(100)).newIncomingMessage(any());
+  }
+
+  @Test
+  public void testConcurrentHydrateParksUntilDone() throws Exception {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    VoltronEntityReceivedResponseImpl sent = new VoltronEntityReceivedResponseImpl(new SessionID(0), monitor, new TCByteBufferOutputStream(), null, TCMessageType.VOLTRON_ENTITY_RECEIVED_RESPONSE);
+    sent.setTransactionID(new TransactionID(5));
+    sent.dehydrate();
+    CountDownLatch hydrating = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    VoltronEntityReceivedResponseImpl received = new VoltronEntityReceivedResponseImpl(SessionID.NULL_ID, monitor, null, (TCMessageHeader) sent.getHeader(), sent.getPayload()) {
+      @Override
+      protected boolean hydrateValue(byte name) throws IOException {
+        hydrating.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return super.hydrateValue(name);
+      }
+    };
+
+    ExecutorService readers = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> first = readers.submit(() -> {
+        received.hydrate();
+        return null;
+      });
+      assertTrue(hydrating.await(10, TimeUnit.SECONDS));
+      AtomicReference<Thread> second = new AtomicReference<>();
+      Future<TransactionID> waiter = readers.submit(() -> {
+        second.set(Thread.currentThread());
+        received.hydrate();
+        return received.getTransactionID();
+      });
+      // the second caller parks on the monitor rather than spinning
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (second.get() == null || second.get().getState() != Thread.State.WAITING) {
+        assertTrue(System.nanoTime() < deadline);
+        Thread.sleep(10);
+      }
+      assertFalse(waiter.isDone());
+      release.countDown();
+      first.get(10, TimeUnit.SECONDS);
+      assertEquals(new TransactionID(5), waiter.get(10, TimeUnit.SECONDS));
+    } finally {
+      readers.shutdown();
+    }
+    verify(monitor, times(1)).newIncomingMessage(any());
+  }
+}
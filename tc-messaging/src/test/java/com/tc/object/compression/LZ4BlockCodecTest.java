@@ -0,0 +1,90 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LZ4BlockCodecTest {
+
+  private int roundtrip(byte[] data) throws IOException {
+    byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length) + 3];
+    int length = LZ4BlockCodec.compress(data, 0, data.length, compressed, 3);
+    assertTrue(length <= LZ4BlockCodec.maxCompressedLength(data.length));
+    byte[] uncompressed = new byte[data.length];
+    assertEquals(data.length, LZ4BlockCodec.decompress(compressed, 3, length, uncompressed, 0, uncompressed.length));
+    assertArrayEquals(data, uncompressed);
+    return length;
+  }
+
+  @Test
+  public void testEmptyAndTiny() throws Exception {
+    roundtrip(new byte[0]);
+    roundtrip(new byte[] {1});
+    roundtrip("abcdabcdabcd".getBytes("UTF-8"));
+  }
+
+  @Test
+  public void testRepetitive() throws Exception {
+    byte[] data = new byte[100000];
+    for (int x = 0; x < data.length; x++) {
+      data[x] = (byte) (x % 7);
+    }
+    assertTrue(roundtrip(data) < data.length / 50);
+    Arrays.fill(data, (byte) 3);
+    assertTrue(roundtrip(data) < data.length / 100);
+  }
+
+  @Test
+  public void testRandomInputs() throws Exception {
+    Random random = new Random(42);
+    for (int x = 0; x < 500; x++) {
+      byte[] data = new byte[random.nextInt(5000)];
+      int alphabet = 1 + random.nextInt(256);
+      for (int b = 0; b < data.length; b++) {
+        data[b] = (byte) random.nextInt(alphabet);
+      }
+      roundtrip(data);
+    }
+  }
+
+  @Test
+  public void testUndersizedDestinationIsRejected() throws Exception {
+    byte[] data = new byte[1000];
+    for (int x = 0; x < data.length; x++) {
+      data[x] = (byte) (x % 13);
+    }
+    byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length)];
+    int length = LZ4BlockCodec.compress(data, 0, data.length, compressed, 0);
+    try {
+      LZ4BlockCodec.decompress(compressed, 0, length, new byte[data.length - 1], 0, data.length - 1);
+      fail();
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+}